@@ -0,0 +1,269 @@
+import java.util.*;
+
+/**
+ * Append-only trajectory history kept in compact encoded form, for long histories that would be too large as
+ * <code>Double[]</code> records or {@link Position} objects.
+ * <p>
+ * Each point is quantized before it is stored: latitude and longitude to fixed-point units of
+ * {@value #DEGREE_UNIT} degrees (about 1 cm), altitude to whole meters and time to whole milliseconds. Every value is
+ * then stored as the difference from the same value of the previous point, zigzag-mapped so small negative differences
+ * stay small, and written as a variable-length integer of 7 bits per byte. Consecutive GPS fixes are close together in
+ * space and time, so a point typically takes 6 to 8 bytes against about {@value #BOXED_BYTES_PER_POINT} bytes for a
+ * boxed record in a linked list.
+ * <p>
+ * The encoded bytes live in chunks of at most {@value #MAX_CHUNK_SIZE} bytes, each starting from zero so it decodes
+ * on its own. Chunks start small and double in size, so trackers with short histories stay small too. Reading is a
+ * sequential decode through {@link PointVisitor}, which allocates nothing per point.
+ */
+public class CompressedTrajectoryStore {
+    static final double DEGREE_UNIT = 1e-7; // fixed-point resolution of latitude and longitude
+    static final int BOXED_BYTES_PER_POINT = 120; // list node (24) + Double[4] (32) + four Doubles (64), compressed oops
+    static final int MAX_CHUNK_SIZE = 4096;
+    private static final int FIRST_CHUNK_SIZE = 64;
+    private static final int MAX_POINT_SIZE = 5 + 5 + 5 + 10; // varint bytes of three 33-bit deltas and one long delta
+
+    private final Map<String, Track> tracks = new HashMap<>(); // separate each tracker with its own history
+    private long decodedPoints = 0;
+    private long decodeNanos = 0;
+
+    /**
+     * Receives decoded points in the order they were appended.
+     */
+    @FunctionalInterface
+    public interface PointVisitor {
+        void accept(double latitude, double longitude, double altitude, long time);
+    }
+
+    /**
+     * Appends a position to the history of a tracker.
+     *
+     * @param trackerId Tracker the position belongs to.
+     * @param position  Position with altitude in meters and the time it was recorded.
+     */
+    public void append(String trackerId, Position position) {
+        append(trackerId, position.latitude, position.longitude, position.altitude, position.time);
+    }
+
+    /**
+     * Appends a point to the history of a tracker.
+     *
+     * @param trackerId  Tracker the point belongs to.
+     * @param latitude   Latitude in degrees.
+     * @param longitude  Longitude in degrees.
+     * @param altitude   Altitude in meters.
+     * @param timeMillis Time the point was recorded in milliseconds.
+     */
+    public synchronized void append(String trackerId, double latitude, double longitude, double altitude, long timeMillis) {
+        tracks.computeIfAbsent(trackerId, k -> new Track()).append(
+                (int) Math.round(latitude / DEGREE_UNIT), (int) Math.round(longitude / DEGREE_UNIT),
+                (int) Math.round(altitude), timeMillis);
+    }
+
+    /**
+     * Decodes a tracker's history in order, passing every point to the visitor.
+     *
+     * @param trackerId Tracker to read.
+     * @param visitor   Receives each point.
+     * @return Number of points decoded, 0 if the tracker is unknown.
+     */
+    public synchronized int forEach(String trackerId, PointVisitor visitor) {
+        Track track = tracks.get(trackerId);
+        if (track == null) return 0;
+
+        long start = System.nanoTime();
+        track.decode(visitor);
+        decodeNanos += System.nanoTime() - start;
+        decodedPoints += track.size;
+        return track.size;
+    }
+
+    /**
+     * Calculates the distance a tracker travelled between two points in time by decoding its history.
+     *
+     * @param trackerId  Tracker to query.
+     * @param fromMillis Start of the interval (inclusive) in milliseconds.
+     * @param toMillis   End of the interval (inclusive) in milliseconds.
+     * @return Distance in meters along the points recorded inside the interval, 0.0 if there are fewer than two.
+     */
+    public double distance(String trackerId, long fromMillis, long toMillis) {
+        double[] total = {0.0};
+        double[] previous = new double[3];
+        boolean[] hasPrevious = {false};
+        forEach(trackerId, (lat, lon, alt, time) -> {
+            if (time < fromMillis || time > toMillis) return;
+            if (hasPrevious[0]) total[0] += Utils.calculateDistance(previous[0], previous[1], previous[2], lat, lon, alt);
+            previous[0] = lat;
+            previous[1] = lon;
+            previous[2] = alt;
+            hasPrevious[0] = true;
+        });
+        return total[0];
+    }
+
+    /**
+     * Decodes a tracker's whole history, e.g. for replay.
+     *
+     * @param trackerId Tracker to read.
+     * @return Positions in the order they were appended, or an empty list if the tracker is unknown.
+     */
+    public List<Position> positions(String trackerId) {
+        List<Position> result = new ArrayList<>(size(trackerId));
+        forEach(trackerId, (lat, lon, alt, time) -> result.add(new Position(lat, lon, alt, time)));
+        return result;
+    }
+
+    /**
+     * @param trackerId Tracker to query.
+     * @return Number of points stored for the tracker.
+     */
+    public synchronized int size(String trackerId) {
+        Track track = tracks.get(trackerId);
+        return track == null ? 0 : track.size;
+    }
+
+    /**
+     * @return IDs of every tracker with a recorded history.
+     */
+    public synchronized Set<String> trackerIds() {
+        return new TreeSet<>(tracks.keySet());
+    }
+
+    /**
+     * @return Number of points stored across all trackers.
+     */
+    public synchronized long pointCount() {
+        long count = 0;
+        for (Track track : tracks.values()) count += track.size;
+        return count;
+    }
+
+    /**
+     * @return Bytes allocated for encoded points across all trackers, including unused space at the end of chunks.
+     */
+    public synchronized long encodedBytes() {
+        long bytes = 0;
+        for (Track track : tracks.values()) bytes += track.allocatedBytes();
+        return bytes;
+    }
+
+    /**
+     * @return How many times smaller the encoded points are than the same points as boxed records.
+     */
+    public synchronized double getCompressionRatio() {
+        long bytes = encodedBytes();
+        return bytes == 0 ? 1.0 : (double) pointCount() * BOXED_BYTES_PER_POINT / bytes;
+    }
+
+    /**
+     * @return Points decoded per second across every read so far, 0.0 before the first read.
+     */
+    public synchronized double getDecodeThroughput() {
+        return decodeNanos == 0 ? 0.0 : decodedPoints / (decodeNanos / 1e9);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("CompressedTrajectoryStore: %,d points in %,d bytes (%.1f bytes/point, %.1fx smaller than boxed), decoding %,.0f points/s",
+                pointCount(), encodedBytes(), (double) encodedBytes() / Math.max(1, pointCount()), getCompressionRatio(),
+                getDecodeThroughput());
+    }
+
+    // Encoded history of a single tracker
+    private static class Track {
+        private byte[][] chunks = new byte[1][];
+        private int[] used = new int[1]; // bytes written to each chunk
+        private int chunkCount = 0;
+        private int size = 0;
+        // last point written to the current chunk, deltas are taken from it
+        private int lastLat, lastLon, lastAlt;
+        private long lastTime;
+
+        void append(int lat, int lon, int alt, long time) {
+            if (chunkCount == 0 || used[chunkCount - 1] + MAX_POINT_SIZE > chunks[chunkCount - 1].length) newChunk();
+
+            byte[] chunk = chunks[chunkCount - 1];
+            int pos = used[chunkCount - 1];
+            pos = writeVarint(chunk, pos, zigzag((long) lat - lastLat));
+            pos = writeVarint(chunk, pos, zigzag((long) lon - lastLon));
+            pos = writeVarint(chunk, pos, zigzag((long) alt - lastAlt));
+            pos = writeVarint(chunk, pos, zigzag(time - lastTime));
+            used[chunkCount - 1] = pos;
+
+            lastLat = lat;
+            lastLon = lon;
+            lastAlt = alt;
+            lastTime = time;
+            size++;
+        }
+
+        void decode(PointVisitor visitor) {
+            VarintReader reader = new VarintReader();
+            for (int c = 0; c < chunkCount; c++) {
+                reader.buffer = chunks[c];
+                reader.pos = 0;
+                int end = used[c];
+                long lat = 0, lon = 0, alt = 0, time = 0;
+                while (reader.pos < end) {
+                    lat += unzigzag(reader.next());
+                    lon += unzigzag(reader.next());
+                    alt += unzigzag(reader.next());
+                    time += unzigzag(reader.next());
+                    visitor.accept(lat * DEGREE_UNIT, lon * DEGREE_UNIT, alt, time);
+                }
+            }
+        }
+
+        long allocatedBytes() {
+            long bytes = 0;
+            for (int c = 0; c < chunkCount; c++) bytes += chunks[c].length;
+            return bytes;
+        }
+
+        // Chunks grow from FIRST_CHUNK_SIZE to MAX_CHUNK_SIZE; each begins with deltas from zero
+        private void newChunk() {
+            if (chunkCount == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunkCount * 2);
+                used = Arrays.copyOf(used, chunkCount * 2);
+            }
+            int chunkSize = chunkCount >= 6 ? MAX_CHUNK_SIZE : Math.min(MAX_CHUNK_SIZE, FIRST_CHUNK_SIZE << chunkCount);
+            chunks[chunkCount++] = new byte[chunkSize];
+            lastLat = 0;
+            lastLon = 0;
+            lastAlt = 0;
+            lastTime = 0;
+        }
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // Reads the varints written by writeVarint from a position that advances as values are read
+    private static class VarintReader {
+        byte[] buffer;
+        int pos;
+
+        long next() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer[pos++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return value;
+            }
+        }
+    }
+
+    // Writes 7 bits per byte, low bits first, with the high bit set on every byte but the last
+    static int writeVarint(byte[] buffer, int pos, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[pos++] = (byte) value;
+        return pos;
+    }
+}
@@ -0,0 +1,164 @@
+import java.util.*;
+
+/**
+ * Trackers ranked by the distance they travelled within a sliding window, kept in order as distances change rather
+ * than sorted on demand.
+ * <p>
+ * Each tracker's windowed distance is the sum of its legs in the last {@code window / bucket} buckets. Two structures
+ * keep it current:
+ * <ul>
+ *     <li><b>Ranking:</b> a {@link TreeSet} of trackers ordered by windowed distance. A change removes the tracker and
+ *     re-inserts it at its new place in O(log n), and the top K are read from its head in O(K).</li>
+ *     <li><b>Expiry queue:</b> the distance each tracker travelled in each bucket, queued in time order. As the window
+ *     moves on, buckets that fell out of it are popped from the front and subtracted from their tracker, again
+ *     O(log n) each, without visiting trackers whose distance did not change.</li>
+ * </ul>
+ * A tracker whose windowed distance drops back to zero leaves the ranking, so idle trackers cost nothing.
+ */
+public class DistanceLeaderboard {
+    private final long bucketMillis;
+    private final long bucketsPerWindow;
+    private final TreeSet<Standing> ranking = new TreeSet<>(Standing.ORDER);
+    private final Map<String, Standing> standings = new HashMap<>();
+    private final ArrayDeque<Leg> expiry = new ArrayDeque<>(); // in bucket order
+    private long newestBucket = Long.MIN_VALUE;
+
+    /**
+     * A tracker and its distance within the window.
+     */
+    public static class Standing {
+        static final Comparator<Standing> ORDER = Comparator.comparingDouble((Standing s) -> -s.distance)
+                .thenComparing(s -> s.trackerId);
+
+        public final String trackerId;
+        double distance; // only changed while out of the ranking
+        Leg latest;      // the tracker's newest queued bucket
+
+        Standing(String trackerId) {
+            this.trackerId = trackerId;
+        }
+
+        /**
+         * @return Meters travelled within the window.
+         */
+        public double getDistance() {
+            return distance;
+        }
+
+        @Override
+        public String toString() {
+            return trackerId + ": " + Math.round(distance) + " m";
+        }
+    }
+
+    // Distance one tracker travelled during one bucket
+    private static class Leg {
+        final Standing standing;
+        final long bucket;
+        double meters;
+
+        Leg(Standing standing, long bucket) {
+            this.standing = standing;
+            this.bucket = bucket;
+        }
+    }
+
+    /**
+     * @param windowMillis Window length; a multiple of the bucket length.
+     * @param bucketMillis Granularity at which the window moves.
+     */
+    public DistanceLeaderboard(long windowMillis, long bucketMillis) {
+        if (bucketMillis < 1) throw new IllegalArgumentException("Bucket length must be positive: " + bucketMillis);
+        if (windowMillis < bucketMillis || windowMillis % bucketMillis != 0) {
+            throw new IllegalArgumentException("Window must be a multiple of the bucket length: " + windowMillis);
+        }
+        this.bucketMillis = bucketMillis;
+        this.bucketsPerWindow = windowMillis / bucketMillis;
+    }
+
+    /**
+     * Adds a leg travelled by a tracker, moving it up the ranking.
+     *
+     * @param trackerId  Tracker that moved.
+     * @param meters     Distance of the leg; nothing changes unless it is positive.
+     * @param timeMillis Time the leg ended.
+     */
+    public synchronized void record(String trackerId, double meters, long timeMillis) {
+        advance(timeMillis);
+        long bucket = Math.floorDiv(timeMillis, bucketMillis);
+        if (meters <= 0.0 || bucket <= newestBucket - bucketsPerWindow) return; // nothing to add, or already expired
+
+        Standing standing = standings.get(trackerId);
+        if (standing == null) {
+            standing = new Standing(trackerId);
+            standings.put(trackerId, standing);
+        } else {
+            ranking.remove(standing);
+        }
+        standing.distance += meters;
+        ranking.add(standing);
+
+        // Legs of the same bucket share one queue entry; a late leg joins the newest entry rather than going back
+        Leg latest = standing.latest;
+        if (latest == null || latest.bucket < bucket) {
+            latest = new Leg(standing, Math.max(bucket, newestBucket));
+            standing.latest = latest;
+            expiry.addLast(latest);
+        }
+        latest.meters += meters;
+    }
+
+    /**
+     * Moves the window to end at the given time, subtracting every bucket that fell out of it. Time never moves back:
+     * an earlier time changes nothing.
+     *
+     * @param nowMillis Current time.
+     */
+    public synchronized void advance(long nowMillis) {
+        newestBucket = Math.max(newestBucket, Math.floorDiv(nowMillis, bucketMillis));
+        while (!expiry.isEmpty() && expiry.peekFirst().bucket <= newestBucket - bucketsPerWindow) {
+            Leg leg = expiry.pollFirst();
+            Standing standing = leg.standing;
+            ranking.remove(standing);
+            standing.distance -= leg.meters;
+            if (standing.latest == leg) {
+                // Nothing of the tracker is left in the window
+                standing.latest = null;
+                standings.remove(standing.trackerId);
+            } else {
+                ranking.add(standing);
+            }
+        }
+    }
+
+    /**
+     * @param k Number of trackers wanted.
+     * @return Up to <code>k</code> trackers, furthest first, with their distances at the time of the call.
+     */
+    public synchronized List<Standing> top(int k) {
+        List<Standing> leaders = new ArrayList<>(Math.min(k, ranking.size()));
+        for (Standing standing : ranking) {
+            if (leaders.size() == k) break;
+            Standing copy = new Standing(standing.trackerId);
+            copy.distance = standing.distance;
+            leaders.add(copy);
+        }
+        return leaders;
+    }
+
+    /**
+     * @param trackerId Tracker to look up.
+     * @return Meters the tracker travelled within the window, 0.0 if none.
+     */
+    public synchronized double distance(String trackerId) {
+        Standing standing = standings.get(trackerId);
+        return standing == null ? 0.0 : standing.distance;
+    }
+
+    /**
+     * @return Number of trackers that moved within the window.
+     */
+    public synchronized int size() {
+        return ranking.size();
+    }
+}
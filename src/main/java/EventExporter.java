@@ -0,0 +1,326 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Continuously exports filtered events to disk as CSV or GeoJSON text sequences (RFC 8142), one row per event with the
+ * tracker ID, time, position and cumulative distance.
+ * <p>
+ * Rows are encoded straight into large direct buffers: numbers are written digit by digit and tracker IDs are encoded
+ * once and cached, so no <code>String</code> is built per row. A full buffer is handed to a background thread that
+ * writes it through a {@link FileChannel}; partly filled buffers are handed over every {@value #FLUSH_INTERVAL}
+ * milliseconds so files stay current. A new file is started once the current one would exceed its size limit, always
+ * between whole rows.
+ * <p>
+ * Writing never blocks the caller on disk. If the disk falls so far behind that all {@value #BUFFER_COUNT} buffers are
+ * waiting to be written, rows are dropped and counted instead of back-pressuring the event pipeline.
+ */
+public class EventExporter implements AutoCloseable {
+    /**
+     * Output formats; each file of a CSV export starts with a header line.
+     */
+    public enum Format {
+        CSV(".csv"), GEOJSON_SEQ(".geojsons");
+
+        final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+    }
+
+    static final int BUFFER_SIZE = 4 << 20;
+    static final int BUFFER_COUNT = 4;
+    static final long FLUSH_INTERVAL = 200; // milliseconds before a partly filled buffer is written
+    private static final int MAX_ROW_SIZE = 256; // bytes of a row, apart from the tracker ID
+    private static final int MAX_CACHED_IDS = 100_000;
+    private static final byte[] CSV_HEADER = "id,time,latitude,longitude,altitude,distance\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FEATURE_START = "\u001e{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\",\"coordinates\":[".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PROPERTIES_ID = "]},\"properties\":{\"id\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PROPERTIES_TIME = ",\"time\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PROPERTIES_DISTANCE = ",\"distance\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FEATURE_END = "}}\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] JSON_NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NONE = new byte[0];
+
+    private final Path directory;
+    private final String baseName;
+    private final Format format;
+    private final long maxFileBytes;
+
+    private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(BUFFER_COUNT);
+    private final BlockingQueue<ByteBuffer> full = new ArrayBlockingQueue<>(BUFFER_COUNT);
+    private final Map<String, byte[]> encodedIds = new HashMap<>();
+    private final byte[] digits = new byte[20];
+    private final Thread flusher;
+    private ByteBuffer current; // buffer rows are encoded into, null while every buffer waits to be written
+    private volatile boolean closing = false; // set once close() was called
+    private volatile IOException failure;     // set once the flusher stopped on an error
+
+    private long writtenRows = 0;
+    private long droppedRows = 0;
+    private volatile int fileCount = 0;
+
+    // owned by the flusher thread
+    private FileChannel channel;
+    private long fileBytes = 0;
+
+    /**
+     * Creates an exporter and opens its first file, named <code>baseName-00000</code> with the format's extension.
+     *
+     * @param directory    Directory to write into, created if missing.
+     * @param baseName     Name every file of the export starts with.
+     * @param format       Output format.
+     * @param maxFileBytes Size after which a new file is started.
+     * @throws IOException If the directory or the first file cannot be created.
+     */
+    public EventExporter(Path directory, String baseName, Format format, long maxFileBytes) throws IOException {
+        this.directory = directory;
+        this.baseName = baseName;
+        this.format = format;
+        this.maxFileBytes = maxFileBytes;
+
+        Files.createDirectories(directory);
+        openNextFile();
+        for (int i = 0; i < BUFFER_COUNT; i++) free.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+        current = free.poll();
+
+        flusher = new Thread(this::runFlusher, "EventExporter " + baseName);
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Appends one row. Never blocks on disk: the row is dropped if no buffer is free.
+     *
+     * @param trackerId  Tracker the event belongs to.
+     * @param timeMillis Time the event was received in milliseconds.
+     * @param latitude   Latitude in degrees.
+     * @param longitude  Longitude in degrees.
+     * @param altitude   Altitude in meters.
+     * @param distance   Cumulative distance of the tracker in meters.
+     */
+    public synchronized void write(String trackerId, long timeMillis, double latitude, double longitude, double altitude, double distance) {
+        if (closing || failure != null) return;
+        byte[] id = encodedId(trackerId);
+        if (current == null || current.remaining() < MAX_ROW_SIZE + id.length) {
+            if (current != null) handOver();
+            current = free.poll();
+            if (current == null) {
+                droppedRows++;
+                return;
+            }
+        }
+
+        ByteBuffer out = current;
+        if (format == Format.CSV) {
+            out.put(id).put((byte) ',');
+            putLong(out, timeMillis);
+            out.put((byte) ',');
+            putDecimal(out, latitude, 7, NONE);
+            out.put((byte) ',');
+            putDecimal(out, longitude, 7, NONE);
+            out.put((byte) ',');
+            putDecimal(out, altitude, 2, NONE);
+            out.put((byte) ',');
+            putDecimal(out, distance, 2, NONE);
+            out.put((byte) '\n');
+        } else {
+            out.put(FEATURE_START); // GeoJSON orders coordinates longitude first
+            putDecimal(out, longitude, 7, JSON_NULL);
+            out.put((byte) ',');
+            putDecimal(out, latitude, 7, JSON_NULL);
+            out.put((byte) ',');
+            putDecimal(out, altitude, 2, JSON_NULL);
+            out.put(PROPERTIES_ID).put(id).put(PROPERTIES_TIME);
+            putLong(out, timeMillis);
+            out.put(PROPERTIES_DISTANCE);
+            putDecimal(out, distance, 2, JSON_NULL);
+            out.put(FEATURE_END);
+        }
+        writtenRows++;
+    }
+
+    /**
+     * Writes out every row accepted so far and closes the current file.
+     *
+     * @throws IOException If writing failed at any point of the export.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closing) return;
+            if (current != null && current.position() > 0 && failure == null) handOver();
+            current = null;
+            closing = true;
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * @return Rows accepted into a buffer.
+     */
+    public synchronized long getWrittenRows() {
+        return writtenRows;
+    }
+
+    /**
+     * @return Rows dropped because the disk could not keep up.
+     */
+    public synchronized long getDroppedRows() {
+        return droppedRows;
+    }
+
+    /**
+     * @return Number of files started so far, including the current one.
+     */
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * @return The error that stopped writing, or null if writing has not failed.
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("EventExporter: %,d rows written to %d files, %,d dropped", getWrittenRows(), getFileCount(), getDroppedRows());
+    }
+
+    // Called with the lock held; the flusher always has room since there are only BUFFER_COUNT buffers
+    private void handOver() {
+        full.add(current);
+        current = null;
+    }
+
+    private void runFlusher() {
+        try {
+            while (!closing || !full.isEmpty()) {
+                ByteBuffer buffer = full.poll(FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+                if (buffer == null) {
+                    // Nothing filled up in time, write out what there is so far
+                    synchronized (this) {
+                        if (current == null || current.position() == 0) continue;
+                        buffer = current;
+                        current = free.poll();
+                    }
+                }
+                writeBuffer(buffer);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            failure = e; // reported by close()
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+            }
+        }
+    }
+
+    private void writeBuffer(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        if (fileBytes > 0 && fileBytes + buffer.remaining() > maxFileBytes) {
+            channel.close();
+            openNextFile();
+        }
+        fileBytes += buffer.remaining();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+        free.add(buffer);
+    }
+
+    private void openNextFile() throws IOException {
+        Path file = directory.resolve(String.format("%s-%05d%s", baseName, fileCount, format.extension));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        fileCount++;
+        fileBytes = 0;
+        if (format == Format.CSV) {
+            ByteBuffer header = ByteBuffer.wrap(CSV_HEADER);
+            while (header.hasRemaining()) fileBytes += channel.write(header);
+        }
+    }
+
+    // Tracker IDs are few compared with events, so each is encoded and escaped once
+    private byte[] encodedId(String trackerId) {
+        byte[] id = encodedIds.get(trackerId);
+        if (id != null) return id;
+
+        if (encodedIds.size() >= MAX_CACHED_IDS) encodedIds.clear();
+        StringBuilder text = new StringBuilder(trackerId.length() + 2);
+        if (format == Format.CSV) {
+            boolean quote = trackerId.matches(".*[,\"\\r\\n].*");
+            if (quote) text.append('"').append(trackerId.replace("\"", "\"\"")).append('"');
+            else text.append(trackerId);
+        } else {
+            text.append('"');
+            for (char c : trackerId.toCharArray()) {
+                if (c == '"' || c == '\\') text.append('\\').append(c);
+                else if (c < 0x20) text.append(String.format("\\u%04x", (int) c));
+                else text.append(c);
+            }
+            text.append('"');
+        }
+        id = text.toString().getBytes(StandardCharsets.UTF_8);
+        encodedIds.put(trackerId, id);
+        return id;
+    }
+
+    private void putLong(ByteBuffer out, long value) {
+        if (value < 0) {
+            out.put((byte) '-');
+            if (value == Long.MIN_VALUE) {
+                // Its magnitude has no positive long, write the last digit separately
+                putLong(out, -(value / 10));
+                out.put((byte) ('0' + -(value % 10)));
+                return;
+            }
+            value = -value;
+        }
+        int n = 0;
+        do {
+            digits[n++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        while (n > 0) out.put(digits[--n]);
+    }
+
+    // Fixed number of decimals, rounded half up; values beyond that precision lose nothing GPS provides
+    private void putDecimal(ByteBuffer out, double value, int decimals, byte[] nonFinite) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            out.put(nonFinite);
+            return;
+        }
+        long scale = 1;
+        for (int i = 0; i < decimals; i++) scale *= 10;
+        long scaled = Math.round(Math.abs(value) * scale);
+        if (value < 0 && scaled != 0) out.put((byte) '-');
+
+        putLong(out, scaled / scale);
+        out.put((byte) '.');
+        long fraction = scaled % scale;
+        for (long place = scale / 10; place > 0; place /= 10) {
+            out.put((byte) ('0' + fraction / place));
+            fraction %= place;
+        }
+    }
+}
@@ -1,12 +1,7 @@
 import nz.sodium.*;
-import nz.sodium.time.MillisecondsTimerSystem;
-import nz.sodium.time.TimerSystem;
 import swidgets.SButton;
 
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 /**
  * EventProcessor is a utility class for handling and processing GPS event data with Sodium FRP primitives.
@@ -29,17 +24,38 @@ import java.util.concurrent.TimeUnit;
  *       5-minute sliding time window. The calculation includes only GPS events that fall within the active latitude
  *       and longitude range. Altitude is converted from feet to meters for accurate 3D distance measurement.
  *       Distance is rounded to the nearest integer and displayed in meters.</li>
+ *   <li><b>Geofencing:</b> Emits enter and exit events as trackers cross the boundaries of registered fences.</li>
+ *   <li><b>Proximity Alerts:</b> Emits an event when two trackers come within a given distance of each other,
+ *       comparing only trackers in neighbouring cells of a spatial hash.</li>
+ *   <li><b>Motion Statistics:</b> Maintains live speed, heading, average speed and maximum speed for each tracker,
+ *       updated incrementally from the same filtered events with constant state per tracker.</li>
  * </ul>
  * <p>
  * The EventProcessor class maintains various tracker-specific records, such as position, cumulative distance,
  * and elapsed time since the last recorded event. These records support the dynamic and accurate representation
- * of GPS tracking data over time.
+ * of GPS tracking data over time, and are evicted once a tracker has been idle for 30 minutes or the number of
+ * trackers exceeds its limit, so churning tracker IDs cannot grow the heap without bound.
+ * <p>
+ * All time-based logic reads time from a {@link GpsClock}. The wall clock is used unless another is passed, e.g. a
+ * {@link ManualClock} to run simulated traffic deterministically.
+ * <p>
+ * Constructions that leave listeners or clock ticks running accept a {@link PipelineHandle}; closing it detaches the
+ * pipeline from its input streams and releases what it holds. Without a handle, a pipeline lives as long as its inputs.
+ * <p>
+ * The static methods keep a single, shared distance state, so a second filtered display over the same trackers would
+ * record every event twice. Several displays with their own ranges and windows are built as views of one
+ * {@link TrackerHub} instead.
  */
 public class EventProcessor {
-    // Record events for specific tracker
-    private static final Map<String, Position> positionsRecord = new HashMap<>(); // separate each tracker with it current position info
-    private static final Map<String, Double> totalDistancesRecord = new HashMap<>(); // store each tracker travelled distance
-    private static final double FEET_TO_METER = 0.3048; // convert altitude from feet to meter
+    // Record events for specific tracker: current position and travelled distance, evicted once idle or over capacity
+    static final int MAX_TRACKERS = 100_000;
+    static final long TRACKER_IDLE_TIMEOUT = 1000 * 60 * 30; // 30 minutes without an event
+    // -Dgps.state.offheap=true keeps the state in a direct buffer instead, for very large fleets
+    private static final TrackerStateStore trackerStates = Boolean.getBoolean("gps.state.offheap")
+            ? new OffHeapTrackerTable(1024, MAX_TRACKERS, TRACKER_IDLE_TIMEOUT)
+            : new TrackerStateCache(MAX_TRACKERS, TRACKER_IDLE_TIMEOUT);
+    static final double FEET_TO_METER = 0.3048; // convert altitude from feet to meter
+    static final long CLOCK_PERIOD = 1000; // how often time-based displays are refreshed
 
     /**
      * Processes simplified tracking information by excluding altitude data, returning only the
@@ -72,25 +88,52 @@ public class EventProcessor {
      * Processes and maintains the latest GPS event data for display, refreshing as new events arrive.
      * The current event data is cleared automatically if no new events arrive within a 3-second window.
      *
+     * <p>
+     * The ticks run on {@link SystemClock#SHARED} for as long as the application does; use
+     * {@link #currentTracker(Stream[], GpsClock, PipelineHandle)} for a display that can be closed.
+     *
      * @param gpsEvents Array of streams, each representing continuous GPS event data for individual trackers.
      * @return A cell containing the latest event information as a formatted string "[id, lat, lon, time]".
      * If no events occur within the 3-second interval, the cell returns an empty string.
      */
     public static Cell<String> currentTracker(Stream<GpsEvent>[] gpsEvents) {
+        return currentTracker(gpsEvents, SystemClock.SHARED);
+    }
+
+    /**
+     * Same as {@link #currentTracker(Stream[])}, timed by the given clock.
+     *
+     * @param gpsEvents Array of streams, each representing continuous GPS event data for individual trackers.
+     * @param clock     Clock stamping the events and deciding when the 3 seconds have passed.
+     * @return A cell containing the latest event information, or an empty string once it is older than 3 seconds.
+     */
+    public static Cell<String> currentTracker(Stream<GpsEvent>[] gpsEvents, GpsClock clock) {
+        return currentTracker(gpsEvents, clock, new PipelineHandle());
+    }
+
+    /**
+     * Same as {@link #currentTracker(Stream[], GpsClock)}, owned by the given handle: closing it stops the clock
+     * ticks and detaches the display from the streams.
+     *
+     * @param gpsEvents Array of streams, each representing continuous GPS event data for individual trackers.
+     * @param clock     Clock stamping the events and deciding when the 3 seconds have passed.
+     * @param handle    Handle releasing the pipeline.
+     * @return A cell containing the latest event information, or an empty string once it is older than 3 seconds.
+     */
+    public static Cell<String> currentTracker(Stream<GpsEvent>[] gpsEvents, GpsClock clock, PipelineHandle handle) {
         return Transaction.run(() -> {
             // Set up the system time stream and hold the latest time in a cell
-            Cell<Long> sysTimeValue = periodClock();
+            Cell<Long> sysTimeValue = clock.ticks(CLOCK_PERIOD, handle);
 
             // Merge all incoming events as the current event stream
-            Stream<GpsEvent> lastGpsStream = gpsEvents[0];
+            Stream<GpsEvent> lastGpsStream = handle.gate(gpsEvents[0]);
             for (int i = 1; i < gpsEvents.length; i++) {
-                lastGpsStream = lastGpsStream.orElse(gpsEvents[i]);
+                lastGpsStream = lastGpsStream.orElse(handle.gate(gpsEvents[i]));
             }
 
             // Record data from the current event and wrap it with a timestamp
             CellLoop<GpsData> currData = new CellLoop<>();
-            TimerSystem<Long> timerSystem = new MillisecondsTimerSystem();
-            Cell<Long> timer = timerSystem.time;
+            Cell<Long> timer = clock.time();
 
             Stream<GpsData> sWrapTime = lastGpsStream.snapshot(timer, (ev, t) ->
                     new GpsData(ev.name, String.valueOf(ev.latitude), String.valueOf(ev.longitude), t));
@@ -114,79 +157,186 @@ public class EventProcessor {
      * clicking the `setButton` applies these restrictions. Only events within the specified range are displayed, and
      * the cumulative distance for each tracker is updated accordingly.</p>
      *
+     * <p>
+     * The ticks run on {@link SystemClock#SHARED} for as long as the application does; use
+     * {@link #filteredEvents(List, SButton, long, Stream, GpsClock, EventExporter, PipelineHandle)} for a display
+     * that can be closed.
+     *
      * @param inputVals        List of user-defined latitude and longitude range values: maximum and minimum latitude,
      *                         maximum and minimum longitude.
      * @param setButton        Button to apply the restriction range values defined in `inputVals`.
      * @param windowSizeMillis Time interval (in milliseconds) used to calculate cumulative distance.
      * @param gpsEvent         Current GPS event data stream.
-     * @return List of `Cell<String>` containing event information, where each entry corresponds to [id, lat, lon, time, dist].
+     * @return List of `Cell<String>` containing event information, where each entry corresponds to
+     * [id, lat, lon, time, dist, speed, heading, average speed, max speed].
      * If an event does not meet the conditions, the entries are empty strings.
      */
     public static List<Cell<String>> filteredEvents(List<Cell<Optional<Double>>> inputVals, SButton setButton, long windowSizeMillis, Stream<GpsEvent> gpsEvent) {
-        TimerSystem<Long> timerSystem = new MillisecondsTimerSystem();
-        Cell<Long> timer = timerSystem.time;
+        return filteredEvents(inputVals, setButton, windowSizeMillis, gpsEvent, SystemClock.SHARED);
+    }
+
+    /**
+     * Same as {@link #filteredEvents(List, SButton, long, Stream)}, timed by the given clock.
+     *
+     * @param inputVals        List of user-defined latitude and longitude range values.
+     * @param setButton        Button to apply the restriction range values defined in `inputVals`.
+     * @param windowSizeMillis Time interval (in milliseconds) used to calculate cumulative distance.
+     * @param gpsEvent         Current GPS event data stream.
+     * @param clock            Clock stamping the events and moving the distance window.
+     * @return List of `Cell<String>` containing event information, as for the wall-clock version.
+     */
+    public static List<Cell<String>> filteredEvents(List<Cell<Optional<Double>>> inputVals, SButton setButton, long windowSizeMillis,
+                                                    Stream<GpsEvent> gpsEvent, GpsClock clock) {
+        return filteredEvents(inputVals, setButton, windowSizeMillis, gpsEvent, clock, null);
+    }
+
+    /**
+     * Same as {@link #filteredEvents(List, SButton, long, Stream, GpsClock)}, also exporting every event that passes
+     * the range filter together with the tracker's cumulative distance, the value the distance window displays.
+     *
+     * @param inputVals        List of user-defined latitude and longitude range values.
+     * @param setButton        Button to apply the restriction range values defined in `inputVals`.
+     * @param windowSizeMillis Time interval (in milliseconds) used to calculate cumulative distance.
+     * @param gpsEvent         Current GPS event data stream.
+     * @param clock            Clock stamping the events and moving the distance window.
+     * @param exporter         Exporter receiving the filtered events, or null to export nothing.
+     * @return List of `Cell<String>` containing event information, as for the wall-clock version.
+     */
+    public static List<Cell<String>> filteredEvents(List<Cell<Optional<Double>>> inputVals, SButton setButton, long windowSizeMillis,
+                                                    Stream<GpsEvent> gpsEvent, GpsClock clock, EventExporter exporter) {
+        return filteredEvents(inputVals, setButton, windowSizeMillis, gpsEvent, clock, exporter, new PipelineHandle());
+    }
+
+    /**
+     * Same as {@link #filteredEvents(List, SButton, long, Stream, GpsClock, EventExporter)}, owned by the given
+     * handle: closing it stops the clock ticks and detaches the display from the event stream and the button. The
+     * exporter is not closed, as it is usually shared by every tracker.
+     *
+     * @param inputVals        List of user-defined latitude and longitude range values.
+     * @param setButton        Button to apply the restriction range values defined in `inputVals`.
+     * @param windowSizeMillis Time interval (in milliseconds) used to calculate cumulative distance.
+     * @param gpsEvent         Current GPS event data stream.
+     * @param clock            Clock stamping the events and moving the distance window.
+     * @param exporter         Exporter receiving the filtered events, or null to export nothing.
+     * @param handle           Handle releasing the pipeline.
+     * @return List of `Cell<String>` containing event information, as for the wall-clock version.
+     */
+    public static List<Cell<String>> filteredEvents(List<Cell<Optional<Double>>> inputVals, SButton setButton, long windowSizeMillis,
+                                                    Stream<GpsEvent> gpsEvent, GpsClock clock, EventExporter exporter,
+                                                    PipelineHandle handle) {
+        Cell<Long> timer = clock.time();
+        TrackerHub.Feed feed = new TrackerHub.Feed(handle.gate(gpsEvent), timer);
+        return filteredEvents(inputVals, handle.gate(setButton.sClicked), windowSizeMillis, feed, timer,
+                clock.ticks(CLOCK_PERIOD, handle), trackerStates, null, null, exporter, handle);
+    }
+
+    /**
+     * Builds the filtered display of one tracker from cells that may be shared with other displays, keeping the
+     * distance and motion statistics in the given store. Once the handle is closed, nothing more is recorded or
+     * exported.
+     *
+     * @param inputVals        List of user-defined latitude and longitude range values.
+     * @param clicks           Clicks applying the range values.
+     * @param windowSizeMillis Time interval (in milliseconds) used to calculate cumulative distance.
+     * @param feed             Latest event of the tracker.
+     * @param timer            Cell holding the current time.
+     * @param ticks            Cell refreshed with the current time as time passes.
+     * @param states           Store of the distance and motion statistics of every tracker shown in the display.
+     * @param aggregates       Bucketed totals receiving the same events as the store, or null.
+     * @param leaderboard      Ranking receiving the distance each event adds, or null.
+     * @param exporter         Exporter receiving the filtered events, or null to export nothing.
+     * @param handle           Handle releasing the display.
+     * @return List of `Cell<String>` containing event information, as for the wall-clock version.
+     */
+    static List<Cell<String>> filteredEvents(List<Cell<Optional<Double>>> inputVals, Stream<Unit> clicks, long windowSizeMillis,
+                                             TrackerHub.Feed feed, Cell<Long> timer, Cell<Long> ticks,
+                                             TrackerStateStore states, WindowedAggregates aggregates,
+                                             DistanceLeaderboard leaderboard, EventExporter exporter, PipelineHandle handle) {
         // Only update the restriction when click button
-        Cell<Optional<Double>> latMaxAfterClick = setButton.sClicked
+        Cell<Optional<Double>> latMaxAfterClick = clicks
                 .snapshot(inputVals.get(0), (u, r) -> r).hold(Optional.empty());
-        Cell<Optional<Double>> latMinAfterClick = setButton.sClicked
+        Cell<Optional<Double>> latMinAfterClick = clicks
                 .snapshot(inputVals.get(1), (u, r) -> r).hold(Optional.empty());
-        Cell<Optional<Double>> lonMaxAfterClick = setButton.sClicked
+        Cell<Optional<Double>> lonMaxAfterClick = clicks
                 .snapshot(inputVals.get(2), (u, r) -> r).hold(Optional.empty());
-        Cell<Optional<Double>> lonMinAfterClick = setButton.sClicked
+        Cell<Optional<Double>> lonMinAfterClick = clicks
                 .snapshot(inputVals.get(3), (u, r) -> r).hold(Optional.empty());
 
         List<Cell<String>> filterResults = new ArrayList<>();
 
         // Extract value
-        Cell<String> id = gpsEvent.map(ev -> ev.name).hold("");
-        Cell<Double> lat = gpsEvent.map(ev -> ev.latitude).hold(0.0);
-        Cell<Double> lon = gpsEvent.map(ev -> ev.longitude).hold(0.0);
-        Cell<Double> alt = gpsEvent.map(ev -> ev.altitude * FEET_TO_METER).hold(0.0); // convert feet to meter
-        Cell<Long> time = gpsEvent.snapshot(timer).hold(0L); // event occurs time
+        Cell<String> id = feed.id;
+        Cell<Double> lat = feed.latitude;
+        Cell<Double> lon = feed.longitude;
+        Cell<Long> time = feed.time;
 
         // Start filtering
         Cell<Boolean> isValid = new Cell<>(true);
-        Cell<Boolean> latValid = lat.lift(latMaxAfterClick, latMinAfterClick, (evLat, max, min)
-                -> max.isPresent() && min.isPresent() && evLat <= max.get() && evLat >= min.get());
-        Cell<Boolean> lonValid = lon.lift(lonMaxAfterClick, lonMinAfterClick, (evLon, max, min)
-                -> max.isPresent() && min.isPresent() && evLon <= max.get() && evLon >= min.get());
+        Cell<Boolean> latValid = lat.lift(latMaxAfterClick, latMinAfterClick, EventProcessor::inRange);
+        Cell<Boolean> lonValid = lon.lift(lonMaxAfterClick, lonMinAfterClick, EventProcessor::inRange);
         isValid = isValid.lift(latValid, lonValid, (a, b, c) -> a && b && c);
 
-        // calculate total distance between each filtered events for same tracker
-        Cell<Double> dist = isValid.lift(id, lat, lon, alt, time, (valid, pId, p1, p2, p3, t) -> {
-            if (valid) {
-                Position currentPosition = new Position(p1, p2, p3, t);
-
-                double distance;
-
-                // If current ID exist, add dist to previous
-                if (positionsRecord.containsKey(pId)) {
-                    Position lastPosition = positionsRecord.get(pId);
-                    distance = Utils.calculateDistance(lastPosition, currentPosition);
-
-                    // Record each two position distance for the same id
-                    totalDistancesRecord.put(pId, totalDistancesRecord.getOrDefault(pId, 0.0) + distance);
-                }
-
-                positionsRecord.put(pId, currentPosition);
-
-                return totalDistancesRecord.getOrDefault(pId, 0.0);
+        // Record each event once, as it arrives. Clicks re-evaluate the cells above with the event already held, so
+        // recording, aggregating and exporting are driven by the event stream rather than by those cells; the range is
+        // the one applied by the last click.
+        Cell<Lambda2<Double, Double, Boolean>> range = latMaxAfterClick.lift(latMinAfterClick, lonMaxAfterClick, lonMinAfterClick,
+                (latMax, latMin, lonMax, lonMin) -> (evLat, evLon) -> inRange(evLat, latMax, latMin) && inRange(evLon, lonMax, lonMin));
+        Stream<Optional<Double>> recorded = feed.events.snapshot(range, timer, (ev, inside, t) -> {
+            String pId = ev.name;
+            boolean valid = inside.apply(ev.latitude, ev.longitude);
+            GpsFlightEvents.FilterDecision decision = new GpsFlightEvents.FilterDecision();
+            if (decision.shouldCommit()) {
+                decision.trackerId = pId;
+                decision.accepted = valid;
+                decision.commit();
             }
-
-            return 0.0; // If an event not met condition, its distance should always 0 that it never track
+            if (!valid || !handle.isOpen()) return Optional.empty();
+
+            double altitude = ev.altitude * FEET_TO_METER; // convert feet to meter
+            Position currentPosition = new Position(ev.latitude, ev.longitude, altitude, t);
+
+            // If current ID exist, add dist to previous
+            GpsFlightEvents.DistanceUpdate update = new GpsFlightEvents.DistanceUpdate();
+            update.begin();
+            // Trackers interned in the registry are looked up by index, without hashing the ID
+            Double before = leaderboard == null ? null
+                    : ev.index >= 0 ? states.totalDistance(ev.index) : states.totalDistance(pId);
+            double total = ev.index >= 0 ? states.record(ev.index, currentPosition) : states.record(pId, currentPosition);
+            if (aggregates != null) aggregates.record(pId, currentPosition);
+            if (leaderboard != null) leaderboard.record(pId, before == null ? total : total - before, t);
+            if (exporter != null) exporter.write(pId, t, ev.latitude, ev.longitude, altitude, total);
+            if (update.shouldCommit()) {
+                update.trackerId = pId;
+                update.totalDistance = total;
+                update.commit();
+            }
+            return Optional.of(total);
         });
+        Cell<Double> recordedTotal = recorded.filter(Optional::isPresent).map(Optional::get).hold(0.0);
+
+        // calculate total distance between each filtered events for same tracker
+        // If an event not met condition, its distance should always 0 that it never track
+        Cell<Double> dist = isValid.lift(recordedTotal, (valid, total) -> valid ? total : 0.0);
+
+        // Motion statistics are updated together with the distance, so read them once it has been recorded
+        Cell<MotionStats> motion = isValid.lift(feed.event, dist, (valid, ev, d) ->
+                !valid ? MotionStats.NONE : ev.index >= 0 ? states.motion(ev.index) : states.motion(ev.name));
 
         // Define filtered output value
         Cell<String> fId = id.lift(isValid, (l, r) -> r ? l : "");
         Cell<String> fLat = lat.lift(isValid, (l, r) -> r ? String.valueOf(l) : "");
         Cell<String> fLon = lon.lift(isValid, (l, r) -> r ? String.valueOf(l) : "");
         Cell<String> fTime = time.lift(isValid, (l, r) -> r ? Utils.formatTime(l) : "");
+        Cell<String> fSpeed = motion.lift(isValid, (m, r) -> r ? Utils.formatTenths(m.speed) + " m/s" : "");
+        Cell<String> fHeading = motion.lift(isValid, (m, r) -> r ? String.valueOf(Math.round(m.heading)) : "");
+        Cell<String> fAvgSpeed = motion.lift(isValid, (m, r) -> r ? Utils.formatTenths(m.averageSpeed) + " m/s" : "");
+        Cell<String> fMaxSpeed = motion.lift(isValid, (m, r) -> r ? Utils.formatTenths(m.maxSpeed) + " m/s" : "");
 
         // Use periodically fired stream to update the Cell internal value
         StreamSink<Long> windowStartUpdate = new StreamSink<>();
         StreamSink<String> distanceUpdateStream = new StreamSink<>();
-        Cell<Long> sysTimeValue = periodClock();
-        Cell<Long> clickTime = setButton.sClicked.snapshot(timer).hold(0L);
+        Cell<Long> sysTimeValue = ticks;
+        Cell<Long> clickTime = clicks.snapshot(timer).hold(0L);
         Cell<Long> windowStartTime = windowStartUpdate.hold(clickTime.sample());
         Cell<String> timeBasedDistance = distanceUpdateStream.hold("");
         /* The distance would be updated if time window size satisfied */
@@ -195,7 +345,7 @@ public class EventProcessor {
                 long elapsed = sysT - startT;
 
                 // Trigger the stream update to refresh windowStartTime if the condition is met
-                if (elapsed >= windowSizeMillis) {
+                if (elapsed >= windowSizeMillis && handle.isOpen()) {
                     windowStartUpdate.send(sysT);
                     distanceUpdateStream.send(String.valueOf(totalDist));
                 }
@@ -211,24 +361,146 @@ public class EventProcessor {
         filterResults.add(fLon);
         filterResults.add(fTime);
         filterResults.add(fDist);
+        filterResults.add(fSpeed);
+        filterResults.add(fHeading);
+        filterResults.add(fAvgSpeed);
+        filterResults.add(fMaxSpeed);
 
         return filterResults;
     }
 
-    // A helper method to provide external clock to let FPR get the system time
-    private static Cell<Long> periodClock() {
-        StreamSink<Long> sysTimeStream = new StreamSink<>();
-        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-        scheduler.scheduleAtFixedRate(() -> {
-            long currentTime = System.currentTimeMillis();
-            sysTimeStream.send(currentTime); // Push current system time into the stream
-        }, 0, 1, TimeUnit.SECONDS);
+    // True if a range was applied and the value lies within it
+    private static boolean inRange(double value, Optional<Double> max, Optional<Double> min) {
+        return max.isPresent() && min.isPresent() && value <= max.get() && value >= min.get();
+    }
+
+    /**
+     * Runs every GPS event through a geofencing engine and emits the fence boundaries crossed. One event can cross
+     * several boundaries at once (leaving one fence while entering another), and events of several trackers can arrive
+     * in the same transaction, so each firing carries a list.
+     *
+     * @param gpsEvents Array of streams, each representing continuous GPS event data for individual trackers.
+     * @param engine    Geofencing engine holding the fences and each tracker's current membership.
+     * @return Stream of the enter and exit events caused by each GPS event; it only fires when a boundary was crossed.
+     */
+    public static Stream<List<GeofenceEvent>> geofenceEvents(Stream<GpsEvent>[] gpsEvents, GeofenceEngine engine) {
+        Stream<List<GeofenceEvent>> transitions = new Stream<>();
+        for (Stream<GpsEvent> evStream : gpsEvents) {
+            Stream<List<GeofenceEvent>> crossed = evStream
+                    .map(ev -> engine.update(ev.name, ev.latitude, ev.longitude))
+                    .filter(events -> !events.isEmpty());
+            transitions = transitions.merge(crossed, (a, b) -> {
+                List<GeofenceEvent> both = new ArrayList<>(a);
+                both.addAll(b);
+                return both;
+            });
+        }
+
+        return transitions;
+    }
+
+    /**
+     * Runs every GPS event through a proximity engine and emits the tracker pairs that came within the alert distance
+     * of each other or moved apart again. Like {@link #geofenceEvents}, each firing carries a list.
+     *
+     * @param gpsEvents Array of streams, each representing continuous GPS event data for individual trackers.
+     * @param engine    Proximity engine holding the latest position of every tracker.
+     * @return Stream of the pair events caused by each GPS event; it only fires when a pair changed.
+     */
+    public static Stream<List<ProximityEvent>> proximityEvents(Stream<GpsEvent>[] gpsEvents, ProximityEngine engine) {
+        Stream<List<ProximityEvent>> pairs = new Stream<>();
+        for (Stream<GpsEvent> evStream : gpsEvents) {
+            Stream<List<ProximityEvent>> changed = evStream
+                    .map(ev -> engine.update(ev.name, new Position(ev.latitude, ev.longitude, ev.altitude * FEET_TO_METER)))
+                    .filter(events -> !events.isEmpty());
+            pairs = pairs.merge(changed, (a, b) -> {
+                List<ProximityEvent> both = new ArrayList<>(a);
+                both.addAll(b);
+                return both;
+            });
+        }
+
+        return pairs;
+    }
+
+    /**
+     * Applies streaming simplification to the GPS streams, discarding redundant points before they reach storage,
+     * rendering or distance accumulation.
+     *
+     * @param gpsEvents  Array of streams, each representing continuous GPS event data for individual trackers.
+     * @param simplifier Simplifier deciding which events are kept; it also reports the compression achieved.
+     * @return Array of streams, one per input stream, carrying only the kept events.
+     */
+    public static Stream<GpsEvent>[] simplify(Stream<GpsEvent>[] gpsEvents, TrajectorySimplifier simplifier) {
+        @SuppressWarnings("unchecked")
+        Stream<GpsEvent>[] simplified = new Stream[gpsEvents.length];
+        for (int i = 0; i < gpsEvents.length; i++) {
+            simplified[i] = gpsEvents[i].filter(simplifier::keep);
+        }
+
+        return simplified;
+    }
+
+    /**
+     * Records every incoming GPS event into a trajectory store, stamped with the time it was received and with
+     * altitude converted to meters, so that historical interval queries can be answered later.
+     *
+     * @param gpsEvents Array of streams, each representing continuous GPS event data for individual trackers.
+     * @param store     Trajectory store receiving the recorded positions.
+     */
+    public static void recordTrajectories(Stream<GpsEvent>[] gpsEvents, TrajectoryStore store) {
+        recordTrajectories(gpsEvents, store, SystemClock.SHARED);
+    }
+
+    /**
+     * Same as {@link #recordTrajectories(Stream[], TrajectoryStore)}, stamping positions with the given clock.
+     *
+     * @param gpsEvents Array of streams, each representing continuous GPS event data for individual trackers.
+     * @param store     Trajectory store receiving the recorded positions.
+     * @param clock     Clock giving the time each event was received.
+     */
+    public static void recordTrajectories(Stream<GpsEvent>[] gpsEvents, TrajectoryStore store, GpsClock clock) {
+        recordTrajectories(gpsEvents, store, clock, new PipelineHandle());
+    }
+
+    /**
+     * Same as {@link #recordTrajectories(Stream[], TrajectoryStore, GpsClock)}, stopping when the handle is closed.
+     *
+     * @param gpsEvents Array of streams, each representing continuous GPS event data for individual trackers.
+     * @param store     Trajectory store receiving the recorded positions.
+     * @param clock     Clock giving the time each event was received.
+     * @param handle    Handle releasing the listeners.
+     */
+    public static void recordTrajectories(Stream<GpsEvent>[] gpsEvents, TrajectoryStore store, GpsClock clock, PipelineHandle handle) {
+        Cell<Long> timer = clock.time();
+
+        for (Stream<GpsEvent> evStream : gpsEvents) {
+            // Listen explicitly so the recording stays alive until the handle is closed
+            handle.add(evStream.listen(ev -> store.append(ev.name,
+                    new Position(ev.latitude, ev.longitude, ev.altitude * FEET_TO_METER, timer.sample()))));
+        }
+    }
+
+    /**
+     * Returns the live motion statistics of a tracker, for consumers without a GUI. Only events that passed the range
+     * filter contribute, exactly like the distance.
+     *
+     * @param trackerId Tracker to look up.
+     * @return The tracker's speed, heading, average speed and max speed, or {@link MotionStats#NONE} if it is unknown.
+     */
+    public static MotionStats motionStatistics(String trackerId) {
+        return trackerStates.motion(trackerId);
+    }
 
-        return sysTimeStream.hold(System.currentTimeMillis());
+    /**
+     * @return The bounded per-tracker state behind distance calculation.
+     */
+    public static TrackerStateStore getTrackerStates() {
+        return trackerStates;
     }
 
     // The method only used for test purpose
     public static Map<String, Double> getTotalDistancesRecord() {
-        return totalDistancesRecord;
+        return trackerStates.totalDistances();
     }
 }
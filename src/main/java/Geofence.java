@@ -0,0 +1,81 @@
+/**
+ * Represents a named geographic area bounded by a polygon of latitude/longitude vertices.
+ * <p>
+ * The bounding box of the polygon is computed once, so that points far away are rejected with four comparisons
+ * before the exact polygon test runs.
+ */
+public class Geofence {
+    public final String name;
+    public final double latMin;
+    public final double latMax;
+    public final double lonMin;
+    public final double lonMax;
+    private final double[] latitudes;
+    private final double[] longitudes;
+
+    /**
+     * Constructs a Geofence from its polygon vertices, in order. The polygon is closed automatically.
+     *
+     * @param name       Name of the fence, reported in enter and exit events.
+     * @param latitudes  Latitudes of the vertices in degrees.
+     * @param longitudes Longitudes of the vertices in degrees.
+     */
+    public Geofence(String name, double[] latitudes, double[] longitudes) {
+        if (latitudes.length != longitudes.length || latitudes.length < 3) {
+            throw new IllegalArgumentException("A geofence needs at least 3 vertices with both latitude and longitude");
+        }
+        this.name = name;
+        this.latitudes = latitudes.clone();
+        this.longitudes = longitudes.clone();
+
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE, minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        for (int i = 0; i < latitudes.length; i++) {
+            minLat = Math.min(minLat, latitudes[i]);
+            maxLat = Math.max(maxLat, latitudes[i]);
+            minLon = Math.min(minLon, longitudes[i]);
+            maxLon = Math.max(maxLon, longitudes[i]);
+        }
+        this.latMin = minLat;
+        this.latMax = maxLat;
+        this.lonMin = minLon;
+        this.lonMax = maxLon;
+    }
+
+    /**
+     * Creates a rectangular Geofence, matching the latitude and longitude range used by the filtered display.
+     *
+     * @param name   Name of the fence.
+     * @param latMin Minimum latitude.
+     * @param latMax Maximum latitude.
+     * @param lonMin Minimum longitude.
+     * @param lonMax Maximum longitude.
+     * @return The rectangular fence.
+     */
+    public static Geofence rectangle(String name, double latMin, double latMax, double lonMin, double lonMax) {
+        return new Geofence(name, new double[]{latMin, latMin, latMax, latMax}, new double[]{lonMin, lonMax, lonMax, lonMin});
+    }
+
+    /**
+     * Tests whether a point lies inside the fence: a bounding box pre-check, then an even-odd ray casting test.
+     *
+     * @param lat Latitude of the point.
+     * @param lon Longitude of the point.
+     * @return True if the point is inside the polygon.
+     */
+    public boolean contains(double lat, double lon) {
+        if (lat < latMin || lat > latMax || lon < lonMin || lon > lonMax) return false;
+
+        boolean inside = false;
+        for (int i = 0, j = latitudes.length - 1; i < latitudes.length; j = i++) {
+            if ((latitudes[i] > lat) != (latitudes[j] > lat)) {
+                double crossLon = longitudes[i] + (lat - latitudes[i]) * (longitudes[j] - longitudes[i]) / (latitudes[j] - latitudes[i]);
+                if (lon < crossLon) inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    public String toString() {
+        return "Geofence " + name;
+    }
+}
@@ -0,0 +1,121 @@
+import java.util.*;
+
+/**
+ * Stateful geofencing: turns tracker positions into enter and exit events.
+ * <p>
+ * The engine keeps, for every tracker, a bitset of the fences it is currently inside. On each position it:
+ * <ol>
+ *     <li>looks up the candidate fences in a uniform grid over latitude and longitude, where each cell lists the
+ *     fences whose bounding box overlaps it; fences spanning more than {@value #MAX_CELLS_PER_FENCE} cells are kept
+ *     in a short list that is always checked instead,</li>
+ *     <li>tests only those candidates, bounding box first and polygon second,</li>
+ *     <li>compares the result with the tracker's previous membership: new bits are enters, cleared bits are exits.</li>
+ * </ol>
+ * A fence that is not a candidate cannot contain the point, so clearing it from the membership is always correct.
+ */
+public class GeofenceEngine {
+    static final int MAX_CELLS_PER_FENCE = 1024;
+
+    private final List<Geofence> fences = new ArrayList<>();
+    private final double cellSizeDegrees;
+    private final Map<Long, int[]> grid = new HashMap<>(); // cell -> indices of fences overlapping it
+    private int[] largeFences = new int[0]; // fences too big for the grid, checked on every update
+    private final Map<String, BitSet> membership = new HashMap<>(); // tracker -> fences it is inside
+
+    /**
+     * @param cellSizeDegrees Size of a grid cell in degrees; roughly the size of a typical fence works best.
+     */
+    public GeofenceEngine(double cellSizeDegrees) {
+        if (cellSizeDegrees <= 0) throw new IllegalArgumentException("Cell size must be positive: " + cellSizeDegrees);
+        this.cellSizeDegrees = cellSizeDegrees;
+    }
+
+    /**
+     * Adds a fence. Trackers already inside it are reported as entering on their next position.
+     *
+     * @param fence The fence to add.
+     */
+    public synchronized void addFence(Geofence fence) {
+        int index = fences.size();
+        fences.add(fence);
+
+        long latFrom = cell(fence.latMin), latTo = cell(fence.latMax);
+        long lonFrom = cell(fence.lonMin), lonTo = cell(fence.lonMax);
+        if ((latTo - latFrom + 1) * (lonTo - lonFrom + 1) > MAX_CELLS_PER_FENCE) {
+            largeFences = append(largeFences, index);
+            return;
+        }
+        for (long latCell = latFrom; latCell <= latTo; latCell++) {
+            for (long lonCell = lonFrom; lonCell <= lonTo; lonCell++) {
+                grid.merge(key(latCell, lonCell), new int[]{index}, GeofenceEngine::concat);
+            }
+        }
+    }
+
+    /**
+     * Updates a tracker's position and reports the fence boundaries it crossed since its previous position.
+     *
+     * @param trackerId Tracker reporting the position.
+     * @param lat       Latitude of the new position.
+     * @param lon       Longitude of the new position.
+     * @return Exit events followed by enter events, empty if no boundary was crossed.
+     */
+    public synchronized List<GeofenceEvent> update(String trackerId, double lat, double lon) {
+        BitSet inside = new BitSet(fences.size());
+        int[] candidates = grid.get(key(cell(lat), cell(lon)));
+        if (candidates != null) {
+            for (int index : candidates) {
+                if (fences.get(index).contains(lat, lon)) inside.set(index);
+            }
+        }
+        for (int index : largeFences) {
+            if (fences.get(index).contains(lat, lon)) inside.set(index);
+        }
+
+        BitSet previous = membership.get(trackerId);
+        if (previous == null) previous = new BitSet();
+        if (inside.equals(previous)) return Collections.emptyList();
+
+        List<GeofenceEvent> events = new ArrayList<>();
+        for (int i = previous.nextSetBit(0); i >= 0; i = previous.nextSetBit(i + 1)) {
+            if (!inside.get(i)) events.add(new GeofenceEvent(trackerId, fences.get(i).name, GeofenceEvent.Type.EXIT, lat, lon));
+        }
+        for (int i = inside.nextSetBit(0); i >= 0; i = inside.nextSetBit(i + 1)) {
+            if (!previous.get(i)) events.add(new GeofenceEvent(trackerId, fences.get(i).name, GeofenceEvent.Type.ENTER, lat, lon));
+        }
+
+        if (inside.isEmpty()) membership.remove(trackerId); // trackers outside every fence need no state
+        else membership.put(trackerId, inside);
+        return events;
+    }
+
+    /**
+     * @param trackerId Tracker to look up.
+     * @return Names of the fences the tracker is currently inside.
+     */
+    public synchronized Set<String> fencesContaining(String trackerId) {
+        Set<String> names = new TreeSet<>();
+        BitSet inside = membership.get(trackerId);
+        if (inside == null) return names;
+        for (int i = inside.nextSetBit(0); i >= 0; i = inside.nextSetBit(i + 1)) names.add(fences.get(i).name);
+        return names;
+    }
+
+    private long cell(double degrees) {
+        return (long) Math.floor(degrees / cellSizeDegrees);
+    }
+
+    private static long key(long latCell, long lonCell) {
+        return (latCell << 32) ^ (lonCell & 0xFFFFFFFFL);
+    }
+
+    private static int[] concat(int[] a, int[] b) {
+        int[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    private static int[] append(int[] a, int value) {
+        return concat(a, new int[]{value});
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * Represents a tracker crossing the boundary of a geofence.
+ */
+public class GeofenceEvent {
+    public enum Type {ENTER, EXIT}
+
+    public final String trackerId;  // The tracker that crossed the boundary
+    public final String fenceName;  // The fence whose boundary was crossed
+    public final Type type;         // Whether the tracker entered or left the fence
+    public final double latitude;   // The first position on the new side of the boundary
+    public final double longitude;
+
+    /**
+     * Creates a GeofenceEvent
+     */
+    public GeofenceEvent(String trackerId, String fenceName, Type type, double latitude, double longitude) {
+        this.trackerId = trackerId;
+        this.fenceName = fenceName;
+        this.type = type;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    /**
+     * Returns a String object representing this GeofenceEvent's value.
+     * @return a string representation of the value of this object.
+     */
+    public String toString() {
+        return this.trackerId + " " + this.type + " " + this.fenceName + " at lat:" + this.latitude + " lon:" + this.longitude;
+    }
+}
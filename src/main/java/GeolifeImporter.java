@@ -0,0 +1,533 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Builds replay data from raw Geolife trajectory folders, i.e. <code>Data/&lt;user&gt;/Trajectory/*.plt</code>, with one
+ * tracker per user.
+ * <p>
+ * PLT files are parsed in parallel, one task per file. Each file is memory-mapped and its numbers are parsed straight
+ * from the mapped bytes into primitive arrays, so no line or field <code>String</code> is built. A user's points are
+ * then sorted by time, and each record gets the delay in seconds since the previous one, as {@link GpsService} expects
+ * in <code>next[3]</code>. Altitudes stay in feet; Geolife marks a missing altitude as {@value #NO_ALTITUDE}, which is
+ * replaced by the tracker's previous altitude so it does not show as a jump in 3D distance.
+ * <p>
+ * The result is written in a compact binary replay format read by {@link #read(Path)} and {@link GpsReplay#load}:
+ * a header of magic, version and tracker count, then per tracker its record count followed by latitude and longitude
+ * as doubles, altitude as a float and the delay as an int, 24 bytes per record. It can also be written as a
+ * serialized <code>gps.dat</code> for {@link GpsService}.
+ * <p>
+ * Usage: <code>java GeolifeImporter &lt;Geolife data directory&gt; [output file] [threads] [gps.dat to write]</code>
+ */
+public class GeolifeImporter {
+    static final int MAGIC = 0x47505352; // "GPSR"
+    static final int VERSION = 1;
+    static final int RECORD_BYTES = 8 + 8 + 4 + 4;
+    static final double NO_ALTITUDE = -777;
+    private static final int HEADER_LINES = 6; // PLT files open with six lines of header
+    private static final long UNIX_EPOCH_DAYS = 25569; // PLT times count days from 1899-12-30
+    private static final double[] POWERS_OF_TEN = new double[23]; // exact as doubles up to 1e22
+    private static final long MAX_EXACT_MANTISSA = 1L << 53; // mantissas below this convert to double exactly
+
+    static {
+        POWERS_OF_TEN[0] = 1.0;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: java GeolifeImporter <Geolife data directory> [output file] [threads] [gps.dat to write]");
+            return;
+        }
+        Path output = Paths.get(args.length > 1 ? args[1] : "gps.gpsr");
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        Result result = importDirectory(Paths.get(args[0]), threads);
+        System.out.println(result);
+        long writeStart = System.nanoTime();
+        write(result.tracks, output);
+        System.out.printf("Wrote %s (%,d bytes) in %.1f ms%n", output, Files.size(output), (System.nanoTime() - writeStart) / 1e6);
+        if (args.length > 3) {
+            writeSerialized(result.tracks, Paths.get(args[3]));
+            System.out.printf("Wrote %s for GpsService%n", args[3]);
+        }
+    }
+
+    /**
+     * Parses every PLT file below a directory and orders each user's points by time.
+     *
+     * @param root    Geolife data directory, or any directory holding <code>&lt;user&gt;/Trajectory/*.plt</code>.
+     * @param threads Number of files parsed at once.
+     * @return The points of every user, in user order.
+     * @throws IOException If a file cannot be read or is not a PLT file.
+     */
+    public static Result importDirectory(Path root, int threads) throws IOException {
+        long start = System.nanoTime();
+        Map<String, List<Path>> files = new TreeMap<>();
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path file : paths.filter(p -> p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".plt"))
+                    .sorted().collect(Collectors.toList())) {
+                files.computeIfAbsent(userOf(root, file), u -> new ArrayList<>()).add(file);
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "GeolifeImporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            // Parse every file, then merge and sort each user's files, both in parallel
+            Map<Path, Future<Points>> parsed = new HashMap<>();
+            long bytes = 0;
+            for (List<Path> userFiles : files.values()) {
+                for (Path file : userFiles) {
+                    bytes += Files.size(file);
+                    parsed.put(file, pool.submit(() -> parse(file)));
+                }
+            }
+            List<Future<Points>> merged = new ArrayList<>();
+            for (List<Path> userFiles : files.values()) {
+                List<Future<Points>> parts = new ArrayList<>();
+                for (Path file : userFiles) parts.add(parsed.get(file));
+                merged.add(pool.submit(() -> merge(parts)));
+            }
+
+            Points[] tracks = new Points[merged.size()];
+            long points = 0;
+            for (int i = 0; i < tracks.length; i++) {
+                tracks[i] = await(merged.get(i));
+                points += tracks[i].size;
+            }
+            return new Result(new ArrayList<>(files.keySet()), tracks, parsed.size(), bytes, points, System.nanoTime() - start, threads);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Parses one PLT file through a read-only mapping.
+     *
+     * @param file PLT file.
+     * @return Its points, in file order.
+     * @throws IOException If the file cannot be read or a line is malformed.
+     */
+    static Points parse(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return parse(mapped);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parses PLT content: six header lines, then one point per line as
+     * <code>latitude,longitude,0,altitude in feet,days since 1899-12-30,date,time</code>.
+     *
+     * @param in PLT content from its position to its limit; only absolute reads are used.
+     * @return The points, in line order.
+     * @throws IllegalArgumentException If a line is malformed.
+     */
+    static Points parse(ByteBuffer in) {
+        PltCursor cursor = new PltCursor(in);
+        for (int line = 0; line < HEADER_LINES && cursor.hasMore(); line++) cursor.skipLine();
+
+        Points points = new Points(Math.max(16, cursor.remaining() / 64)); // lines are about 65 bytes
+        double lastAltitude = 0.0;
+        while (cursor.hasMore()) {
+            if (cursor.atLineEnd()) {
+                cursor.skipLine(); // blank line
+                continue;
+            }
+            double latitude = cursor.number();
+            double longitude = cursor.number();
+            cursor.number(); // always 0
+            double altitude = cursor.number();
+            double days = cursor.number();
+            cursor.skipLine(); // date and time repeat the days as text
+
+            if (altitude == NO_ALTITUDE) altitude = lastAltitude;
+            lastAltitude = altitude;
+            long seconds = Math.round((days - UNIX_EPOCH_DAYS) * 86_400);
+            points.add(latitude, longitude, altitude, seconds * 1000);
+        }
+        return points;
+    }
+
+    /**
+     * Writes tracks in the replay format.
+     *
+     * @param tracks Points of every tracker, each sorted by time.
+     * @param file   File to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Points[] tracks, Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(tracks.length);
+            for (Points track : tracks) {
+                if (buffer.remaining() < 4) drain(buffer, channel);
+                buffer.putInt(track.size);
+                for (int i = 0; i < track.size; i++) {
+                    if (buffer.remaining() < RECORD_BYTES) drain(buffer, channel);
+                    buffer.putDouble(track.latitudes[i]).putDouble(track.longitudes[i])
+                            .putFloat((float) track.altitudes[i]).putInt(track.delaySeconds(i));
+                }
+            }
+            drain(buffer, channel);
+        }
+    }
+
+    /**
+     * Writes tracks as a serialized <code>gps.dat</code>, the only format {@link GpsService} plays.
+     *
+     * @param tracks Points of every tracker, each sorted by time.
+     * @param file   File to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void writeSerialized(Points[] tracks, Path file) throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeObject(toRecords(tracks));
+        }
+    }
+
+    /**
+     * Reads a file in the replay format.
+     *
+     * @param file File written by {@link #write(Points[], Path)}.
+     * @return The records of each tracker, as {@link GpsService#readData(String)} returns them.
+     * @throws IOException If the file cannot be read or is not in the replay format.
+     */
+    @SuppressWarnings("unchecked")
+    public static LinkedList<Double[]>[] read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.remaining() < 12 || in.getInt() != MAGIC) throw new IOException("Not a replay file: " + file);
+            int version = in.getInt();
+            if (version != VERSION) throw new IOException("Unsupported replay file version " + version + ": " + file);
+
+            LinkedList<Double[]>[] data = new LinkedList[in.getInt()];
+            for (int t = 0; t < data.length; t++) {
+                data[t] = new LinkedList<>();
+                int count = in.getInt();
+                for (int i = 0; i < count; i++) {
+                    data[t].add(new Double[]{in.getDouble(), in.getDouble(), (double) in.getFloat(), (double) in.getInt()});
+                }
+            }
+            return data;
+        }
+    }
+
+    /**
+     * @param file File to check.
+     * @return True if the file starts like a replay file.
+     */
+    public static boolean isReplayFile(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // read the first four bytes, however they arrive
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param tracks Points of every tracker, each sorted by time.
+     * @return The records of each tracker as {@link GpsService} plays them: latitude, longitude, altitude in feet and
+     * the delay in seconds since the previous record.
+     */
+    @SuppressWarnings("unchecked")
+    static LinkedList<Double[]>[] toRecords(Points[] tracks) {
+        LinkedList<Double[]>[] data = new LinkedList[tracks.length];
+        for (int t = 0; t < tracks.length; t++) {
+            data[t] = new LinkedList<>();
+            Points track = tracks[t];
+            for (int i = 0; i < track.size; i++) {
+                data[t].add(new Double[]{track.latitudes[i], track.longitudes[i], track.altitudes[i], (double) track.delaySeconds(i)});
+            }
+        }
+        return data;
+    }
+
+    // The user folder above Trajectory, or the file's own folder for other layouts
+    private static String userOf(Path root, Path file) {
+        Path folder = file.getParent();
+        if (folder != null && folder.getFileName().toString().equalsIgnoreCase("Trajectory") && folder.getParent() != null) {
+            folder = folder.getParent();
+        }
+        return folder == null || folder.equals(root) ? root.getFileName().toString() : root.relativize(folder).toString();
+    }
+
+    // Concatenates one user's files and sorts the result by time
+    private static Points merge(List<Future<Points>> parts) throws IOException {
+        int size = 0;
+        List<Points> parsed = new ArrayList<>();
+        for (Future<Points> part : parts) {
+            Points points = await(part);
+            parsed.add(points);
+            size += points.size;
+        }
+        Points merged = new Points(Math.max(16, size));
+        for (Points points : parsed) merged.addAll(points);
+        merged.sortByTime();
+        return merged;
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            if (e.getCause() instanceof UncheckedIOException) throw ((UncheckedIOException) e.getCause()).getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Outcome of an import: every user's points and how fast they were read.
+     */
+    public static class Result {
+        public final List<String> users;
+        public final Points[] tracks;
+        public final int files;
+        public final long bytes;
+        public final long points;
+        public final long nanos;
+        public final int threads;
+
+        Result(List<String> users, Points[] tracks, int files, long bytes, long points, long nanos, int threads) {
+            this.users = Collections.unmodifiableList(users);
+            this.tracks = tracks;
+            this.files = files;
+            this.bytes = bytes;
+            this.points = points;
+            this.nanos = nanos;
+            this.threads = threads;
+        }
+
+        /**
+         * @return Megabytes of PLT read per second, parsing and sorting included.
+         */
+        public double megabytesPerSecond() {
+            return bytes / 1e6 / (nanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d points of %d users from %,d files (%.1f MB) in %.1f ms on %d threads: %.1f MB/s, %,.0f points/s",
+                    points, users.size(), files, bytes / 1e6, nanos / 1e6, threads, megabytesPerSecond(), points / (nanos / 1e9));
+        }
+    }
+
+    /**
+     * Points of one file or tracker in primitive arrays, altitude in feet and time in milliseconds.
+     */
+    public static class Points {
+        double[] latitudes;
+        double[] longitudes;
+        double[] altitudes;
+        long[] times;
+        int size = 0;
+
+        Points(int capacity) {
+            latitudes = new double[capacity];
+            longitudes = new double[capacity];
+            altitudes = new double[capacity];
+            times = new long[capacity];
+        }
+
+        void add(double latitude, double longitude, double altitude, long timeMillis) {
+            if (size == times.length) grow(size * 2);
+            latitudes[size] = latitude;
+            longitudes[size] = longitude;
+            altitudes[size] = altitude;
+            times[size] = timeMillis;
+            size++;
+        }
+
+        void addAll(Points other) {
+            if (size + other.size > times.length) grow(Math.max(size + other.size, size * 2));
+            System.arraycopy(other.latitudes, 0, latitudes, size, other.size);
+            System.arraycopy(other.longitudes, 0, longitudes, size, other.size);
+            System.arraycopy(other.altitudes, 0, altitudes, size, other.size);
+            System.arraycopy(other.times, 0, times, size, other.size);
+            size += other.size;
+        }
+
+        /**
+         * @return Number of points.
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @param i Index of a point.
+         * @return Its time in milliseconds.
+         */
+        public long time(int i) {
+            return times[i];
+        }
+
+        /**
+         * @param i Index of a point.
+         * @return Seconds since the previous point, 0 for the first; what {@link GpsService} waits before playing it.
+         */
+        public int delaySeconds(int i) {
+            return i == 0 ? 0 : (int) ((times[i] - times[i - 1]) / 1000);
+        }
+
+        // Stable, so points with the same time keep their file order; files are usually already in order
+        void sortByTime() {
+            boolean sorted = true;
+            for (int i = 1; i < size && sorted; i++) sorted = times[i - 1] <= times[i];
+            if (sorted) return;
+
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) order[i] = i;
+            mergeSort(order, new int[size], 0, size);
+            latitudes = permute(latitudes, order);
+            longitudes = permute(longitudes, order);
+            altitudes = permute(altitudes, order);
+            long[] sortedTimes = new long[size];
+            for (int i = 0; i < size; i++) sortedTimes[i] = times[order[i]];
+            times = sortedTimes;
+        }
+
+        private void mergeSort(int[] order, int[] scratch, int from, int to) {
+            if (to - from < 2) return;
+            int middle = (from + to) >>> 1;
+            mergeSort(order, scratch, from, middle);
+            mergeSort(order, scratch, middle, to);
+            if (times[order[middle - 1]] <= times[order[middle]]) return; // halves already in order
+            System.arraycopy(order, from, scratch, from, to - from);
+            for (int i = from, left = from, right = middle; i < to; i++) {
+                if (right >= to || (left < middle && times[scratch[left]] <= times[scratch[right]])) order[i] = scratch[left++];
+                else order[i] = scratch[right++];
+            }
+        }
+
+        private double[] permute(double[] values, int[] order) {
+            double[] permuted = new double[size];
+            for (int i = 0; i < size; i++) permuted[i] = values[order[i]];
+            return permuted;
+        }
+
+        private void grow(int capacity) {
+            latitudes = Arrays.copyOf(latitudes, capacity);
+            longitudes = Arrays.copyOf(longitudes, capacity);
+            altitudes = Arrays.copyOf(altitudes, capacity);
+            times = Arrays.copyOf(times, capacity);
+        }
+    }
+
+    // Reads comma-separated numbers and lines from a buffer without copying it
+    private static class PltCursor {
+        private final ByteBuffer in;
+        private final int limit;
+        private int position;
+
+        PltCursor(ByteBuffer in) {
+            this.in = in;
+            this.position = in.position();
+            this.limit = in.limit();
+        }
+
+        boolean hasMore() {
+            return position < limit;
+        }
+
+        int remaining() {
+            return limit - position;
+        }
+
+        boolean atLineEnd() {
+            byte b = in.get(position);
+            return b == '\n' || b == '\r';
+        }
+
+        void skipLine() {
+            while (position < limit && in.get(position++) != '\n') {
+                // up to and past the line feed
+            }
+        }
+
+        // Parses a decimal number and consumes the comma after it, if any
+        double number() {
+            int start = position;
+            while (position < limit && in.get(position) == ' ') position++;
+            boolean negative = position < limit && in.get(position) == '-';
+            if (negative || (position < limit && in.get(position) == '+')) position++;
+
+            long mantissa = 0;
+            int digits = 0, fractionDigits = 0;
+            boolean fraction = false;
+            while (position < limit) {
+                byte b = in.get(position);
+                if (b >= '0' && b <= '9') {
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits++;
+                    if (fraction) fractionDigits++;
+                } else if (b == '.' && !fraction) {
+                    fraction = true;
+                } else {
+                    break;
+                }
+                position++;
+            }
+
+            double value;
+            if (position < limit && (in.get(position) | 0x20) == 'e' || digits > 18 || mantissa >= MAX_EXACT_MANTISSA
+                    || fractionDigits >= POWERS_OF_TEN.length) {
+                // Beyond what a double holds exactly: let the JDK parse it, which is rare in PLT files
+                while (position < limit && in.get(position) != ',' && !atLineEnd()) position++;
+                value = Double.parseDouble(text(start, position));
+            } else if (digits == 0) {
+                throw new IllegalArgumentException("Expected a number at byte " + start + ": '" + text(start, Math.min(limit, start + 20)) + "'");
+            } else {
+                // Both operands are exact, so the division rounds correctly
+                value = fractionDigits == 0 ? mantissa : mantissa / POWERS_OF_TEN[fractionDigits];
+                if (negative) value = -value;
+            }
+
+            if (position < limit && in.get(position) == ',') position++;
+            else if (position < limit && !atLineEnd()) {
+                throw new IllegalArgumentException("Unexpected character at byte " + position + ": '" + (char) in.get(position) + "'");
+            }
+            return value;
+        }
+
+        private String text(int from, int to) {
+            byte[] bytes = new byte[to - from];
+            for (int i = 0; i < bytes.length; i++) bytes[i] = in.get(from + i);
+            return new String(bytes, StandardCharsets.US_ASCII).trim();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Batch analytics over the whole recorded data set, without replaying it in real time through {@link GpsService}.
+ * <p>
+ * For every tracker it computes the total distance travelled, the bounding box of its positions, its recorded duration
+ * and the time spent inside a latitude/longitude region. The trackers are aggregated in parallel with fork/join, and
+ * each tracker's records are split into chunks that are aggregated in parallel and merged, so both many short and a
+ * few long trajectories use every core.
+ * Distances use the same 3D formula as the live display, with altitude converted from feet to meters.
+ * <p>
+ * Usage: <code>java GpsAnalytics [data file] [latMin latMax lonMin lonMax]</code>
+ */
+public class GpsAnalytics {
+    static final int CHUNK_SIZE = 4096; // records aggregated sequentially by one fork/join task
+
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+        String fileName = args.length > 0 ? args[0] : "gps.dat";
+        double[] region = args.length >= 5
+                ? new double[]{Double.parseDouble(args[1]), Double.parseDouble(args[2]), Double.parseDouble(args[3]), Double.parseDouble(args[4])}
+                : new double[]{-90.0, 90.0, -180.0, 180.0};
+
+        long loadStart = System.nanoTime();
+        LinkedList<Double[]>[] data;
+        try {
+            data = GpsService.readData(fileName);
+        } catch (FileNotFoundException e) {
+            System.out.println("Data not found: " + fileName);
+            return;
+        }
+        Track[] tracks = new Track[data.length];
+        for (int i = 0; i < data.length; i++) tracks[i] = new Track(data[i]);
+        long loadNanos = System.nanoTime() - loadStart;
+
+        // One untimed run of each pass, so the comparison does not measure JIT warm-up
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        analyse(tracks, region, null);
+        analyse(tracks, region, pool);
+
+        // Sequential pass first, as the baseline the parallel pass is compared with
+        long sequentialStart = System.nanoTime();
+        analyse(tracks, region, null);
+        long sequentialNanos = System.nanoTime() - sequentialStart;
+
+        long parallelStart = System.nanoTime();
+        Summary[] summaries = analyse(tracks, region, pool);
+        long parallelNanos = System.nanoTime() - parallelStart;
+
+        long records = 0;
+        for (int i = 0; i < summaries.length; i++) {
+            System.out.println("Tracker" + i + ": " + summaries[i]);
+            records += summaries[i].count;
+        }
+        System.out.printf("%,d records of %d trackers, region lat(%s, %s) lon(%s, %s)%n",
+                records, tracks.length, region[0], region[1], region[2], region[3]);
+        System.out.printf("Load %.1f ms, sequential %.1f ms, parallel %.1f ms on %d cores (%.1fx)%n",
+                loadNanos / 1e6, sequentialNanos / 1e6, parallelNanos / 1e6, Runtime.getRuntime().availableProcessors(),
+                (double) sequentialNanos / parallelNanos);
+    }
+
+    /**
+     * Aggregates one tracker's records.
+     *
+     * @param track  The tracker's records.
+     * @param region Region as {latMin, latMax, lonMin, lonMax} for the time-in-region figure.
+     * @param pool   Pool to aggregate in parallel, or null to aggregate on the calling thread.
+     * @return The tracker's summary.
+     */
+    static Summary analyse(Track track, double[] region, ForkJoinPool pool) {
+        ChunkTask task = new ChunkTask(track, region, 0, track.size);
+        return pool == null ? task.compute() : pool.invoke(task);
+    }
+
+    /**
+     * Aggregates every tracker's records. In parallel, the tasks of all trackers are submitted together, so trackers
+     * shorter than a chunk are spread across the pool too.
+     *
+     * @param tracks The trackers' records.
+     * @param region Region as {latMin, latMax, lonMin, lonMax} for the time-in-region figure.
+     * @param pool   Pool to aggregate in parallel, or null to aggregate on the calling thread.
+     * @return The summary of each tracker, in the order of the tracks.
+     */
+    static Summary[] analyse(Track[] tracks, double[] region, ForkJoinPool pool) {
+        ChunkTask[] tasks = new ChunkTask[tracks.length];
+        for (int i = 0; i < tracks.length; i++) tasks[i] = new ChunkTask(tracks[i], region, 0, tracks[i].size);
+        Summary[] summaries = new Summary[tracks.length];
+        if (pool == null) {
+            for (int i = 0; i < tasks.length; i++) summaries[i] = tasks[i].compute();
+            return summaries;
+        }
+
+        List<ChunkTask> all = Arrays.asList(tasks);
+        pool.invoke(ForkJoinTask.adapt(() -> {
+            ForkJoinTask.invokeAll(all);
+        }));
+        for (int i = 0; i < tasks.length; i++) summaries[i] = tasks[i].join();
+        return summaries;
+    }
+
+    /**
+     * A tracker's records in primitive arrays. Record i holds the delay in seconds since record i - 1.
+     */
+    static class Track {
+        final double[] latitudes;
+        final double[] longitudes;
+        final double[] altitudes; // meters
+        final double[] delays;    // seconds
+        final int size;
+
+        Track(LinkedList<Double[]> records) {
+            size = records.size();
+            latitudes = new double[size];
+            longitudes = new double[size];
+            altitudes = new double[size];
+            delays = new double[size];
+            int i = 0;
+            for (Double[] record : records) {
+                latitudes[i] = record[0];
+                longitudes[i] = record[1];
+                altitudes[i] = record[2] * EventProcessor.FEET_TO_METER;
+                delays[i] = record[3];
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Aggregates of a run of records. Two adjacent runs merge into the aggregate of both.
+     */
+    static class Summary {
+        int count = 0;
+        double distance = 0.0; // meters
+        double seconds = 0.0;  // recorded duration
+        double secondsInRegion = 0.0;
+        double latMin = Double.MAX_VALUE, latMax = -Double.MAX_VALUE, lonMin = Double.MAX_VALUE, lonMax = -Double.MAX_VALUE;
+
+        Summary merge(Summary other) {
+            count += other.count;
+            distance += other.distance;
+            seconds += other.seconds;
+            secondsInRegion += other.secondsInRegion;
+            latMin = Math.min(latMin, other.latMin);
+            latMax = Math.max(latMax, other.latMax);
+            lonMin = Math.min(lonMin, other.lonMin);
+            lonMax = Math.max(lonMax, other.lonMax);
+            return this;
+        }
+
+        public String toString() {
+            return String.format("%,d records, distance %,.0f m, box lat(%.5f, %.5f) lon(%.5f, %.5f), duration %,.0f s, in region %,.0f s",
+                    count, distance, latMin, latMax, lonMin, lonMax, seconds, secondsInRegion);
+        }
+    }
+
+    // Aggregates records [from, to) plus the segment from record from - 1 into from
+    private static class ChunkTask extends RecursiveTask<Summary> {
+        private final Track track;
+        private final double[] region;
+        private final int from;
+        private final int to;
+
+        ChunkTask(Track track, double[] region, int from, int to) {
+            this.track = track;
+            this.region = region;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Summary compute() {
+            if (to - from > CHUNK_SIZE) {
+                int mid = (from + to) >>> 1;
+                ChunkTask left = new ChunkTask(track, region, from, mid);
+                left.fork();
+                Summary right = new ChunkTask(track, region, mid, to).compute();
+                return left.join().merge(right);
+            }
+
+            Summary summary = new Summary();
+            for (int i = from; i < to; i++) {
+                double lat = track.latitudes[i];
+                double lon = track.longitudes[i];
+                summary.count++;
+                summary.latMin = Math.min(summary.latMin, lat);
+                summary.latMax = Math.max(summary.latMax, lat);
+                summary.lonMin = Math.min(summary.lonMin, lon);
+                summary.lonMax = Math.max(summary.lonMax, lon);
+                if (i == 0) continue;
+
+                // The segment arriving at record i, attributed to where it started
+                int prev = i - 1;
+                summary.distance += Utils.calculateDistance(track.latitudes[prev], track.longitudes[prev], track.altitudes[prev],
+                        lat, lon, track.altitudes[i]);
+                summary.seconds += track.delays[i];
+                if (inRegion(track.latitudes[prev], track.longitudes[prev])) summary.secondsInRegion += track.delays[i];
+            }
+            return summary;
+        }
+
+        private boolean inRegion(double lat, double lon) {
+            return lat >= region[0] && lat <= region[1] && lon >= region[2] && lon <= region[3];
+        }
+    }
+}
@@ -0,0 +1,31 @@
+import nz.sodium.Cell;
+
+/**
+ * Source of time for every time-based part of the pipeline: event timestamps, the 3-second clear of the current event
+ * and the sliding distance window.
+ * <p>
+ * {@link SystemClock} follows the wall clock and is what the application runs on. {@link ManualClock} only moves when
+ * it is told to, so tests and simulations can cover hours of traffic in milliseconds, with identical results on every
+ * run.
+ */
+public interface GpsClock {
+    /**
+     * @return The current time in milliseconds.
+     */
+    long currentTimeMillis();
+
+    /**
+     * @return A cell holding the current time in milliseconds, for stamping events with <code>snapshot</code>.
+     */
+    Cell<Long> time();
+
+    /**
+     * Creates a cell that is refreshed with the current time as time passes, to drive logic that must react without
+     * any event arriving, such as clearing a display after a timeout.
+     *
+     * @param periodMillis How often the cell is refreshed.
+     * @param owner        Handle of the pipeline using the ticks; closing it stops the refreshes.
+     * @return A cell holding the time of the latest refresh.
+     */
+    Cell<Long> ticks(long periodMillis, PipelineHandle owner);
+}
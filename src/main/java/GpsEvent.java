@@ -7,6 +7,7 @@ public class GpsEvent {
     public double latitude;     // The Latitude of the GPS event as a value from -90.0 to +90.0
     public double longitude;    // The Longitude of the GPS event as a value from -180.0 to +180.0
     public double altitude;     // The Altitude of the GPS event in feet
+    public int index;           // The tracker's index in TrackerRegistry.DEFAULT, -1 if it was never interned
 
     /** 
      * Creates a GpsEvent
@@ -16,6 +17,18 @@ public class GpsEvent {
         this.latitude = latitude;
         this.longitude = longitude;
         this.altitude = altitude;
+        this.index = TrackerRegistry.DEFAULT.indexOf(name);
+    }
+
+    /**
+     * Creates a GpsEvent for a tracker interned in {@link TrackerRegistry#DEFAULT}, without building or hashing its name
+     */
+    public GpsEvent(int index, double latitude, double longitude, double altitude){
+        this.name = TrackerRegistry.DEFAULT.idOf(index);
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.altitude = altitude;
+        this.index = index;
     }
 
     /** 
@@ -0,0 +1,239 @@
+import jdk.jfr.*;
+
+/**
+ * Java Flight Recorder event types for the three stages of the pipeline, so UI stutter can be lined up against what
+ * the ingest and processing stages were doing at the time, and for the start-up milestones, the export and the
+ * shards.
+ * <p>
+ * All types are disabled by default and switched on by the settings in <code>gps.jfc</code>, either at start-up, e.g.
+ * <pre>
+ * java -XX:StartFlightRecording:settings=src/main/resources/gps.jfc,filename=gps.jfr GpsGUI
+ * </pre>
+ * or on a running application with <code>jcmd &lt;pid&gt; JFR.start settings=src/main/resources/gps.jfc</code>.
+ * <p>
+ * Emitting code creates the event, calls <code>begin()</code> and only fills in the fields after
+ * <code>shouldCommit()</code> returns true. While recording is off those calls do nothing and the event object is
+ * never allocated once the JIT compiler has run, so the instrumentation costs close to nothing.
+ */
+public final class GpsFlightEvents {
+    private GpsFlightEvents() {
+    }
+
+    /**
+     * A GPS event sent by {@link GpsService}; its duration is the synchronous propagation through every listener.
+     */
+    @Name("gps.Ingest")
+    @Label("GPS Event Ingest")
+    @Category({"GPS", "Ingest"})
+    @Enabled(false)
+    @StackTrace(false)
+    static class Ingest extends Event {
+        @Label("Tracker ID")
+        String trackerId;
+
+        @Label("Latitude")
+        double latitude;
+
+        @Label("Longitude")
+        double longitude;
+    }
+
+    /**
+     * The range filter of {@link EventProcessor#filteredEvents} accepting or rejecting an event.
+     */
+    @Name("gps.FilterDecision")
+    @Label("Range Filter Decision")
+    @Category({"GPS", "Processing"})
+    @Enabled(false)
+    @StackTrace(false)
+    static class FilterDecision extends Event {
+        @Label("Tracker ID")
+        String trackerId;
+
+        @Label("Accepted")
+        boolean accepted;
+    }
+
+    /**
+     * A tracker's cumulative distance and motion statistics being updated with an accepted event.
+     */
+    @Name("gps.DistanceUpdate")
+    @Label("Distance Update")
+    @Category({"GPS", "Processing"})
+    @Enabled(false)
+    @StackTrace(false)
+    static class DistanceUpdate extends Event {
+        @Label("Tracker ID")
+        String trackerId;
+
+        @Label("Total Distance")
+        @Description("Cumulative distance in meters after the update")
+        double totalDistance;
+    }
+
+    /**
+     * A batch of queued events applied to the map on the Swing event thread.
+     */
+    @Name("gps.RenderBatch")
+    @Label("Render Batch")
+    @Category({"GPS", "Rendering"})
+    @Enabled(false)
+    @StackTrace(false)
+    static class RenderBatch extends Event {
+        @Label("Events")
+        int eventCount;
+
+        @Label("Tracker ID")
+        @Description("Tracker of the last event in the batch")
+        String trackerId;
+    }
+
+    /**
+     * Periodic counters of a {@link TrajectorySimplifier}, emitted for every simplifier passed to
+     * {@link #watch(TrajectorySimplifier)}.
+     */
+    @Name("gps.Simplifier")
+    @Label("Trajectory Simplifier")
+    @Category({"GPS", "Processing"})
+    @Enabled(false)
+    @StackTrace(false)
+    @Period("10 s")
+    static class Simplifier extends Event {
+        @Label("Events Seen")
+        long seen;
+
+        @Label("Events Kept")
+        long kept;
+
+        @Label("Compression Ratio")
+        double compressionRatio;
+    }
+
+    /**
+     * Emits {@link Simplifier} events for a simplifier while that event is enabled.
+     *
+     * @param simplifier Simplifier to report on.
+     * @return The periodic hook, for {@link FlightRecorder#removePeriodicEvent(Runnable)}.
+     */
+    static Runnable watch(TrajectorySimplifier simplifier) {
+        Runnable hook = () -> {
+            Simplifier event = new Simplifier();
+            event.seen = simplifier.getSeenCount();
+            event.kept = simplifier.getKeptCount();
+            event.compressionRatio = simplifier.getCompressionRatio();
+            event.commit();
+        };
+        FlightRecorder.addPeriodicEvent(Simplifier.class, hook);
+        return hook;
+    }
+
+    /**
+     * Periodic counters of an {@link EventExporter}, emitted for every exporter passed to
+     * {@link #watch(EventExporter)}, including the error that stopped it if any.
+     */
+    @Name("gps.Export")
+    @Label("Event Export")
+    @Category({"GPS", "Export"})
+    @Enabled(false)
+    @StackTrace(false)
+    @Period("10 s")
+    static class Export extends Event {
+        @Label("Rows Written")
+        long written;
+
+        @Label("Rows Dropped")
+        long dropped;
+
+        @Label("Files")
+        int files;
+
+        @Label("Failure")
+        String failure;
+    }
+
+    /**
+     * Emits {@link Export} events for an exporter while that event is enabled.
+     *
+     * @param exporter Exporter to report on.
+     * @return The periodic hook, for {@link FlightRecorder#removePeriodicEvent(Runnable)}.
+     */
+    static Runnable watch(EventExporter exporter) {
+        Runnable hook = () -> {
+            Export event = new Export();
+            event.written = exporter.getWrittenRows();
+            event.dropped = exporter.getDroppedRows();
+            event.files = exporter.getFileCount();
+            event.failure = exporter.getFailure() == null ? null : exporter.getFailure().toString();
+            event.commit();
+        };
+        FlightRecorder.addPeriodicEvent(Export.class, hook);
+        return hook;
+    }
+
+    /**
+     * Periodic counters of a {@link ShardAggregator}, emitted for every aggregator passed to
+     * {@link #watch(ShardAggregator)}.
+     */
+    @Name("gps.Shards")
+    @Label("Shard Aggregator")
+    @Category({"GPS", "Ingest"})
+    @Enabled(false)
+    @StackTrace(false)
+    @Period("10 s")
+    static class Shards extends Event {
+        @Label("Events Merged")
+        long merged;
+
+        @Label("Workers Connected")
+        int workers;
+    }
+
+    /**
+     * Emits {@link Shards} events for an aggregator while that event is enabled.
+     *
+     * @param aggregator Aggregator to report on.
+     * @return The periodic hook, for {@link FlightRecorder#removePeriodicEvent(Runnable)}.
+     */
+    static Runnable watch(ShardAggregator aggregator) {
+        Runnable hook = () -> {
+            Shards event = new Shards();
+            event.merged = aggregator.getEventCount();
+            event.workers = aggregator.getWorkerCount();
+            event.commit();
+        };
+        FlightRecorder.addPeriodicEvent(Shards.class, hook);
+        return hook;
+    }
+
+    /**
+     * A start-up milestone, e.g. the data file loaded or the first frame painted, and how long it took to reach.
+     */
+    @Name("gps.Startup")
+    @Label("Start-up Milestone")
+    @Category({"GPS", "Startup"})
+    @Enabled(false)
+    @StackTrace(false)
+    static class Startup extends Event {
+        @Label("Milestone")
+        String milestone;
+
+        @Label("Since Start")
+        @Timespan(Timespan.MILLISECONDS)
+        long sinceStart;
+    }
+
+    /**
+     * Records a start-up milestone if the {@link Startup} event is enabled.
+     *
+     * @param milestone  What was reached, e.g. "first paint".
+     * @param startNanos {@link System#nanoTime()} when the component being measured was started.
+     */
+    static void startup(String milestone, long startNanos) {
+        Startup event = new Startup();
+        if (event.shouldCommit()) {
+            event.milestone = milestone;
+            event.sinceStart = (System.nanoTime() - startNanos) / 1_000_000;
+            event.commit();
+        }
+    }
+}
@@ -2,12 +2,16 @@ import nz.sodium.Cell;
 import nz.sodium.Stream;
 import nz.sodium.Transaction;
 import swidgets.SButton;
-import swidgets.SLabel;
 import swidgets.STextField;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,59 +22,202 @@ import java.util.Optional;
  * <ul>
  *   <li><b>Tracker Display:</b> A simplified view showing each tracker's ID, latitude, and longitude, with altitude data removed. This view automatically updates with new GPS events.</li>
  *   <li><b>Current Event Display:</b> Displays the most recent GPS event as a single entry showing ID, latitude, longitude, and timestamp, and clears automatically if not updated within 3 seconds.</li>
- *   <li><b>Filtered Events Display:</b> Shows only events within a specified latitude and longitude range, set by the user. For each tracker, cumulative distance traveled within the last 5 minutes is displayed.</li>
+ *   <li><b>Filtered Events Display:</b> Shows only events within a specified latitude and longitude range, set by the user. For each tracker, cumulative distance traveled within the last 5 minutes is displayed, along with its live speed, heading, average speed and max speed.</li>
+ *   <li><b>History Query:</b> Answers how far a tracker travelled between two times of day, using the trajectories recorded since start-up.</li>
+ *   <li><b>Map:</b> A separate tab drawing each tracker's recent trail, rendered incrementally into cached tiles; drag to pan and scroll to zoom.</li>
+ *   <li><b>Distance Windows:</b> A separate tab showing each tracker's filtered distance over 1 minute, 5 minutes and 1 hour side by side (<code>-Dgps.windows</code> in seconds), rolled up from pre-aggregated 10-second buckets.</li>
+ *   <li><b>Leaderboard:</b> A separate tab ranking the trackers that travelled furthest within the filtered distance window (<code>-Dgps.leaders</code> rows), kept in order incrementally rather than sorted on every tick.</li>
+ *   <li><b>More Windows:</b> View &gt; New Window opens another window with its own range and distance window, sharing this window's {@link TrackerHub} rather than replaying the data.</li>
  *   <li><b>Control Panel:</b> Allows users to define latitude and longitude restrictions. Includes input fields for setting maximum and minimum latitude and longitude values, and a button to apply the settings. The panel also shows the current range settings for visual reference.</li>
  * </ul>
  * <p>
  * This class leverages Sodium FRP and custom widgets (swidgets) to manage the interactive elements, user
- * input, and live updates based on GPS event data.
+ * input, and live updates based on GPS event data. Displays are bound through {@link LiveLabel} and the map, which do
+ * no Swing work while their tab is not selected or the window is minimized, and catch up in one batch when shown.
+ * <p>
+ * Optionally, the filtered events are exported to disk (<code>-Dgps.export.dir</code>) and the displayed tables are
+ * published over HTTP for clients without Swing (<code>-Dgps.http.port</code>). With <code>-Dgps.shards</code>, a
+ * synthetic fleet is processed by that many {@link ShardWorker} processes instead of the recorded data, and the first
+ * trackers merged by their {@link ShardAggregator} are shown.
  */
 public class GpsGUI {
-    private static SButton setButton = new SButton(""); // Set the update restriction button
+    private SButton setButton = new SButton(""); // Set the update restriction button, one per window
     private final JFrame frame = new JFrame("GPS Tracking Application"); // The main frame include all panels
+    private final RenderGate gate = new RenderGate(frame); // pauses display updates while the frame is minimized
     private final Stream<GpsEvent>[] gpsEvents;
     private final List<Cell<Optional<Double>>> rangeVals = new ArrayList<>(); // Receive user inputs
     private final int eventCount; // define tracker display panel rows
     @SuppressWarnings("FieldCanBeLocal")
     private final long windowSizeMillis = 1000 * 60 * 5; // 5-minutes time interval
+    // windows shown side by side on the Distance tab, e.g. -Dgps.windows=60,300,3600 (seconds)
+    private final long[] aggregateWindows = parseWindows(System.getProperty("gps.windows", "60,300,3600"));
+    private final int leaderCount = Integer.getInteger("gps.leaders", 10); // rows on the Leaderboard tab
+    private TrackerView view; // this window's filtered view of the shared trackers
     // user input fields
     private final STextField latMax = new STextField("", 15);
     private final STextField latMin = new STextField("", 15);
     private final STextField lonMax = new STextField("", 15);
     private final STextField lonMin = new STextField("", 15);
+    // ingestion and processing shared with every other window on the same trackers
+    private final TrackerHub hub;
+    private final PipelineHandle pipeline = new PipelineHandle(); // everything the displays leave running
+    private final EventExporter exporter; // optional export of the filtered events, may be null
+    private final TrackerServer server; // optional HTTP publishing of the displayed state, may be null
 
     public GpsGUI(Stream<GpsEvent>[] gpsEvents) {
-        this.gpsEvents = gpsEvents;
+        this(gpsEvents, null, null);
+    }
+
+    /**
+     * @param gpsEvents Streams of GPS events, one per tracker.
+     * @param exporter  Exporter receiving every event shown in the filtered display, or null.
+     * @param server    Server publishing the displayed tables, started by the caller once built; or null.
+     */
+    public GpsGUI(Stream<GpsEvent>[] gpsEvents, EventExporter exporter, TrackerServer server) {
+        this(new TrackerHub(gpsEvents), true, exporter, server);
+    }
+
+    /**
+     * Opens another window on the trackers of an existing hub, with its own range and distance state. Closing it
+     * leaves the hub and the other windows running.
+     *
+     * @param hub Hub shared with the other windows.
+     */
+    public GpsGUI(TrackerHub hub) {
+        this(hub, false, null, null);
+    }
+
+    private GpsGUI(TrackerHub hub, boolean ownsHub, EventExporter exporter, TrackerServer server) {
+        this.hub = hub;
+        this.gpsEvents = hub.getEventStreams();
         this.eventCount = gpsEvents.length;
-        initializeComponents();
+        this.exporter = exporter;
+        this.server = server;
+        if (ownsHub) pipeline.add(hub);
+        initializeComponents(ownsHub);
     }
 
     /**
      * Main Class to start the app
      */
     public static void main(String[] args) {
-        // Initialize the GPS Service
-        GpsService gpsService = new GpsService();
+        long startNanos = System.nanoTime();
+
+        // Optionally process a synthetic fleet in worker processes and show the first trackers merged from them,
+        // e.g. -Dgps.shards=4 -Dgps.shards.trackers=10000 -Dgps.shards.rate=20000 (events/s per worker)
+        Stream<GpsEvent>[] gpsStreams;
+        int shards = Integer.getInteger("gps.shards", 0);
+        if (shards > 0) {
+            try {
+                gpsStreams = startShards(shards, Integer.getInteger("gps.shards.trackers", 1000), Integer.getInteger("gps.shards.rate", 10_000));
+            } catch (IOException e) {
+                System.out.println("Sharding disabled: " + e.getMessage());
+                return;
+            }
+        } else {
+            // Initialize the GPS Service; trackers keep loading in the background while the GUI is built
+            GpsService gpsService = new GpsService();
+
+            // Retrieve the event streams from GpsService
+            gpsStreams = gpsService.getEventStreams();
+        }
+
+        // Optionally discard redundant points, e.g. -Dgps.simplify.tolerance=5 for a 5-meter dead band
+        String tolerance = System.getProperty("gps.simplify.tolerance");
+        if (tolerance != null) {
+            TrajectorySimplifier simplifier = new TrajectorySimplifier(Double.parseDouble(tolerance));
+            gpsStreams = EventProcessor.simplify(gpsStreams, simplifier);
+            GpsFlightEvents.watch(simplifier); // its compression shows in JFR recordings
+        }
 
-        // Retrieve the event streams from GpsService
-        Stream<GpsEvent>[] gpsStreams = gpsService.getEventStreams();
+        // Optionally export the filtered events, e.g. -Dgps.export.dir=exports -Dgps.export.format=geojson
+        EventExporter exporter = null;
+        String exportDir = System.getProperty("gps.export.dir");
+        if (exportDir != null) {
+            EventExporter.Format format = "geojson".equalsIgnoreCase(System.getProperty("gps.export.format"))
+                    ? EventExporter.Format.GEOJSON_SEQ : EventExporter.Format.CSV;
+            try {
+                exporter = new EventExporter(Paths.get(exportDir), "filtered", format, 256L << 20);
+                EventExporter opened = exporter;
+                GpsFlightEvents.watch(opened); // its counters and any write error show in JFR recordings
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        opened.close();
+                    } catch (IOException e) {
+                        // already reported by the gps.Export event
+                    }
+                }));
+            } catch (IOException e) {
+                System.out.println("Export disabled: " + e.getMessage());
+            }
+        }
+
+        // Optionally publish the displayed state over HTTP for clients without Swing, e.g. -Dgps.http.port=8080
+        TrackerServer server = null;
+        String httpPort = System.getProperty("gps.http.port");
+        if (httpPort != null) {
+            try {
+                server = new TrackerServer(Integer.parseInt(httpPort));
+            } catch (IOException e) {
+                System.out.println("HTTP server disabled: " + e.getMessage());
+            }
+        }
 
         // Display the GUI
-        GpsGUI gui = new GpsGUI(gpsStreams);
+        GpsGUI gui = new GpsGUI(gpsStreams, exporter, server);
+        if (server != null) server.start();
+        gui.frame.setGlassPane(new FirstPaintProbe(startNanos));
+        gui.frame.getGlassPane().setVisible(true);
         gui.show();
     }
 
+    // Aggregator with one local worker process per shard; the workers end with this JVM's connection to them
+    private static Stream<GpsEvent>[] startShards(int shards, int trackers, int rate) throws IOException {
+        ShardAggregator aggregator = new ShardAggregator(0, Math.min(10, trackers));
+        List<Process> workers = new ArrayList<>();
+        for (int shard = 0; shard < shards; shard++) workers.add(ShardWorker.launch(aggregator.getPort(), shard, shards, trackers, rate));
+        GpsFlightEvents.watch(aggregator); // events merged and workers connected show in JFR recordings
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            aggregator.close();
+            for (Process worker : workers) worker.destroy();
+        }));
+        return aggregator.getEventStreams();
+    }
+
     // combine all panels together
-    private void initializeComponents() {
-        // Set up the main frame
-        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+    private void initializeComponents(boolean mainWindow) {
+        // Set up the main frame; closing another window only stops its own view
+        if (mainWindow) {
+            frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        } else {
+            frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+            frame.addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowClosed(WindowEvent e) {
+                    pipeline.close();
+                }
+            });
+        }
         frame.setSize(1200, 800);
 
+        // Menu to open more windows on the same trackers, e.g. to compare two ranges
+        JMenuItem newWindow = new JMenuItem("New Window");
+        newWindow.addActionListener(e -> new GpsGUI(hub).show());
+        JMenu viewMenu = new JMenu("View");
+        viewMenu.add(newWindow);
+        JMenuBar menuBar = new JMenuBar();
+        menuBar.add(viewMenu);
+        frame.setJMenuBar(menuBar);
+
         // Left-side GUI: Single Display(1) -- Ten simplified Trackers & Single Entry with Time
         JPanel simplifyTrackersDisplayPanel = SimplifyDisplayPanel("All Tracker Display");
         JPanel currentTrackerPanel = CurrentTrackerPanel("Current Tracker Display");
+        JPanel historyQueryPanel = HistoryQueryPanel("History Distance Query");
+        JPanel bottomPanel = new JPanel(new BorderLayout());
+        bottomPanel.add(currentTrackerPanel, BorderLayout.NORTH);
+        bottomPanel.add(historyQueryPanel, BorderLayout.CENTER);
         // Combine the display(1)
-        JSplitPane TrackerSplitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, simplifyTrackersDisplayPanel, currentTrackerPanel);
+        JSplitPane TrackerSplitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, simplifyTrackersDisplayPanel, bottomPanel);
         TrackerSplitPane.setResizeWeight(0.8);
 
         // Right-side GUI: Single Display(2) -- Define Range and show result & Display filtered tracker with distance
@@ -95,8 +242,18 @@ public class GpsGUI {
         gbc.fill = GridBagConstraints.BOTH;
         mainPanel.add(filteredTrackerDisplayPanel, gbc);
 
+        // Map of every tracker's recent trail, on its own tab
+        TrackerMapPanel mapPanel = new TrackerMapPanel(gate);
+        mapPanel.listenTo(gpsEvents, pipeline);
+
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab("Trackers", mainPanel);
+        tabs.addTab("Map", mapPanel);
+        tabs.addTab("Distance", WindowedDistancePanel("Distance per Window"));
+        tabs.addTab("Leaderboard", LeaderboardPanel("Furthest in " + formatWindow(windowSizeMillis)));
+
         frame.setLayout(new BorderLayout());
-        frame.add(mainPanel, BorderLayout.CENTER);
+        frame.add(tabs, BorderLayout.CENTER);
     }
 
     /**
@@ -108,7 +265,8 @@ public class GpsGUI {
      * @return JPanel containing tracker display information
      */
     public JPanel SimplifyDisplayPanel(String title) {
-        List<List<Cell<String>>> simplyInfo = EventProcessor.simplifiedTrackers(gpsEvents);
+        List<List<Cell<String>>> simplyInfo = hub.getSimplifiedTrackers();
+        if (server != null) server.addColumns("trackers", new String[]{"id", "latitude", "longitude"}, simplyInfo);
 
         return SimplifyDisplayGUI(title, simplyInfo);
     }
@@ -126,11 +284,11 @@ public class GpsGUI {
         panel.add(new JLabel("Latitude"));
         panel.add(new JLabel("Longitude"));
 
-        // Bind each Cell list to SLabel components and add them to the panel
+        // Bind each Cell list to LiveLabel components and add them to the panel
         for (int i = 0; i < rowCount; i++) {
-            SLabel idLabel = new SLabel(cells.get(0).get(i));
-            SLabel latLabel = new SLabel(cells.get(1).get(i));
-            SLabel lonLabel = new SLabel(cells.get(2).get(i));
+            LiveLabel idLabel = new LiveLabel(cells.get(0).get(i), gate);
+            LiveLabel latLabel = new LiveLabel(cells.get(1).get(i), gate);
+            LiveLabel lonLabel = new LiveLabel(cells.get(2).get(i), gate);
 
             panel.add(idLabel);
             panel.add(latLabel);
@@ -151,10 +309,13 @@ public class GpsGUI {
 
         Transaction.runVoid(() -> {
             // Step 2: Set up the FRP logic and get the content cell
-            Cell<String> content = EventProcessor.currentTracker(gpsEvents);
+            Cell<String> content = hub.getCurrentTracker();
+            if (server != null) {
+                server.addTable("current", new String[]{"event"}, Collections.singletonList(Collections.singletonList(content)));
+            }
 
-            // Step 3: Bind the content cell to an SLabel and add it to the panel
-            SLabel currentEventTexts = new SLabel(content);
+            // Step 3: Bind the content cell to a LiveLabel and add it to the panel
+            LiveLabel currentEventTexts = new LiveLabel(content, gate);
             panel.add(currentEventTexts);
         });
 
@@ -168,6 +329,54 @@ public class GpsGUI {
         return panel;
     }
 
+    /**
+     * Single Display (1) GUI -- Part III History distance query
+     * <p>
+     * Answers how far a tracker travelled between two times of day from the recorded trajectories.
+     *
+     * @param title Panel title for the history query
+     * @return JPanel containing the query inputs and result
+     */
+    public JPanel HistoryQueryPanel(String title) {
+        JPanel panel = new JPanel(new GridLayout(2, 4, 5, 5));
+        panel.setBorder(BorderFactory.createTitledBorder(title));
+
+        STextField trackerField = new STextField("Tracker0", 10);
+        STextField fromField = new STextField("00:00", 8);
+        STextField toField = new STextField("23:59:59", 8);
+        SButton queryButton = new SButton("Query");
+
+        // Only run the query when the button is clicked
+        Cell<String> result = queryButton.sClicked
+                .snapshot(trackerField.text, fromField.text, toField.text, (u, id, from, to) -> {
+                    Optional<Long> fromMillis = Utils.parseTime(from);
+                    Optional<Long> toMillis = Utils.parseTime(to);
+                    if (!fromMillis.isPresent() || !toMillis.isPresent()) {
+                        return "Time must be HH:mm or HH:mm:ss";
+                    }
+                    return Math.round(hub.getTrajectoryStore().distance(id.trim(), fromMillis.get(), toMillis.get())) + " m";
+                })
+                .hold("");
+
+        panel.add(new JLabel("Tracker ID"));
+        panel.add(new JLabel("From"));
+        panel.add(new JLabel("To"));
+        panel.add(queryButton);
+        panel.add(trackerField);
+        panel.add(fromField);
+        panel.add(toField);
+        panel.add(new LiveLabel(result, gate));
+
+        return panel;
+    }
+
+    /**
+     * @return the recorded trajectories of every tracker shown in this GUI
+     */
+    public TrajectoryStore getTrajectoryStore() {
+        return hub.getTrajectoryStore();
+    }
+
     /**
      * Single Display (2)
      * <p>
@@ -290,7 +499,7 @@ public class GpsGUI {
                 .snapshot(latMin.text.lift(latMax.text, lonMin.text, lonMax.text, (a, b, c, d) ->
                         String.format("Latitude(%s, %s) Longitude(%s, %s)", a, b, c, d)));
         Cell<String> result = storeResult.hold("Input must: numeric(include -); max > min");
-        SLabel resultLabel = new SLabel(result);
+        LiveLabel resultLabel = new LiveLabel(result, gate);
         gbcRight.gridx = 0;
         gbcRight.gridy = 1;
         gbcRight.anchor = GridBagConstraints.CENTER;
@@ -299,48 +508,168 @@ public class GpsGUI {
         return rightPanel;
     }
 
-    /* Single Display (2) GUI -- Part II show filtered trackers' info: id, lat, lon, time, distance (each 5-min update) */
+    /* Single Display (2) GUI -- Part II show filtered trackers' info: id, lat, lon, time, distance (each 5-min update), motion */
     private JPanel FilterEvDisplayPanel(String title) {
         // Create FilterEvDisplayPanel
         JPanel displayPanel = FilterEvDisplayGUI(title);
 
         // Dynamically output result on GUI
-        for (Stream<GpsEvent> gpsEvent : gpsEvents) {
-            /* Core event-drive logic */
-            List<Cell<String>> results = EventProcessor.filteredEvents(rangeVals, setButton, windowSizeMillis, gpsEvent);
+        /* Core event-drive logic: this window's view of the shared trackers */
+        view = hub.openView(rangeVals, setButton, windowSizeMillis, exporter);
+        pipeline.add(view);
+        List<List<Cell<String>>> filtered = view.getFilteredEvents();
+        for (List<Cell<String>> results : filtered) {
 
             // Add GUI elements to correspond panel
-            SLabel filterId = new SLabel(results.get(0));
-            SLabel filterLat = new SLabel(results.get(1));
-            SLabel filterLon = new SLabel(results.get(2));
-            SLabel filterTime = new SLabel(results.get(3));
-            SLabel filterDist = new SLabel(results.get(4));
+            LiveLabel filterId = new LiveLabel(results.get(0), gate);
+            LiveLabel filterLat = new LiveLabel(results.get(1), gate);
+            LiveLabel filterLon = new LiveLabel(results.get(2), gate);
+            LiveLabel filterTime = new LiveLabel(results.get(3), gate);
+            LiveLabel filterDist = new LiveLabel(results.get(4), gate);
+            LiveLabel filterSpeed = new LiveLabel(results.get(5), gate);
+            LiveLabel filterHeading = new LiveLabel(results.get(6), gate);
+            LiveLabel filterAvgSpeed = new LiveLabel(results.get(7), gate);
+            LiveLabel filterMaxSpeed = new LiveLabel(results.get(8), gate);
 
             displayPanel.add(filterId);
             displayPanel.add(filterLat);
             displayPanel.add(filterLon);
             displayPanel.add(filterTime);
             displayPanel.add(filterDist);
+            displayPanel.add(filterSpeed);
+            displayPanel.add(filterHeading);
+            displayPanel.add(filterAvgSpeed);
+            displayPanel.add(filterMaxSpeed);
         }
+        if (server != null) server.addTable("filtered", TrackerServer.FILTERED_COLUMNS, filtered);
 
         return displayPanel;
     }
 
     // set gui for filtered tracker display
     private JPanel FilterEvDisplayGUI(String title) {
-        JPanel displayPanel = new JPanel(new GridLayout(eventCount + 1, 5, 5, 5));
+        JPanel displayPanel = new JPanel(new GridLayout(eventCount + 1, 9, 5, 5));
         displayPanel.setBorder(BorderFactory.createTitledBorder(title));
         displayPanel.add(new JLabel("ID"));
         displayPanel.add(new JLabel("Latitude"));
         displayPanel.add(new JLabel("Longitude"));
         displayPanel.add(new JLabel("Time"));
         displayPanel.add(new JLabel("Distance"));
+        displayPanel.add(new JLabel("Speed"));
+        displayPanel.add(new JLabel("Heading"));
+        displayPanel.add(new JLabel("Avg Speed"));
+        displayPanel.add(new JLabel("Max Speed"));
 
         return displayPanel;
     }
 
+    /**
+     * Windowed distance display
+     * <p>
+     * Shows every tracker's distance over several windows at once, rolled up from the filtered view's 10-second
+     * buckets. Like the filtered display, only events inside the applied range count.
+     *
+     * @param title Panel title for the windowed distance display
+     * @return JPanel with one row per tracker and one column per window
+     */
+    public JPanel WindowedDistancePanel(String title) {
+        JPanel panel = new JPanel(new GridLayout(eventCount + 1, aggregateWindows.length + 1, 5, 5));
+        panel.setBorder(BorderFactory.createTitledBorder(title));
+        panel.add(new JLabel("ID"));
+        List<List<Cell<String>>> columns = new ArrayList<>();
+        for (long window : aggregateWindows) {
+            panel.add(new JLabel(formatWindow(window)));
+            columns.add(view.windowedDistances(window));
+        }
+
+        List<Cell<String>> ids = hub.getSimplifiedTrackers().get(0);
+        for (int i = 0; i < eventCount; i++) {
+            panel.add(new LiveLabel(ids.get(i), gate));
+            for (List<Cell<String>> column : columns) panel.add(new LiveLabel(column.get(i), gate));
+        }
+
+        JPanel wrapper = new JPanel(new BorderLayout());
+        wrapper.add(panel, BorderLayout.NORTH);
+        return wrapper;
+    }
+
+    /**
+     * Leaderboard display
+     * <p>
+     * Ranks the trackers by distance within the filtered view's window, furthest first. Like the filtered display,
+     * only events inside the applied range count.
+     *
+     * @param title Panel title for the leaderboard
+     * @return JPanel with one row per rank
+     */
+    public JPanel LeaderboardPanel(String title) {
+        JPanel panel = new JPanel(new GridLayout(leaderCount + 1, 3, 5, 5));
+        panel.setBorder(BorderFactory.createTitledBorder(title));
+        panel.add(new JLabel("Rank"));
+        panel.add(new JLabel("ID"));
+        panel.add(new JLabel("Distance (m)"));
+
+        Cell<List<DistanceLeaderboard.Standing>> leaders = view.leaders(leaderCount);
+        for (int i = 0; i < leaderCount; i++) {
+            int rank = i;
+            panel.add(new JLabel(String.valueOf(rank + 1)));
+            panel.add(new LiveLabel(leaders.map(l -> rank < l.size() ? l.get(rank).trackerId : ""), gate));
+            panel.add(new LiveLabel(leaders.map(l -> rank < l.size() ? String.valueOf(Math.round(l.get(rank).getDistance())) : ""), gate));
+        }
+
+        JPanel wrapper = new JPanel(new BorderLayout());
+        wrapper.add(panel, BorderLayout.NORTH);
+        return wrapper;
+    }
+
+    // Window lengths in seconds, rounded to whole buckets and limited to the hour the view keeps
+    private static long[] parseWindows(String seconds) {
+        String[] parts = seconds.split(",");
+        long[] windows = new long[parts.length];
+        long bucket = WindowedAggregates.DEFAULT_BUCKET;
+        for (int i = 0; i < parts.length; i++) {
+            long millis = Long.parseLong(parts[i].trim()) * 1000;
+            windows[i] = Math.min(TrackerView.AGGREGATE_RETENTION, Math.max(bucket, Math.round((double) millis / bucket) * bucket));
+        }
+        return windows;
+    }
+
+    private static String formatWindow(long millis) {
+        if (millis % 3_600_000 == 0) return millis / 3_600_000 + " h";
+        if (millis % 60_000 == 0) return millis / 60_000 + " min";
+        return millis / 1000 + " s";
+    }
+
+    // Transparent overlay that records the time to the frame's first paint as a JFR event, then gets out of the way
+    private static class FirstPaintProbe extends JComponent {
+        private final long startNanos;
+        private boolean painted = false;
+
+        FirstPaintProbe(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            if (!painted) {
+                painted = true;
+                GpsFlightEvents.startup("first paint", startNanos);
+                SwingUtilities.invokeLater(() -> setVisible(false));
+            }
+        }
+    }
+
     public void show() {
         frame.setVisible(true);
     }
 
+    /**
+     * Closes the window and stops its displays. The main window also closes the hub it created, stopping every other
+     * window on it; the exporter and server passed in belong to the caller and are left open.
+     */
+    public void close() {
+        frame.dispose();
+        pipeline.close();
+    }
+
 }
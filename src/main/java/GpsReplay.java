@@ -0,0 +1,352 @@
+import nz.sodium.Cell;
+import nz.sodium.CellSink;
+import nz.sodium.Stream;
+import nz.sodium.StreamSink;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Plays back recorded GPS data like {@link GpsService}, but from a time index, so playback can be paused and moved to
+ * any point of the recording.
+ * <p>
+ * The records of every tracker are merged once into arrays sorted by time. Finding the events before a timestamp is a
+ * binary search over them, O(log n). The pipeline fed by the replay, e.g. a {@link TrackerHub}, is built by a factory
+ * on a clock driven by the replay, and its state is made to match the chosen point as follows:
+ * <ul>
+ *     <li><b>Forward:</b> the events up to the new point are sent straight away, each stamped with its own time.</li>
+ *     <li><b>Backward:</b> distances, motion and windows cannot be taken back, so the pipeline is closed and built
+ *     again on a fresh clock, then fast-forwarded from the start of the recording.</li>
+ * </ul>
+ * While fast-forwarding, the clock moves with the events but its ticks stand still, so time-based displays refresh
+ * once at the new point instead of once per event. Unlike the service, playback stops at the end of the recording
+ * rather than looping round.
+ *
+ * @param <P> Type of the pipeline fed by the replay.
+ */
+public class GpsReplay<P extends AutoCloseable> implements AutoCloseable {
+    static final long PLAYBACK_PERIOD = 100; // how often playback moves on, in milliseconds
+
+    private final long[] times;     // sorted
+    private final int[] trackers;   // index of the tracker of each event
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] altitudes; // feet, as recorded
+    private final int[] indices;      // index of each tracker in TrackerRegistry.DEFAULT
+    private final StreamSink<GpsEvent>[] sinks;
+    private final BiFunction<Stream<GpsEvent>[], GpsClock, P> factory;
+    private final ScheduledExecutorService scheduler;
+
+    private P pipeline;
+    private ReplayClock clock;
+    private int cursor = 0;   // events before it have been sent to the current pipeline
+    private long position;    // current point of the recording
+    private long rebuilds = 0;
+    private double speed = 1.0;
+    private ScheduledFuture<?> playback; // null while paused
+    private long lastStepNanos;
+    private boolean closed = false;
+
+    /**
+     * @param data        Records of each tracker, as {@link GpsService#readData(String)} returns: latitude, longitude,
+     *                    altitude in feet and the delay in seconds since the previous record.
+     * @param startMillis Time of the first record of every tracker.
+     * @param factory     Builds the pipeline from the replay's streams and clock; called again on every backward seek.
+     */
+    @SuppressWarnings("unchecked")
+    public GpsReplay(List<? extends List<Double[]>> data, long startMillis, BiFunction<Stream<GpsEvent>[], GpsClock, P> factory) {
+        int total = 0;
+        for (List<Double[]> records : data) total += records.size();
+        times = new long[total];
+        trackers = new int[total];
+        latitudes = new double[total];
+        longitudes = new double[total];
+        altitudes = new double[total];
+        indices = new int[data.size()];
+        sinks = new StreamSink[data.size()];
+        for (int i = 0; i < sinks.length; i++) {
+            indices[i] = TrackerRegistry.DEFAULT.intern("Tracker" + i);
+            sinks[i] = new StreamSink<>();
+        }
+        index(data, startMillis);
+
+        this.factory = factory;
+        this.position = startMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "GpsReplay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        build(startMillis);
+    }
+
+    /**
+     * Reads a data file and indexes it for replay.
+     *
+     * @param fileName    A serialized data file, normally gps.dat, or a replay file written by {@link GeolifeImporter}.
+     * @param startMillis Time of the first record of every tracker.
+     * @param factory     Builds the pipeline from the replay's streams and clock.
+     * @return The replay, paused at the start of the recording.
+     */
+    public static <P extends AutoCloseable> GpsReplay<P> load(String fileName, long startMillis,
+                                                                BiFunction<Stream<GpsEvent>[], GpsClock, P> factory)
+            throws IOException, ClassNotFoundException {
+        Path file = Paths.get(fileName);
+        LinkedList<Double[]>[] data = GeolifeImporter.isReplayFile(file) ? GeolifeImporter.read(file) : GpsService.readData(fileName);
+        return new GpsReplay<>(Arrays.asList(data), startMillis, factory);
+    }
+
+    // Merges the trackers' records, each already in time order, with one heap entry per tracker
+    private void index(List<? extends List<Double[]>> data, long startMillis) {
+        List<Iterator<Double[]>> iterators = new ArrayList<>();
+        long[] next = new long[data.size()];
+        Double[][] pending = new Double[data.size()][];
+        PriorityQueue<Integer> heads = new PriorityQueue<>(Comparator.comparingLong((Integer t) -> next[t]).thenComparingInt(t -> t));
+        for (int t = 0; t < data.size(); t++) {
+            iterators.add(data.get(t).iterator());
+            if (iterators.get(t).hasNext()) {
+                pending[t] = iterators.get(t).next();
+                next[t] = startMillis;
+                heads.add(t);
+            }
+        }
+
+        for (int i = 0; !heads.isEmpty(); i++) {
+            int t = heads.poll();
+            Double[] record = pending[t];
+            times[i] = next[t];
+            trackers[i] = t;
+            latitudes[i] = record[0];
+            longitudes[i] = record[1];
+            altitudes[i] = record[2];
+            if (iterators.get(t).hasNext()) {
+                pending[t] = iterators.get(t).next();
+                next[t] += pending[t][3].longValue() * 1000; // whole seconds, as the service schedules them
+                heads.add(t);
+            }
+        }
+    }
+
+    /**
+     * @return Streams of GPS events, one per tracker; they stay the same when the pipeline is rebuilt.
+     */
+    public Stream<GpsEvent>[] getEventStreams() {
+        return sinks.clone();
+    }
+
+    /**
+     * @return The pipeline currently fed by the replay.
+     */
+    public synchronized P getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * Moves playback to a point of the recording. Playing carries on from there; a paused replay stays paused.
+     *
+     * @param timeMillis Point to move to, limited to the recording.
+     */
+    public synchronized void seek(long timeMillis) {
+        if (closed) return;
+        long target = Math.max(getStartMillis(), Math.min(getEndMillis(), timeMillis));
+        if (target < position) build(target);
+        else moveTo(target);
+        lastStepNanos = System.nanoTime();
+    }
+
+    /**
+     * Moves playback by an offset, backward if it is negative.
+     *
+     * @param millis Milliseconds to move by.
+     */
+    public synchronized void scrub(long millis) {
+        seek(position + millis);
+    }
+
+    /**
+     * Starts or resumes playback in real time.
+     */
+    public void play() {
+        play(1.0);
+    }
+
+    /**
+     * Starts or resumes playback.
+     *
+     * @param speed Recording time played per unit of real time, e.g. 60 to play a minute every second.
+     */
+    public synchronized void play(double speed) {
+        if (!(speed > 0.0)) throw new IllegalArgumentException("Speed must be positive: " + speed);
+        this.speed = speed;
+        if (closed || playback != null) return;
+        lastStepNanos = System.nanoTime();
+        playback = scheduler.scheduleAtFixedRate(this::step, PLAYBACK_PERIOD, PLAYBACK_PERIOD, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops playback at the current point.
+     */
+    public synchronized void pause() {
+        if (playback != null) playback.cancel(false);
+        playback = null;
+    }
+
+    /**
+     * @return True while playback is moving on by itself.
+     */
+    public synchronized boolean isPlaying() {
+        return playback != null;
+    }
+
+    /**
+     * @return Current point of the recording, in milliseconds.
+     */
+    public synchronized long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return Time of the first event.
+     */
+    public long getStartMillis() {
+        return times.length == 0 ? position : times[0];
+    }
+
+    /**
+     * @return Time of the last event.
+     */
+    public long getEndMillis() {
+        return times.length == 0 ? position : times[times.length - 1];
+    }
+
+    /**
+     * @return Number of events in the recording.
+     */
+    public int size() {
+        return times.length;
+    }
+
+    /**
+     * @return Number of times the pipeline was built again for a backward seek.
+     */
+    public synchronized long getRebuildCount() {
+        return rebuilds;
+    }
+
+    /**
+     * Stops playback and closes the pipeline.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        pause();
+        scheduler.shutdownNow();
+        closePipeline();
+    }
+
+    /**
+     * @param timeMillis Point of the recording.
+     * @return Number of events at or before it, found by binary search.
+     */
+    int countUntil(long timeMillis) {
+        int low = 0, high = times.length; // first event after the point lies in [low, high]
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] <= timeMillis) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    // Runs on the playback thread
+    private synchronized void step() {
+        if (playback == null) return; // paused while this step was waiting for the lock
+        long now = System.nanoTime();
+        long elapsed = Math.round((now - lastStepNanos) / 1e6 * speed);
+        lastStepNanos = now;
+        moveTo(Math.min(getEndMillis(), position + elapsed));
+        if (position >= getEndMillis()) pause();
+    }
+
+    // Sends the events up to the target to the current pipeline, then ticks once
+    private void moveTo(long target) {
+        int end = countUntil(target);
+        for (; cursor < end; cursor++) {
+            clock.set(times[cursor]);
+            int t = trackers[cursor];
+            sinks[t].send(new GpsEvent(indices[t], latitudes[cursor], longitudes[cursor], altitudes[cursor]));
+        }
+        position = target;
+        clock.set(target);
+        clock.tick();
+    }
+
+    // Replaces the pipeline with a new one and fast-forwards it to the target
+    private void build(long target) {
+        if (pipeline != null) rebuilds++;
+        closePipeline();
+        clock = new ReplayClock(getStartMillis());
+        cursor = 0;
+        position = getStartMillis();
+        pipeline = factory.apply(getEventStreams(), clock);
+        moveTo(target);
+    }
+
+    private void closePipeline() {
+        if (pipeline == null) return;
+        try {
+            pipeline.close();
+        } catch (Exception e) {
+            e.printStackTrace(); // the replay carries on with a new pipeline either way
+        }
+        pipeline = null;
+    }
+
+    /**
+     * Replay time: stamps events with their recorded time, and only ticks once the replay has reached a point.
+     */
+    private static class ReplayClock implements GpsClock {
+        private final CellSink<Long> time;
+        private final CellSink<Long> ticks;
+        private volatile long now;
+
+        ReplayClock(long startMillis) {
+            now = startMillis;
+            time = new CellSink<>(startMillis);
+            ticks = new CellSink<>(startMillis);
+        }
+
+        void set(long millis) {
+            if (millis == now) return;
+            now = millis;
+            time.send(millis);
+        }
+
+        void tick() {
+            ticks.send(now);
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return now;
+        }
+
+        @Override
+        public Cell<Long> time() {
+            return time;
+        }
+
+        @Override
+        public Cell<Long> ticks(long periodMillis, PipelineHandle owner) {
+            return ticks;
+        }
+    }
+}
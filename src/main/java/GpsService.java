@@ -1,22 +1,41 @@
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
 import nz.sodium.*;
 
 /**
  * Simulates live GPS data by playing back records from the Geolife data set.
+ * Closing the service stops the loader thread and every playback timer.
  * @author Ian Knight
  * @version 1.22
  */
-public class GpsService {
+public class GpsService implements AutoCloseable {
+
+    private static final long START_DELAY = 1000; // milliseconds before a tracker's first event
 
     private LinkedList<Stream<GpsEvent>> streams;
+    private volatile StreamSink<GpsEvent>[] sinks; // created once the tracker count is read from the file header
+    private final long startNanos = System.nanoTime();
+    private volatile long firstEventNanos = 0;
+    private volatile long loadedNanos = 0;
+    private final List<Timer> timers = new ArrayList<Timer>(); // one playback timer per tracker, guarded by itself
+    private volatile InputStream input; // data file being loaded, closed to stop the loader
+    private volatile boolean closed = false;
 
     /**
      * Constructor to initialise the GPS Service
      */
     public GpsService(){
+        this("gps.dat");
+    }
+
+    /**
+     * Constructor to initialise the GPS Service from a given data file
+     * @param fileName The serialized data file to play back
+     */
+    public GpsService(String fileName){
         streams = new LinkedList<Stream<GpsEvent>>();
-        this.start();
+        this.start(fileName);
     }
 
     /**
@@ -29,40 +48,132 @@ public class GpsService {
     }
 
     /**
-     * Reads binary data from the gps.dat file and plays that data back at the intervals given in the data set.
+     * Reads binary data from the data file and plays that data back at the intervals given in the data set.
+     * <p>
+     * The file is read on a background thread. Only its header is waited for here, to learn how many trackers there
+     * are; each tracker's stream then starts playing back as soon as its own records have been read, while the rest
+     * of the file is still loading.
      */
-    @SuppressWarnings("unchecked")
-     private void start(){
-
-        LinkedList<Double[]>[] data;
-        LinkedList<Timer> timers = new LinkedList<Timer>();
-        Timer t;
-        GpsInput ev;
-
-        // Read the data file
-        try {   
-            FileInputStream fileIn = new FileInputStream("gps.dat");
-            ObjectInputStream in = new ObjectInputStream(fileIn);
-            data = (LinkedList<Double[]>[]) in.readObject();
-            in.close();
-            fileIn.close();
+    private void start(String fileName){
+        CountDownLatch trackerCountKnown = new CountDownLatch(1);
+        Thread loader = new Thread(() -> load(fileName, trackerCountKnown), "GpsService loader");
+        loader.setDaemon(true);
+        loader.start();
+
+        try {
+            trackerCountKnown.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (sinks != null) this.streams.addAll(Arrays.asList(sinks));
+    }
+
+    // Runs on the loader thread
+    private void load(String fileName, CountDownLatch trackerCountKnown) {
+        try (StreamingInput in = new StreamingInput(new BufferedInputStream(new FileInputStream(fileName)), trackerCountKnown)) {
+            input = in;
+            if (closed) return;
+            in.readObject();
+            loadedNanos = System.nanoTime();
+            GpsFlightEvents.startup("data loaded", startNanos);
         } catch (IOException i) {
-            i.printStackTrace();
-            return;
+            if (!closed) i.printStackTrace(); // closing the service closes the file under the loader
         } catch (ClassNotFoundException c) {
             System.out.println("Data not found");
             c.printStackTrace();
-            return;
+        } finally {
+            trackerCountKnown.countDown(); // never leave the constructor waiting, even for an unreadable file
+        }
+    }
+
+    /**
+     * Stops playback: cancels every tracker's timer and abandons loading the rest of the file. The streams stay
+     * valid but receive no more events.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        InputStream in = input;
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // the loader ends either way
+            }
+        }
+        synchronized (timers) {
+            for (Timer timer : timers) timer.cancel();
+            timers.clear();
+        }
+    }
+
+    /**
+     * @return Milliseconds from construction until the whole data file was read, or -1 if it has not been yet.
+     */
+    public long getTimeToLoad() {
+        long loaded = loadedNanos;
+        return loaded == 0 ? -1 : (loaded - startNanos) / 1_000_000;
+    }
+
+    /**
+     * @return Milliseconds from construction until the first GPS event was sent, or -1 if none has been sent yet.
+     */
+    public long getTimeToFirstEvent() {
+        long first = firstEventNanos;
+        return first == 0 ? -1 : (first - startNanos) / 1_000_000;
+    }
+
+    /**
+     * Reads the recorded data set: one list per GPS Tracker, each record holding latitude, longitude, altitude in feet
+     * and the delay in seconds since the previous record.
+     * @param fileName The serialized data file, normally gps.dat
+     * @return An array containing the records of each GPS Tracker.
+     */
+    @SuppressWarnings("unchecked")
+    static LinkedList<Double[]>[] readData(String fileName) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(fileName)))) {
+            return (LinkedList<Double[]>[]) in.readObject();
+        }
+    }
+
+    /**
+     * Deserializes the data file, starting playback of each tracker as soon as its list of records is complete. The
+     * tracker count is taken from the length of the top-level array, which is known before any records are read.
+     */
+    private class StreamingInput extends ObjectInputStream {
+        private int loaded = 0;
+
+        @SuppressWarnings("unchecked")
+        StreamingInput(InputStream in, CountDownLatch trackerCountKnown) throws IOException {
+            super(in);
+            enableResolveObject(true);
+            setObjectInputFilter(info -> {
+                Class<?> type = info.serialClass();
+                if (sinks == null && type != null && type.isArray() && type.getComponentType() == LinkedList.class && info.arrayLength() >= 0) {
+                    StreamSink<GpsEvent>[] created = new StreamSink[(int) info.arrayLength()];
+                    for (int i = 0; i < created.length; i++) created[i] = new StreamSink<GpsEvent>();
+                    sinks = created;
+                    trackerCountKnown.countDown();
+                }
+                return ObjectInputFilter.Status.UNDECIDED;
+            });
         }
 
-        // Setup and begin playback of records for each GPS Tracker
-        for(int i=0; i<data.length; i++){    
-            t = new Timer();
-            timers.add(t);
-            StreamSink<GpsEvent> s = new StreamSink<GpsEvent>();
-            ev = new GpsInput(i,data[i],t,s);
-            t.schedule(ev,1000);
-            this.streams.add((Stream<GpsEvent>) s);
+        @Override
+        @SuppressWarnings("unchecked")
+        protected Object resolveObject(Object obj) {
+            // Lists complete in array order; Double[] records inside them are never lists
+            if (obj instanceof LinkedList && sinks != null && loaded < sinks.length) {
+                int id = loaded++;
+                synchronized (timers) {
+                    if (closed) return obj;
+                    Timer t = new Timer("GpsService Tracker" + id);
+                    timers.add(t);
+                    int index = TrackerRegistry.DEFAULT.intern("Tracker" + id); // once per tracker, not per event
+                    t.schedule(new GpsInput(id, index, (LinkedList<Double[]>) obj, t, sinks[id]), START_DELAY);
+                }
+            }
+            return obj;
         }
     }
 
@@ -72,12 +183,14 @@ public class GpsService {
     private class GpsInput extends TimerTask {
 
         public int id = 0;
+        public int index = 0; // the tracker's index in TrackerRegistry.DEFAULT
         public LinkedList<Double[]> data;
         public Timer timer;
         public StreamSink<GpsEvent> stream;
 
-        public GpsInput(int id, LinkedList<Double[]> data, Timer timer, StreamSink<GpsEvent> stream){
+        public GpsInput(int id, int index, LinkedList<Double[]> data, Timer timer, StreamSink<GpsEvent> stream){
             this.id = id;
+            this.index = index;
             this.data = data;
             this.timer = timer;
             this.stream = stream;
@@ -88,8 +201,25 @@ public class GpsService {
             data.add(event);
             Double[] next = data.peek();
 
-            stream.send(new GpsEvent("Tracker"+id,event[0].doubleValue(),event[1].doubleValue(),event[2].doubleValue()));
-            timer.schedule(new GpsInput(id,data,timer,stream),next[3].longValue()*1000);
+            if (firstEventNanos == 0) {
+                firstEventNanos = System.nanoTime();
+                GpsFlightEvents.startup("first event", startNanos);
+            }
+            GpsFlightEvents.Ingest ingest = new GpsFlightEvents.Ingest();
+            ingest.begin();
+            GpsEvent ev = new GpsEvent(index,event[0].doubleValue(),event[1].doubleValue(),event[2].doubleValue());
+            stream.send(ev);
+            if (ingest.shouldCommit()) {
+                ingest.trackerId = ev.name;
+                ingest.latitude = event[0];
+                ingest.longitude = event[1];
+                ingest.commit();
+            }
+            try {
+                timer.schedule(new GpsInput(id,index,data,timer,stream),next[3].longValue()*1000);
+            } catch (IllegalStateException e) {
+                // the service was closed while this event was being sent
+            }
         }
     }
 
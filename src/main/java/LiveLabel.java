@@ -0,0 +1,91 @@
+import nz.sodium.Cell;
+import nz.sodium.Listener;
+import nz.sodium.Operational;
+import nz.sodium.Transaction;
+
+import javax.swing.*;
+import java.awt.event.HierarchyEvent;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Label showing the value of a string cell, like swidgets' <code>SLabel</code>, that does no Swing work while it
+ * cannot be seen.
+ * <p>
+ * Every update only records the latest value. While the label is showing and its {@link RenderGate} is open, one task
+ * at a time is queued on the event dispatch thread to display it, so a burst of updates costs one <code>setText</code>.
+ * While the label is hidden, e.g. on an unselected tab or in a minimized window, nothing is queued at all; the latest
+ * value is displayed as soon as it shows again.
+ * <p>
+ * The label only listens to its cell and its gate while it is part of a displayable hierarchy: it starts in
+ * {@link #addNotify()} and stops in {@link #removeNotify()}, so a label that is removed and added again, e.g. when its
+ * panel is rebuilt, picks up from the cell's current value.
+ */
+public class LiveLabel extends JLabel {
+    private final Cell<String> text;
+    private final RenderGate gate;
+    private Listener listener; // set while the label is displayable; only touched on the event dispatch thread
+    private final Runnable resync = this::refresh;
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private volatile String latest = "";
+    private volatile boolean showing = false;
+
+    /**
+     * @param text Cell holding the text to display.
+     * @param gate Gate telling whether the label's window can be seen.
+     */
+    public LiveLabel(Cell<String> text, RenderGate gate) {
+        super("");
+        this.text = text;
+        this.gate = gate;
+        addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0) setShowing(isShowing());
+        });
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        if (listener != null) return;
+        listener = Operational.updates(text).listen(this::update);
+        // Read the current value at the end of the transaction so the label works with CellLoops
+        Transaction.post(() -> update(text.sample()));
+        gate.register(resync);
+    }
+
+    @Override
+    public void removeNotify() {
+        if (listener != null) {
+            listener.unlisten();
+            listener = null;
+            gate.unregister(resync);
+        }
+        super.removeNotify();
+    }
+
+    // Called on whichever thread updated the cell
+    private void update(String value) {
+        latest = value;
+        if (!showing || gate.isPaused()) {
+            gate.withheld();
+            return;
+        }
+        if (scheduled.compareAndSet(false, true)) SwingUtilities.invokeLater(resync);
+    }
+
+    // Displays the latest value; runs on the event dispatch thread
+    private void refresh() {
+        scheduled.set(false);
+        if (!showing || gate.isPaused()) return;
+        String value = latest;
+        if (!value.equals(getText())) {
+            setText(value);
+            gate.applied();
+        }
+    }
+
+    // Normally driven by Swing's hierarchy events
+    void setShowing(boolean showing) {
+        this.showing = showing;
+        if (showing) refresh();
+    }
+}
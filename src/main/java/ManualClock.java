@@ -0,0 +1,53 @@
+import nz.sodium.Cell;
+import nz.sodium.CellSink;
+
+/**
+ * A clock that stands still until it is advanced, for deterministic tests and simulations that run faster than real
+ * time.
+ * <p>
+ * Every change of the time is a tick for all {@link #ticks(long, PipelineHandle)} cells, whatever their period. To
+ * reproduce the behaviour of the wall clock, advance in steps no larger than the shortest tick period in use. It holds
+ * no threads, so there is nothing for a pipeline handle to release.
+ */
+public class ManualClock implements GpsClock {
+    private final CellSink<Long> time;
+    private long now;
+
+    /**
+     * @param startMillis The time the clock starts at, in milliseconds.
+     */
+    public ManualClock(long startMillis) {
+        this.now = startMillis;
+        this.time = new CellSink<>(startMillis);
+    }
+
+    /**
+     * Moves the clock forward, updating every cell that shows the time.
+     *
+     * @param millis Milliseconds to move forward; must not be negative.
+     */
+    public void advance(long millis) {
+        if (millis < 0) throw new IllegalArgumentException("A clock cannot go backwards: " + millis);
+        long target;
+        synchronized (this) {
+            now += millis;
+            target = now;
+        }
+        time.send(target);
+    }
+
+    @Override
+    public synchronized long currentTimeMillis() {
+        return now;
+    }
+
+    @Override
+    public Cell<Long> time() {
+        return time;
+    }
+
+    @Override
+    public Cell<Long> ticks(long periodMillis, PipelineHandle owner) {
+        return time;
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * Represents the live motion statistics of a GPS tracker, maintained incrementally as its events arrive.
+ * <p>
+ * Speeds are in meters per second and the heading is the compass bearing in degrees (0 = north, 90 = east) of the
+ * tracker's last movement.
+ */
+public class MotionStats {
+    /** Statistics of a tracker without any recorded movement. */
+    public static final MotionStats NONE = new MotionStats(0.0, 0.0, 0.0, 0.0);
+
+    public final double speed;        // Speed over the last segment in m/s
+    public final double heading;      // Bearing of the last movement in degrees from north
+    public final double averageSpeed; // Total distance over total elapsed time in m/s
+    public final double maxSpeed;     // Highest segment speed seen in m/s
+
+    /**
+     * Constructs a MotionStats instance.
+     *
+     * @param speed        Speed over the last segment in m/s.
+     * @param heading      Bearing of the last movement in degrees from north.
+     * @param averageSpeed Average speed since the first event in m/s.
+     * @param maxSpeed     Highest segment speed in m/s.
+     */
+    public MotionStats(double speed, double heading, double averageSpeed, double maxSpeed) {
+        this.speed = speed;
+        this.heading = heading;
+        this.averageSpeed = averageSpeed;
+        this.maxSpeed = maxSpeed;
+    }
+
+    /**
+     * Returns a string representation in the format:
+     * "Speed 1.2 m/s, Heading 45, Avg 1.0 m/s, Max 3.4 m/s"
+     *
+     * @return Formatted string representing the statistics.
+     */
+    public String toString() {
+        return String.format("Speed %.1f m/s, Heading %.0f, Avg %.1f m/s, Max %.1f m/s", speed, heading, averageSpeed, maxSpeed);
+    }
+}
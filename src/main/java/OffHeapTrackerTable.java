@@ -0,0 +1,333 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+
+/**
+ * Off-heap per-tracker state for fleets of millions of trackers.
+ * <p>
+ * Each tracker is interned to a dense slot index once, and its state lives in a fixed-width slot of a direct
+ * {@link ByteBuffer} instead of in heap objects, motion statistics included:
+ * <pre>
+ * offset  0: last latitude   (double)
+ * offset  8: last longitude  (double)
+ * offset 16: last altitude   (double, meters)
+ * offset 24: last time       (long, milliseconds)
+ * offset 32: total distance  (double, meters)
+ * offset 40: total elapsed   (long, milliseconds covered by the recorded segments)
+ * offset 48: last speed      (double, m/s)
+ * offset 56: heading         (double, degrees from north, of the last movement once it is settled)
+ * offset 64: max speed       (double, m/s)
+ * offset 72: movement start  (double latitude, NaN once the heading is settled)
+ * offset 80: movement start  (double longitude)
+ * offset 88: older slot      (int, -1 for the least recently updated tracker)
+ * offset 92: newer slot      (int, -1 for the most recently updated tracker)
+ * offset 96: last update     (long, milliseconds)
+ * </pre>
+ * The heading of a movement ending at the last position is only worked out when the motion is read, so updates do
+ * no trigonometry beyond the distance.
+ * Updating a tracker allocates nothing, and the only per-tracker heap objects left for the GC are the interned ID
+ * and its index entry. The table grows by doubling up to its maximum.
+ * <p>
+ * Slots are linked in the order their trackers were last updated, and eviction follows the same rules as
+ * {@link TrackerStateCache}: trackers idle for longer than the timeout are reclaimed whenever a tracker is interned
+ * or recorded by its registry index, and when the table is full the least recently updated tracker is evicted. Both
+ * take the eldest end of the list, so neither scans the table.
+ * <p>
+ * Trackers recorded by their {@link TrackerRegistry} index find their slot through an int array indexed by it, so
+ * their updates do not hash the ID either.
+ */
+public class OffHeapTrackerTable implements TrackerStateStore {
+    static final int SLOT_SIZE = 104;
+    private static final int LAT = 0;
+    private static final int LON = 8;
+    private static final int ALT = 16;
+    private static final int TIME = 24;
+    private static final int DIST = 32;
+    private static final int ELAPSED = 40;
+    private static final int SPEED = 48;
+    private static final int HEADING = 56;
+    private static final int MAX_SPEED = 64;
+    private static final int FROM_LAT = 72;
+    private static final int FROM_LON = 80;
+    private static final int OLDER = 88;
+    private static final int NEWER = 92;
+    private static final int SEEN = 96;
+
+    private final int maxTrackers;
+    private final long idleTimeoutMillis;
+    private final Map<String, Integer> slotOf = new HashMap<>(); // interned tracker ID -> slot index
+    private String[] idOf; // slot index -> tracker ID, null for a free slot
+    private int[] slotOfTracker = new int[64]; // registry index -> slot index + 1, 0 if none
+    private int[] trackerOfSlot;               // slot index -> registry index + 1, 0 if none
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private ByteBuffer slots;
+    private int used = 0; // slots handed out so far, free or not
+    private int eldest = -1; // least recently updated slot
+    private int newest = -1; // most recently updated slot
+    private long evicted = 0;
+
+    /**
+     * @param initialCapacity   Number of slots allocated up front.
+     * @param maxTrackers       Maximum number of trackers held at once.
+     * @param idleTimeoutMillis Trackers without an update for longer than this (in milliseconds) are evicted.
+     */
+    public OffHeapTrackerTable(int initialCapacity, int maxTrackers, long idleTimeoutMillis) {
+        if (initialCapacity < 1 || maxTrackers < initialCapacity) {
+            throw new IllegalArgumentException("Capacity must be positive and not exceed the maximum: "
+                    + initialCapacity + " / " + maxTrackers);
+        }
+        this.maxTrackers = maxTrackers;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.idOf = new String[initialCapacity];
+        this.trackerOfSlot = new int[initialCapacity];
+        this.slots = ByteBuffer.allocateDirect(initialCapacity * SLOT_SIZE).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Interns a tracker ID to its slot index, allocating a slot for a new tracker. Trackers idle at {@code now} are
+     * evicted first, so an idle tracker interned again starts from zero distance.
+     *
+     * @param trackerId Tracker to intern.
+     * @param now       Current time in milliseconds, used to decide which trackers are idle.
+     * @return The tracker's slot index, stable until the tracker is evicted.
+     */
+    public synchronized int intern(String trackerId, long now) {
+        evictIdle(now);
+        Integer slot = slotOf.get(trackerId);
+        if (slot != null) return slot;
+
+        int index = allocateSlot();
+        idOf[index] = trackerId;
+        slotOf.put(trackerId, index);
+        int base = index * SLOT_SIZE;
+        slots.putLong(base + TIME, Long.MIN_VALUE); // no position yet
+        slots.putDouble(base + DIST, 0.0);
+        slots.putLong(base + ELAPSED, 0L);
+        slots.putDouble(base + SPEED, 0.0);
+        slots.putDouble(base + HEADING, 0.0);
+        slots.putDouble(base + MAX_SPEED, 0.0);
+        slots.putDouble(base + FROM_LAT, Double.NaN);
+        slots.putLong(base + SEEN, now);
+        slots.putInt(base + OLDER, -1);
+        slots.putInt(base + NEWER, -1);
+        moveToNewest(index);
+        return index;
+    }
+
+    /**
+     * Records a new position for an interned tracker without allocating, making it the most recently updated one.
+     *
+     * @param index Slot index returned by {@link #intern(String, long)}.
+     * @param lat   Latitude in degrees.
+     * @param lon   Longitude in degrees.
+     * @param alt   Altitude in meters.
+     * @param time  Time of the position in milliseconds.
+     * @return The tracker's cumulative distance in meters including this position.
+     */
+    public synchronized double record(int index, double lat, double lon, double alt, long time) {
+        int base = index * SLOT_SIZE;
+        double total = slots.getDouble(base + DIST);
+        long lastTime = slots.getLong(base + TIME);
+        if (lastTime != Long.MIN_VALUE) {
+            double lastLat = slots.getDouble(base + LAT);
+            double lastLon = slots.getDouble(base + LON);
+            double distance = Utils.calculateDistance(lastLat, lastLon, slots.getDouble(base + ALT), lat, lon, alt);
+            long elapsed = time - lastTime;
+            total += distance;
+
+            // Motion only changes when time moves on; a repeated position at the same time keeps the last values
+            if (elapsed > 0) {
+                double speed = distance * 1000.0 / elapsed;
+                slots.putLong(base + ELAPSED, slots.getLong(base + ELAPSED) + elapsed);
+                slots.putDouble(base + SPEED, speed);
+                slots.putDouble(base + MAX_SPEED, Math.max(slots.getDouble(base + MAX_SPEED), speed));
+            }
+            if (distance > 0) {
+                slots.putDouble(base + FROM_LAT, lastLat);
+                slots.putDouble(base + FROM_LON, lastLon);
+            } else if (!Double.isNaN(slots.getDouble(base + FROM_LAT)) && (lat != lastLat || lon != lastLon)) {
+                // A move too small to count leaves the heading as it was: settle it before the last position moves
+                slots.putDouble(base + HEADING, heading(base));
+                slots.putDouble(base + FROM_LAT, Double.NaN);
+            }
+        }
+
+        slots.putDouble(base + LAT, lat);
+        slots.putDouble(base + LON, lon);
+        slots.putDouble(base + ALT, alt);
+        slots.putLong(base + TIME, time);
+        slots.putDouble(base + DIST, total);
+        slots.putLong(base + SEEN, time);
+        moveToNewest(index);
+        return total;
+    }
+
+    @Override
+    public synchronized double record(String trackerId, Position position) {
+        return record(intern(trackerId, position.time), position.latitude, position.longitude, position.altitude, position.time);
+    }
+
+    @Override
+    public synchronized double record(int trackerIndex, Position position) {
+        evictIdle(position.time);
+        int slot = slotOfTracker(trackerIndex);
+        if (slot < 0) {
+            slot = intern(TrackerRegistry.DEFAULT.idOf(trackerIndex), position.time);
+            if (trackerIndex >= slotOfTracker.length) {
+                slotOfTracker = Arrays.copyOf(slotOfTracker, Math.max(trackerIndex + 1, slotOfTracker.length * 2));
+            }
+            slotOfTracker[trackerIndex] = slot + 1;
+            trackerOfSlot[slot] = trackerIndex + 1;
+        }
+        return record(slot, position.latitude, position.longitude, position.altitude, position.time);
+    }
+
+    // Slot of a tracker recorded by its registry index, -1 if it was not
+    private int slotOfTracker(int trackerIndex) {
+        return trackerIndex < slotOfTracker.length ? slotOfTracker[trackerIndex] - 1 : -1;
+    }
+
+    @Override
+    public synchronized Position lastPosition(String trackerId) {
+        Integer index = slotOf.get(trackerId);
+        if (index == null) return null;
+
+        int base = index * SLOT_SIZE;
+        long time = slots.getLong(base + TIME);
+        if (time == Long.MIN_VALUE) return null;
+        return new Position(slots.getDouble(base + LAT), slots.getDouble(base + LON), slots.getDouble(base + ALT), time);
+    }
+
+    @Override
+    public synchronized Double totalDistance(String trackerId) {
+        Integer index = slotOf.get(trackerId);
+        return index == null ? null : slots.getDouble(index * SLOT_SIZE + DIST);
+    }
+
+    @Override
+    public synchronized Double totalDistance(int trackerIndex) {
+        int slot = slotOfTracker(trackerIndex);
+        if (slot < 0) return totalDistance(TrackerRegistry.DEFAULT.idOf(trackerIndex));
+        return slots.getDouble(slot * SLOT_SIZE + DIST);
+    }
+
+    @Override
+    public synchronized MotionStats motion(String trackerId) {
+        Integer index = slotOf.get(trackerId);
+        return index == null ? MotionStats.NONE : motionOfSlot(index);
+    }
+
+    @Override
+    public synchronized MotionStats motion(int trackerIndex) {
+        int slot = slotOfTracker(trackerIndex);
+        return slot < 0 ? motion(TrackerRegistry.DEFAULT.idOf(trackerIndex)) : motionOfSlot(slot);
+    }
+
+    private MotionStats motionOfSlot(int index) {
+        int base = index * SLOT_SIZE;
+        long elapsed = slots.getLong(base + ELAPSED);
+        double averageSpeed = elapsed > 0 ? slots.getDouble(base + DIST) * 1000.0 / elapsed : 0.0;
+        return new MotionStats(slots.getDouble(base + SPEED), heading(base), averageSpeed, slots.getDouble(base + MAX_SPEED));
+    }
+
+    // Heading of the last movement, from its start to the last position unless it is settled
+    private double heading(int base) {
+        double fromLat = slots.getDouble(base + FROM_LAT);
+        if (Double.isNaN(fromLat)) return slots.getDouble(base + HEADING);
+        return Utils.calculateHeading(fromLat, slots.getDouble(base + FROM_LON), slots.getDouble(base + LAT), slots.getDouble(base + LON));
+    }
+
+    @Override
+    public synchronized Map<String, Double> totalDistances() {
+        Map<String, Double> distances = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : slotOf.entrySet()) {
+            distances.put(entry.getKey(), slots.getDouble(entry.getValue() * SLOT_SIZE + DIST));
+        }
+        return distances;
+    }
+
+    @Override
+    public synchronized int size() {
+        return slotOf.size();
+    }
+
+    /**
+     * @return Number of slots currently allocated in the direct buffer.
+     */
+    public synchronized int capacity() {
+        return idOf.length;
+    }
+
+    /**
+     * @return Number of trackers evicted, either as idle or to make room.
+     */
+    public synchronized long getEvicted() {
+        return evicted;
+    }
+
+    // Take a free slot, growing the buffer or evicting the least recently updated tracker when none is left
+    private int allocateSlot() {
+        if (!freeSlots.isEmpty()) return freeSlots.pop();
+        if (used < idOf.length) return used++;
+        if (idOf.length < maxTrackers) {
+            grow(Math.min(maxTrackers, idOf.length * 2));
+            return used++;
+        }
+        evict(eldest);
+        return freeSlots.pop();
+    }
+
+    // Drop trackers from the least recently updated end until one is still active
+    private void evictIdle(long now) {
+        while (eldest >= 0 && now - slots.getLong(eldest * SLOT_SIZE + SEEN) > idleTimeoutMillis) {
+            evict(eldest);
+        }
+    }
+
+    private void evict(int index) {
+        unlink(index);
+        slotOf.remove(idOf[index]);
+        idOf[index] = null;
+        if (trackerOfSlot[index] > 0) slotOfTracker[trackerOfSlot[index] - 1] = 0;
+        trackerOfSlot[index] = 0;
+        freeSlots.push(index);
+        evicted++;
+    }
+
+    private void moveToNewest(int index) {
+        if (index == newest) return;
+        unlink(index);
+        slots.putInt(index * SLOT_SIZE + OLDER, newest);
+        if (newest >= 0) slots.putInt(newest * SLOT_SIZE + NEWER, index);
+        else eldest = index;
+        newest = index;
+    }
+
+    private void unlink(int index) {
+        int base = index * SLOT_SIZE;
+        int older = slots.getInt(base + OLDER);
+        int newer = slots.getInt(base + NEWER);
+        if (older >= 0) slots.putInt(older * SLOT_SIZE + NEWER, newer);
+        else if (eldest == index) eldest = newer;
+        if (newer >= 0) slots.putInt(newer * SLOT_SIZE + OLDER, older);
+        else if (newest == index) newest = older;
+        slots.putInt(base + OLDER, -1);
+        slots.putInt(base + NEWER, -1);
+    }
+
+    private void grow(int newCapacity) {
+        ByteBuffer larger = ByteBuffer.allocateDirect(newCapacity * SLOT_SIZE).order(ByteOrder.nativeOrder());
+        slots.clear();
+        larger.put(slots);
+        larger.clear();
+        slots = larger;
+        idOf = Arrays.copyOf(idOf, newCapacity);
+        trackerOfSlot = Arrays.copyOf(trackerOfSlot, newCapacity);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("OffHeapTrackerTable: %d trackers in %d slots (%d KB off-heap), %d evicted",
+                slotOf.size(), idOf.length, (long) idOf.length * SLOT_SIZE / 1024, evicted);
+    }
+}
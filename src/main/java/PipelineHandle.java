@@ -0,0 +1,103 @@
+import nz.sodium.Listener;
+import nz.sodium.Stream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Timer;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Owns everything a pipeline construction leaves running: Sodium listeners, clock ticks, timers, executors and other
+ * closeable resources. Closing the handle releases all of them, so a pipeline that is no longer displayed, e.g. one
+ * rebuilt with a different window size, leaves no threads or callbacks behind.
+ * <p>
+ * Pass the same handle to several constructions to release them together. Closing also gates the inputs taken through
+ * {@link #gate(Stream)}, so a closed pipeline stops computing at once, without waiting for its cells to be collected.
+ * Resources are released in the reverse order they were added, and a resource added after closing is released
+ * straight away.
+ */
+public class PipelineHandle implements AutoCloseable {
+    private final List<Runnable> releases = new ArrayList<>();
+    private volatile boolean open = true;
+
+    /**
+     * Registers an action to run when the handle is closed.
+     *
+     * @param release Action releasing one resource; it must not throw.
+     */
+    public void onClose(Runnable release) {
+        synchronized (this) {
+            if (open) {
+                releases.add(release);
+                return;
+            }
+        }
+        release.run();
+    }
+
+    /**
+     * @param listener Listener to unregister on close.
+     */
+    public void add(Listener listener) {
+        onClose(listener::unlisten);
+    }
+
+    /**
+     * @param timer Timer to cancel on close.
+     */
+    public void add(Timer timer) {
+        onClose(timer::cancel);
+    }
+
+    /**
+     * @param executor Executor to shut down on close, interrupting its running tasks.
+     */
+    public void add(ExecutorService executor) {
+        onClose(executor::shutdownNow);
+    }
+
+    /**
+     * @param resource Resource to close on close; a failure to close it is reported and does not stop the others.
+     */
+    public void add(AutoCloseable resource) {
+        onClose(() -> {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Passes a stream through for as long as the handle is open.
+     *
+     * @param stream Input of the pipeline.
+     * @return The same events, none once the handle is closed.
+     */
+    public <A> Stream<A> gate(Stream<A> stream) {
+        return stream.filter(a -> open);
+    }
+
+    /**
+     * @return True until the handle is closed.
+     */
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Releases every registered resource, most recently added first. Closing again does nothing.
+     */
+    @Override
+    public void close() {
+        List<Runnable> toRelease;
+        synchronized (this) {
+            if (!open) return;
+            open = false;
+            toRelease = new ArrayList<>(releases);
+            releases.clear();
+        }
+        for (int i = toRelease.size() - 1; i >= 0; i--) toRelease.get(i).run();
+    }
+}
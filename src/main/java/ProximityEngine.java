@@ -0,0 +1,183 @@
+import java.util.*;
+
+/**
+ * Proximity alerts between trackers, found with a spatial hash join instead of comparing every pair.
+ * <p>
+ * The latest position of each tracker is bucketed into a grid whose cells are as tall as the alert distance. When a
+ * tracker moves, it is compared only with the trackers in the neighbouring cells that could be within the alert
+ * distance: one cell up and down, and enough cells east and west to cover the alert distance at the tracker's latitude
+ * (cells are square in degrees, so they narrow towards the poles). The cost of an update depends on how crowded its
+ * neighbourhood is, not on the size of the fleet. Longitude wrap-around at 180 degrees is not handled.
+ * <p>
+ * Each tracker remembers which trackers it is currently near, so an alert fires once when a pair comes within the
+ * alert distance and once more when it moves apart again.
+ * <p>
+ * Trackers are bounded like {@link TrackerStateCache}, using the time of the positions: a tracker that has not reported
+ * for longer than the idle timeout is forgotten, and when the maximum is reached the least recently updated tracker is
+ * forgotten. Both run as part of {@link #update(String, Position)}, and a forgotten tracker's pairs are dropped without
+ * APART events, as with {@link #remove(String)}.
+ */
+public class ProximityEngine {
+    private static final double METERS_PER_DEGREE = 6371000.0 * Math.PI / 180.0;
+
+    private final double alertMeters;
+    private final double cellDegrees;
+    private final Map<Long, Set<String>> cells = new HashMap<>(); // cell -> trackers whose latest position is in it
+    // Insertion-ordered and re-inserted on every update, so the eldest entry is the least recently updated tracker
+    private final LinkedHashMap<String, Tracked> trackers = new LinkedHashMap<>();
+    private final int maxTrackers;
+    private final long idleTimeoutMillis;
+    private long evicted = 0;
+
+    /**
+     * @param alertMeters Trackers closer than this (3D, in meters) to each other trigger an alert.
+     */
+    public ProximityEngine(double alertMeters) {
+        this(alertMeters, EventProcessor.MAX_TRACKERS, EventProcessor.TRACKER_IDLE_TIMEOUT);
+    }
+
+    /**
+     * @param alertMeters       Trackers closer than this (3D, in meters) to each other trigger an alert.
+     * @param maxTrackers       Maximum number of trackers kept at once.
+     * @param idleTimeoutMillis Trackers without an update for longer than this (in milliseconds) are forgotten.
+     */
+    public ProximityEngine(double alertMeters, int maxTrackers, long idleTimeoutMillis) {
+        if (alertMeters <= 0) throw new IllegalArgumentException("Alert distance must be positive: " + alertMeters);
+        if (maxTrackers < 1) throw new IllegalArgumentException("Maximum trackers must be positive: " + maxTrackers);
+        if (idleTimeoutMillis < 0) throw new IllegalArgumentException("Idle timeout must not be negative: " + idleTimeoutMillis);
+        this.alertMeters = alertMeters;
+        this.cellDegrees = alertMeters / METERS_PER_DEGREE;
+        this.maxTrackers = maxTrackers;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * Updates a tracker's latest position and reports the pairs it joined or left.
+     *
+     * @param trackerId Tracker reporting the position.
+     * @param position  New position with altitude in meters and the time it was recorded.
+     * @return APART events followed by NEAR events, empty if nothing changed.
+     */
+    public synchronized List<ProximityEvent> update(String trackerId, Position position) {
+        evictIdle(position.time);
+        Tracked tracked = trackers.remove(trackerId);
+        long latCell = cell(position.latitude);
+        long lonCell = cell(position.longitude);
+        long key = key(latCell, lonCell);
+
+        if (tracked == null) {
+            tracked = new Tracked();
+        } else if (tracked.cellKey != key) {
+            removeFromCell(tracked.cellKey, trackerId);
+        }
+        if (tracked.position == null || tracked.cellKey != key) {
+            cells.computeIfAbsent(key, k -> new HashSet<>()).add(trackerId);
+        }
+        tracked.position = position;
+        tracked.cellKey = key;
+        trackers.put(trackerId, tracked); // move to the most recently updated end
+        if (trackers.size() > maxTrackers) {
+            remove(trackers.keySet().iterator().next());
+            evicted++;
+        }
+
+        // Compare only with trackers in the cells that can be within the alert distance
+        Map<String, Double> near = new HashMap<>();
+        double cosLat = Math.cos(Math.toRadians(Math.min(89.0, Math.abs(position.latitude) + cellDegrees)));
+        long lonReach = (long) Math.ceil(1.0 / cosLat);
+        for (long dLat = -1; dLat <= 1; dLat++) {
+            for (long dLon = -lonReach; dLon <= lonReach; dLon++) {
+                Set<String> others = cells.get(key(latCell + dLat, lonCell + dLon));
+                if (others == null) continue;
+                for (String other : others) {
+                    if (other.equals(trackerId)) continue;
+                    double distance = Utils.calculateDistance(position, trackers.get(other).position);
+                    if (distance < alertMeters) near.put(other, distance);
+                }
+            }
+        }
+
+        List<ProximityEvent> events = new ArrayList<>();
+        for (Iterator<String> it = tracked.near.iterator(); it.hasNext(); ) {
+            String other = it.next();
+            if (near.containsKey(other)) continue;
+            it.remove();
+            trackers.get(other).near.remove(trackerId);
+            double distance = Utils.calculateDistance(position, trackers.get(other).position);
+            events.add(new ProximityEvent(trackerId, other, ProximityEvent.Type.APART, distance));
+        }
+        for (Map.Entry<String, Double> entry : near.entrySet()) {
+            if (!tracked.near.add(entry.getKey())) continue;
+            trackers.get(entry.getKey()).near.add(trackerId);
+            events.add(new ProximityEvent(trackerId, entry.getKey(), ProximityEvent.Type.NEAR, entry.getValue()));
+        }
+        return events;
+    }
+
+    /**
+     * Forgets a tracker, for example when it stops reporting. Its pairs are dropped without APART events.
+     *
+     * @param trackerId Tracker to forget.
+     */
+    public synchronized void remove(String trackerId) {
+        Tracked tracked = trackers.remove(trackerId);
+        if (tracked == null) return;
+        removeFromCell(tracked.cellKey, trackerId);
+        for (String other : tracked.near) trackers.get(other).near.remove(trackerId);
+    }
+
+    /**
+     * @param trackerId Tracker to look up.
+     * @return IDs of the trackers currently within the alert distance of it.
+     */
+    public synchronized Set<String> nearTo(String trackerId) {
+        Tracked tracked = trackers.get(trackerId);
+        return tracked == null ? Collections.emptySet() : new TreeSet<>(tracked.near);
+    }
+
+    /**
+     * @return Number of trackers with a known position.
+     */
+    public synchronized int size() {
+        return trackers.size();
+    }
+
+    /**
+     * @return Number of trackers forgotten, either as idle or to make room.
+     */
+    public synchronized long getEvicted() {
+        return evicted;
+    }
+
+    // Forget trackers from the least recently updated end until one is still active
+    private void evictIdle(long now) {
+        while (!trackers.isEmpty()) {
+            Map.Entry<String, Tracked> eldest = trackers.entrySet().iterator().next();
+            if (now - eldest.getValue().position.time <= idleTimeoutMillis) break;
+            remove(eldest.getKey());
+            evicted++;
+        }
+    }
+
+    private void removeFromCell(long key, String trackerId) {
+        Set<String> members = cells.get(key);
+        if (members == null) return;
+        members.remove(trackerId);
+        if (members.isEmpty()) cells.remove(key);
+    }
+
+    private long cell(double degrees) {
+        return (long) Math.floor(degrees / cellDegrees);
+    }
+
+    private static long key(long latCell, long lonCell) {
+        return (latCell << 32) ^ (lonCell & 0xFFFFFFFFL);
+    }
+
+    // Latest position of one tracker and the trackers currently near it
+    private static class Tracked {
+        Position position;
+        long cellKey;
+        final Set<String> near = new HashSet<>();
+    }
+}
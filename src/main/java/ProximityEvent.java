@@ -0,0 +1,29 @@
+/**
+ * Represents two trackers coming within the alert distance of each other, or moving apart again.
+ */
+public class ProximityEvent {
+    public enum Type {NEAR, APART}
+
+    public final String trackerId;      // The tracker whose update caused the event
+    public final String otherTrackerId; // The tracker it came near to or moved away from
+    public final Type type;             // Whether the pair came within the alert distance or left it
+    public final double distance;       // Distance between the pair in meters at the time of the event
+
+    /**
+     * Creates a ProximityEvent
+     */
+    public ProximityEvent(String trackerId, String otherTrackerId, Type type, double distance) {
+        this.trackerId = trackerId;
+        this.otherTrackerId = otherTrackerId;
+        this.type = type;
+        this.distance = distance;
+    }
+
+    /**
+     * Returns a String object representing this ProximityEvent's value.
+     * @return a string representation of the value of this object.
+     */
+    public String toString() {
+        return this.trackerId + " " + this.type + " " + this.otherTrackerId + " (" + this.distance + " m)";
+    }
+}
@@ -0,0 +1,109 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tells the display layer when its window cannot be seen, so it can skip Swing work while the pipeline behind it keeps
+ * running.
+ * <p>
+ * A component is worth updating only while it is showing and its window is not minimized; Swing reports the first
+ * through {@link Component#isShowing()}, the gate tracks the second. Displays such as {@link LiveLabel} keep the
+ * latest value while paused and register a resync action, which the gate runs for all of them in a single pass on the
+ * event dispatch thread whenever it is paused or resumed.
+ */
+public class RenderGate {
+    private final Set<Runnable> resyncs = new CopyOnWriteArraySet<>();
+    private final AtomicLong appliedUpdates = new AtomicLong();
+    private final AtomicLong withheldUpdates = new AtomicLong();
+    private volatile boolean paused = false;
+
+    /**
+     * Creates a gate that is only paused through {@link #setPaused(boolean)}, e.g. for displays without a frame.
+     */
+    public RenderGate() {
+    }
+
+    /**
+     * Creates a gate paused while the frame is minimized.
+     *
+     * @param frame Frame holding the displays.
+     */
+    public RenderGate(Frame frame) {
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowIconified(WindowEvent e) {
+                setPaused(true);
+            }
+
+            @Override
+            public void windowDeiconified(WindowEvent e) {
+                setPaused(false);
+            }
+        });
+    }
+
+    /**
+     * Pauses or resumes every display behind the gate, then runs their resync actions together.
+     *
+     * @param paused True to stop display updates.
+     */
+    public void setPaused(boolean paused) {
+        if (this.paused == paused) return;
+        this.paused = paused;
+        if (SwingUtilities.isEventDispatchThread()) resync();
+        else SwingUtilities.invokeLater(this::resync);
+    }
+
+    /**
+     * @return True while displays should not be updated.
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * @param component Component to check; call on the event dispatch thread.
+     * @return True if the component can currently be seen.
+     */
+    public boolean isVisible(Component component) {
+        return !paused && component.isShowing();
+    }
+
+    /**
+     * @return Display updates carried out.
+     */
+    public long getAppliedUpdates() {
+        return appliedUpdates.get();
+    }
+
+    /**
+     * @return Display updates skipped because the display could not be seen; the latest of them is applied on resume.
+     */
+    public long getWithheldUpdates() {
+        return withheldUpdates.get();
+    }
+
+    void register(Runnable resync) {
+        resyncs.add(resync);
+    }
+
+    void unregister(Runnable resync) {
+        resyncs.remove(resync);
+    }
+
+    void applied() {
+        appliedUpdates.incrementAndGet();
+    }
+
+    void withheld() {
+        withheldUpdates.incrementAndGet();
+    }
+
+    private void resync() {
+        for (Runnable resync : resyncs) resync.run();
+    }
+}
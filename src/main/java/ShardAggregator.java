@@ -0,0 +1,255 @@
+import nz.sodium.Stream;
+import nz.sodium.StreamSink;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Merges the output of {@link ShardWorker} processes into one view of the fleet.
+ * <p>
+ * A single JVM processes events one Sodium transaction at a time, so the fleet is split across worker processes by
+ * {@link ShardRing}, each running its own pipeline. Every worker connects to the aggregator over a local socket and
+ * streams one update per processed event: the tracker's position and the cumulative distance its pipeline computed.
+ * The aggregator reads each connection on its own thread and keeps the latest state of every tracker for as long as
+ * the worker owning it stays connected.
+ * <p>
+ * Events of the first {@code slots} trackers seen are also replayed into one stream per slot, so {@link GpsGUI} or any
+ * other consumer of GPS streams can show them as if they came from {@link GpsService}. Only those trackers go through
+ * Sodium here, which keeps the aggregator from becoming the single transaction lock the shards avoid.
+ * <p>
+ * Usage: <code>java ShardAggregator [max workers] [trackers] [seconds]</code> measures the throughput with 1, 2, 4 and
+ * so on up to the maximum number of worker processes, all on the local machine.
+ */
+public class ShardAggregator implements AutoCloseable {
+    static final int MAGIC = 0x53484152; // "SHAR", sent by a worker when it connects
+    static final byte TRACKER = 1;       // tracker number, ID: defines a number for the updates that follow
+    static final byte UPDATE = 2;        // tracker number, latitude, longitude, altitude in feet, total distance
+
+    private final ServerSocket server;
+    private final StreamSink<GpsEvent>[] sinks;
+    private final Map<String, Integer> slotOf = new ConcurrentHashMap<>();
+    private final AtomicInteger nextSlot = new AtomicInteger();
+    private final List<Connection> connections = new CopyOnWriteArrayList<>();
+    private final AtomicLong events = new AtomicLong();
+    private final ExecutorService readers = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "ShardAggregator reader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean closed = false;
+
+    /**
+     * Starts accepting workers on the loopback interface.
+     *
+     * @param port  TCP port to listen on, 0 for any free port.
+     * @param slots Number of trackers replayed into event streams.
+     * @throws IOException If the port cannot be bound.
+     */
+    @SuppressWarnings("unchecked")
+    public ShardAggregator(int port, int slots) throws IOException {
+        server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        sinks = new StreamSink[slots];
+        for (int i = 0; i < slots; i++) sinks[i] = new StreamSink<>();
+        readers.execute(this::accept);
+    }
+
+    /**
+     * @return The port workers connect to.
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * @return One stream per slot, carrying every event of the tracker given that slot.
+     */
+    public Stream<GpsEvent>[] getEventStreams() {
+        return sinks.clone();
+    }
+
+    /**
+     * @return Cumulative distance of every tracker of a connected worker, as computed by that worker.
+     */
+    public Map<String, Double> totalDistances() {
+        Map<String, Double> totals = new HashMap<>();
+        for (Connection connection : connections) connection.totals(totals);
+        return totals;
+    }
+
+    /**
+     * @return Updates received from all workers.
+     */
+    public long getEventCount() {
+        return events.get();
+    }
+
+    /**
+     * @return Number of workers currently connected.
+     */
+    public int getWorkerCount() {
+        return connections.size();
+    }
+
+    /**
+     * @param shard Shard index.
+     * @return Updates received from the worker of that shard, 0 if it is not connected.
+     */
+    public long getEventCount(int shard) {
+        long count = 0;
+        for (Connection connection : connections) if (connection.shard == shard) count += connection.events;
+        return count;
+    }
+
+    /**
+     * Stops accepting workers and disconnects the connected ones, which makes them stop.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            server.close();
+        } catch (IOException e) {
+            // the accept loop ends either way
+        }
+        for (Connection connection : connections) connection.close();
+        readers.shutdownNow();
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket socket = server.accept();
+                readers.execute(() -> read(socket));
+            } catch (IOException e) {
+                if (!closed) e.printStackTrace();
+            }
+        }
+    }
+
+    // Runs on the connection's reader thread
+    private void read(Socket socket) {
+        Connection connection = null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a shard worker: " + socket.getRemoteSocketAddress());
+            connection = new Connection(socket, in.readInt());
+            connections.add(connection);
+            if (closed) connection.close();
+
+            while (true) {
+                byte type = in.readByte();
+                if (type == TRACKER) {
+                    connection.define(in.readInt(), in.readUTF());
+                } else if (type == UPDATE) {
+                    connection.update(in.readInt(), in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble());
+                    events.incrementAndGet();
+                } else {
+                    throw new IOException("Unknown frame " + type + " from shard " + connection.shard);
+                }
+            }
+        } catch (IOException e) {
+            // the worker finished, died or sent something else: either way its state is no longer current
+        } finally {
+            if (connection != null) connections.remove(connection);
+        }
+    }
+
+    /**
+     * State received from one worker: its trackers by the numbers it gave them.
+     */
+    private class Connection {
+        final Socket socket;
+        final int shard;
+        volatile long events = 0;
+        private String[] names = new String[64];
+        private int[] indices = new int[64];    // index of each tracker in TrackerRegistry.DEFAULT
+        private int[] slots = new int[64];      // stream slot of each tracker, -1 if none
+        private double[] distances = new double[64];
+
+        Connection(Socket socket, int shard) {
+            this.socket = socket;
+            this.shard = shard;
+        }
+
+        synchronized void define(int number, String trackerId) {
+            if (number >= names.length) {
+                int capacity = Math.max(number + 1, names.length * 2);
+                names = Arrays.copyOf(names, capacity);
+                indices = Arrays.copyOf(indices, capacity);
+                slots = Arrays.copyOf(slots, capacity);
+                distances = Arrays.copyOf(distances, capacity);
+            }
+            names[number] = trackerId;
+            indices[number] = TrackerRegistry.DEFAULT.intern(trackerId);
+            slots[number] = slotOf.computeIfAbsent(trackerId, id -> {
+                int slot = nextSlot.getAndUpdate(n -> n < sinks.length ? n + 1 : n);
+                return slot < sinks.length ? slot : -1;
+            });
+        }
+
+        void update(int number, double latitude, double longitude, double altitude, double distance) {
+            int slot;
+            int index;
+            synchronized (this) {
+                distances[number] = distance;
+                slot = slots[number];
+                index = indices[number];
+                events++;
+            }
+            if (slot >= 0) sinks[slot].send(new GpsEvent(index, latitude, longitude, altitude));
+        }
+
+        synchronized void totals(Map<String, Double> totals) {
+            for (int i = 0; i < names.length; i++) if (names[i] != null) totals.put(names[i], distances[i]);
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // the reader ends either way
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int maxWorkers = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int trackers = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        double single = 0;
+        for (int workers = 1; workers <= maxWorkers; workers = workers == maxWorkers ? workers + 1 : Math.min(maxWorkers, workers * 2)) {
+            double rate = measure(workers, trackers, seconds);
+            if (workers == 1) single = rate;
+            System.out.printf("ShardAggregator: %d workers, %,d trackers: %,.0f events/s (%.2fx)%n", workers, trackers, rate, rate / single);
+        }
+        System.out.printf("on %d cores%n", Runtime.getRuntime().availableProcessors());
+    }
+
+    // Events per second merged from the given number of worker processes, after a warm-up
+    static double measure(int workers, int trackers, int seconds) throws Exception {
+        List<Process> processes = new ArrayList<>();
+        try (ShardAggregator aggregator = new ShardAggregator(0, 0)) {
+            for (int shard = 0; shard < workers; shard++) {
+                processes.add(ShardWorker.launch(aggregator.getPort(), shard, workers, trackers, 0));
+            }
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (aggregator.getWorkerCount() < workers && System.currentTimeMillis() < deadline) Thread.sleep(10);
+            Thread.sleep(2000); // JIT warm-up in every worker
+
+            long before = aggregator.getEventCount();
+            long start = System.nanoTime();
+            Thread.sleep(seconds * 1000L);
+            return (aggregator.getEventCount() - before) / ((System.nanoTime() - start) / 1e9);
+        } finally {
+            for (Process process : processes) {
+                if (!process.waitFor(5, TimeUnit.SECONDS)) process.destroyForcibly();
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+import java.util.Arrays;
+
+/**
+ * Consistent hashing of tracker IDs onto shards, so every event of a tracker is processed by the same worker and adding
+ * a shard only moves the trackers it takes over.
+ * <p>
+ * Each shard is placed on a 32-bit ring at {@value #DEFAULT_VIRTUAL_NODES} points by default; a tracker belongs to the
+ * shard of the first point at or after its own hash, found by binary search. With enough points per shard, trackers
+ * spread evenly, and going from n to n + 1 shards moves about 1 / (n + 1) of them.
+ */
+public class ShardRing {
+    static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private final int shards;
+    private final int[] points; // sorted hashes
+    private final int[] owners; // shard of each point
+
+    /**
+     * @param shards Number of shards.
+     */
+    public ShardRing(int shards) {
+        this(shards, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * @param shards       Number of shards.
+     * @param virtualNodes Points per shard on the ring.
+     */
+    public ShardRing(int shards, int virtualNodes) {
+        if (shards < 1) throw new IllegalArgumentException("Number of shards must be positive: " + shards);
+        if (virtualNodes < 1) throw new IllegalArgumentException("Number of virtual nodes must be positive: " + virtualNodes);
+        this.shards = shards;
+
+        // Sort (hash, shard) pairs packed into longs; the hash in the high half keeps its signed order
+        long[] packed = new long[shards * virtualNodes];
+        for (int s = 0; s < shards; s++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                int hash = mix(s * 0x9E3779B9 + v * 0x85EBCA6B + 1);
+                packed[s * virtualNodes + v] = ((long) hash << 32) | s;
+            }
+        }
+        Arrays.sort(packed);
+        points = new int[packed.length];
+        owners = new int[packed.length];
+        for (int i = 0; i < packed.length; i++) {
+            points[i] = (int) (packed[i] >> 32);
+            owners[i] = (int) packed[i];
+        }
+    }
+
+    /**
+     * @param trackerId Tracker to place.
+     * @return Index of the shard processing the tracker, from 0 to the number of shards - 1.
+     */
+    public int shardOf(String trackerId) {
+        int hash = hash(trackerId);
+        int low = 0, high = points.length; // first point at or after the hash lies in [low, high]
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (points[mid] < hash) low = mid + 1;
+            else high = mid;
+        }
+        return owners[low == points.length ? 0 : low]; // past the last point, the ring wraps round
+    }
+
+    /**
+     * @return Number of shards.
+     */
+    public int getShards() {
+        return shards;
+    }
+
+    // FNV-1a over the characters, then mixed: String.hashCode alone clusters IDs that only differ in a suffix
+    static int hash(String trackerId) {
+        int hash = 0x811C9DC5;
+        for (int i = 0; i < trackerId.length(); i++) {
+            hash ^= trackerId.charAt(i);
+            hash *= 0x01000193;
+        }
+        return mix(hash);
+    }
+
+    // Murmur3 finalizer
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
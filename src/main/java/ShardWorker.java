@@ -0,0 +1,196 @@
+import nz.sodium.Cell;
+import nz.sodium.StreamSink;
+import nz.sodium.Unit;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.*;
+
+/**
+ * One shard of a sharded deployment: processes the trackers {@link ShardRing} assigns to it through its own
+ * {@link EventProcessor} pipeline, and streams the results to a {@link ShardAggregator}.
+ * <p>
+ * Each worker runs in its own process, so shards do not share a Sodium transaction lock. The pipeline is the filtered
+ * display of the GUI over the whole world, with its distance and motion state, driven by a {@link ManualClock} that
+ * moves one second per round of events. The load is synthetic: every owned tracker takes one step of a random walk per
+ * round, seeded by its tracker number so that the walks do not depend on how the fleet is sharded.
+ * <p>
+ * After each event, the tracker's position and cumulative distance are written to the aggregator, the tracker ID only
+ * once. The worker stops when its rounds are done or the aggregator disconnects.
+ * <p>
+ * Usage: <code>java ShardWorker &lt;aggregator port&gt; &lt;shard&gt; &lt;shards&gt; &lt;trackers&gt; [events/s, 0 for
+ * no limit]</code>
+ */
+public class ShardWorker implements AutoCloseable {
+    private static final long FLUSH_INTERVAL = 50; // longest time an update waits in the output buffer, in milliseconds
+
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final ManualClock clock = new ManualClock(0L);
+    private final PipelineHandle handle = new PipelineHandle();
+    private final TrackerStateStore states = new TrackerStateCache(EventProcessor.MAX_TRACKERS, EventProcessor.TRACKER_IDLE_TIMEOUT);
+    private final String[] ids;              // owned trackers
+    private final int[] indices;             // their indices in TrackerRegistry.DEFAULT
+    private final StreamSink<GpsEvent>[] sinks;
+    private final Random[] walks;
+    private final double[] latitudes;
+    private final double[] longitudes;
+
+    /**
+     * Connects to the aggregator and builds the pipeline of the trackers this shard owns.
+     *
+     * @param port     Port of the aggregator on the local machine.
+     * @param shard    Index of this shard.
+     * @param ring     Assignment of trackers to shards.
+     * @param trackers Size of the whole fleet, tracker IDs being "Tracker0" and so on.
+     * @throws IOException If the aggregator cannot be reached.
+     */
+    @SuppressWarnings("unchecked")
+    public ShardWorker(int port, int shard, ShardRing ring, int trackers) throws IOException {
+        List<Integer> owned = new ArrayList<>();
+        for (int t = 0; t < trackers; t++) if (ring.shardOf("Tracker" + t) == shard) owned.add(t);
+        ids = new String[owned.size()];
+        indices = new int[owned.size()];
+        sinks = new StreamSink[owned.size()];
+        walks = new Random[owned.size()];
+        latitudes = new double[owned.size()];
+        longitudes = new double[owned.size()];
+
+        List<Cell<Optional<Double>>> world = Arrays.asList(new Cell<>(Optional.of(90.0)), new Cell<>(Optional.of(-90.0)),
+                new Cell<>(Optional.of(180.0)), new Cell<>(Optional.of(-180.0)));
+        StreamSink<Unit> apply = new StreamSink<>();
+        Cell<Long> timer = clock.time();
+        Cell<Long> ticks = clock.ticks(EventProcessor.CLOCK_PERIOD, handle);
+        for (int i = 0; i < ids.length; i++) {
+            int t = owned.get(i);
+            ids[i] = "Tracker" + t;
+            indices[i] = TrackerRegistry.DEFAULT.intern(ids[i]);
+            sinks[i] = new StreamSink<>();
+            walks[i] = new Random(t);
+            latitudes[i] = 39.9 + walks[i].nextDouble() * 0.1;
+            longitudes[i] = 116.3 + walks[i].nextDouble() * 0.1;
+            EventProcessor.filteredEvents(world, apply, 1000 * 60 * 5, new TrackerHub.Feed(sinks[i], timer), timer, ticks,
+                    states, null, null, null, handle);
+        }
+        apply.send(Unit.UNIT);
+
+        socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setTcpNoDelay(true);
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+        out.writeInt(ShardAggregator.MAGIC);
+        out.writeInt(shard);
+        for (int i = 0; i < ids.length; i++) {
+            out.writeByte(ShardAggregator.TRACKER);
+            out.writeInt(i);
+            out.writeUTF(ids[i]);
+        }
+        out.flush();
+    }
+
+    /**
+     * Sends rounds of events through the pipeline, one event per owned tracker and round.
+     *
+     * @param rounds Rounds to run, 0 to run until the aggregator disconnects.
+     * @param rate   Events per second at most, 0 for no limit.
+     * @return Events processed.
+     */
+    public long run(long rounds, int rate) {
+        long sent = 0;
+        if (ids.length == 0) return sent;
+        long start = System.nanoTime();
+        long lastFlush = System.currentTimeMillis();
+        try {
+            for (long round = 0; rounds == 0 || round < rounds; round++) {
+                for (int i = 0; i < ids.length; i++) {
+                    latitudes[i] += (walks[i].nextDouble() - 0.5) * 1e-3;
+                    longitudes[i] += (walks[i].nextDouble() - 0.5) * 1e-3;
+                    double altitude = 100 + walks[i].nextInt(50);
+                    sinks[i].send(new GpsEvent(indices[i], latitudes[i], longitudes[i], altitude));
+
+                    out.writeByte(ShardAggregator.UPDATE);
+                    out.writeInt(i);
+                    out.writeDouble(latitudes[i]);
+                    out.writeDouble(longitudes[i]);
+                    out.writeDouble(altitude);
+                    Double total = states.totalDistance(indices[i]);
+                    out.writeDouble(total == null ? 0.0 : total);
+                    sent++;
+                }
+                clock.advance(1000);
+
+                long now = System.currentTimeMillis();
+                if (now - lastFlush >= FLUSH_INTERVAL) {
+                    out.flush();
+                    lastFlush = now;
+                }
+                if (rate > 0) {
+                    long ahead = sent * 1000 / rate - (System.nanoTime() - start) / 1_000_000;
+                    if (ahead > 0) Thread.sleep(ahead);
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            // the aggregator closed the connection
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return sent;
+    }
+
+    /**
+     * @return Number of trackers this shard owns.
+     */
+    public int getTrackerCount() {
+        return ids.length;
+    }
+
+    /**
+     * @return The distance and motion state of the owned trackers.
+     */
+    public TrackerStateStore getTrackerStates() {
+        return states;
+    }
+
+    /**
+     * Releases the pipeline and closes the connection.
+     */
+    @Override
+    public void close() {
+        handle.close();
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // nothing more to send
+        }
+    }
+
+    /**
+     * Starts a worker in a new JVM on the same class path.
+     *
+     * @return The worker process, which ends once the aggregator disconnects.
+     */
+    static Process launch(int port, int shard, int shards, int trackers, int rate) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "ShardWorker",
+                String.valueOf(port), String.valueOf(shard), String.valueOf(shards), String.valueOf(trackers), String.valueOf(rate))
+                .inheritIO().start();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.out.println("Usage: java ShardWorker <aggregator port> <shard> <shards> <trackers> [events/s]");
+            return;
+        }
+        int shard = Integer.parseInt(args[1]);
+        ShardRing ring = new ShardRing(Integer.parseInt(args[2]));
+        int rate = args.length > 4 ? Integer.parseInt(args[4]) : 0;
+        try (ShardWorker worker = new ShardWorker(Integer.parseInt(args[0]), shard, ring, Integer.parseInt(args[3]))) {
+            long sent = worker.run(0, rate);
+            System.out.printf("ShardWorker %d: %,d events of %d trackers%n", shard, sent, worker.getTrackerCount());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+import nz.sodium.Cell;
+import nz.sodium.StreamSink;
+import nz.sodium.time.MillisecondsTimerSystem;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The wall clock. Event timestamps come from a Sodium {@link MillisecondsTimerSystem}, and every
+ * {@link #ticks(long, PipelineHandle)} cell is refreshed by a task on a single scheduler thread per clock, started on
+ * first use. Closing a pipeline handle cancels its tasks; closing the clock stops the thread.
+ */
+public class SystemClock implements GpsClock, AutoCloseable {
+    /**
+     * The clock of the pipeline constructions that take neither a clock nor a handle, so their ticks all share one
+     * thread instead of each starting its own. It is never closed.
+     */
+    static final SystemClock SHARED = new SystemClock();
+
+    private final Cell<Long> time = new MillisecondsTimerSystem().time;
+    private ScheduledExecutorService scheduler; // null until the first ticks, and again once closed
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public Cell<Long> time() {
+        return time;
+    }
+
+    @Override
+    public synchronized Cell<Long> ticks(long periodMillis, PipelineHandle owner) {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "SystemClock");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        StreamSink<Long> sysTimeStream = new StreamSink<>();
+        ScheduledFuture<?> task = scheduler.scheduleAtFixedRate(() -> {
+            long currentTime = System.currentTimeMillis();
+            sysTimeStream.send(currentTime); // Push current system time into the stream
+        }, 0, periodMillis, TimeUnit.MILLISECONDS);
+        owner.onClose(() -> task.cancel(false));
+
+        return sysTimeStream.hold(System.currentTimeMillis());
+    }
+
+    /**
+     * Stops the scheduler thread and every tick still running on it. The clock can still be used afterwards, and
+     * starts a new thread if it is asked for ticks again.
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) scheduler.shutdownNow();
+        scheduler = null;
+    }
+}
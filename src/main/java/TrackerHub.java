@@ -0,0 +1,162 @@
+import nz.sodium.Cell;
+import nz.sodium.Stream;
+import swidgets.SButton;
+
+import java.util.*;
+
+/**
+ * Ingestion and processing shared by every view of the same trackers, so that opening another window with its own
+ * range or distance window does not replay the data, start more clocks or clash over distance state.
+ * <p>
+ * The hub is built once over the GPS streams. It holds the parts that do not depend on a view: the latest event of
+ * every tracker as cells, one clock tick for all time-based displays, the simplified tracker table, the current event
+ * and the trajectories recorded over the last {@value #TRAJECTORY_RETENTION} milliseconds. Each {@link TrackerView} opened on it only adds its own range filter and the
+ * distance and motion state of the events that pass it. Closing a view releases just that view; closing the hub
+ * releases everything.
+ */
+public class TrackerHub implements AutoCloseable {
+    static final long TRAJECTORY_RETENTION = 1000 * 60 * 60 * 24; // the history query asks for times of the current day
+
+    private final Stream<GpsEvent>[] gpsEvents;
+    private final GpsClock clock;
+    private final PipelineHandle handle = new PipelineHandle();
+    private final Cell<Long> ticks;
+    private final List<Feed> feeds = new ArrayList<>();
+    private final List<List<Cell<String>>> simplifiedTrackers;
+    private final Cell<String> currentTracker;
+    private final TrajectoryStore trajectoryStore = new TrajectoryStore(TRAJECTORY_RETENTION);
+    private final Set<TrackerView> views = Collections.synchronizedSet(new LinkedHashSet<>());
+
+    /**
+     * Creates a hub on the wall clock, which it closes with itself.
+     *
+     * @param gpsEvents Array of streams, each representing continuous GPS event data for individual trackers.
+     */
+    public TrackerHub(Stream<GpsEvent>[] gpsEvents) {
+        this(gpsEvents, new SystemClock());
+        handle.add((SystemClock) clock);
+    }
+
+    /**
+     * @param gpsEvents Array of streams, each representing continuous GPS event data for individual trackers.
+     * @param clock     Clock timing every view; left open when the hub is closed.
+     */
+    @SuppressWarnings("unchecked")
+    public TrackerHub(Stream<GpsEvent>[] gpsEvents, GpsClock clock) {
+        this.clock = clock;
+        this.gpsEvents = new Stream[gpsEvents.length];
+        for (int i = 0; i < gpsEvents.length; i++) this.gpsEvents[i] = handle.gate(gpsEvents[i]);
+
+        Cell<Long> timer = clock.time();
+        for (Stream<GpsEvent> gpsEvent : this.gpsEvents) feeds.add(new Feed(gpsEvent, timer));
+        ticks = clock.ticks(EventProcessor.CLOCK_PERIOD, handle);
+        simplifiedTrackers = EventProcessor.simplifiedTrackers(this.gpsEvents);
+        currentTracker = gpsEvents.length == 0 ? new Cell<>("") : EventProcessor.currentTracker(this.gpsEvents, clock, handle);
+        EventProcessor.recordTrajectories(this.gpsEvents, trajectoryStore, clock, handle);
+    }
+
+    /**
+     * Opens a filtered view with its own range and distance window.
+     *
+     * @param inputVals        Range values of the view: maximum and minimum latitude, maximum and minimum longitude.
+     * @param setButton        Button applying the range values.
+     * @param windowSizeMillis Time interval (in milliseconds) used to calculate cumulative distance.
+     * @param exporter         Exporter receiving the events that pass the view's range, or null.
+     * @return The view, to be closed once it is no longer shown.
+     */
+    public TrackerView openView(List<Cell<Optional<Double>>> inputVals, SButton setButton, long windowSizeMillis, EventExporter exporter) {
+        TrackerView view = new TrackerView(this, inputVals, setButton, windowSizeMillis, exporter);
+        views.add(view);
+        return view;
+    }
+
+    /**
+     * @return The GPS streams as seen by the views, silent once the hub is closed.
+     */
+    public Stream<GpsEvent>[] getEventStreams() {
+        return gpsEvents.clone();
+    }
+
+    /**
+     * @return Cells of tracker IDs, latitudes and longitudes, as {@link EventProcessor#simplifiedTrackers} returns.
+     */
+    public List<List<Cell<String>>> getSimplifiedTrackers() {
+        return simplifiedTrackers;
+    }
+
+    /**
+     * @return The latest event of any tracker, cleared after 3 seconds, as {@link EventProcessor#currentTracker} returns.
+     */
+    public Cell<String> getCurrentTracker() {
+        return currentTracker;
+    }
+
+    /**
+     * @return Trajectories of every tracker recorded over the last day.
+     */
+    public TrajectoryStore getTrajectoryStore() {
+        return trajectoryStore;
+    }
+
+    /**
+     * @return Number of views open on the hub.
+     */
+    public int getViewCount() {
+        return views.size();
+    }
+
+    /**
+     * Closes every view, then stops the shared processing.
+     */
+    @Override
+    public void close() {
+        List<TrackerView> open;
+        synchronized (views) {
+            open = new ArrayList<>(views);
+        }
+        for (TrackerView view : open) view.close();
+        handle.close();
+    }
+
+    GpsClock getClock() {
+        return clock;
+    }
+
+    List<Feed> getFeeds() {
+        return feeds;
+    }
+
+    Cell<Long> getTicks() {
+        return ticks;
+    }
+
+    void closed(TrackerView view) {
+        views.remove(view);
+    }
+
+    /**
+     * Latest event of one tracker as cells, with altitude in meters and stamped with the time it was received. Built
+     * once per tracker and read by every view.
+     */
+    static class Feed {
+        private static final GpsEvent NO_EVENT = new GpsEvent("", 0.0, 0.0, 0.0);
+
+        final Stream<GpsEvent> events; // every event, for what must happen once per event
+        final Cell<GpsEvent> event;    // the latest event itself, for its tracker index
+        final Cell<String> id;
+        final Cell<Double> latitude;
+        final Cell<Double> longitude;
+        final Cell<Double> altitude;
+        final Cell<Long> time;
+
+        Feed(Stream<GpsEvent> gpsEvent, Cell<Long> timer) {
+            events = gpsEvent;
+            event = gpsEvent.hold(NO_EVENT);
+            id = gpsEvent.map(ev -> ev.name).hold("");
+            latitude = gpsEvent.map(ev -> ev.latitude).hold(0.0);
+            longitude = gpsEvent.map(ev -> ev.longitude).hold(0.0);
+            altitude = gpsEvent.map(ev -> ev.altitude * EventProcessor.FEET_TO_METER).hold(0.0); // convert feet to meter
+            time = gpsEvent.snapshot(timer).hold(0L); // event occurs time
+        }
+    }
+}
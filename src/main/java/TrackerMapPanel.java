@@ -0,0 +1,481 @@
+import nz.sodium.Stream;
+
+import javax.swing.*;
+import javax.swing.Timer;
+import java.awt.*;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Map panel drawing the recent trail of every tracker, rendered incrementally.
+ * <p>
+ * Trails are painted into cached {@value #TILE_SIZE}-pixel tiles of an equirectangular projection instead of being
+ * redrawn on every event:
+ * <ul>
+ *     <li><b>Incremental painting:</b> GPS events are queued from any thread and drained by a Swing timer at most
+ *     {@value #FRAME_RATE} times per second. Each new segment is painted once into the cached tiles it crosses, on
+ *     every zoom level, and only the screen region covered by the new segments and tracker markers is repainted.</li>
+ *     <li><b>Tile reuse:</b> tiles are cached per zoom level, so panning only draws cached images, and returning to a
+ *     zoom level reuses the tiles already built for it. A missing tile is built from the stored trails the first
+ *     time it becomes visible. The cache holds enough tiles to cover the panel on {@value #CACHED_ZOOM_LEVELS} zoom
+ *     levels, with a one-tile margin on each side; the least recently drawn tiles are dropped beyond that.</li>
+ *     <li><b>Bounded trails:</b> each tracker keeps its last {@value #TRAIL_LENGTH} points. When a segment falls off
+ *     a trail, the tiles it crossed are dropped and rebuilt lazily without it. Trackers are bounded like
+ *     {@link TrackerStateCache}: a tracker idle for longer than the timeout, or the least recently updated one once
+ *     the maximum is reached, is dropped together with its trail.</li>
+ *     <li><b>Paused while hidden:</b> while the map cannot be seen, e.g. on an unselected tab or in a minimized
+ *     window, the timer slows to once every {@value #HIDDEN_PERIOD} milliseconds and only keeps the trails current.
+ *     Nothing is painted; the tiles are rebuilt from the trails once the map shows again.</li>
+ * </ul>
+ * The timer only runs while the map is part of a displayable hierarchy: it starts in {@link #addNotify()} and stops in
+ * {@link #removeNotify()}, so a closed window leaves no timer holding on to its map.
+
+ * Drag to pan, use the mouse wheel to zoom.
+ */
+public class TrackerMapPanel extends JPanel {
+    static final int TILE_SIZE = 256;
+    static final int FRAME_RATE = 60;
+    static final int TRAIL_LENGTH = 200; // points kept per tracker
+    static final int HIDDEN_PERIOD = 1000; // milliseconds between drains while the map cannot be seen
+    static final int CACHED_ZOOM_LEVELS = 2; // the level shown and the one just left
+    private static final int MIN_CACHED_TILES = 16;
+    private static final int MIN_ZOOM = 2;
+    private static final int MAX_ZOOM = 20;
+    private static final int MARKER_SIZE = 6;
+
+    private final Queue<Sample> pending = new ConcurrentLinkedQueue<>(); // events waiting for the next frame
+    // Access-ordered, so the eldest trail is the least recently updated; only touched on the event dispatch thread
+    private final LinkedHashMap<String, Trail> trails = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Long, BufferedImage> tiles = new LinkedHashMap<Long, BufferedImage>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage> eldest) {
+            return size() > maxCachedTiles(); // least recently drawn tiles are rebuilt when needed again
+        }
+    };
+    private final RenderGate gate;
+    private final GpsClock clock;
+    private final int maxTrackers;
+    private final long idleTimeoutMillis;
+    private final Timer frameTimer;
+    private final Runnable resync = this::visibilityChanged;
+    private boolean tilesStale = false; // trails changed while hidden without painting into the tiles
+    private int zoom = 12;
+    private double viewX = Double.NaN; // world pixel at the panel's top-left corner, set by the first event
+    private double viewY = Double.NaN;
+
+    public TrackerMapPanel() {
+        this(new RenderGate());
+    }
+
+    /**
+     * @param gate Gate telling whether the map's window can be seen.
+     */
+    public TrackerMapPanel(RenderGate gate) {
+        this(gate, SystemClock.SHARED, EventProcessor.MAX_TRACKERS, EventProcessor.TRACKER_IDLE_TIMEOUT);
+    }
+
+    /**
+     * @param gate              Gate telling whether the map's window can be seen.
+     * @param clock             Clock deciding when a tracker is idle.
+     * @param maxTrackers       Maximum number of trackers whose trail is kept at once.
+     * @param idleTimeoutMillis Trackers without an event for longer than this (in milliseconds) are dropped.
+     */
+    public TrackerMapPanel(RenderGate gate, GpsClock clock, int maxTrackers, long idleTimeoutMillis) {
+        if (maxTrackers < 1) throw new IllegalArgumentException("Maximum trackers must be positive: " + maxTrackers);
+        if (idleTimeoutMillis < 0) throw new IllegalArgumentException("Idle timeout must not be negative: " + idleTimeoutMillis);
+        this.gate = gate;
+        this.clock = clock;
+        this.maxTrackers = maxTrackers;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        setBackground(Color.WHITE);
+        setOpaque(true);
+
+        frameTimer = new Timer(HIDDEN_PERIOD, e -> drainPending()); // sped up once the map shows
+        addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0) visibilityChanged();
+        });
+
+        MouseAdapter navigation = new MouseAdapter() {
+            private Point dragFrom;
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                dragFrom = e.getPoint();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (dragFrom == null || Double.isNaN(viewX)) return;
+                viewX -= e.getX() - dragFrom.x;
+                viewY -= e.getY() - dragFrom.y;
+                dragFrom = e.getPoint();
+                repaint();
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                zoomTo(zoom - e.getWheelRotation(), e.getX(), e.getY());
+            }
+        };
+        addMouseListener(navigation);
+        addMouseMotionListener(navigation);
+        addMouseWheelListener(navigation);
+    }
+
+    /**
+     * Feeds the map from GPS streams. Events may arrive on any thread; they are drawn on the next frame.
+     *
+     * @param gpsEvents Array of streams, each representing continuous GPS event data for individual trackers.
+     */
+    public void listenTo(Stream<GpsEvent>[] gpsEvents) {
+        listenTo(gpsEvents, new PipelineHandle());
+    }
+
+    /**
+     * Same as {@link #listenTo(Stream[])}, until the handle is closed.
+     *
+     * @param gpsEvents Array of streams, each representing continuous GPS event data for individual trackers.
+     * @param handle    Handle releasing the listeners.
+     */
+    public void listenTo(Stream<GpsEvent>[] gpsEvents, PipelineHandle handle) {
+        for (Stream<GpsEvent> evStream : gpsEvents) {
+            handle.add(evStream.listen(ev -> pending.add(new Sample(ev.name, ev.latitude, ev.longitude))));
+        }
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        if (frameTimer.isRunning()) return;
+        frameTimer.start();
+        gate.register(resync);
+    }
+
+    @Override
+    public void removeNotify() {
+        if (frameTimer.isRunning()) {
+            frameTimer.stop();
+            gate.unregister(resync);
+        }
+        super.removeNotify();
+    }
+
+    // True while the frame timer drains events, i.e. while the map is displayable
+    boolean isTicking() {
+        return frameTimer.isRunning();
+    }
+
+    // Changes the zoom level, keeping the given panel point fixed
+    void zoomTo(int level, int x, int y) {
+        int newZoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, level));
+        if (newZoom == zoom || Double.isNaN(viewX)) return;
+        double scale = Math.pow(2, newZoom - zoom);
+        viewX = (viewX + x) * scale - x;
+        viewY = (viewY + y) * scale - y;
+        zoom = newZoom;
+        repaint();
+    }
+
+    // Runs on the event dispatch thread whenever the map is shown, hidden, minimized or restored
+    private void visibilityChanged() {
+        boolean visible = gate.isVisible(this);
+        frameTimer.setDelay(visible ? 1000 / FRAME_RATE : HIDDEN_PERIOD);
+        if (!visible) return;
+
+        // Resynchronise in one batch: rebuild the tiles lazily from the current trails, then apply what is queued
+        if (tilesStale) {
+            tiles.clear();
+            tilesStale = false;
+        }
+        drainPending();
+        repaint();
+    }
+
+    // Apply every queued event as one batch: extend trails, paint new segments into tiles, repaint the dirty region.
+    // While the map cannot be seen, only the trails are extended.
+    void drainPending() {
+        boolean visible = gate.isVisible(this);
+        long now = clock.currentTimeMillis();
+        evictIdle(now, visible);
+        if (pending.isEmpty()) return;
+        Set<Integer> zooms = visible ? zoomsInCache() : Collections.emptySet();
+
+        GpsFlightEvents.RenderBatch batch = new GpsFlightEvents.RenderBatch();
+        batch.begin();
+        int count = 0;
+        String lastTracker = null;
+        Rectangle dirty = null;
+        Sample sample;
+        while ((sample = pending.poll()) != null) {
+            count++;
+            lastTracker = sample.trackerId;
+            if (Double.isNaN(viewX)) centerOn(sample.latitude, sample.longitude);
+
+            Trail trail = trails.computeIfAbsent(sample.trackerId, Trail::new); // moves it to the most recent end
+            trail.lastSeen = now;
+            if (trails.size() > maxTrackers) evict(trails.values().iterator().next(), visible);
+            double[] last = trail.points.peekLast();
+            double[] point = {sample.latitude, sample.longitude};
+            trail.points.addLast(point);
+
+            // Retire the oldest segment so its tiles are rebuilt without it
+            if (trail.points.size() > TRAIL_LENGTH) {
+                double[] first = trail.points.removeFirst();
+                if (visible) invalidateTiles(first, trail.points.peekFirst());
+            }
+            if (!visible) {
+                tilesStale = true;
+                trail.marker = point;
+                continue;
+            }
+
+            if (last != null) paintSegment(zooms, trail.color, last, point);
+            dirty = union(dirty, segmentBounds(last == null ? point : last, point));
+            if (trail.marker != null) dirty = union(dirty, segmentBounds(trail.marker, trail.marker));
+            trail.marker = point;
+        }
+
+        if (dirty != null) repaint(dirty);
+        if (batch.shouldCommit()) {
+            batch.eventCount = count;
+            batch.trackerId = lastTracker;
+            batch.commit();
+        }
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (Double.isNaN(viewX)) {
+            g.setColor(Color.GRAY);
+            g.drawString("Waiting for GPS events...", 10, 20);
+            return;
+        }
+
+        // Draw only the cached tiles overlapping the clip
+        Rectangle clip = g.getClipBounds() != null ? g.getClipBounds() : new Rectangle(getSize());
+        long firstTx = (long) Math.floor((viewX + clip.x) / TILE_SIZE);
+        long firstTy = (long) Math.floor((viewY + clip.y) / TILE_SIZE);
+        long lastTx = (long) Math.floor((viewX + clip.x + clip.width) / TILE_SIZE);
+        long lastTy = (long) Math.floor((viewY + clip.y + clip.height) / TILE_SIZE);
+        long tileCount = 1L << zoom;
+        for (long ty = Math.max(0, firstTy); ty <= Math.min(tileCount - 1, lastTy); ty++) {
+            for (long tx = Math.max(0, firstTx); tx <= Math.min(2 * tileCount - 1, lastTx); tx++) {
+                BufferedImage tile = tile(tx, ty);
+                g.drawImage(tile, (int) Math.round(tx * TILE_SIZE - viewX), (int) Math.round(ty * TILE_SIZE - viewY), null);
+            }
+        }
+
+        // Markers move on every event, so they are drawn over the tiles rather than cached in them
+        for (Trail trail : trails.values()) {
+            if (trail.marker == null) continue;
+            int x = (int) Math.round(worldX(trail.marker[1]) - viewX);
+            int y = (int) Math.round(worldY(trail.marker[0]) - viewY);
+            if (!clip.intersects(x - MARKER_SIZE, y - MARKER_SIZE, 2 * MARKER_SIZE, 2 * MARKER_SIZE)) continue;
+            g.setColor(trail.color);
+            g.fillOval(x - MARKER_SIZE / 2, y - MARKER_SIZE / 2, MARKER_SIZE, MARKER_SIZE);
+        }
+    }
+
+    // Drop trails from the least recently updated end until one is still active
+    private void evictIdle(long now, boolean visible) {
+        while (!trails.isEmpty()) {
+            Trail eldest = trails.values().iterator().next();
+            if (now - eldest.lastSeen <= idleTimeoutMillis) break;
+            evict(eldest, visible);
+        }
+    }
+
+    // Remove a trail and its marker, dropping the tiles it was painted into so they are rebuilt without it
+    private void evict(Trail trail, boolean visible) {
+        trails.remove(trail.trackerId);
+        if (!visible) {
+            tilesStale = true;
+            return;
+        }
+        double[] last = null;
+        for (double[] point : trail.points) {
+            if (last != null) invalidateTiles(last, point);
+            last = point;
+        }
+        if (trail.marker != null) repaint(segmentBounds(trail.marker, trail.marker));
+    }
+
+    /**
+     * @return Number of trackers whose trail is kept.
+     */
+    public int getTrailCount() {
+        return trails.size();
+    }
+
+    // Returns the cached tile, building it from the stored trails if it is missing
+    private BufferedImage tile(long tx, long ty) {
+        long key = tileKey(zoom, tx, ty);
+        BufferedImage tile = tiles.get(key);
+        if (tile != null) return tile;
+
+        tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        tiles.put(key, tile);
+        Rectangle bounds = new Rectangle((int) (tx * TILE_SIZE), (int) (ty * TILE_SIZE), TILE_SIZE, TILE_SIZE);
+        for (Trail trail : trails.values()) {
+            double[] last = null;
+            for (double[] point : trail.points) {
+                if (last != null && worldBounds(last, point).intersects(bounds)) {
+                    drawInto(tile, zoom, tx, ty, trail.color, last, point);
+                }
+                last = point;
+            }
+        }
+        return tile;
+    }
+
+    // Paint a new segment into every cached tile it crosses, on every zoom level with cached tiles, so returning to a
+    // level shows it; tiles not cached yet will include it when built
+    private void paintSegment(Set<Integer> zooms, Color color, double[] from, double[] to) {
+        for (int z : zooms) {
+            Rectangle bounds = worldBounds(from, to, z);
+            for (long ty = bounds.y / TILE_SIZE; ty <= (bounds.y + bounds.height) / TILE_SIZE; ty++) {
+                for (long tx = bounds.x / TILE_SIZE; tx <= (bounds.x + bounds.width) / TILE_SIZE; tx++) {
+                    BufferedImage tile = tiles.get(tileKey(z, tx, ty));
+                    if (tile != null) drawInto(tile, z, tx, ty, color, from, to);
+                }
+            }
+        }
+    }
+
+    // Drop the tiles a retired segment crossed, on every zoom level with cached tiles, so they are rebuilt without it
+    private void invalidateTiles(double[] from, double[] to) {
+        if (to == null) return;
+        for (int z : zoomsInCache()) {
+            double scale = TILE_SIZE * Math.pow(2, z);
+            long x1 = (long) ((Math.min(from[1], to[1]) + 180.0) / 360.0 * 2 * scale) / TILE_SIZE;
+            long x2 = (long) ((Math.max(from[1], to[1]) + 180.0) / 360.0 * 2 * scale) / TILE_SIZE;
+            long y1 = (long) ((90.0 - Math.max(from[0], to[0])) / 180.0 * scale) / TILE_SIZE;
+            long y2 = (long) ((90.0 - Math.min(from[0], to[0])) / 180.0 * scale) / TILE_SIZE;
+            if ((x2 - x1 + 1) * (y2 - y1 + 1) > maxCachedTiles()) {
+                // A long jump crosses more tiles than could be cached: drop the whole level instead
+                tiles.keySet().removeIf(key -> (key >>> 58) == z);
+                continue;
+            }
+            for (long ty = y1; ty <= y2; ty++) {
+                for (long tx = x1; tx <= x2; tx++) {
+                    tiles.remove(tileKey(z, tx, ty));
+                }
+            }
+        }
+        repaint(segmentBounds(from, to));
+    }
+
+    // Tiles covering the panel with a margin of one tile on each side, on every zoom level kept
+    int maxCachedTiles() {
+        int across = Math.max(getWidth(), 1) / TILE_SIZE + 3;
+        int down = Math.max(getHeight(), 1) / TILE_SIZE + 3;
+        return Math.max(MIN_CACHED_TILES, across * down * CACHED_ZOOM_LEVELS);
+    }
+
+    private Set<Integer> zoomsInCache() {
+        Set<Integer> zooms = new HashSet<>();
+        for (long key : tiles.keySet()) {
+            zooms.add((int) (key >>> 58));
+        }
+        return zooms;
+    }
+
+    private void drawInto(BufferedImage tile, int z, long tx, long ty, Color color, double[] from, double[] to) {
+        Graphics2D g = tile.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(color);
+        g.drawLine((int) Math.round(worldX(from[1], z) - tx * TILE_SIZE), (int) Math.round(worldY(from[0], z) - ty * TILE_SIZE),
+                (int) Math.round(worldX(to[1], z) - tx * TILE_SIZE), (int) Math.round(worldY(to[0], z) - ty * TILE_SIZE));
+        g.dispose();
+    }
+
+    private void centerOn(double latitude, double longitude) {
+        viewX = worldX(longitude) - Math.max(getWidth(), 1) / 2.0;
+        viewY = worldY(latitude) - Math.max(getHeight(), 1) / 2.0;
+    }
+
+    // Equirectangular projection: the world is two tiles wide and one tile high at zoom 0
+    private double worldX(double longitude) {
+        return worldX(longitude, zoom);
+    }
+
+    private double worldY(double latitude) {
+        return worldY(latitude, zoom);
+    }
+
+    private static double worldX(double longitude, int z) {
+        return (longitude + 180.0) / 360.0 * 2 * TILE_SIZE * Math.pow(2, z);
+    }
+
+    private static double worldY(double latitude, int z) {
+        return (90.0 - latitude) / 180.0 * TILE_SIZE * Math.pow(2, z);
+    }
+
+    private Rectangle worldBounds(double[] from, double[] to) {
+        return worldBounds(from, to, zoom);
+    }
+
+    private static Rectangle worldBounds(double[] from, double[] to, int z) {
+        int x1 = (int) Math.floor(Math.min(worldX(from[1], z), worldX(to[1], z)));
+        int y1 = (int) Math.floor(Math.min(worldY(from[0], z), worldY(to[0], z)));
+        int x2 = (int) Math.ceil(Math.max(worldX(from[1], z), worldX(to[1], z)));
+        int y2 = (int) Math.ceil(Math.max(worldY(from[0], z), worldY(to[0], z)));
+        return new Rectangle(x1, y1, x2 - x1 + 1, y2 - y1 + 1);
+    }
+
+    // Screen region covering a segment and the markers at its ends
+    private Rectangle segmentBounds(double[] from, double[] to) {
+        Rectangle bounds = worldBounds(from, to);
+        bounds.translate((int) Math.floor(-viewX), (int) Math.floor(-viewY));
+        bounds.grow(MARKER_SIZE + 1, MARKER_SIZE + 1);
+        return bounds;
+    }
+
+    private static Rectangle union(Rectangle a, Rectangle b) {
+        return a == null ? b : a.union(b);
+    }
+
+    private static long tileKey(int zoom, long tx, long ty) {
+        return ((long) zoom << 58) | (tx << 29) | ty;
+    }
+
+    /**
+     * @return Number of tiles currently cached across all zoom levels.
+     */
+    public int getCachedTileCount() {
+        return tiles.size();
+    }
+
+    // Recent points of one tracker
+    private static class Trail {
+        final String trackerId;
+        final Deque<double[]> points = new ArrayDeque<>(); // {latitude, longitude}
+        final Color color;
+        double[] marker;
+        long lastSeen;
+
+        Trail(String trackerId) {
+            this.trackerId = trackerId;
+            this.color = Color.getHSBColor((trackerId.hashCode() & 0xFFFF) / (float) 0xFFFF, 0.8f, 0.8f);
+        }
+    }
+
+    // A GPS event reduced to what the map draws
+    private static class Sample {
+        final String trackerId;
+        final double latitude;
+        final double longitude;
+
+        Sample(String trackerId, double latitude, double longitude) {
+            this.trackerId = trackerId;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+    }
+}
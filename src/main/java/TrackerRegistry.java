@@ -0,0 +1,80 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns tracker IDs to dense int indices, so per-tracker state can live in arrays indexed by tracker instead of in
+ * maps keyed by the ID string.
+ * <p>
+ * A source interns each tracker once when it is set up, then builds its events with
+ * {@link GpsEvent#GpsEvent(int, double, double, double)}: no ID is concatenated, allocated or hashed per event, and
+ * every event of a tracker carries the same ID instance. Indices are handed out from 0 in the order trackers are
+ * interned, and looking up the ID of an index is a plain array read.
+ * <p>
+ * Indices are never reused, so the registry only grows. It is meant for the fleet a source knows about (the trackers
+ * of a data file, a replay or a shard), not for IDs that churn without bound; events built from a bare ID string are
+ * only given an index if that ID was interned already.
+ */
+public class TrackerRegistry {
+    /**
+     * The registry shared by all sources and stores of the process.
+     */
+    public static final TrackerRegistry DEFAULT = new TrackerRegistry();
+
+    private final Map<String, Integer> indexOf = new ConcurrentHashMap<>();
+    private volatile String[] ids = new String[64];
+    private volatile int size = 0;
+
+    /**
+     * Interns a tracker ID, giving it the next index if it is new.
+     *
+     * @param trackerId Tracker to intern.
+     * @return The tracker's index, the same for every call with an equal ID.
+     */
+    public int intern(String trackerId) {
+        Integer index = indexOf.get(trackerId);
+        return index != null ? index : add(trackerId);
+    }
+
+    /**
+     * @param trackerId Tracker to look up.
+     * @return The tracker's index, or -1 if it was never interned or is null.
+     */
+    public int indexOf(String trackerId) {
+        Integer index = trackerId == null ? null : indexOf.get(trackerId);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @param index Index returned by {@link #intern(String)}.
+     * @return The ID interned with that index.
+     */
+    public String idOf(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("No tracker with index " + index);
+        return ids[index];
+    }
+
+    /**
+     * @return Number of trackers interned, one more than the highest index.
+     */
+    public int size() {
+        return size;
+    }
+
+    private synchronized int add(String trackerId) {
+        Integer index = indexOf.get(trackerId); // interned by another thread meanwhile
+        if (index != null) return index;
+
+        if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+        int added = size;
+        ids[added] = trackerId;
+        size = added + 1; // published before the index can be looked up, so idOf never sees an index without its ID
+        indexOf.put(trackerId, added);
+        return added;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TrackerRegistry: %d trackers", size);
+    }
+}
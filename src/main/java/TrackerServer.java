@@ -0,0 +1,324 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import nz.sodium.Cell;
+import nz.sodium.Stream;
+import nz.sodium.Transaction;
+import swidgets.SButton;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Embedded HTTP server publishing the same live state as the GUI, for clients without Swing.
+ * <p>
+ * The state is registered as named tables of string cells, e.g. the simplified trackers, the current event and the
+ * filtered events. Each {@value #PUSH_INTERVAL} milliseconds the server samples every cell in one transaction, so
+ * rows never mix the cells of two events, and serves:
+ * <ul>
+ *     <li><code>GET /snapshot</code>: every table as JSON, an object per row keyed by column name.</li>
+ *     <li><code>GET /events</code>: a Server-Sent Events stream opening with a <code>snapshot</code> event and then
+ *     sending a <code>delta</code> event holding only the rows that changed, keyed by row index.</li>
+ * </ul>
+ * Each snapshot and delta is encoded once and the same bytes are queued to every connected client. A client that falls
+ * {@value #CLIENT_QUEUE_SIZE} messages behind is disconnected rather than buffering without bound; reconnecting
+ * resynchronises it with a fresh snapshot.
+ */
+public class TrackerServer implements AutoCloseable {
+    static final long PUSH_INTERVAL = 250;
+    static final int CLIENT_QUEUE_SIZE = 64;
+    private static final byte[] CLOSE = new byte[0]; // queued to end a client's stream
+    // column names of the filtered events table, in the order of EventProcessor.filteredEvents
+    static final String[] FILTERED_COLUMNS = {"id", "latitude", "longitude", "time", "distance", "speed", "heading", "averageSpeed", "maxSpeed"};
+
+    private final HttpServer server;
+    private final ExecutorService handlers = Executors.newCachedThreadPool(daemon("TrackerServer client"));
+    private final ScheduledExecutorService publisher = Executors.newSingleThreadScheduledExecutor(daemon("TrackerServer publisher"));
+    private final Map<String, Table> tables = new LinkedHashMap<>();
+    private final Set<BlockingQueue<byte[]>> clients = ConcurrentHashMap.newKeySet();
+    private volatile byte[] snapshot = "{}".getBytes(StandardCharsets.UTF_8);
+    private volatile byte[] snapshotEvent = sseEvent("snapshot", snapshot);
+    private long encodeCount = 0;
+    private long droppedClients = 0;
+
+    /**
+     * Creates a server on the given port; register the tables and then call {@link #start()}.
+     *
+     * @param port TCP port to listen on, 0 for any free port.
+     * @throws IOException If the port cannot be bound.
+     */
+    public TrackerServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(handlers);
+        server.createContext("/snapshot", this::serveSnapshot);
+        server.createContext("/events", this::serveEvents);
+    }
+
+    /**
+     * Publishes a table with one row per entry of <code>rows</code>, each holding one cell per column.
+     *
+     * @param name    Table name in the JSON documents.
+     * @param columns Column names.
+     * @param rows    Cells of each row, in column order.
+     */
+    public synchronized void addTable(String name, String[] columns, List<List<Cell<String>>> rows) {
+        tables.put(name, new Table(columns, rows));
+    }
+
+    /**
+     * Publishes a table whose cells are given a column at a time, as {@link EventProcessor#simplifiedTrackers} does.
+     *
+     * @param name         Table name in the JSON documents.
+     * @param columnNames  Column names.
+     * @param columnsCells Cells of each column, in row order.
+     */
+    public void addColumns(String name, String[] columnNames, List<List<Cell<String>>> columnsCells) {
+        List<List<Cell<String>>> rows = new ArrayList<>();
+        int rowCount = columnsCells.isEmpty() ? 0 : columnsCells.get(0).size();
+        for (int r = 0; r < rowCount; r++) {
+            List<Cell<String>> row = new ArrayList<>();
+            for (List<Cell<String>> column : columnsCells) row.add(column.get(r));
+            rows.add(row);
+        }
+        addTable(name, columnNames, rows);
+    }
+
+    /**
+     * Starts publishing and accepting connections.
+     */
+    public void start() {
+        publisher.scheduleWithFixedDelay(this::publish, 0, PUSH_INTERVAL, TimeUnit.MILLISECONDS);
+        server.start();
+    }
+
+    /**
+     * @return The port the server listens on.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return Number of connected event stream clients.
+     */
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    /**
+     * @return Number of changes encoded so far, each as one snapshot and one delta; it does not depend on the number
+     * of clients.
+     */
+    public synchronized long getEncodeCount() {
+        return encodeCount;
+    }
+
+    /**
+     * @return Number of clients disconnected for falling behind.
+     */
+    public synchronized long getDroppedClients() {
+        return droppedClients;
+    }
+
+    @Override
+    public void close() {
+        publisher.shutdownNow();
+        for (BlockingQueue<byte[]> client : clients) {
+            client.clear();
+            client.offer(CLOSE);
+        }
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    // Samples every table in one transaction, then encodes the snapshot and the delta once for all clients outside it
+    synchronized void publish() {
+        List<String[][]> samples = Transaction.run(() -> {
+            List<String[][]> sampled = new ArrayList<>(tables.size());
+            for (Table table : tables.values()) sampled.add(table.sample());
+            return sampled;
+        });
+
+        StringBuilder full = new StringBuilder("{");
+        StringBuilder delta = new StringBuilder("{");
+        int t = 0;
+        for (Map.Entry<String, Table> entry : tables.entrySet()) {
+            Table table = entry.getValue();
+            String[][] values = samples.get(t++);
+            if (full.length() > 1) full.append(',');
+            appendString(full, entry.getKey()).append(":[");
+
+            StringBuilder changed = new StringBuilder();
+            for (int r = 0; r < values.length; r++) {
+                String row = table.encodeRow(values[r]);
+                if (r > 0) full.append(',');
+                full.append(row);
+                if (!row.equals(table.lastRows[r])) {
+                    if (changed.length() > 0) changed.append(',');
+                    changed.append('"').append(r).append("\":").append(row);
+                    table.lastRows[r] = row;
+                }
+            }
+            full.append(']');
+            if (changed.length() > 0) {
+                if (delta.length() > 1) delta.append(',');
+                appendString(delta, entry.getKey()).append(":{").append(changed).append('}');
+            }
+        }
+        full.append('}');
+        delta.append('}');
+        if (delta.length() == 2) return; // nothing changed
+
+        snapshot = full.toString().getBytes(StandardCharsets.UTF_8);
+        snapshotEvent = sseEvent("snapshot", snapshot);
+        byte[] message = sseEvent("delta", delta.toString().getBytes(StandardCharsets.UTF_8));
+        encodeCount++;
+        for (BlockingQueue<byte[]> client : clients) {
+            if (!client.offer(message)) {
+                // Too far behind: end its stream, the client reconnects and starts from a snapshot
+                droppedClients++;
+                clients.remove(client);
+                client.clear();
+                client.offer(CLOSE);
+            }
+        }
+    }
+
+    private void serveSnapshot(HttpExchange exchange) throws IOException {
+        byte[] body = snapshot;
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private void serveEvents(HttpExchange exchange) throws IOException {
+        BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(CLIENT_QUEUE_SIZE);
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            // Register under the publisher's lock so no delta falls between the snapshot and the first delta
+            byte[] first;
+            synchronized (this) {
+                first = snapshotEvent;
+                clients.add(queue);
+            }
+            out.write(first);
+            out.flush();
+            while (true) {
+                byte[] message = queue.take();
+                if (message == CLOSE) break;
+                out.write(message);
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // client went away
+        } finally {
+            clients.remove(queue);
+            exchange.close();
+        }
+    }
+
+    private static byte[] sseEvent(String type, byte[] data) {
+        byte[] head = ("event: " + type + "\ndata: ").getBytes(StandardCharsets.UTF_8);
+        byte[] event = Arrays.copyOf(head, head.length + data.length + 2);
+        System.arraycopy(data, 0, event, head.length, data.length);
+        event[event.length - 2] = '\n';
+        event[event.length - 1] = '\n';
+        return event;
+    }
+
+    private static StringBuilder appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') json.append('\\').append(c);
+            else if (c < 0x20) json.append(String.format("\\u%04x", (int) c));
+            else json.append(c);
+        }
+        return json.append('"');
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // Cells of one published table and the rows last sent to clients
+    private static class Table {
+        final String[] columns;
+        final List<List<Cell<String>>> rows;
+        final String[] lastRows;
+
+        Table(String[] columns, List<List<Cell<String>>> rows) {
+            this.columns = columns;
+            this.rows = rows;
+            this.lastRows = new String[rows.size()];
+        }
+
+        // Current value of every cell, by row and column; call inside a transaction for a consistent cut
+        String[][] sample() {
+            String[][] values = new String[rows.size()][columns.length];
+            for (int r = 0; r < values.length; r++) {
+                List<Cell<String>> row = rows.get(r);
+                for (int c = 0; c < columns.length; c++) values[r][c] = row.get(c).sample();
+            }
+            return values;
+        }
+
+        String encodeRow(String[] values) {
+            StringBuilder json = new StringBuilder("{");
+            for (int c = 0; c < columns.length; c++) {
+                if (c > 0) json.append(',');
+                appendString(json, columns[c]).append(':');
+                appendString(json, values[c]);
+            }
+            return json.append('}').toString();
+        }
+    }
+
+    /**
+     * Runs the tracker pipeline without a GUI and serves it over HTTP.
+     * <p>
+     * Usage: <code>java TrackerServer [port] [latMin latMax lonMin lonMax]</code>, the range applying to the filtered
+     * events table and defaulting to the whole world.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        double[] range = args.length >= 5
+                ? new double[]{Double.parseDouble(args[1]), Double.parseDouble(args[2]), Double.parseDouble(args[3]), Double.parseDouble(args[4])}
+                : new double[]{-90.0, 90.0, -180.0, 180.0};
+
+        Stream<GpsEvent>[] gpsEvents = new GpsService().getEventStreams();
+        GpsClock clock = new SystemClock();
+        TrackerServer server = new TrackerServer(port);
+        server.addColumns("trackers", new String[]{"id", "latitude", "longitude"}, EventProcessor.simplifiedTrackers(gpsEvents));
+        server.addTable("current", new String[]{"event"},
+                Collections.singletonList(Collections.singletonList(EventProcessor.currentTracker(gpsEvents, clock))));
+
+        // The range is fixed, so it is applied with a single click of a button no one sees
+        List<Cell<Optional<Double>>> rangeVals = Arrays.asList(new Cell<>(Optional.of(range[1])), new Cell<>(Optional.of(range[0])),
+                new Cell<>(Optional.of(range[3])), new Cell<>(Optional.of(range[2])));
+        SButton apply = new SButton("Set");
+        List<List<Cell<String>>> filtered = new ArrayList<>();
+        for (Stream<GpsEvent> gpsEvent : gpsEvents) {
+            filtered.add(EventProcessor.filteredEvents(rangeVals, apply, 1000 * 60 * 5, gpsEvent, clock));
+        }
+        apply.doClick();
+        server.addTable("filtered", FILTERED_COLUMNS, filtered);
+
+        server.start();
+        System.out.println("TrackerServer: serving " + gpsEvents.length + " trackers on http://localhost:" + server.getPort() + "/events");
+    }
+}
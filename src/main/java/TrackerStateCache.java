@@ -0,0 +1,231 @@
+import java.util.*;
+
+/**
+ * Bounded per-tracker state used for distance accumulation: the last position, the cumulative distance and the motion
+ * statistics of every tracker seen recently.
+ * <p>
+ * Tracker IDs churn in production, so state is not kept forever. Entries are ordered by the time their tracker last
+ * reported, and two eviction rules keep memory bounded:
+ * <ul>
+ *     <li><b>Idle timeout:</b> a tracker that has not reported for longer than the timeout is dropped.</li>
+ *     <li><b>Maximum size:</b> when the cache is full, the least recently updated tracker is dropped.</li>
+ * </ul>
+ * Both rules run as part of {@link #record(String, Position)} in amortised O(1), without a background thread. A tracker
+ * that reports again after being evicted starts again from zero distance.
+ * <p>
+ * Trackers recorded by their {@link TrackerRegistry} index are also held in an array indexed by it, and the update
+ * order is a list linked through the states themselves, so updating such a tracker hashes nothing; the map by ID is
+ * only touched when a tracker is added or evicted.
+ */
+public class TrackerStateCache implements TrackerStateStore {
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final Map<String, TrackerState> states = new HashMap<>();
+    private TrackerState[] byIndex = new TrackerState[64]; // states of trackers recorded by registry index
+    // Update order: the eldest is the least recently updated tracker, each update moves its tracker to the newest end
+    private TrackerState eldest;
+    private TrackerState newest;
+    private long evictedBySize = 0;
+    private long evictedByIdle = 0;
+
+    /**
+     * @param maxSize           Maximum number of trackers kept at once.
+     * @param idleTimeoutMillis Trackers without an update for longer than this (in milliseconds) are evicted.
+     */
+    public TrackerStateCache(int maxSize, long idleTimeoutMillis) {
+        if (maxSize < 1) throw new IllegalArgumentException("Maximum size must be positive: " + maxSize);
+        if (idleTimeoutMillis < 0) throw new IllegalArgumentException("Idle timeout must not be negative: " + idleTimeoutMillis);
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    @Override
+    public synchronized double record(String trackerId, Position position) {
+        evictIdle(position.time);
+
+        TrackerState state = states.get(trackerId);
+        if (state == null) state = add(trackerId);
+        return update(state, position);
+    }
+
+    @Override
+    public synchronized double record(int trackerIndex, Position position) {
+        evictIdle(position.time);
+
+        TrackerState state = held(trackerIndex);
+        if (state == null) {
+            String trackerId = TrackerRegistry.DEFAULT.idOf(trackerIndex);
+            state = states.get(trackerId); // recorded by ID so far
+            if (state == null) state = add(trackerId);
+            if (trackerIndex >= byIndex.length) byIndex = Arrays.copyOf(byIndex, Math.max(trackerIndex + 1, byIndex.length * 2));
+            byIndex[trackerIndex] = state;
+            state.index = trackerIndex;
+        }
+        return update(state, position);
+    }
+
+    private TrackerState held(int trackerIndex) {
+        return trackerIndex < byIndex.length ? byIndex[trackerIndex] : null;
+    }
+
+    private TrackerState add(String trackerId) {
+        TrackerState state = new TrackerState(trackerId);
+        states.put(trackerId, state);
+        return state;
+    }
+
+    private double update(TrackerState state, Position position) {
+        Position last = state.lastPosition;
+        if (last != null) {
+            double distance = Utils.calculateDistance(last, position);
+            long elapsed = position.time - last.time;
+            state.totalDistance += distance;
+
+            // Motion only changes when time moves on; a repeated position at the same time keeps the last values
+            if (elapsed > 0) {
+                state.totalElapsed += elapsed;
+                state.speed = distance * 1000.0 / elapsed;
+                state.maxSpeed = Math.max(state.maxSpeed, state.speed);
+            }
+            if (distance > 0) {
+                state.headingFrom = last;
+                state.headingTo = position;
+            }
+        }
+        state.lastPosition = position;
+        state.lastSeen = position.time;
+        moveToNewest(state);
+
+        if (states.size() > maxSize) {
+            evict(eldest);
+            evictedBySize++;
+        }
+
+        return state.totalDistance;
+    }
+
+    // Drop trackers from the least recently updated end until one is still active
+    private void evictIdle(long now) {
+        while (eldest != null && now - eldest.lastSeen > idleTimeoutMillis) {
+            evict(eldest);
+            evictedByIdle++;
+        }
+    }
+
+    private void evict(TrackerState state) {
+        unlink(state);
+        states.remove(state.trackerId);
+        if (state.index >= 0) byIndex[state.index] = null;
+    }
+
+    private void moveToNewest(TrackerState state) {
+        if (state == newest) return;
+        unlink(state);
+        state.older = newest;
+        if (newest != null) newest.newer = state;
+        else eldest = state;
+        newest = state;
+    }
+
+    private void unlink(TrackerState state) {
+        if (state.older != null) state.older.newer = state.newer;
+        else if (eldest == state) eldest = state.newer;
+        if (state.newer != null) state.newer.older = state.older;
+        else if (newest == state) newest = state.older;
+        state.older = null;
+        state.newer = null;
+    }
+
+    @Override
+    public synchronized Position lastPosition(String trackerId) {
+        TrackerState state = states.get(trackerId);
+        return state == null ? null : state.lastPosition;
+    }
+
+    @Override
+    public synchronized Double totalDistance(String trackerId) {
+        TrackerState state = states.get(trackerId);
+        return state == null ? null : state.totalDistance;
+    }
+
+    @Override
+    public synchronized Double totalDistance(int trackerIndex) {
+        TrackerState state = held(trackerIndex);
+        return state == null ? totalDistance(TrackerRegistry.DEFAULT.idOf(trackerIndex)) : Double.valueOf(state.totalDistance);
+    }
+
+    @Override
+    public synchronized MotionStats motion(String trackerId) {
+        return motion(states.get(trackerId));
+    }
+
+    @Override
+    public synchronized MotionStats motion(int trackerIndex) {
+        TrackerState state = held(trackerIndex);
+        return state == null ? motion(TrackerRegistry.DEFAULT.idOf(trackerIndex)) : motion(state);
+    }
+
+    private static MotionStats motion(TrackerState state) {
+        if (state == null) return MotionStats.NONE;
+
+        double averageSpeed = state.totalElapsed > 0 ? state.totalDistance * 1000.0 / state.totalElapsed : 0.0;
+        Position from = state.headingFrom;
+        Position to = state.headingTo;
+        double heading = from == null ? 0.0 : Utils.calculateHeading(from.latitude, from.longitude, to.latitude, to.longitude);
+        return new MotionStats(state.speed, heading, averageSpeed, state.maxSpeed);
+    }
+
+    @Override
+    public synchronized Map<String, Double> totalDistances() {
+        Map<String, Double> distances = new HashMap<>();
+        for (Map.Entry<String, TrackerState> entry : states.entrySet()) {
+            distances.put(entry.getKey(), entry.getValue().totalDistance);
+        }
+        return distances;
+    }
+
+    @Override
+    public synchronized int size() {
+        return states.size();
+    }
+
+    /**
+     * @return Number of trackers evicted because the cache was full.
+     */
+    public synchronized long getEvictedBySize() {
+        return evictedBySize;
+    }
+
+    /**
+     * @return Number of trackers evicted because they were idle for longer than the timeout.
+     */
+    public synchronized long getEvictedByIdle() {
+        return evictedByIdle;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("TrackerStateCache: %d of %d trackers held, %d evicted by size, %d evicted as idle",
+                states.size(), maxSize, evictedBySize, evictedByIdle);
+    }
+
+    // Mutable state of one tracker
+    private static class TrackerState {
+        final String trackerId;
+        int index = -1; // registry index once recorded by it
+        TrackerState older; // neighbours in the update order
+        TrackerState newer;
+        Position lastPosition;
+        double totalDistance;
+        long lastSeen;
+        long totalElapsed; // milliseconds covered by the recorded segments
+        double speed;
+        Position headingFrom; // the last movement, whose heading is only worked out when the motion is read
+        Position headingTo;
+        double maxSpeed;
+
+        TrackerState(String trackerId) {
+            this.trackerId = trackerId;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+import java.util.Map;
+
+/**
+ * Per-tracker state behind distance calculation: the last position and the cumulative distance of each tracker,
+ * along with its motion statistics. Everything is updated incrementally with O(1) state per tracker as each position
+ * is recorded; nothing is recomputed from history.
+ * <p>
+ * Two implementations are available:
+ * <ul>
+ *     <li>{@link TrackerStateCache} keeps state as heap objects and evicts idle trackers and the least recently
+ *     updated ones when full.</li>
+ *     <li>{@link OffHeapTrackerTable} keeps state in fixed-width slots of a direct buffer, for fleets of millions of
+ *     trackers where per-object overhead and GC scanning matter.</li>
+ * </ul>
+ * Trackers interned in {@link TrackerRegistry#DEFAULT} can also be addressed by their index, which both
+ * implementations resolve with an array read instead of hashing the ID.
+ */
+public interface TrackerStateStore {
+    /**
+     * Records a new position for a tracker, adding the distance from its previous position to its total.
+     *
+     * @param trackerId Tracker reporting the position.
+     * @param position  New position with altitude in meters and the time it was recorded.
+     * @return The tracker's cumulative distance in meters including this position.
+     */
+    double record(String trackerId, Position position);
+
+    /**
+     * Records a new position for a tracker by its index in {@link TrackerRegistry#DEFAULT}.
+     *
+     * @param trackerIndex Index of the tracker reporting the position.
+     * @param position     New position with altitude in meters and the time it was recorded.
+     * @return The tracker's cumulative distance in meters including this position.
+     */
+    default double record(int trackerIndex, Position position) {
+        return record(TrackerRegistry.DEFAULT.idOf(trackerIndex), position);
+    }
+
+    /**
+     * @param trackerId Tracker to look up.
+     * @return The tracker's last recorded position, or null if it is unknown or was evicted.
+     */
+    Position lastPosition(String trackerId);
+
+    /**
+     * @param trackerId Tracker to look up.
+     * @return The tracker's cumulative distance in meters, or null if it is unknown or was evicted.
+     */
+    Double totalDistance(String trackerId);
+
+    /**
+     * @param trackerIndex Index of the tracker in {@link TrackerRegistry#DEFAULT}.
+     * @return The tracker's cumulative distance in meters, or null if it is unknown or was evicted.
+     */
+    default Double totalDistance(int trackerIndex) {
+        return totalDistance(TrackerRegistry.DEFAULT.idOf(trackerIndex));
+    }
+
+    /**
+     * @param trackerId Tracker to look up.
+     * @return The tracker's live motion statistics, or {@link MotionStats#NONE} if it is unknown or was evicted.
+     */
+    MotionStats motion(String trackerId);
+
+    /**
+     * @param trackerIndex Index of the tracker in {@link TrackerRegistry#DEFAULT}.
+     * @return The tracker's live motion statistics, or {@link MotionStats#NONE} if it is unknown or was evicted.
+     */
+    default MotionStats motion(int trackerIndex) {
+        return motion(TrackerRegistry.DEFAULT.idOf(trackerIndex));
+    }
+
+    /**
+     * @return A snapshot of the cumulative distance of every tracker currently held.
+     */
+    Map<String, Double> totalDistances();
+
+    /**
+     * @return Number of trackers currently held.
+     */
+    int size();
+}
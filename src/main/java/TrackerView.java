@@ -0,0 +1,130 @@
+import nz.sodium.Cell;
+import nz.sodium.Stream;
+import nz.sodium.Unit;
+import swidgets.SButton;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * One filtered display over a {@link TrackerHub}: its own latitude and longitude range, distance window and
+ * per-tracker distance and motion state, built on the hub's shared event cells and clock tick.
+ * <p>
+ * The view only evaluates its range filter and records the events that pass it, so opening another view costs that
+ * and nothing more. Views do not see each other's state: a tracker's distance in one view only counts the events
+ * inside that view's range.
+ * <p>
+ * Besides the sliding distance window of the filtered display, the same events are pre-aggregated into
+ * {@value WindowedAggregates#DEFAULT_BUCKET}-millisecond buckets kept for {@value #AGGREGATE_RETENTION} milliseconds,
+ * so distances over any whole number of buckets, e.g. 1 minute, 5 minutes and 1 hour, can be shown side by side.
+ * The trackers are also ranked by their distance within the view's own window in a {@link DistanceLeaderboard}, kept
+ * in order as each event arrives and as the window moves on, so the leaders can be shown for any fleet size.
+ */
+public class TrackerView implements AutoCloseable {
+    static final long AGGREGATE_RETENTION = 1000 * 60 * 60; // 1 hour, the longest window that can be shown
+    private static final int MAX_AGGREGATED_TRACKERS = 10_000; // each keeps a full hour of buckets
+
+    private final TrackerHub hub;
+    private final TrackerStateStore trackerStates = new TrackerStateCache(EventProcessor.MAX_TRACKERS, EventProcessor.TRACKER_IDLE_TIMEOUT);
+    private final WindowedAggregates aggregates = new WindowedAggregates(WindowedAggregates.DEFAULT_BUCKET, AGGREGATE_RETENTION, MAX_AGGREGATED_TRACKERS);
+    private final DistanceLeaderboard leaderboard;
+    private final PipelineHandle handle = new PipelineHandle();
+    private final List<List<Cell<String>>> filteredEvents;
+
+    TrackerView(TrackerHub hub, List<Cell<Optional<Double>>> inputVals, SButton setButton, long windowSizeMillis, EventExporter exporter) {
+        this.hub = hub;
+        this.leaderboard = new DistanceLeaderboard(windowSizeMillis, gcd(windowSizeMillis, WindowedAggregates.DEFAULT_BUCKET));
+        Cell<Long> timer = hub.getClock().time();
+        Stream<Unit> clicks = handle.gate(setButton.sClicked);
+        List<List<Cell<String>>> rows = new ArrayList<>();
+        for (TrackerHub.Feed feed : hub.getFeeds()) {
+            rows.add(EventProcessor.filteredEvents(inputVals, clicks, windowSizeMillis, feed, timer, hub.getTicks(),
+                    trackerStates, aggregates, leaderboard, exporter, handle));
+        }
+        filteredEvents = Collections.unmodifiableList(rows);
+    }
+
+    /**
+     * @return One row per tracker, each holding [id, lat, lon, time, dist, speed, heading, average speed, max speed]
+     * as {@link EventProcessor#filteredEvents} returns.
+     */
+    public List<List<Cell<String>>> getFilteredEvents() {
+        return filteredEvents;
+    }
+
+    /**
+     * @param trackerId Tracker to look up.
+     * @return The tracker's motion statistics in this view, or {@link MotionStats#NONE} if it is unknown.
+     */
+    public MotionStats motionStatistics(String trackerId) {
+        return trackerStates.motion(trackerId);
+    }
+
+    /**
+     * Shows each tracker's distance over a window, rolled up from the view's buckets every clock tick. Like the
+     * distance of the filtered display, only events inside the view's range count.
+     *
+     * @param windowMillis Window length; a multiple of {@link WindowedAggregates#DEFAULT_BUCKET}, at most an hour.
+     * @return One cell per tracker with the distance in meters, empty until the tracker's first event.
+     */
+    public List<Cell<String>> windowedDistances(long windowMillis) {
+        aggregates.query("", windowMillis, 0L); // reject an unsupported window before building anything
+        List<Cell<String>> distances = new ArrayList<>();
+        for (TrackerHub.Feed feed : hub.getFeeds()) {
+            distances.add(feed.id.lift(hub.getTicks(), (id, now) ->
+                    id.isEmpty() ? "" : String.valueOf(Math.round(aggregates.query(id, windowMillis, now).distance))));
+        }
+        return distances;
+    }
+
+    /**
+     * Shows the trackers that travelled furthest within the view's distance window, re-ranked every clock tick so
+     * that trackers whose distance left the window drop down even without new events.
+     *
+     * @param k Number of trackers to show.
+     * @return Up to <code>k</code> trackers, furthest first.
+     */
+    public Cell<List<DistanceLeaderboard.Standing>> leaders(int k) {
+        return hub.getTicks().map(now -> {
+            leaderboard.advance(now);
+            return leaderboard.top(k);
+        });
+    }
+
+    /**
+     * @return The ranking of this view's trackers by distance within its window.
+     */
+    public DistanceLeaderboard getLeaderboard() {
+        return leaderboard;
+    }
+
+    /**
+     * @return The bucketed totals of this view.
+     */
+    public WindowedAggregates getAggregates() {
+        return aggregates;
+    }
+
+    /**
+     * @return The distance and motion state of this view.
+     */
+    public TrackerStateStore getTrackerStates() {
+        return trackerStates;
+    }
+
+    /**
+     * Stops recording and exporting for this view and ignores its button; the hub and other views carry on.
+     */
+    @Override
+    public void close() {
+        handle.close();
+        hub.closed(this);
+    }
+
+    // Largest bucket that divides both the window and the default bucket, so any window length can be ranked
+    private static long gcd(long a, long b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+}
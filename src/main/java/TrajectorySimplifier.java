@@ -0,0 +1,153 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Streaming dead-band simplification of GPS events.
+ * <p>
+ * A tracker that is stationary, or jittering around one spot, keeps reporting points that add nothing to its
+ * trajectory. The simplifier remembers the last point kept for each tracker and discards every new point that lies
+ * within the tolerance of it, measured in 3D with {@link Utils#calculateDistance(Position, Position)}. Each decision is
+ * made as the event arrives, so kept points are never delayed.
+ * <p>
+ * Every discarded point lies within the tolerance of the kept point that stands in for it, so the trajectory never
+ * deviates from the raw one by more than the tolerance. A tracker moving in a straight line loses no distance either:
+ * the kept points lie on the same line.
+ * <p>
+ * The last kept points are bounded like {@link TrackerStateCache}: a tracker without an event for longer than the idle
+ * timeout is forgotten, and when the maximum is reached the tracker that reported least recently is forgotten. A
+ * forgotten tracker simply has its next point kept.
+ */
+public class TrajectorySimplifier {
+    private final double toleranceMeters;
+    private final int maxTrackers;
+    private final long idleTimeoutMillis;
+    private final GpsClock clock;
+    // Last point kept for each tracker, re-inserted on every event so the eldest is the least recently reporting
+    private final LinkedHashMap<String, Kept> lastKept = new LinkedHashMap<>();
+    private long seen = 0;
+    private long kept = 0;
+    private long evicted = 0;
+
+    /**
+     * @param toleranceMeters Points closer than this to the last kept point of the same tracker are discarded.
+     */
+    public TrajectorySimplifier(double toleranceMeters) {
+        this(toleranceMeters, EventProcessor.MAX_TRACKERS, EventProcessor.TRACKER_IDLE_TIMEOUT);
+    }
+
+    /**
+     * @param toleranceMeters   Points closer than this to the last kept point of the same tracker are discarded.
+     * @param maxTrackers       Maximum number of trackers whose last kept point is remembered.
+     * @param idleTimeoutMillis Trackers without an event for longer than this (in milliseconds) are forgotten.
+     */
+    public TrajectorySimplifier(double toleranceMeters, int maxTrackers, long idleTimeoutMillis) {
+        this(toleranceMeters, maxTrackers, idleTimeoutMillis, SystemClock.SHARED);
+    }
+
+    /**
+     * @param toleranceMeters   Points closer than this to the last kept point of the same tracker are discarded.
+     * @param maxTrackers       Maximum number of trackers whose last kept point is remembered.
+     * @param idleTimeoutMillis Trackers without an event for longer than this (in milliseconds) are forgotten.
+     * @param clock             Clock giving the time each event arrives, which drives the idle timeout.
+     */
+    public TrajectorySimplifier(double toleranceMeters, int maxTrackers, long idleTimeoutMillis, GpsClock clock) {
+        if (toleranceMeters < 0) {
+            throw new IllegalArgumentException("Tolerance must not be negative: " + toleranceMeters);
+        }
+        if (maxTrackers < 1) throw new IllegalArgumentException("Maximum trackers must be positive: " + maxTrackers);
+        if (idleTimeoutMillis < 0) throw new IllegalArgumentException("Idle timeout must not be negative: " + idleTimeoutMillis);
+        this.toleranceMeters = toleranceMeters;
+        this.maxTrackers = maxTrackers;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Decides whether an event carries new information for its tracker.
+     *
+     * @param ev Incoming GPS event, altitude in feet.
+     * @return True if the event should be kept, false if it is redundant.
+     */
+    public synchronized boolean keep(GpsEvent ev) {
+        long now = clock.currentTimeMillis();
+        seen++;
+        evictIdle(now);
+        Position position = new Position(ev.latitude, ev.longitude, ev.altitude * EventProcessor.FEET_TO_METER, now);
+        Kept last = lastKept.remove(ev.name);
+        boolean keep = last == null || Utils.calculateDistance(last.position, position) >= toleranceMeters;
+
+        if (last == null) last = new Kept();
+        if (keep) {
+            last.position = position;
+            kept++;
+        }
+        last.lastSeen = now;
+        lastKept.put(ev.name, last); // move to the most recently reporting end
+
+        if (lastKept.size() > maxTrackers) {
+            Iterator<Kept> eldest = lastKept.values().iterator();
+            eldest.next();
+            eldest.remove();
+            evicted++;
+        }
+        return keep;
+    }
+
+    // Forget trackers from the least recently reporting end until one is still active
+    private void evictIdle(long now) {
+        Iterator<Kept> it = lastKept.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().lastSeen <= idleTimeoutMillis) break;
+            it.remove();
+            evicted++;
+        }
+    }
+
+    /**
+     * @return Number of events inspected so far.
+     */
+    public synchronized long getSeenCount() {
+        return seen;
+    }
+
+    /**
+     * @return Number of events kept so far.
+     */
+    public synchronized long getKeptCount() {
+        return kept;
+    }
+
+    /**
+     * @return Number of trackers whose last kept point was forgotten, either as idle or to make room.
+     */
+    public synchronized long getEvicted() {
+        return evicted;
+    }
+
+    /**
+     * @return Number of trackers whose last kept point is remembered.
+     */
+    public synchronized int size() {
+        return lastKept.size();
+    }
+
+    /**
+     * @return Ratio of inspected to kept events, e.g. 4.0 when three out of four events were discarded;
+     * 1.0 before anything was kept.
+     */
+    public synchronized double getCompressionRatio() {
+        return kept == 0 ? 1.0 : (double) seen / kept;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Simplifier(tolerance %.1f m): kept %d of %d events, compression %.2fx",
+                toleranceMeters, kept, seen, getCompressionRatio());
+    }
+
+    // Last kept point of one tracker and when it last reported
+    private static class Kept {
+        Position position;
+        long lastSeen;
+    }
+}
@@ -0,0 +1,291 @@
+import java.util.*;
+
+/**
+ * Historical trajectory storage that answers interval queries over everything a tracker has reported.
+ * <p>
+ * Each tracker keeps its points sorted by time in primitive arrays, together with:
+ * <ul>
+ *     <li><b>Prefix sums:</b> <code>prefix[i]</code> holds the distance travelled from the first point up to point
+ *     <code>i</code>, so the distance between any two stored points is a single subtraction.</li>
+ *     <li><b>Sparse time index:</b> the timestamp of every {@value #INDEX_STRIDE}th point, searched first to locate
+ *     the block containing a timestamp before searching inside that block.</li>
+ * </ul>
+ * Distance over any time interval is therefore answered in O(log n). Queries restricted to a latitude and longitude
+ * range scan only the points inside the interval, and follow the same rule as the filtered display: only consecutive
+ * points that are both inside the range contribute distance.
+ * <p>
+ * A store created with a retention window only answers for the last part of the history: points older than the window,
+ * measured back from the newest point of any tracker, are no longer returned, and are dropped from the arrays once they
+ * make up half of a tracker's points. A tracker without a point inside the window is forgotten entirely. Both happen
+ * as part of {@link #append(String, Position)} in amortised O(1), without a background thread.
+ */
+public class TrajectoryStore {
+    static final int INDEX_STRIDE = 64; // number of points covered by one sparse index entry
+    private static final int INITIAL_CAPACITY = 128;
+
+    private final long retentionMillis;
+    // Separate each tracker with its own history, the least recently appended to first
+    private final Map<String, Trajectory> trajectories = new LinkedHashMap<>();
+    private long newest = Long.MIN_VALUE; // time of the newest point of any tracker
+
+    /**
+     * Creates a store keeping the whole history of every tracker.
+     */
+    public TrajectoryStore() {
+        this(Long.MAX_VALUE);
+    }
+
+    /**
+     * @param retentionMillis Points older than this (in milliseconds) behind the newest point of any tracker expire.
+     */
+    public TrajectoryStore(long retentionMillis) {
+        if (retentionMillis < 0) throw new IllegalArgumentException("Retention must not be negative: " + retentionMillis);
+        this.retentionMillis = retentionMillis;
+    }
+
+    /**
+     * Appends a position to the history of a tracker. Points are expected to arrive in time order; a late point is
+     * inserted at its sorted place, which rebuilds the prefix sums after it.
+     *
+     * @param trackerId Tracker the position belongs to.
+     * @param position  Position with altitude in meters and the time it was recorded.
+     */
+    public synchronized void append(String trackerId, Position position) {
+        Trajectory trajectory = trajectories.remove(trackerId); // re-inserted at the most recent end
+        if (trajectory == null) trajectory = new Trajectory();
+        trajectories.put(trackerId, trajectory);
+        trajectory.append(position);
+        newest = Math.max(newest, position.time);
+
+        long cutoff = cutoff();
+        if (cutoff == Long.MIN_VALUE) return;
+        trajectory.expire(cutoff);
+        Iterator<Trajectory> eldest = trajectories.values().iterator();
+        while (eldest.hasNext()) {
+            Trajectory idle = eldest.next();
+            if (idle.lastTime() >= cutoff) break;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Calculates the distance a tracker travelled between two points in time.
+     *
+     * @param trackerId  Tracker to query.
+     * @param fromMillis Start of the interval (inclusive) in milliseconds.
+     * @param toMillis   End of the interval (inclusive) in milliseconds.
+     * @return Distance in meters between the first and last point recorded inside the interval,
+     * or 0.0 if the tracker is unknown or has fewer than two points in the interval.
+     */
+    public synchronized double distance(String trackerId, long fromMillis, long toMillis) {
+        Trajectory trajectory = trajectories.get(trackerId);
+        fromMillis = Math.max(fromMillis, cutoff());
+        if (trajectory == null || fromMillis > toMillis) return 0.0;
+
+        int first = trajectory.firstIndexAtOrAfter(fromMillis);
+        int last = trajectory.firstIndexAtOrAfter(toMillis + 1) - 1;
+        if (first >= last) return 0.0;
+
+        return trajectory.prefix[last] - trajectory.prefix[first];
+    }
+
+    /**
+     * Calculates the distance a tracker travelled between two points in time, counting only the movement between
+     * consecutive points that both fall within the given latitude and longitude range.
+     *
+     * @param trackerId  Tracker to query.
+     * @param fromMillis Start of the interval (inclusive) in milliseconds.
+     * @param toMillis   End of the interval (inclusive) in milliseconds.
+     * @param latMin     Minimum latitude (inclusive).
+     * @param latMax     Maximum latitude (inclusive).
+     * @param lonMin     Minimum longitude (inclusive).
+     * @param lonMax     Maximum longitude (inclusive).
+     * @return Distance in meters travelled inside the range during the interval.
+     */
+    public synchronized double distance(String trackerId, long fromMillis, long toMillis,
+                                        double latMin, double latMax, double lonMin, double lonMax) {
+        Trajectory trajectory = trajectories.get(trackerId);
+        fromMillis = Math.max(fromMillis, cutoff());
+        if (trajectory == null || fromMillis > toMillis) return 0.0;
+
+        int first = trajectory.firstIndexAtOrAfter(fromMillis);
+        int end = trajectory.firstIndexAtOrAfter(toMillis + 1);
+
+        double total = 0.0;
+        int lastInside = -1; // last point inside the range, later points measure from it
+        for (int i = first; i < end; i++) {
+            double lat = trajectory.latitudes[i];
+            double lon = trajectory.longitudes[i];
+            if (lat < latMin || lat > latMax || lon < lonMin || lon > lonMax) continue;
+
+            if (lastInside >= 0) {
+                total += Utils.calculateDistance(trajectory.position(lastInside), trajectory.position(i));
+            }
+            lastInside = i;
+        }
+
+        return total;
+    }
+
+    /**
+     * Returns the positions a tracker recorded within a time interval, in time order.
+     *
+     * @param trackerId  Tracker to query.
+     * @param fromMillis Start of the interval (inclusive) in milliseconds.
+     * @param toMillis   End of the interval (inclusive) in milliseconds.
+     * @return Positions inside the interval, or an empty list if the tracker is unknown.
+     */
+    public synchronized List<Position> positions(String trackerId, long fromMillis, long toMillis) {
+        Trajectory trajectory = trajectories.get(trackerId);
+        fromMillis = Math.max(fromMillis, cutoff());
+        if (trajectory == null || fromMillis > toMillis) return Collections.emptyList();
+
+        int first = trajectory.firstIndexAtOrAfter(fromMillis);
+        int end = trajectory.firstIndexAtOrAfter(toMillis + 1);
+
+        List<Position> result = new ArrayList<>(Math.max(0, end - first));
+        for (int i = first; i < end; i++) {
+            result.add(trajectory.position(i));
+        }
+        return result;
+    }
+
+    /**
+     * @param trackerId Tracker to query.
+     * @return Number of points stored for the tracker within the retention window.
+     */
+    public synchronized int size(String trackerId) {
+        Trajectory trajectory = trajectories.get(trackerId);
+        return trajectory == null ? 0 : trajectory.size - trajectory.firstIndexAtOrAfter(cutoff());
+    }
+
+    /**
+     * @return IDs of every tracker with a recorded history within the retention window.
+     */
+    public synchronized Set<String> trackerIds() {
+        long cutoff = cutoff();
+        Set<String> ids = new TreeSet<>();
+        for (Map.Entry<String, Trajectory> entry : trajectories.entrySet()) {
+            if (entry.getValue().lastTime() >= cutoff) ids.add(entry.getKey());
+        }
+        return ids;
+    }
+
+    // Oldest time still answered for, or Long.MIN_VALUE while everything is
+    private long cutoff() {
+        if (newest < Long.MIN_VALUE + retentionMillis) return Long.MIN_VALUE;
+        return newest - retentionMillis;
+    }
+
+    // Time-sorted history of a single tracker held in parallel primitive arrays
+    private static class Trajectory {
+        private long[] times = new long[INITIAL_CAPACITY];
+        private double[] latitudes = new double[INITIAL_CAPACITY];
+        private double[] longitudes = new double[INITIAL_CAPACITY];
+        private double[] altitudes = new double[INITIAL_CAPACITY];
+        private double[] prefix = new double[INITIAL_CAPACITY]; // cumulative distance up to each point
+        private long[] sparseIndex = new long[INITIAL_CAPACITY / INDEX_STRIDE + 1]; // time of every INDEX_STRIDE-th point
+        private int size = 0;
+
+        void append(Position position) {
+            ensureCapacity(size + 1);
+            long time = position.time;
+
+            // Fast path: points normally arrive in order
+            if (size == 0 || time >= times[size - 1]) {
+                set(size, position);
+                prefix[size] = size == 0 ? 0.0 : prefix[size - 1] + Utils.calculateDistance(position(size - 1), position);
+                size++;
+                if ((size - 1) % INDEX_STRIDE == 0) sparseIndex[(size - 1) / INDEX_STRIDE] = time;
+                return;
+            }
+
+            // Late point: shift the tail and rebuild what depends on it
+            int at = firstIndexAtOrAfter(time + 1);
+            System.arraycopy(times, at, times, at + 1, size - at);
+            System.arraycopy(latitudes, at, latitudes, at + 1, size - at);
+            System.arraycopy(longitudes, at, longitudes, at + 1, size - at);
+            System.arraycopy(altitudes, at, altitudes, at + 1, size - at);
+            set(at, position);
+            size++;
+            for (int i = Math.max(at, 1); i < size; i++) {
+                prefix[i] = prefix[i - 1] + Utils.calculateDistance(position(i - 1), position(i));
+            }
+            prefix[0] = 0.0;
+            for (int i = at - at % INDEX_STRIDE; i < size; i += INDEX_STRIDE) {
+                sparseIndex[i / INDEX_STRIDE] = times[i];
+            }
+        }
+
+        // Drop the points before the cutoff once they are at least half of the history, so each point is moved at
+        // most once on average
+        void expire(long cutoff) {
+            int first = firstIndexAtOrAfter(cutoff);
+            if (first < INDEX_STRIDE || first < size / 2) return;
+
+            size -= first;
+            System.arraycopy(times, first, times, 0, size);
+            System.arraycopy(latitudes, first, latitudes, 0, size);
+            System.arraycopy(longitudes, first, longitudes, 0, size);
+            System.arraycopy(altitudes, first, altitudes, 0, size);
+            double base = prefix[first];
+            for (int i = 0; i < size; i++) {
+                prefix[i] = prefix[i + first] - base;
+            }
+            for (int i = 0; i < size; i += INDEX_STRIDE) {
+                sparseIndex[i / INDEX_STRIDE] = times[i];
+            }
+        }
+
+        long lastTime() {
+            return size == 0 ? Long.MIN_VALUE : times[size - 1];
+        }
+
+        // Index of the first point with a time >= the given time, or size if there is none
+        int firstIndexAtOrAfter(long time) {
+            if (size == 0 || time <= times[0]) return 0;
+            if (time > times[size - 1]) return size;
+
+            // Locate the block through the sparse index: last block starting before the time
+            int blocks = (size - 1) / INDEX_STRIDE + 1;
+            int lo = 0, hi = blocks - 1;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (sparseIndex[mid] < time) lo = mid;
+                else hi = mid - 1;
+            }
+
+            // Then search within that block (the answer may be the first point of the next block)
+            int from = lo * INDEX_STRIDE;
+            int to = Math.min(from + INDEX_STRIDE, size);
+            while (from < to) {
+                int mid = (from + to) >>> 1;
+                if (times[mid] < time) from = mid + 1;
+                else to = mid;
+            }
+            return from;
+        }
+
+        Position position(int i) {
+            return new Position(latitudes[i], longitudes[i], altitudes[i], times[i]);
+        }
+
+        private void set(int i, Position position) {
+            times[i] = position.time;
+            latitudes[i] = position.latitude;
+            longitudes[i] = position.longitude;
+            altitudes[i] = position.altitude;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= times.length) return;
+            int newCapacity = times.length * 2;
+            times = Arrays.copyOf(times, newCapacity);
+            latitudes = Arrays.copyOf(latitudes, newCapacity);
+            longitudes = Arrays.copyOf(longitudes, newCapacity);
+            altitudes = Arrays.copyOf(altitudes, newCapacity);
+            prefix = Arrays.copyOf(prefix, newCapacity);
+            sparseIndex = Arrays.copyOf(sparseIndex, newCapacity / INDEX_STRIDE + 1);
+        }
+    }
+}
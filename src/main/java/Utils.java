@@ -2,9 +2,12 @@ import nz.sodium.*;
 import swidgets.STextField;
 
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 
 /**
@@ -14,8 +17,8 @@ import java.util.*;
  * <ul>
  *     <li>Methods to safely parse and validate user input for numerical ranges.</li>
  *     <li>Geographic distance calculation using the Haversine formula for horizontal distance and
- *     Pythagorean theorem for 3D distance incorporating altitude.</li>
- *     <li>A utility to format timestamps in a human-readable time format.</li>
+ *     Pythagorean theorem for 3D distance incorporating altitude, and the compass heading between positions.</li>
+ *     <li>Utilities to format timestamps in a human-readable time format and parse them back.</li>
  * </ul>
  * These methods assist in processing GPS data by ensuring validated inputs, calculating precise
  * distances between positions, and displaying formatted times.
@@ -30,6 +33,22 @@ public class Utils {
         return localDateTime.format(TIME_FORMATTER);
     }
 
+    /**
+     * Parses a time of day entered as "HH:mm" or "HH:mm:ss" into a timestamp on the current day.
+     *
+     * @param text the user input, surrounding whitespace is ignored.
+     * @return an {@code Optional<Long>} holding the timestamp in milliseconds in the system's time zone,
+     *         or {@code Optional.empty()} if the input is not a valid time of day.
+     */
+    public static Optional<Long> parseTime(String text) {
+        try {
+            LocalTime localTime = LocalTime.parse(text.trim());
+            return Optional.of(localTime.atDate(LocalDate.now()).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        } catch (DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+
     /**
      * Safely convert user input to double value
      * @param textField the {@code STextField} containing user input as text.
@@ -73,16 +92,65 @@ public class Utils {
     public static int calculateDistance(Position pos1, Position pos2) {
         if (pos1 == null || pos2 == null) return 0;
 
+        return calculateDistance(pos1.latitude, pos1.longitude, pos1.altitude, pos2.latitude, pos2.longitude, pos2.altitude);
+    }
+
+    /**
+     * Calculates the 3D distance between two geographic positions given as primitive coordinates, so that hot paths
+     * holding state outside of {@link Position} objects do not need to allocate them.
+     *
+     * @param lat1 Latitude of the first position in degrees.
+     * @param lon1 Longitude of the first position in degrees.
+     * @param alt1 Altitude of the first position in meters.
+     * @param lat2 Latitude of the second position in degrees.
+     * @param lon2 Longitude of the second position in degrees.
+     * @param alt2 Altitude of the second position in meters.
+     * @return The 3D distance between the two positions in meters.
+     * @see #calculateDistance(Position, Position)
+     */
+    public static int calculateDistance(double lat1, double lon1, double alt1, double lat2, double lon2, double alt2) {
         // Earth's radius in meters
-        double horizontalDistance = getHorizontalDistance(pos1, pos2);
+        double horizontalDistance = getHorizontalDistance(lat1, lon1, lat2, lon2);
 
         // Calculate vertical distance (altitude difference)
-        double deltaAlt = pos2.altitude - pos1.altitude;
+        double deltaAlt = alt2 - alt1;
 
         // Use Pythagorean theorem to calculate the 3D distance
         return (int) Math.round(Math.sqrt(horizontalDistance * horizontalDistance + deltaAlt * deltaAlt));
     }
 
+    /**
+     * Calculates the initial compass bearing when travelling from one position to another along a great circle.
+     *
+     * @param lat1 Latitude of the starting position in degrees.
+     * @param lon1 Longitude of the starting position in degrees.
+     * @param lat2 Latitude of the destination in degrees.
+     * @param lon2 Longitude of the destination in degrees.
+     * @return The bearing in degrees from north, in the range [0, 360).
+     */
+    public static double calculateHeading(double lat1, double lon1, double lat2, double lon2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double deltaLon = Math.toRadians(lon2 - lon1);
+
+        double y = Math.sin(deltaLon) * Math.cos(phi2);
+        double x = Math.cos(phi1) * Math.sin(phi2) - Math.sin(phi1) * Math.cos(phi2) * Math.cos(deltaLon);
+        return (Math.toDegrees(Math.atan2(y, x)) + 360.0) % 360.0;
+    }
+
+    /**
+     * Formats a value rounded to one decimal for display, e.g. a speed. Unlike {@link String#format}, it does not
+     * parse a pattern or build a formatter on every call, and always uses a decimal point.
+     *
+     * @param value Value to format.
+     * @return The value with one decimal, e.g. "12.3".
+     */
+    public static String formatTenths(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) return String.valueOf(value);
+        long tenths = Math.round(Math.abs(value) * 10);
+        return (value < 0 && tenths != 0 ? "-" : "") + tenths / 10 + "." + tenths % 10;
+    }
+
     /**
      * Calculates the 2D (horizontal) distance between two positions on Earth's surface
      * using the Haversine formula.
@@ -100,15 +168,17 @@ public class Utils {
      * - \delta(lat) = lat2 - lat1 and \delta(lon) = lon2 - lon1
      * - R is Earth's radius in meters (6,371,000 meters)
      *
-     * @param pos1 The first position, containing latitude and longitude.
-     * @param pos2 The second position, containing latitude and longitude.
+     * @param latitude1  Latitude of the first position in degrees.
+     * @param longitude1 Longitude of the first position in degrees.
+     * @param latitude2  Latitude of the second position in degrees.
+     * @param longitude2 Longitude of the second position in degrees.
      * @return The horizontal distance between the two positions in meters.
      */
-    private static double getHorizontalDistance(Position pos1, Position pos2) {
-        double lat1 = Math.toRadians(pos1.latitude);
-        double lat2 = Math.toRadians(pos2.latitude);
-        double deltaLat = Math.toRadians(pos2.latitude - pos1.latitude);
-        double deltaLon = Math.toRadians(pos2.longitude - pos1.longitude);
+    private static double getHorizontalDistance(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double lat1 = Math.toRadians(latitude1);
+        double lat2 = Math.toRadians(latitude2);
+        double deltaLat = Math.toRadians(latitude2 - latitude1);
+        double deltaLon = Math.toRadians(longitude2 - longitude1);
 
         // Haversine formula
         double a = Math.sin(deltaLat / 2) * Math.sin(deltaLat / 2) +
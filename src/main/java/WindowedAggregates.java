@@ -0,0 +1,196 @@
+import java.util.*;
+
+/**
+ * Per-tracker pre-aggregates over fixed time buckets, rolled up on demand into any window that is a whole number of
+ * buckets, e.g. 1 minute, 5 minutes and 1 hour from the same 10-second buckets.
+ * <p>
+ * Each tracker keeps a ring of buckets covering the retention period. A bucket holds the distance travelled into
+ * points that fell in it, the number of points and their bounding box, and is reused once it is older than the
+ * retention. Recording a point updates one bucket in O(1); a query combines the buckets of the window in
+ * O(window / bucket) without looking at a single raw point. Windows are aligned to bucket boundaries: the newest
+ * bucket is the one holding the query time and may still be filling.
+ * <p>
+ * Trackers are evicted like in {@link TrackerStateCache}: once nothing they recorded is inside the retention, or when
+ * the number of trackers exceeds its limit.
+ */
+public class WindowedAggregates {
+    static final long DEFAULT_BUCKET = 10_000; // 10 seconds
+
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final int maxTrackers;
+    // Insertion-ordered and re-inserted on every update, so the eldest entry is the least recently updated tracker
+    private final LinkedHashMap<String, Series> series = new LinkedHashMap<>();
+
+    /**
+     * Totals of one tracker over a window.
+     */
+    public static class Aggregate {
+        public static final Aggregate EMPTY = new Aggregate(0.0, 0, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+
+        public final double distance; // meters
+        public final int count;       // points recorded
+        public final double latMin, latMax, lonMin, lonMax; // bounding box of the points, NaN without points
+
+        Aggregate(double distance, int count, double latMin, double latMax, double lonMin, double lonMax) {
+            this.distance = distance;
+            this.count = count;
+            this.latMin = latMin;
+            this.latMax = latMax;
+            this.lonMin = lonMin;
+            this.lonMax = lonMax;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.0f m, %d points, lat [%.5f, %.5f], lon [%.5f, %.5f]", distance, count, latMin, latMax, lonMin, lonMax);
+        }
+    }
+
+    /**
+     * @param bucketMillis    Bucket length in milliseconds.
+     * @param retentionMillis Longest window that can be queried; a multiple of the bucket length.
+     * @param maxTrackers     Maximum number of trackers kept at once.
+     */
+    public WindowedAggregates(long bucketMillis, long retentionMillis, int maxTrackers) {
+        if (bucketMillis < 1) throw new IllegalArgumentException("Bucket length must be positive: " + bucketMillis);
+        if (retentionMillis < bucketMillis || retentionMillis % bucketMillis != 0) {
+            throw new IllegalArgumentException("Retention must be a multiple of the bucket length: " + retentionMillis);
+        }
+        if (maxTrackers < 1) throw new IllegalArgumentException("Maximum number of trackers must be positive: " + maxTrackers);
+        this.bucketMillis = bucketMillis;
+        this.bucketCount = (int) (retentionMillis / bucketMillis);
+        this.maxTrackers = maxTrackers;
+    }
+
+    /**
+     * Adds a point to its tracker's bucket, together with the distance from the tracker's previous point.
+     *
+     * @param trackerId Tracker the point belongs to.
+     * @param position  Position with altitude in meters and the time it was recorded.
+     */
+    public synchronized void record(String trackerId, Position position) {
+        long bucket = Math.floorDiv(position.time, bucketMillis);
+        evictIdle(bucket);
+
+        Series s = series.remove(trackerId);
+        if (s == null) s = new Series(bucketCount);
+        double distance = s.last == null ? 0.0 : Utils.calculateDistance(s.last, position);
+        s.add(bucket, distance, position.latitude, position.longitude);
+        s.last = position;
+        series.put(trackerId, s); // move to the most recently updated end
+
+        if (series.size() > maxTrackers) {
+            Iterator<Series> eldest = series.values().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Rolls up a tracker's buckets over a window ending with the bucket that holds <code>nowMillis</code>.
+     *
+     * @param trackerId    Tracker to query.
+     * @param windowMillis Window length; a multiple of the bucket length, at most the retention.
+     * @param nowMillis    End of the window.
+     * @return The totals over the window, {@link Aggregate#EMPTY} if nothing was recorded in it.
+     */
+    public synchronized Aggregate query(String trackerId, long windowMillis, long nowMillis) {
+        if (windowMillis < bucketMillis || windowMillis % bucketMillis != 0 || windowMillis / bucketMillis > bucketCount) {
+            throw new IllegalArgumentException("Window must be a multiple of " + bucketMillis + " ms up to the retention: " + windowMillis);
+        }
+        Series s = series.get(trackerId);
+        return s == null ? Aggregate.EMPTY : s.rollUp(Math.floorDiv(nowMillis, bucketMillis), (int) (windowMillis / bucketMillis));
+    }
+
+    /**
+     * @return Bucket length in milliseconds.
+     */
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+
+    /**
+     * @return Longest window that can be queried, in milliseconds.
+     */
+    public long getRetentionMillis() {
+        return bucketCount * bucketMillis;
+    }
+
+    /**
+     * @return Number of trackers with aggregates.
+     */
+    public synchronized int size() {
+        return series.size();
+    }
+
+    // Drop trackers from the least recently updated end until one still has a bucket inside the retention
+    private void evictIdle(long bucket) {
+        Iterator<Series> it = series.values().iterator();
+        while (it.hasNext()) {
+            if (bucket - it.next().newest < bucketCount) break;
+            it.remove();
+        }
+    }
+
+    // Ring of buckets of one tracker, slot = bucket number modulo the ring size
+    private static class Series {
+        final long[] bucketIds;
+        final double[] distance;
+        final int[] count;
+        final double[] latMin, latMax, lonMin, lonMax;
+        long newest = Long.MIN_VALUE;
+        Position last;
+
+        Series(int size) {
+            bucketIds = new long[size];
+            Arrays.fill(bucketIds, Long.MIN_VALUE);
+            distance = new double[size];
+            count = new int[size];
+            latMin = new double[size];
+            latMax = new double[size];
+            lonMin = new double[size];
+            lonMax = new double[size];
+        }
+
+        void add(long bucket, double meters, double latitude, double longitude) {
+            if (newest != Long.MIN_VALUE && bucket <= newest - bucketIds.length) return; // older than the retention
+            int slot = (int) Math.floorMod(bucket, (long) bucketIds.length);
+            if (bucketIds[slot] != bucket) {
+                // Reuse a slot left by a bucket that has fallen out of the retention
+                bucketIds[slot] = bucket;
+                distance[slot] = 0.0;
+                count[slot] = 0;
+                latMin[slot] = latitude;
+                latMax[slot] = latitude;
+                lonMin[slot] = longitude;
+                lonMax[slot] = longitude;
+            }
+            distance[slot] += meters;
+            count[slot]++;
+            latMin[slot] = Math.min(latMin[slot], latitude);
+            latMax[slot] = Math.max(latMax[slot], latitude);
+            lonMin[slot] = Math.min(lonMin[slot], longitude);
+            lonMax[slot] = Math.max(lonMax[slot], longitude);
+            newest = Math.max(newest, bucket);
+        }
+
+        Aggregate rollUp(long lastBucket, int buckets) {
+            double meters = 0.0;
+            int points = 0;
+            double south = Double.POSITIVE_INFINITY, north = Double.NEGATIVE_INFINITY;
+            double west = Double.POSITIVE_INFINITY, east = Double.NEGATIVE_INFINITY;
+            for (long bucket = lastBucket - buckets + 1; bucket <= lastBucket; bucket++) {
+                int slot = (int) Math.floorMod(bucket, (long) bucketIds.length);
+                if (bucketIds[slot] != bucket) continue;
+                meters += distance[slot];
+                points += count[slot];
+                south = Math.min(south, latMin[slot]);
+                north = Math.max(north, latMax[slot]);
+                west = Math.min(west, lonMin[slot]);
+                east = Math.max(east, lonMax[slot]);
+            }
+            return points == 0 ? Aggregate.EMPTY : new Aggregate(meters, points, south, north, west, east);
+        }
+    }
+}
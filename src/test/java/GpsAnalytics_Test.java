@@ -0,0 +1,72 @@
+import org.junit.Test;
+
+import java.util.LinkedList;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+public class GpsAnalytics_Test {
+    private static final double[] EVERYWHERE = {-90.0, 90.0, -180.0, 180.0};
+
+    @Test
+    public void testParallelMatchesSequential() {
+        // Long enough to be split across many fork/join chunks
+        LinkedList<Double[]> records = new LinkedList<>();
+        for (int i = 0; i < GpsAnalytics.CHUNK_SIZE * 10 + 7; i++) {
+            records.add(new Double[]{39.9 + Math.sin(i * 0.01) * 0.01, 116.3 + i * 1e-5, 100.0 + i % 50, 5.0});
+        }
+        GpsAnalytics.Track track = new GpsAnalytics.Track(records);
+
+        GpsAnalytics.Summary sequential = GpsAnalytics.analyse(track, EVERYWHERE, null);
+        GpsAnalytics.Summary parallel = GpsAnalytics.analyse(track, EVERYWHERE, ForkJoinPool.commonPool());
+
+        assertEquals(records.size(), parallel.count);
+        assertEquals(sequential.distance, parallel.distance, 1e-6);
+        assertEquals(sequential.seconds, parallel.seconds, 1e-6);
+        assertEquals(sequential.latMin, parallel.latMin, 0.0);
+        assertEquals(sequential.latMax, parallel.latMax, 0.0);
+        assertEquals(sequential.lonMin, parallel.lonMin, 0.0);
+        assertEquals(sequential.lonMax, parallel.lonMax, 0.0);
+        assertEquals((records.size() - 1) * 5.0, parallel.seconds, 1e-6);
+    }
+
+    @Test
+    public void testManyShortTrackersTogether() {
+        // Each tracker fits in one chunk, so the trackers themselves are what runs in parallel
+        GpsAnalytics.Track[] tracks = new GpsAnalytics.Track[50];
+        for (int t = 0; t < tracks.length; t++) {
+            LinkedList<Double[]> records = new LinkedList<>();
+            for (int i = 0; i < 100 + t; i++) records.add(new Double[]{39.9 + t * 1e-3 + i * 1e-5, 116.3, 50.0, 1.0});
+            tracks[t] = new GpsAnalytics.Track(records);
+        }
+
+        GpsAnalytics.Summary[] sequential = GpsAnalytics.analyse(tracks, EVERYWHERE, null);
+        GpsAnalytics.Summary[] parallel = GpsAnalytics.analyse(tracks, EVERYWHERE, ForkJoinPool.commonPool());
+        for (int t = 0; t < tracks.length; t++) {
+            assertEquals(100 + t, parallel[t].count);
+            assertEquals(sequential[t].distance, parallel[t].distance, 0.0);
+            assertEquals(sequential[t].latMax, parallel[t].latMax, 0.0);
+        }
+    }
+
+    @Test
+    public void testDistanceBoxAndTimeInRegion() {
+        LinkedList<Double[]> records = new LinkedList<>();
+        records.add(new Double[]{45.0, -75.0, 0.0, 0.0});
+        records.add(new Double[]{45.001, -75.0, 0.0, 10.0}); // starts inside the region
+        records.add(new Double[]{45.002, -75.0, 0.0, 20.0}); // starts inside the region
+        records.add(new Double[]{45.003, -75.0, 0.0, 30.0}); // starts outside the region
+        GpsAnalytics.Track track = new GpsAnalytics.Track(records);
+
+        GpsAnalytics.Summary summary = GpsAnalytics.analyse(track, new double[]{44.9, 45.0015, -76.0, -74.0}, ForkJoinPool.commonPool());
+
+        double expected = Utils.calculateDistance(45.0, -75.0, 0.0, 45.001, -75.0, 0.0)
+                + Utils.calculateDistance(45.001, -75.0, 0.0, 45.002, -75.0, 0.0)
+                + Utils.calculateDistance(45.002, -75.0, 0.0, 45.003, -75.0, 0.0);
+        assertEquals(expected, summary.distance, 1e-6);
+        assertEquals(45.0, summary.latMin, 0.0);
+        assertEquals(45.003, summary.latMax, 0.0);
+        assertEquals(60.0, summary.seconds, 0.0);
+        assertEquals(30.0, summary.secondsInRegion, 0.0);
+    }
+}
@@ -0,0 +1,470 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Micro-benchmarks for the hot paths of the tracker pipeline. Not a unit test: run it directly, e.g.
+ * <pre>
+ * java -cp target/classes:target/test-classes GpsBenchmark [trackers] [updates]
+ * </pre>
+ * Each benchmark prints its throughput together with the GC activity it caused.
+ */
+public class GpsBenchmark {
+    public static void main(String[] args) {
+        int trackers = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int updates = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+
+        benchmarkTrackerState(trackers, updates);
+        for (int fleet = 1000; fleet <= trackers; fleet *= 100) benchmarkTrackerIds(fleet, updates);
+        benchmarkGeofence(5000, updates);
+        for (int fleet = 1000; fleet <= 100_000; fleet *= 10) benchmarkProximity(fleet, updates);
+        benchmarkCompressedTrajectories(10, updates / 10);
+        for (EventExporter.Format format : EventExporter.Format.values()) benchmarkExporter(format, updates);
+        benchmarkServer(1000, 500, 20);
+        benchmarkRendering(90, updates / 100);
+        benchmarkWindowedAggregates(100, 3600 * 6);
+        for (int fleet = 1000; fleet <= 100_000; fleet *= 10) benchmarkLeaderboard(fleet, updates / 10);
+        benchmarkGeolifeImport(10, 20, 2000);
+    }
+
+    // Heap state objects against off-heap slots, fed the same random walk
+    static void benchmarkTrackerState(int trackers, int updates) {
+        String[] ids = new String[trackers];
+        for (int i = 0; i < trackers; i++) ids[i] = "Tracker" + i;
+
+        run("Heap TrackerStateCache", trackers, updates, ids, new TrackerStateCache(trackers, Long.MAX_VALUE));
+        run("OffHeapTrackerTable", trackers, updates, ids, new OffHeapTrackerTable(Math.min(1024, trackers), trackers, Long.MAX_VALUE));
+    }
+
+    private static void run(String name, int trackers, int updates, String[] ids, TrackerStateStore store) {
+        Random random = new Random(1);
+        long gcBefore = gcCount();
+        long gcTimeBefore = gcMillis();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < updates; i++) {
+            int t = random.nextInt(trackers);
+            store.record(ids[t], new Position(39.9 + (i % 100) * 1e-4, 116.3, 0.0, (long) i));
+        }
+
+        long elapsed = System.nanoTime() - start;
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        System.out.printf("%-24s %,d trackers: %,.0f updates/s, heap used %,d MB, %d GCs (%d ms)%n",
+                name, store.size(), updates / (elapsed / 1e9), (runtime.totalMemory() - runtime.freeMemory()) >> 20,
+                gcCount() - gcBefore, gcMillis() - gcTimeBefore);
+    }
+
+    // Tracker IDs built and hashed per event, as GpsService did, against registry indices interned once
+    static void benchmarkTrackerIds(int trackers, int updates) {
+        int[] indices = new int[trackers];
+        for (int i = 0; i < trackers; i++) indices[i] = TrackerRegistry.DEFAULT.intern("Tracker" + i);
+        IdUpdate byId = (store, t, position) -> store.record("Tracker" + t, position);
+        IdUpdate byIndex = (store, t, position) -> store.record(indices[t], position);
+
+        for (int round = 0; round < 2; round++) { // the first round only warms up
+            int count = round == 0 ? updates / 10 : updates;
+            boolean print = round > 0;
+            idRun("Heap, ID per event", trackers, count, new TrackerStateCache(trackers, Long.MAX_VALUE), byId, print);
+            idRun("Heap, registry index", trackers, count, new TrackerStateCache(trackers, Long.MAX_VALUE), byIndex, print);
+            idRun("Off-heap, ID per event", trackers, count,
+                    new OffHeapTrackerTable(Math.min(1024, trackers), trackers, Long.MAX_VALUE), byId, print);
+            idRun("Off-heap, registry index", trackers, count,
+                    new OffHeapTrackerTable(Math.min(1024, trackers), trackers, Long.MAX_VALUE), byIndex, print);
+        }
+    }
+
+    private interface IdUpdate {
+        double record(TrackerStateStore store, int tracker, Position position);
+    }
+
+    private static void idRun(String name, int trackers, int updates, TrackerStateStore store, IdUpdate update, boolean print) {
+        Random random = new Random(1);
+        long gcBefore = gcCount();
+        long start = System.nanoTime();
+        for (int i = 0; i < updates; i++) {
+            update.record(store, random.nextInt(trackers), new Position(39.9 + (i % 100) * 1e-4, 116.3, 0.0, (long) i));
+        }
+        long elapsed = System.nanoTime() - start;
+        if (print) {
+            System.out.printf("%-24s %,d trackers: %,.0f updates/s, %d GCs%n",
+                    name, trackers, updates / (elapsed / 1e9), gcCount() - gcBefore);
+        }
+    }
+
+    // Random walks through a city-sized area covered by many small fences
+    static void benchmarkGeofence(int fenceCount, int updates) {
+        Random random = new Random(2);
+        GeofenceEngine engine = new GeofenceEngine(0.01);
+        for (int i = 0; i < fenceCount; i++) {
+            double lat = 39.5 + random.nextDouble();
+            double lon = 116.0 + random.nextDouble();
+            engine.addFence(Geofence.rectangle("Fence" + i, lat, lat + 0.01, lon, lon + 0.01));
+        }
+
+        int trackers = 1000;
+        String[] ids = new String[trackers];
+        double[] lats = new double[trackers];
+        double[] lons = new double[trackers];
+        for (int i = 0; i < trackers; i++) {
+            ids[i] = "Tracker" + i;
+            lats[i] = 39.5 + random.nextDouble();
+            lons[i] = 116.0 + random.nextDouble();
+        }
+
+        long transitions = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < updates; i++) {
+            int t = i % trackers;
+            lats[t] += (random.nextDouble() - 0.5) * 0.002;
+            lons[t] += (random.nextDouble() - 0.5) * 0.002;
+            transitions += engine.update(ids[t], lats[t], lons[t]).size();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-24s %,d fences: %,.0f events/s, %,d transitions%n",
+                "GeofenceEngine", fenceCount, updates / (elapsed / 1e9), transitions);
+    }
+
+    // Same density at every fleet size, so the cost per update should stay flat as the fleet grows
+    static void benchmarkProximity(int fleet, int updates) {
+        Random random = new Random(3);
+        ProximityEngine engine = new ProximityEngine(50.0);
+        double side = 0.001 * Math.sqrt(fleet); // degrees, about one tracker per 100 m square
+        String[] ids = new String[fleet];
+        double[] lats = new double[fleet];
+        double[] lons = new double[fleet];
+        for (int i = 0; i < fleet; i++) {
+            ids[i] = "Tracker" + i;
+            lats[i] = 39.9 + random.nextDouble() * side;
+            lons[i] = 116.4 + random.nextDouble() * side;
+            engine.update(ids[i], new Position(lats[i], lons[i], 0.0, 0L));
+        }
+
+        long alerts = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < updates; i++) {
+            int t = random.nextInt(fleet);
+            lats[t] += (random.nextDouble() - 0.5) * 0.0002;
+            lons[t] += (random.nextDouble() - 0.5) * 0.0002;
+            alerts += engine.update(ids[t], new Position(lats[t], lons[t], 0.0, (long) i)).size();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-24s %,d trackers: %,.0f ns/update, %,d pair events%n",
+                "ProximityEngine", fleet, (double) elapsed / updates, alerts);
+    }
+
+    // Heap taken by the same random walks as boxed records and encoded, then the speed of decoding them
+    @SuppressWarnings("unchecked")
+    static void benchmarkCompressedTrajectories(int trackers, int pointsPerTracker) {
+        long before = usedHeap();
+        java.util.LinkedList<Double[]>[] boxed = new java.util.LinkedList[trackers];
+        for (int t = 0; t < trackers; t++) {
+            boxed[t] = new java.util.LinkedList<>();
+            Random random = new Random(t);
+            double lat = 39.9, lon = 116.3;
+            for (int i = 0; i < pointsPerTracker; i++) {
+                lat += (random.nextDouble() - 0.5) * 1e-3;
+                lon += (random.nextDouble() - 0.5) * 1e-3;
+                boxed[t].add(new Double[]{lat, lon, (double) (100 + i % 50), (double) (1 + i % 5)});
+            }
+        }
+        long boxedBytes = usedHeap() - before;
+
+        before = usedHeap();
+        CompressedTrajectoryStore store = new CompressedTrajectoryStore();
+        for (int t = 0; t < trackers; t++) {
+            long time = 0;
+            for (Double[] record : boxed[t]) {
+                time += record[3].longValue() * 1000;
+                store.append("Tracker" + t, record[0], record[1], record[2], time);
+            }
+        }
+        boxed = null;
+        long encodedBytes = usedHeap() - before + boxedBytes; // the boxed records were freed meanwhile
+
+        double[] sink = {0.0};
+        for (int round = 0; round < 5; round++) {
+            for (int t = 0; t < trackers; t++) store.forEach("Tracker" + t, (lat, lon, alt, time) -> sink[0] += lat);
+        }
+        System.out.println(store);
+        System.out.printf("%-24s boxed %,d MB, encoded %,d MB (%.1fx), decode %,.0f MB/s (checksum %.0f)%n",
+                "CompressedTrajectories", boxedBytes >> 20, encodedBytes >> 20, (double) boxedBytes / encodedBytes,
+                store.getDecodeThroughput() * store.encodedBytes() / store.pointCount() / 1e6, sink[0]);
+    }
+
+    // Rows per second accepted by the exporter, including the time to write the last of them to disk
+    static void benchmarkExporter(EventExporter.Format format, int rows) {
+        try {
+            java.nio.file.Path dir = java.nio.file.Files.createTempDirectory("gps-export");
+            String[] ids = new String[100];
+            for (int i = 0; i < ids.length; i++) ids[i] = "Tracker" + i;
+
+            EventExporter exporter = new EventExporter(dir, "bench", format, 1L << 30);
+            long gcBefore = gcCount();
+            long start = System.nanoTime();
+            for (int i = 0; i < rows; i++) {
+                exporter.write(ids[i % ids.length], 1_700_000_000_000L + i, 39.9 + (i % 1000) * 1e-5, 116.3, 50.0, i * 0.5);
+            }
+            long accepted = System.nanoTime() - start;
+            exporter.close();
+            long elapsed = System.nanoTime() - start;
+
+            long bytes = 0;
+            try (java.util.stream.Stream<java.nio.file.Path> files = java.nio.file.Files.list(dir)) {
+                for (java.nio.file.Path file : (Iterable<java.nio.file.Path>) files::iterator) {
+                    bytes += java.nio.file.Files.size(file);
+                    java.nio.file.Files.delete(file);
+                }
+            }
+            java.nio.file.Files.delete(dir);
+            System.out.printf("%-24s %s: %,.0f rows/s offered, %,.0f rows/s written (%,d MB), %,d dropped, %d GCs%n",
+                    "EventExporter", format, rows / (accepted / 1e9), exporter.getWrittenRows() / (elapsed / 1e9), bytes >> 20,
+                    exporter.getDroppedRows(), gcCount() - gcBefore);
+        } catch (java.io.IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Local SSE clients all waiting for each change of a large table; measures fan-out latency and encode cost
+    static void benchmarkServer(int rowCount, int clientCount, int rounds) {
+        java.util.List<nz.sodium.CellSink<String>> latitudes = new java.util.ArrayList<>();
+        java.util.List<java.util.List<nz.sodium.Cell<String>>> rows = new java.util.ArrayList<>();
+        for (int i = 0; i < rowCount; i++) {
+            nz.sodium.CellSink<String> lat = new nz.sodium.CellSink<>("0.0");
+            latitudes.add(lat);
+            rows.add(java.util.Arrays.asList(new nz.sodium.Cell<>("Tracker" + i), lat));
+        }
+
+        try (TrackerServer server = new TrackerServer(0)) {
+            server.addTable("trackers", new String[]{"id", "latitude"}, rows);
+            server.publish();
+            server.start();
+
+            java.util.concurrent.atomic.AtomicLong deltas = new java.util.concurrent.atomic.AtomicLong();
+            java.util.concurrent.atomic.AtomicLong bytes = new java.util.concurrent.atomic.AtomicLong();
+            for (int c = 0; c < clientCount; c++) {
+                Thread client = new Thread(() -> {
+                    try {
+                        java.net.URLConnection connection = new java.net.URL("http://localhost:" + server.getPort() + "/events").openConnection();
+                        try (java.io.BufferedReader in = new java.io.BufferedReader(new java.io.InputStreamReader(connection.getInputStream()))) {
+                            for (String line; (line = in.readLine()) != null; ) {
+                                bytes.addAndGet(line.length() + 1);
+                                if (line.equals("event: delta")) deltas.incrementAndGet();
+                            }
+                        }
+                    } catch (java.io.IOException e) {
+                        // server closed
+                    }
+                });
+                client.setDaemon(true);
+                client.start();
+            }
+            while (server.getClientCount() < clientCount) Thread.sleep(10);
+
+            long totalLatency = 0;
+            for (int round = 1; round <= rounds; round++) {
+                for (int i = 0; i < rowCount; i += 10) latitudes.get(i).send(String.valueOf(round)); // 10% of rows move
+                long start = System.nanoTime();
+                while (deltas.get() < (long) round * clientCount) Thread.sleep(1);
+                totalLatency += System.nanoTime() - start;
+            }
+            System.out.printf("%-24s %,d clients, %,d rows: %.1f ms from change to last client (publishing every %d ms), %,d encodes, %,d KB received%n",
+                    "TrackerServer", clientCount, rowCount, totalLatency / 1e6 / rounds, TrackerServer.PUSH_INTERVAL,
+                    server.getEncodeCount(), bytes.get() >> 10);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    // CPU spent keeping the filtered display's 90 labels current: one Swing task per update as SLabel queues, against
+    // LiveLabel while visible and while the window is minimized
+    static void benchmarkRendering(int labelCount, int updates) {
+        java.util.List<nz.sodium.CellSink<String>> cells = new java.util.ArrayList<>();
+        for (int i = 0; i < labelCount; i++) cells.add(new nz.sodium.CellSink<>(""));
+
+        // Before: what SLabel does, a task per update on the event dispatch thread
+        javax.swing.JLabel[] plain = new javax.swing.JLabel[labelCount];
+        java.util.List<nz.sodium.Listener> listeners = new java.util.ArrayList<>();
+        for (int i = 0; i < labelCount; i++) {
+            javax.swing.JLabel label = plain[i] = new javax.swing.JLabel("");
+            listeners.add(nz.sodium.Operational.updates(cells.get(i)).listen(t -> javax.swing.SwingUtilities.invokeLater(() -> label.setText(t))));
+        }
+        renderRun("SLabel-style", cells, updates, null);
+        for (nz.sodium.Listener listener : listeners) listener.unlisten();
+
+        RenderGate gate = new RenderGate();
+        java.util.List<LiveLabel> labels = new java.util.ArrayList<>();
+        for (nz.sodium.CellSink<String> cell : cells) labels.add(new LiveLabel(cell, gate));
+        try {
+            javax.swing.SwingUtilities.invokeAndWait(() -> labels.forEach(label -> {
+                label.addNotify(); // listens from here, as when added to a window
+                label.setShowing(true);
+            }));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        renderRun("LiveLabel visible", cells, updates, gate);
+        gate.setPaused(true);
+        renderRun("LiveLabel minimized", cells, updates, gate);
+    }
+
+    private static void renderRun(String name, java.util.List<nz.sodium.CellSink<String>> cells, int updates, RenderGate gate) {
+        java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (!(os instanceof com.sun.management.OperatingSystemMXBean)) return;
+        com.sun.management.OperatingSystemMXBean cpu = (com.sun.management.OperatingSystemMXBean) os;
+
+        long applied = gate == null ? 0 : gate.getAppliedUpdates();
+        long cpuBefore = cpu.getProcessCpuTime();
+        long start = System.nanoTime();
+        for (int i = 0; i < updates; i++) cells.get(i % cells.size()).send(String.valueOf(i));
+        try {
+            javax.swing.SwingUtilities.invokeAndWait(() -> { }); // wait for the queued Swing work too
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        long elapsed = System.nanoTime() - start;
+        double cpuMillis = (cpu.getProcessCpuTime() - cpuBefore) / 1e6;
+        System.out.printf("%-24s %,d updates in %.0f ms: %.0f ms CPU (%.2f us/update), %s%n", name, updates, elapsed / 1e6,
+                cpuMillis, cpuMillis * 1000 / updates,
+                gate == null ? updates + " setText" : (gate.getAppliedUpdates() - applied) + " setText");
+    }
+
+    // Distance over 1 min, 5 min and 1 h for every tracker: bucket roll-up against scanning the raw points of the window
+    static void benchmarkWindowedAggregates(int trackers, int pointsPerTracker) {
+        WindowedAggregates aggregates = new WindowedAggregates(WindowedAggregates.DEFAULT_BUCKET, 1000 * 60 * 60, trackers);
+        java.util.List<java.util.List<Position>> raw = new java.util.ArrayList<>();
+        for (int t = 0; t < trackers; t++) raw.add(new java.util.ArrayList<>());
+        Random random = new Random(4);
+        long end = pointsPerTracker * 1000L; // one point per tracker per second
+        long start = System.nanoTime();
+        for (int p = 0; p < pointsPerTracker; p++) {
+            for (int t = 0; t < trackers; t++) {
+                Position position = new Position(39.9 + random.nextDouble() * 1e-2, 116.3 + random.nextDouble() * 1e-2, 50.0, p * 1000L);
+                aggregates.record("Tracker" + t, position);
+                raw.get(t).add(position);
+            }
+        }
+        double recordRate = (double) trackers * pointsPerTracker / ((System.nanoTime() - start) / 1e9);
+
+        long[] windows = {60_000, 300_000, 3_600_000};
+        int rounds = 20;
+        double[] sink = new double[1];
+        start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            for (long window : windows) {
+                for (int t = 0; t < trackers; t++) sink[0] += aggregates.query("Tracker" + t, window, end).distance;
+            }
+        }
+        double rollUpMicros = (System.nanoTime() - start) / 1e3 / (rounds * windows.length * trackers);
+        start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            for (long window : windows) {
+                for (int t = 0; t < trackers; t++) sink[0] += scanWindow(raw.get(t), end - window);
+            }
+        }
+        double scanMicros = (System.nanoTime() - start) / 1e3 / (rounds * windows.length * trackers);
+        System.out.printf("%-24s %,d trackers x %,d points: %,.0f points/s recorded, %.2f us per roll-up against %.1f us per scan, checksum %.0f%n",
+                "WindowedAggregates", trackers, pointsPerTracker, recordRate, rollUpMicros, scanMicros, sink[0]);
+    }
+
+    // Top 10 by 5-minute distance, read once a second: incremental ranking against sorting every tracker's distance
+    static void benchmarkLeaderboard(int trackers, int updates) {
+        long window = 1000 * 60 * 5;
+        DistanceLeaderboard leaderboard = new DistanceLeaderboard(window, WindowedAggregates.DEFAULT_BUCKET);
+        String[] ids = new String[trackers];
+        for (int t = 0; t < trackers; t++) ids[t] = "Tracker" + t;
+        Random random = new Random(5);
+        long perSecond = Math.max(1, trackers / 10); // a tenth of the fleet reports every second
+        double[] sink = new double[1];
+        long readNanos = 0;
+        int reads = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < updates; i++) {
+            long now = i / perSecond * 1000;
+            leaderboard.record(ids[random.nextInt(trackers)], random.nextDouble() * 100.0, now);
+            if (i % perSecond == 0) {
+                long readStart = System.nanoTime();
+                leaderboard.advance(now);
+                sink[0] += leaderboard.top(10).get(0).getDistance();
+                readNanos += System.nanoTime() - readStart;
+                reads++;
+            }
+        }
+        double updateMicros = (System.nanoTime() - start - readNanos) / 1e3 / updates;
+
+        // What each read costs without the structure: sorting every tracker's windowed distance
+        double[] distances = new double[trackers];
+        for (int t = 0; t < trackers; t++) distances[t] = leaderboard.distance(ids[t]);
+        Integer[] order = new Integer[trackers];
+        int sorts = Math.max(1, Math.min(reads, 10_000_000 / trackers));
+        start = System.nanoTime();
+        for (int r = 0; r < sorts; r++) {
+            for (int t = 0; t < trackers; t++) order[t] = t;
+            java.util.Arrays.sort(order, (x, y) -> Double.compare(distances[y], distances[x]));
+            sink[0] += distances[order[0]];
+        }
+        double sortMicros = (System.nanoTime() - start) / 1e3 / sorts;
+        System.out.printf("%-24s %,d trackers: %.2f us per update, %.1f us per top-10 read against %,.0f us per sort, checksum %.0f%n",
+                "DistanceLeaderboard", trackers, updateMicros, readNanos / 1e3 / reads, sortMicros, sink[0]);
+    }
+
+    // PLT parsing throughput on a generated Geolife-like directory, on one thread and on every core
+    static void benchmarkGeolifeImport(int users, int filesPerUser, int pointsPerFile) {
+        try {
+            java.nio.file.Path root = java.nio.file.Files.createTempDirectory("geolife");
+            Random random = new Random(6);
+            for (int u = 0; u < users; u++) {
+                java.nio.file.Path trajectory = java.nio.file.Files.createDirectories(root.resolve(String.format("%03d/Trajectory", u)));
+                for (int f = 0; f < filesPerUser; f++) {
+                    StringBuilder plt = new StringBuilder("Geolife trajectory\nWGS 84\nAltitude is in Feet\nReserved 3\n0,2,255,My Track,0,0,2,8421376\n0\n");
+                    double days = 39744.0 + f;
+                    for (int p = 0; p < pointsPerFile; p++) {
+                        days += (1 + random.nextInt(5)) / 86400.0;
+                        plt.append(String.format(java.util.Locale.ROOT, "%.6f,%.6f,0,%d,%.10f,2008-10-23,02:53:04%n",
+                                39.9 + random.nextDouble() * 0.1, 116.3 + random.nextDouble() * 0.1, 100 + random.nextInt(400), days));
+                    }
+                    java.nio.file.Files.write(trajectory.resolve(f + ".plt"), plt.toString().getBytes(java.nio.charset.StandardCharsets.US_ASCII));
+                }
+            }
+
+            int cores = Runtime.getRuntime().availableProcessors();
+            GeolifeImporter.importDirectory(root, cores); // warm-up
+            for (int threads : cores > 1 ? new int[]{1, cores} : new int[]{1}) {
+                System.out.printf("%-24s %s%n", "GeolifeImporter", GeolifeImporter.importDirectory(root, threads));
+            }
+
+            try (java.util.stream.Stream<java.nio.file.Path> paths = java.nio.file.Files.walk(root)) {
+                paths.sorted(java.util.Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        } catch (java.io.IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Walks back from the newest point to the start of the window, as a query without pre-aggregates must
+    private static double scanWindow(java.util.List<Position> points, long fromMillis) {
+        double distance = 0.0;
+        for (int i = points.size() - 1; i > 0 && points.get(i - 1).time >= fromMillis; i--) {
+            distance += Utils.calculateDistance(points.get(i - 1), points.get(i));
+        }
+        return distance;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) count += gc.getCollectionCount();
+        return count;
+    }
+
+    static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) millis += gc.getCollectionTime();
+        return millis;
+    }
+}
@@ -0,0 +1,64 @@
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GpsCompressedTrajectory_Test {
+    @Test
+    public void testRoundTripWithinQuantization() {
+        CompressedTrajectoryStore store = new CompressedTrajectoryStore();
+        Random random = new Random(1);
+        double lat = 39.9, lon = 116.3;
+        long time = 1_700_000_000_000L;
+        double[][] expected = new double[10_000][];
+        for (int i = 0; i < expected.length; i++) {
+            lat += (random.nextDouble() - 0.5) * 1e-3;
+            lon += (random.nextDouble() - 0.5) * 1e-3;
+            time += 1000 + random.nextInt(4000);
+            double alt = 50.0 + random.nextDouble() * 20.0;
+            expected[i] = new double[]{lat, lon, alt, time};
+            store.append("Tracker1", lat, lon, alt, time);
+        }
+
+        List<Position> positions = store.positions("Tracker1");
+        assertEquals(expected.length, positions.size());
+        for (int i = 0; i < expected.length; i++) {
+            Position p = positions.get(i);
+            assertEquals(expected[i][0], p.latitude, CompressedTrajectoryStore.DEGREE_UNIT);
+            assertEquals(expected[i][1], p.longitude, CompressedTrajectoryStore.DEGREE_UNIT);
+            assertEquals(expected[i][2], p.altitude, 0.5);
+            assertEquals((long) expected[i][3], (long) p.time);
+        }
+        assertTrue("ratio " + store.getCompressionRatio(), store.getCompressionRatio() >= 10.0);
+    }
+
+    @Test
+    public void testExtremeJumpsAndTrackersKeptApart() {
+        CompressedTrajectoryStore store = new CompressedTrajectoryStore();
+        store.append("Tracker1", -89.9999999, -179.9999999, -400.0, 0L);
+        store.append("Tracker1", 89.9999999, 179.9999999, 8848.0, Long.MAX_VALUE / 2); // largest possible deltas
+        store.append("Tracker2", 45.0, -75.0, 0.0, 5L);
+
+        List<Position> positions = store.positions("Tracker1");
+        assertEquals(179.9999999, positions.get(1).longitude, 1e-9);
+        assertEquals(8848.0, positions.get(1).altitude, 0.0);
+        assertEquals(Long.MAX_VALUE / 2, (long) positions.get(1).time);
+        assertEquals(1, store.size("Tracker2"));
+        assertEquals(0, store.size("Unknown"));
+    }
+
+    @Test
+    public void testDistanceOverInterval() {
+        CompressedTrajectoryStore store = new CompressedTrajectoryStore();
+        store.append("Tracker1", 45.0, -75.0, 0.0, 0L);
+        store.append("Tracker1", 45.001, -75.0, 0.0, 10_000L);
+        store.append("Tracker1", 45.002, -75.0, 0.0, 20_000L);
+
+        double leg = Utils.calculateDistance(45.0, -75.0, 0.0, 45.001, -75.0, 0.0);
+        assertEquals(2 * leg, store.distance("Tracker1", 0L, 20_000L), 1.0);
+        assertEquals(leg, store.distance("Tracker1", 10_000L, 20_000L), 1.0);
+        assertEquals(0.0, store.distance("Tracker1", 30_000L, 40_000L), 0.0);
+    }
+}
@@ -3,21 +3,20 @@ import nz.sodium.Stream;
 import nz.sodium.StreamSink;
 import org.junit.Test;
 
-import java.util.concurrent.TimeUnit;
-
 import static org.junit.Assert.*;
 
 public class GpsCurrEventClean_Test {
     /* Test current event Display */
     @Test
-    public void testContentClearAfter3Sec() throws InterruptedException {
+    public void testContentClearAfter3Sec() {
+        ManualClock clock = new ManualClock(0L);
         // Set up the GPS event streams
         StreamSink<GpsEvent> gpsEvent1 = new StreamSink<>();
         @SuppressWarnings("unchecked")
         Stream<GpsEvent>[] gpsEvents = new Stream[]{gpsEvent1};
 
         // get the current event content
-        Cell<String> content = EventProcessor.currentTracker(gpsEvents);
+        Cell<String> content = EventProcessor.currentTracker(gpsEvents, clock);
 
         // Simulate sending an event
         GpsEvent event = new GpsEvent("ContentTestTracker1", 34.05, -118.25, 100);
@@ -26,26 +25,29 @@ public class GpsCurrEventClean_Test {
         // the content initially should contain the event data
         assertFalse(content.sample().isEmpty());
 
-        // Wait for over 3 seconds to simulate the timeout
-        TimeUnit.SECONDS.sleep(4);
+        // Exactly 3 seconds later the event is still shown
+        clock.advance(3000);
+        assertFalse(content.sample().isEmpty());
 
         // the content should be cleared after 3 seconds
+        clock.advance(1000);
         assertEquals("", content.sample());
     }
 
     @Test
-    public void testContentNoClearIfNewEventBefore3Sec() throws InterruptedException {
+    public void testContentNoClearIfNewEventBefore3Sec() {
+        ManualClock clock = new ManualClock(0L);
         StreamSink<GpsEvent> gpsEvent1 = new StreamSink<>();
         @SuppressWarnings("unchecked")
         Stream<GpsEvent>[] gpsEvents = new Stream[]{gpsEvent1};
 
-        Cell<String> content = EventProcessor.currentTracker(gpsEvents);
+        Cell<String> content = EventProcessor.currentTracker(gpsEvents, clock);
 
         GpsEvent firstEvent = new GpsEvent("Tracker1", 34.05, -118.25, 100);
         gpsEvent1.send(firstEvent);
 
         // Wait for 2 seconds, then send a second event before the 3-second timeout
-        TimeUnit.SECONDS.sleep(2);
+        clock.advance(2000);
 
         GpsEvent secondEvent = new GpsEvent("Tracker2", 40.71, -74.01, 200);
         gpsEvent1.send(secondEvent);
@@ -55,9 +57,28 @@ public class GpsCurrEventClean_Test {
         assertFalse(content.sample().contains("Tracker1")); // Ensure first event be overwritten
 
         // Wait an additional 2 seconds, verifying the second event reset the timeout
-        TimeUnit.SECONDS.sleep(2);
+        clock.advance(2000);
 
         // Content should not be cleared due to not over 3 seconds
         assertFalse(content.sample().isEmpty());
     }
+
+    @Test
+    public void testHoursOfSimulatedTraffic() {
+        ManualClock clock = new ManualClock(0L);
+        StreamSink<GpsEvent> gpsEvent1 = new StreamSink<>();
+        @SuppressWarnings("unchecked")
+        Stream<GpsEvent>[] gpsEvents = new Stream[]{gpsEvent1};
+
+        Cell<String> content = EventProcessor.currentTracker(gpsEvents, clock);
+
+        // Three hours, one event every 5 seconds: the display alternates between shown and cleared
+        int cleared = 0;
+        for (int second = 0; second < 3 * 60 * 60; second++) {
+            if (second % 5 == 0) gpsEvent1.send(new GpsEvent("Tracker1", 34.05 + second * 1e-6, -118.25, 100));
+            clock.advance(1000);
+            if (content.sample().isEmpty()) cleared++;
+        }
+        assertEquals(2 * (3 * 60 * 60 / 5), cleared); // cleared 4 and 5 seconds after each event, until the next one
+    }
 }
@@ -0,0 +1,123 @@
+import nz.sodium.Cell;
+import nz.sodium.StreamSink;
+import nz.sodium.Unit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import swidgets.SButton;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class GpsEventExporter_Test {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCsvRows() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        try (EventExporter exporter = new EventExporter(dir, "events", EventExporter.Format.CSV, 1L << 30)) {
+            exporter.write("Tracker1", 1_700_000_000_123L, 39.9842483, 116.3182567, 149.352, 0.0);
+            exporter.write("Tracker,2", 5L, -0.00000004, -116.5, -2.5, 1234.567);
+        }
+
+        List<String> lines = Files.readAllLines(dir.resolve("events-00000.csv"));
+        assertEquals(Arrays.asList(
+                "id,time,latitude,longitude,altitude,distance",
+                "Tracker1,1700000000123,39.9842483,116.3182567,149.35,0.00",
+                "\"Tracker,2\",5,0.0000000,-116.5000000,-2.50,1234.57"), lines);
+    }
+
+    @Test
+    public void testGeoJsonSequence() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        try (EventExporter exporter = new EventExporter(dir, "events", EventExporter.Format.GEOJSON_SEQ, 1L << 30)) {
+            exporter.write("Tracker\"1", 7L, 39.5, 116.25, 10.0, Double.NaN);
+        }
+
+        String text = new String(Files.readAllBytes(dir.resolve("events-00000.geojsons")), StandardCharsets.UTF_8);
+        assertEquals("\u001e{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\",\"coordinates\":[116.2500000,39.5000000,10.00]},"
+                + "\"properties\":{\"id\":\"Tracker\\\"1\",\"time\":7,\"distance\":null}}\n", text);
+    }
+
+    @Test
+    public void testRotationKeepsWholeRows() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        int rows = 300_000; // more than one buffer
+        try (EventExporter exporter = new EventExporter(dir, "events", EventExporter.Format.CSV, EventExporter.BUFFER_SIZE)) {
+            for (int i = 0; i < rows; i++) exporter.write("Tracker" + (i % 10), i, 39.9, 116.3, 50.0, i);
+            assertEquals(0, exporter.getDroppedRows());
+        }
+
+        List<Path> files = Files.list(dir).sorted().collect(Collectors.toList());
+        assertTrue(files.size() > 1);
+        long dataLines = 0;
+        for (Path file : files) {
+            List<String> lines = Files.readAllLines(file);
+            assertEquals("id,time,latitude,longitude,altitude,distance", lines.get(0));
+            for (String line : lines.subList(1, lines.size())) assertEquals(6, line.split(",").length);
+            dataLines += lines.size() - 1;
+        }
+        assertEquals(rows, dataLines);
+    }
+
+    @Test
+    public void testWriteFailureReportedOnClose() throws Exception {
+        Path dir = folder.newFolder("gone").toPath();
+        EventExporter exporter = new EventExporter(dir, "events", EventExporter.Format.CSV, 1L);
+        Files.delete(dir.resolve("events-00000.csv"));
+        Files.delete(dir);
+
+        // The row needs a second file, which cannot be created; let the flusher fail before closing
+        exporter.write("Tracker1", 1L, 39.9, 116.3, 50.0, 0.0);
+        Thread.sleep(EventExporter.FLUSH_INTERVAL * 3);
+        try {
+            exporter.close();
+            fail("close() must report the failed write");
+        } catch (IOException expected) {
+            // the flusher's error
+        }
+    }
+
+    @Test
+    public void testFilteredEventsExported() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        ManualClock clock = new ManualClock(1000L);
+        List<Cell<Optional<Double>>> rangeVals = Arrays.asList(
+                new Cell<>(Optional.of(9.0)), new Cell<>(Optional.of(8.0)),
+                new Cell<>(Optional.of(99.0)), new Cell<>(Optional.of(98.0)));
+        SButton setButton = new SButton("Set");
+        StreamSink<GpsEvent> gpsStream = new StreamSink<>();
+
+        try (EventExporter exporter = new EventExporter(dir, "filtered", EventExporter.Format.CSV, 1L << 30)) {
+            EventProcessor.filteredEvents(rangeVals, setButton, 5000L, gpsStream, clock, exporter);
+            Field sClicked = SButton.class.getDeclaredField("sClicked");
+            sClicked.setAccessible(true);
+            @SuppressWarnings("unchecked")
+            StreamSink<Unit> clicks = (StreamSink<Unit>) sClicked.get(setButton);
+            clicks.send(Unit.UNIT);
+
+            gpsStream.send(new GpsEvent("ExportTracker1", 8.5, 98.5, 0.0));
+            clicks.send(Unit.UNIT); // re-applying the range must not export the held event again
+            clicks.send(Unit.UNIT);
+            clock.advance(1000);
+            gpsStream.send(new GpsEvent("ExportTracker1", 7.0, 98.5, 0.0)); // outside the range, not exported
+            clock.advance(1000);
+            gpsStream.send(new GpsEvent("ExportTracker1", 8.6, 98.5, 0.0));
+        }
+
+        List<String> lines = Files.readAllLines(dir.resolve("filtered-00000.csv"));
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(1).startsWith("ExportTracker1,1000,8.5000000,98.5000000,"));
+        assertTrue(lines.get(2).startsWith("ExportTracker1,3000,8.6000000,98.5000000,"));
+    }
+}
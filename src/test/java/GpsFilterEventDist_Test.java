@@ -14,13 +14,14 @@ import static org.junit.Assert.assertNotEquals;
 
 public class GpsFilterEventDist_Test {
     @Test
-    public void testIfDistanceCumulativeCorrect() throws NoSuchFieldException, IllegalAccessException, InterruptedException {
+    public void testIfDistanceCumulativeCorrect() throws NoSuchFieldException, IllegalAccessException {
+        ManualClock clock = new ManualClock(0L);
         List<Cell<Optional<Double>>> rangeVals = createRangeVals(50, -50, 100, -100);
 
         SButton setButton = new SButton("Set");
         StreamSink<GpsEvent> gpsStream = new StreamSink<>();
         // Simulate filter events
-        EventProcessor.filteredEvents(rangeVals, setButton, 5000L, gpsStream);
+        EventProcessor.filteredEvents(rangeVals, setButton, 5000L, gpsStream, clock);
 
         simulateButtonClick(setButton);
 
@@ -44,13 +45,13 @@ public class GpsFilterEventDist_Test {
 
         // Simulate event sending
         gpsStream.send(event1);
-        Thread.sleep(100);
+        clock.advance(100);
         gpsStream.send(event2);
-        Thread.sleep(100);
+        clock.advance(100);
         gpsStream.send(event3);
-        Thread.sleep(100);
+        clock.advance(100);
         gpsStream.send(event4);
-        Thread.sleep(100);
+        clock.advance(100);
 
         // Ensure when tracker arrive position 4 from 1, all the distance has been cumulative
         assertEquals(tracker1ExpectDist, EventProcessor.getTotalDistancesRecord().get("Test1Tracker1"), 0.1);
@@ -149,6 +150,36 @@ public class GpsFilterEventDist_Test {
         assertNotEquals(mistakeTracker1Dist, EventProcessor.getTotalDistancesRecord().get("Test3Tracker1"), 0.1);
     }
 
+    /* Test the displayed distance only refreshes once per window */
+    @Test
+    public void testDistanceWindowWithSimulatedClock() throws NoSuchFieldException, IllegalAccessException {
+        ManualClock clock = new ManualClock(0L);
+        List<Cell<Optional<Double>>> rangeVals = createRangeVals(50.0, -50.0, 100.0, -100.0);
+
+        SButton setButton = new SButton("Set");
+        StreamSink<GpsEvent> gpsStream = new StreamSink<>();
+        List<Cell<String>> results = EventProcessor.filteredEvents(rangeVals, setButton, 5 * 60 * 1000L, gpsStream, clock);
+        Cell<String> shownDistance = results.get(4);
+
+        simulateButtonClick(setButton);
+
+        // Two hours of simulated traffic, one event per second moving north
+        int refreshes = 0;
+        String lastShown = "";
+        for (int second = 0; second < 2 * 60 * 60; second++) {
+            gpsStream.send(new GpsEvent("Test4Tracker1", 8.0 + second * 1e-4, 98.4, 100.0));
+            clock.advance(1000);
+            if (!shownDistance.sample().equals(lastShown)) {
+                refreshes++;
+                lastShown = shownDistance.sample();
+            }
+        }
+
+        // The shown value changes once per 5-minute window and no more often
+        assertEquals(2 * 60 / 5, refreshes);
+        assertEquals(EventProcessor.getTotalDistancesRecord().get("Test4Tracker1"), Double.parseDouble(lastShown), 100.0);
+    }
+
     // Helper method to simulate user input range values
     private List<Cell<Optional<Double>>> createRangeVals(double latMax, double latMin, double lonMax, double lonMin) {
         return Arrays.asList(
@@ -0,0 +1,176 @@
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import nz.sodium.Cell;
+import nz.sodium.StreamSink;
+import nz.sodium.Unit;
+import org.junit.Test;
+import swidgets.SButton;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class GpsFlightEvents_Test {
+    @Test
+    public void testFilterAndDistanceEventsRecorded() throws Exception {
+        List<RecordedEvent> events = record(true);
+
+        long accepted = events.stream().filter(e -> e.getEventType().getName().equals("gps.FilterDecision")
+                && e.getString("trackerId").equals("JfrTracker1") && e.getBoolean("accepted")).count();
+        long rejected = events.stream().filter(e -> e.getEventType().getName().equals("gps.FilterDecision")
+                && e.getString("trackerId").equals("JfrTracker1") && !e.getBoolean("accepted")).count();
+        List<RecordedEvent> updates = events.stream().filter(e -> e.getEventType().getName().equals("gps.DistanceUpdate")
+                && e.getString("trackerId").equals("JfrTracker1")).collect(java.util.stream.Collectors.toList());
+
+        assertTrue(accepted >= 2);
+        assertTrue(rejected >= 1);
+        assertEquals(accepted, updates.size());
+        assertTrue(updates.get(updates.size() - 1).getDouble("totalDistance") > 0.0);
+    }
+
+    @Test
+    public void testNothingRecordedUnlessEnabled() throws Exception {
+        List<RecordedEvent> events = record(false);
+        assertTrue(events.stream().noneMatch(e -> e.getEventType().getName().startsWith("gps.")));
+    }
+
+    @Test
+    public void testStartupMilestoneRecorded() throws Exception {
+        File file = File.createTempFile("gps", ".jfr");
+        file.deleteOnExit();
+        try (Recording recording = new Recording()) {
+            recording.enable("gps.Startup");
+            recording.start();
+            GpsFlightEvents.startup("test milestone", System.nanoTime() - 5_000_000L);
+            recording.stop();
+            recording.dump(file.toPath());
+        }
+
+        List<RecordedEvent> startups = RecordingFile.readAllEvents(file.toPath());
+        assertEquals(1, startups.size());
+        assertEquals("test milestone", startups.get(0).getString("milestone"));
+        assertTrue(startups.get(0).getLong("sinceStart") >= 5);
+    }
+
+    @Test
+    public void testSimplifierCountersRecorded() throws Exception {
+        TrajectorySimplifier simplifier = new TrajectorySimplifier(10.0);
+        Runnable hook = GpsFlightEvents.watch(simplifier);
+        File file = File.createTempFile("gps", ".jfr");
+        file.deleteOnExit();
+        try (Recording recording = new Recording()) {
+            recording.enable("gps.Simplifier").with("period", "endChunk");
+            recording.start();
+            simplifier.keep(new GpsEvent("JfrTracker2", 45.0, -75.0, 0.0));
+            simplifier.keep(new GpsEvent("JfrTracker2", 45.0, -75.0, 0.0));
+            recording.stop();
+            recording.dump(file.toPath());
+        } finally {
+            jdk.jfr.FlightRecorder.removePeriodicEvent(hook);
+        }
+
+        List<RecordedEvent> counters = RecordingFile.readAllEvents(file.toPath());
+        assertFalse(counters.isEmpty());
+        RecordedEvent last = counters.get(counters.size() - 1);
+        assertEquals(2, last.getLong("seen"));
+        assertEquals(1, last.getLong("kept"));
+        assertEquals(2.0, last.getDouble("compressionRatio"), 0.0);
+    }
+
+    @Test
+    public void testExportCountersRecorded() throws Exception {
+        Path dir = Files.createTempDirectory("gps-export");
+        EventExporter exporter = new EventExporter(dir, "events", EventExporter.Format.CSV, 1L << 30);
+        Runnable hook = GpsFlightEvents.watch(exporter);
+        File file = File.createTempFile("gps", ".jfr");
+        file.deleteOnExit();
+        try (Recording recording = new Recording()) {
+            recording.enable("gps.Export").with("period", "endChunk");
+            recording.start();
+            exporter.write("JfrTracker3", 1L, 45.0, -75.0, 0.0, 0.0);
+            exporter.write("JfrTracker3", 2L, 45.1, -75.0, 0.0, 11.1);
+            recording.stop();
+            recording.dump(file.toPath());
+        } finally {
+            jdk.jfr.FlightRecorder.removePeriodicEvent(hook);
+            exporter.close();
+            Files.delete(dir.resolve("events-00000.csv"));
+            Files.delete(dir);
+        }
+
+        List<RecordedEvent> counters = RecordingFile.readAllEvents(file.toPath());
+        assertFalse(counters.isEmpty());
+        RecordedEvent last = counters.get(counters.size() - 1);
+        assertEquals(2, last.getLong("written"));
+        assertEquals(0, last.getLong("dropped"));
+        assertEquals(1, last.getInt("files"));
+        assertNull(last.getString("failure"));
+    }
+
+    @Test
+    public void testShardCountersRecorded() throws Exception {
+        File file = File.createTempFile("gps", ".jfr");
+        file.deleteOnExit();
+        try (ShardAggregator aggregator = new ShardAggregator(0, 0)) {
+            Runnable hook = GpsFlightEvents.watch(aggregator);
+            try (Recording recording = new Recording()) {
+                recording.enable("gps.Shards").with("period", "endChunk");
+                recording.start();
+                ShardWorker worker = new ShardWorker(aggregator.getPort(), 0, new ShardRing(1), 3);
+                worker.run(2, 0);
+                long deadline = System.currentTimeMillis() + 10_000;
+                while (aggregator.getEventCount() < 6 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+                recording.stop();
+                recording.dump(file.toPath());
+                worker.close();
+            } finally {
+                jdk.jfr.FlightRecorder.removePeriodicEvent(hook);
+            }
+        }
+
+        List<RecordedEvent> counters = RecordingFile.readAllEvents(file.toPath());
+        assertFalse(counters.isEmpty());
+        RecordedEvent last = counters.get(counters.size() - 1);
+        assertEquals(6, last.getLong("merged"));
+        assertEquals(1, last.getInt("workers"));
+    }
+
+    private List<RecordedEvent> record(boolean enableGpsEvents) throws Exception {
+        File file = File.createTempFile("gps", ".jfr");
+        file.deleteOnExit();
+        try (Recording recording = new Recording()) {
+            if (enableGpsEvents) {
+                recording.enable("gps.FilterDecision");
+                recording.enable("gps.DistanceUpdate").withThreshold(java.time.Duration.ZERO);
+            }
+            recording.start();
+
+            List<Cell<Optional<Double>>> rangeVals = Arrays.asList(
+                    new Cell<>(Optional.of(9.0)), new Cell<>(Optional.of(8.0)),
+                    new Cell<>(Optional.of(99.0)), new Cell<>(Optional.of(98.0)));
+            SButton setButton = new SButton("Set");
+            StreamSink<GpsEvent> gpsStream = new StreamSink<>();
+            EventProcessor.filteredEvents(rangeVals, setButton, 5000L, gpsStream, new ManualClock(0L));
+            Field sClicked = SButton.class.getDeclaredField("sClicked");
+            sClicked.setAccessible(true);
+            @SuppressWarnings("unchecked")
+            StreamSink<Unit> clicks = (StreamSink<Unit>) sClicked.get(setButton);
+            clicks.send(Unit.UNIT);
+
+            gpsStream.send(new GpsEvent("JfrTracker1", 8.5, 98.5, 0.0));
+            gpsStream.send(new GpsEvent("JfrTracker1", 7.0, 98.5, 0.0)); // rejected
+            gpsStream.send(new GpsEvent("JfrTracker1", 8.6, 98.5, 0.0));
+
+            recording.stop();
+            recording.dump(file.toPath());
+        }
+        return RecordingFile.readAllEvents(file.toPath());
+    }
+}
@@ -0,0 +1,91 @@
+import nz.sodium.Stream;
+import nz.sodium.StreamSink;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GpsGeofence_Test {
+    @Test
+    public void testPolygonContainment() {
+        // Triangle with its right angle at (0, 0)
+        Geofence triangle = new Geofence("Triangle", new double[]{0.0, 0.0, 1.0}, new double[]{0.0, 1.0, 0.0});
+
+        assertTrue(triangle.contains(0.2, 0.2));
+        assertFalse(triangle.contains(0.8, 0.8)); // inside the bounding box but outside the triangle
+        assertFalse(triangle.contains(2.0, 2.0));
+    }
+
+    @Test
+    public void testEnterAndExitEmittedOnce() {
+        GeofenceEngine engine = new GeofenceEngine(0.1);
+        engine.addFence(Geofence.rectangle("Depot", 8.0, 8.5, 98.0, 98.5));
+
+        assertTrue(engine.update("Tracker1", 7.0, 97.0).isEmpty()); // starts outside
+
+        List<GeofenceEvent> entered = engine.update("Tracker1", 8.2, 98.2);
+        assertEquals(1, entered.size());
+        assertEquals(GeofenceEvent.Type.ENTER, entered.get(0).type);
+        assertEquals("Depot", entered.get(0).fenceName);
+
+        assertTrue(engine.update("Tracker1", 8.3, 98.3).isEmpty()); // still inside, no transition
+        assertEquals(Collections.singleton("Depot"), engine.fencesContaining("Tracker1"));
+
+        List<GeofenceEvent> exited = engine.update("Tracker1", 9.0, 98.3);
+        assertEquals(1, exited.size());
+        assertEquals(GeofenceEvent.Type.EXIT, exited.get(0).type);
+        assertTrue(engine.fencesContaining("Tracker1").isEmpty());
+    }
+
+    @Test
+    public void testMoveBetweenAdjacentFences() {
+        GeofenceEngine engine = new GeofenceEngine(0.1);
+        engine.addFence(Geofence.rectangle("West", 8.0, 8.5, 98.0, 98.5));
+        engine.addFence(Geofence.rectangle("East", 8.0, 8.5, 98.5, 99.0));
+        engine.addFence(Geofence.rectangle("Country", -10.0, 30.0, 90.0, 110.0)); // too large for the grid
+
+        List<GeofenceEvent> first = engine.update("Tracker1", 8.2, 98.2);
+        assertEquals(2, first.size()); // enters West and Country
+
+        List<GeofenceEvent> moved = engine.update("Tracker1", 8.2, 98.7);
+        assertEquals(2, moved.size());
+        assertEquals(GeofenceEvent.Type.EXIT, moved.get(0).type);
+        assertEquals("West", moved.get(0).fenceName);
+        assertEquals(GeofenceEvent.Type.ENTER, moved.get(1).type);
+        assertEquals("East", moved.get(1).fenceName);
+    }
+
+    @Test
+    public void testTrackersHaveSeparateMembership() {
+        GeofenceEngine engine = new GeofenceEngine(0.1);
+        engine.addFence(Geofence.rectangle("Depot", 8.0, 8.5, 98.0, 98.5));
+
+        assertEquals(1, engine.update("Tracker1", 8.2, 98.2).size());
+        assertEquals(1, engine.update("Tracker2", 8.2, 98.2).size()); // Tracker1 being inside does not matter
+    }
+
+    @Test
+    public void testGeofenceStream() {
+        GeofenceEngine engine = new GeofenceEngine(0.1);
+        engine.addFence(Geofence.rectangle("Depot", 8.0, 8.5, 98.0, 98.5));
+
+        StreamSink<GpsEvent> gpsEvent1 = new StreamSink<>();
+        StreamSink<GpsEvent> gpsEvent2 = new StreamSink<>();
+        @SuppressWarnings("unchecked")
+        Stream<GpsEvent>[] gpsEvents = new Stream[]{gpsEvent1, gpsEvent2};
+
+        List<GeofenceEvent> received = new ArrayList<>();
+        EventProcessor.geofenceEvents(gpsEvents, engine).listen(received::addAll);
+
+        gpsEvent1.send(new GpsEvent("Tracker1", 8.2, 98.2, 0.0));
+        gpsEvent2.send(new GpsEvent("Tracker2", 7.0, 97.0, 0.0)); // outside, no event
+        gpsEvent1.send(new GpsEvent("Tracker1", 9.0, 98.2, 0.0));
+
+        assertEquals(2, received.size());
+        assertEquals(GeofenceEvent.Type.ENTER, received.get(0).type);
+        assertEquals(GeofenceEvent.Type.EXIT, received.get(1).type);
+    }
+}
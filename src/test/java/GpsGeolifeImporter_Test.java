@@ -0,0 +1,125 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedList;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GpsGeolifeImporter_Test {
+    private static final String HEADER = "Geolife trajectory\nWGS 84\nAltitude is in Feet\nReserved 3\n0,2,255,My Track,0,0,2,8421376\n0\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testParsesPltLines() {
+        String plt = HEADER
+                + "39.984702,116.318417,0,492,39744.1201851852,2008-10-23,02:53:04\r\n"
+                + "39.984683,116.31845,0,-777,39744.1202546296,2008-10-23,02:53:10\r\n"
+                + "\r\n"
+                + "-39.5,-116.25,0,500.5,39744.1203240741,2008-10-23,02:53:16";
+        GeolifeImporter.Points points = GeolifeImporter.parse(ByteBuffer.wrap(plt.getBytes(StandardCharsets.US_ASCII)));
+
+        assertEquals(3, points.size());
+        assertEquals(39.984702, points.latitudes[0], 0.0);
+        assertEquals(116.31845, points.longitudes[1], 0.0);
+        assertEquals(-39.5, points.latitudes[2], 0.0);
+        assertEquals(-116.25, points.longitudes[2], 0.0);
+        assertEquals(492.0, points.altitudes[0], 0.0);
+        assertEquals("a missing altitude keeps the previous one", 492.0, points.altitudes[1], 0.0);
+        assertEquals(500.5, points.altitudes[2], 0.0);
+        assertEquals(1224730384000L, points.time(0)); // 2008-10-23 02:53:04 UTC
+        assertEquals(6, points.delaySeconds(1));
+        assertEquals(6, points.delaySeconds(2));
+    }
+
+    @Test
+    public void testNumbersMatchTheJdk() {
+        Random random = new Random(7);
+        StringBuilder plt = new StringBuilder(HEADER);
+        String[] expected = new String[2000];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = String.format(Locale.ROOT, "%." + random.nextInt(12) + "f", (random.nextDouble() - 0.5) * 360);
+            plt.append(expected[i]).append(",0,0,0,40000.5,2009-07-06,12:00:00\n");
+        }
+        GeolifeImporter.Points points = GeolifeImporter.parse(ByteBuffer.wrap(plt.toString().getBytes(StandardCharsets.US_ASCII)));
+        for (int i = 0; i < expected.length; i++) assertEquals(expected[i], Double.parseDouble(expected[i]), points.latitudes[i], 0.0);
+    }
+
+    @Test
+    public void testLongMantissasMatchTheJdk() {
+        // 16 to 18 digits can exceed the 53 bits a double holds exactly, where dividing the mantissa would round twice
+        Random random = new Random(11);
+        StringBuilder plt = new StringBuilder(HEADER);
+        String[] expected = new String[3000];
+        for (int i = 0; i < expected.length; i++) {
+            String digits = Long.toString(100_000_000_000_000_000L + (long) (random.nextDouble() * 899_999_999_999_999_999L));
+            digits = digits.substring(0, 16 + i % 3);
+            int point = 1 + random.nextInt(3);
+            expected[i] = i == 0 ? "9.007199254740993" : digits.substring(0, point) + "." + digits.substring(point); // 2^53 + 1
+            plt.append(expected[i]).append(",0,0,0,40000.5,2009-07-06,12:00:00\n");
+        }
+        GeolifeImporter.Points points = GeolifeImporter.parse(ByteBuffer.wrap(plt.toString().getBytes(StandardCharsets.US_ASCII)));
+        for (int i = 0; i < expected.length; i++) assertEquals(expected[i], Double.parseDouble(expected[i]), points.latitudes[i], 0.0);
+    }
+
+    @Test
+    public void testImportSortsUsersAndWritesReplayFile() throws Exception {
+        Path root = folder.newFolder("Data").toPath();
+        // User 000's later file sorts first by name, and the two overlap in time
+        writePlt(root.resolve("000/Trajectory/20081023000000.plt"), 39744.0, 10, 0.0);
+        writePlt(root.resolve("000/Trajectory/20081022000000.plt"), 39744.0 + 5.5 / 86400 * 10, 10, 1.0);
+        writePlt(root.resolve("001/Trajectory/20090101000000.plt"), 39814.0, 3, 2.0);
+
+        GeolifeImporter.Result result = GeolifeImporter.importDirectory(root, 2);
+        assertEquals(2, result.users.size());
+        assertEquals(3, result.files);
+        assertEquals(23, result.points);
+        assertTrue(result.megabytesPerSecond() > 0.0);
+
+        GeolifeImporter.Points user = result.tracks[0];
+        assertEquals(20, user.size());
+        for (int i = 1; i < user.size(); i++) assertTrue(user.time(i - 1) <= user.time(i));
+        assertEquals(0, user.delaySeconds(0));
+
+        // The replay file reads back as GpsService records with the delays in next[3]
+        Path replay = folder.getRoot().toPath().resolve("geolife.gpsr");
+        GeolifeImporter.write(result.tracks, replay);
+        assertTrue(GeolifeImporter.isReplayFile(replay));
+        assertEquals(12 + 2 * 4 + 23 * GeolifeImporter.RECORD_BYTES, Files.size(replay));
+        LinkedList<Double[]>[] data = GeolifeImporter.read(replay);
+        assertEquals(2, data.length);
+        assertEquals(20, data[0].size());
+        for (int i = 0; i < user.size(); i++) {
+            assertEquals(user.latitudes[i], data[0].get(i)[0], 0.0);
+            assertEquals(user.delaySeconds(i), data[0].get(i)[3].intValue());
+        }
+
+        // And as a gps.dat, the same records
+        Path dat = folder.getRoot().toPath().resolve("gps.dat");
+        GeolifeImporter.writeSerialized(result.tracks, dat);
+        assertFalse(GeolifeImporter.isReplayFile(dat));
+        LinkedList<Double[]>[] serialized = GpsService.readData(dat.toString());
+        assertEquals(3, serialized[1].size());
+        assertArrayEquals(data[1].get(2), serialized[1].get(2));
+    }
+
+    // Points every 5 seconds from a start day, heading north
+    private static void writePlt(Path file, double startDays, int points, double latitudeOffset) throws IOException {
+        Files.createDirectories(file.getParent());
+        StringBuilder plt = new StringBuilder(HEADER);
+        for (int i = 0; i < points; i++) {
+            plt.append(String.format(Locale.ROOT, "%.6f,116.3,0,100,%.10f,2008-10-23,00:00:00%n",
+                    39.9 + latitudeOffset + i * 1e-4, startDays + i * 5.0 / 86400));
+        }
+        Files.write(file, plt.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+}
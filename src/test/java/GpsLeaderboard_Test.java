@@ -0,0 +1,125 @@
+import nz.sodium.Cell;
+import nz.sodium.Stream;
+import nz.sodium.StreamSink;
+import nz.sodium.Unit;
+import org.junit.Test;
+import swidgets.SButton;
+
+import java.lang.reflect.Field;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class GpsLeaderboard_Test {
+    private static final long MINUTE = 60_000;
+
+    @Test
+    public void testRankingFollowsDistanceChanges() {
+        DistanceLeaderboard leaderboard = new DistanceLeaderboard(5 * MINUTE, 10_000);
+        leaderboard.record("A", 100.0, 1_000L);
+        leaderboard.record("B", 300.0, 2_000L);
+        leaderboard.record("C", 200.0, 3_000L);
+        assertEquals(Arrays.asList("B", "C", "A"), ids(leaderboard.top(3)));
+        assertEquals(Arrays.asList("B", "C"), ids(leaderboard.top(2)));
+
+        // A overtakes both; ties are broken by ID
+        leaderboard.record("A", 250.0, 4_000L);
+        assertEquals(Arrays.asList("A", "B", "C"), ids(leaderboard.top(5)));
+        leaderboard.record("C", 150.0, 5_000L);
+        assertEquals(Arrays.asList("A", "C", "B"), ids(leaderboard.top(3)));
+        assertEquals(350.0, leaderboard.distance("A"), 1e-9);
+        assertEquals(0.0, leaderboard.distance("Unknown"), 0.0);
+    }
+
+    @Test
+    public void testExpiredBucketsLeaveTheRanking() {
+        DistanceLeaderboard leaderboard = new DistanceLeaderboard(MINUTE, 10_000);
+        leaderboard.record("Early", 500.0, 0L);
+        leaderboard.record("Late", 100.0, 30_000L);
+        leaderboard.record("Early", 50.0, 40_000L);
+        assertEquals(Arrays.asList("Early", "Late"), ids(leaderboard.top(2)));
+
+        // The first bucket of Early falls out of the window without a new event
+        leaderboard.advance(MINUTE);
+        assertEquals(Arrays.asList("Late", "Early"), ids(leaderboard.top(2)));
+        assertEquals(50.0, leaderboard.distance("Early"), 1e-9);
+
+        // Nothing is left of either, so both leave
+        leaderboard.advance(2 * MINUTE);
+        assertEquals(0, leaderboard.size());
+        assertTrue(leaderboard.top(10).isEmpty());
+
+        // A leg already outside the window is ignored
+        leaderboard.record("Stale", 100.0, 0L);
+        assertEquals(0, leaderboard.size());
+    }
+
+    @Test
+    public void testMatchesSortingRawLegs() {
+        long window = 5 * MINUTE, bucket = 10_000;
+        DistanceLeaderboard leaderboard = new DistanceLeaderboard(window, bucket);
+        Map<String, List<long[]>> legs = new HashMap<>(); // {time, centimeters}
+        Random random = new Random(42);
+        long now = 0;
+        for (int i = 0; i < 20_000; i++) {
+            now += random.nextInt(500);
+            String id = "T" + random.nextInt(50);
+            long centimeters = random.nextInt(10_000);
+            leaderboard.record(id, centimeters / 100.0, now);
+            legs.computeIfAbsent(id, k -> new ArrayList<>()).add(new long[]{now, centimeters});
+
+            if (i % 1000 == 999) {
+                long firstBucket = now / bucket - window / bucket + 1;
+                List<Double> expected = new ArrayList<>();
+                for (List<long[]> tracker : legs.values()) {
+                    long centimetersInWindow = 0;
+                    for (long[] leg : tracker) if (leg[0] / bucket >= firstBucket) centimetersInWindow += leg[1];
+                    if (centimetersInWindow > 0) expected.add(centimetersInWindow / 100.0);
+                }
+                expected.sort(Collections.reverseOrder());
+
+                List<DistanceLeaderboard.Standing> top = leaderboard.top(10);
+                assertEquals(Math.min(10, expected.size()), top.size());
+                for (int r = 0; r < top.size(); r++) assertEquals(expected.get(r), top.get(r).getDistance(), 1e-6);
+                assertEquals(expected.size(), leaderboard.size());
+            }
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testViewRanksFilteredTrackers() throws Exception {
+        StreamSink<GpsEvent> first = new StreamSink<>(), second = new StreamSink<>();
+        ManualClock clock = new ManualClock(0L);
+        TrackerHub hub = new TrackerHub(new Stream[]{first, second}, clock);
+        List<Cell<Optional<Double>>> rangeVals = Arrays.asList(new Cell<>(Optional.of(90.0)), new Cell<>(Optional.of(-90.0)),
+                new Cell<>(Optional.of(180.0)), new Cell<>(Optional.of(-180.0)));
+        SButton setButton = new SButton("Set");
+        TrackerView view = hub.openView(rangeVals, setButton, 5 * MINUTE, null);
+        Field sClicked = SButton.class.getDeclaredField("sClicked");
+        sClicked.setAccessible(true);
+        ((StreamSink<Unit>) sClicked.get(setButton)).send(Unit.UNIT);
+        Cell<List<DistanceLeaderboard.Standing>> leaders = view.leaders(1);
+
+        first.send(new GpsEvent("Short", 10.0, 20.0, 0.0));
+        second.send(new GpsEvent("Long", 10.0, 20.0, 0.0));
+        clock.advance(1000);
+        first.send(new GpsEvent("Short", 10.01, 20.0, 0.0));
+        second.send(new GpsEvent("Long", 10.1, 20.0, 0.0));
+        assertEquals(Arrays.asList("Long", "Short"), ids(view.getLeaderboard().top(2)));
+
+        // Long's distance leaves the window while Short keeps moving
+        clock.advance(5 * MINUTE);
+        first.send(new GpsEvent("Short", 10.02, 20.0, 0.0));
+        assertEquals(Collections.singletonList("Short"), ids(view.getLeaderboard().top(2)));
+        clock.advance(1000); // the display is re-ranked on the next tick
+        assertEquals(Collections.singletonList("Short"), ids(leaders.sample()));
+        hub.close();
+    }
+
+    private static List<String> ids(List<DistanceLeaderboard.Standing> standings) {
+        List<String> ids = new ArrayList<>();
+        for (DistanceLeaderboard.Standing standing : standings) ids.add(standing.trackerId);
+        return ids;
+    }
+}
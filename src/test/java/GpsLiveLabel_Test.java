@@ -0,0 +1,101 @@
+import nz.sodium.CellSink;
+import org.junit.Test;
+
+import javax.swing.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class GpsLiveLabel_Test {
+    @Test
+    public void testVisibleLabelShowsLatestValue() throws Exception {
+        RenderGate gate = new RenderGate();
+        CellSink<String> text = new CellSink<>("start");
+        LiveLabel label = added(new LiveLabel(text, gate));
+        SwingUtilities.invokeAndWait(() -> label.setShowing(true));
+        assertEquals("start", onEdt(label));
+        long withheld = gate.getWithheldUpdates();
+
+        for (int i = 0; i < 1000; i++) text.send("value" + i);
+        assertEquals("value999", onEdt(label));
+        assertEquals(withheld, gate.getWithheldUpdates());
+    }
+
+    @Test
+    public void testPausedGateWithholdsUpdatesAndResyncs() throws Exception {
+        RenderGate gate = new RenderGate();
+        CellSink<String> text = new CellSink<>("");
+        LiveLabel label = added(new LiveLabel(text, gate));
+        SwingUtilities.invokeAndWait(() -> label.setShowing(true));
+        text.send("before");
+        assertEquals("before", onEdt(label));
+        long applied = gate.getAppliedUpdates();
+        long withheld = gate.getWithheldUpdates();
+
+        // Minimized: the state keeps changing but nothing reaches Swing
+        gate.setPaused(true);
+        for (int i = 0; i < 1000; i++) text.send("hidden" + i);
+        assertEquals("before", onEdt(label));
+        assertEquals(withheld + 1000, gate.getWithheldUpdates());
+        assertEquals(applied, gate.getAppliedUpdates());
+
+        // Restored: only the latest value is displayed
+        gate.setPaused(false);
+        assertEquals("hidden999", onEdt(label));
+        assertEquals(applied + 1, gate.getAppliedUpdates());
+    }
+
+    @Test
+    public void testHiddenLabelCatchesUpWhenShown() throws Exception {
+        RenderGate gate = new RenderGate();
+        CellSink<String> text = new CellSink<>("");
+        LiveLabel label = added(new LiveLabel(text, gate));
+
+        // Not showing yet, e.g. on an unselected tab
+        text.send("first");
+        text.send("second");
+        assertEquals("", onEdt(label));
+
+        SwingUtilities.invokeAndWait(() -> label.setShowing(true));
+        assertEquals("second", onEdt(label));
+    }
+
+    @Test
+    public void testRemovedLabelStopsListeningUntilAddedAgain() throws Exception {
+        RenderGate gate = new RenderGate();
+        CellSink<String> text = new CellSink<>("");
+        LiveLabel label = added(new LiveLabel(text, gate));
+        SwingUtilities.invokeAndWait(() -> label.setShowing(true));
+        text.send("before");
+        assertEquals("before", onEdt(label));
+
+        // Removed, e.g. while its panel is rebuilt: updates no longer reach the label
+        SwingUtilities.invokeAndWait(label::removeNotify);
+        long withheld = gate.getWithheldUpdates();
+        text.send("while removed");
+        assertEquals("before", onEdt(label));
+        assertEquals(withheld, gate.getWithheldUpdates());
+
+        // Added again: it shows the current value and follows the cell
+        added(label);
+        SwingUtilities.invokeAndWait(() -> label.setShowing(true));
+        assertEquals("while removed", onEdt(label));
+        text.send("after");
+        assertEquals("after", onEdt(label));
+    }
+
+    // Makes the label displayable, as adding it to a window would, but leaves it hidden in a panel that never shows
+    private static LiveLabel added(LiveLabel label) throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+            if (label.getParent() == null) new JPanel().add(label);
+            label.addNotify();
+        });
+        return label;
+    }
+
+    // Reads the text once every task queued so far has run
+    private static String onEdt(JLabel label) throws Exception {
+        String[] text = new String[1];
+        SwingUtilities.invokeAndWait(() -> text[0] = label.getText());
+        return text[0];
+    }
+}
@@ -0,0 +1,91 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class GpsMotionStats_Test {
+    @Test
+    public void testHeadingCardinalDirections() {
+        assertEquals(0.0, Utils.calculateHeading(45.0, -75.0, 45.1, -75.0), 0.01);   // north
+        assertEquals(90.0, Utils.calculateHeading(0.0, 10.0, 0.0, 10.1), 0.01);      // east on the equator
+        assertEquals(180.0, Utils.calculateHeading(45.1, -75.0, 45.0, -75.0), 0.01); // south
+        assertEquals(270.0, Utils.calculateHeading(0.0, 10.1, 0.0, 10.0), 0.01);     // west on the equator
+    }
+
+    @Test
+    public void testSpeedAverageAndMax() {
+        testMotion(new TrackerStateCache(10, 60_000L));
+        testMotion(new OffHeapTrackerTable(10, 10, 60_000L));
+    }
+
+    @Test
+    public void testRepeatedPositionKeepsMotion() {
+        TrackerStateStore store = new TrackerStateCache(10, 60_000L);
+        Position p1 = new Position(45.0, -75.0, 0.0, 0L);
+        Position p2 = new Position(45.001, -75.0, 0.0, 10_000L);
+        store.record("Tracker1", p1);
+        store.record("Tracker1", p2);
+        MotionStats before = store.motion("Tracker1");
+
+        store.record("Tracker1", p2); // same event seen again at the same time
+
+        MotionStats after = store.motion("Tracker1");
+        assertEquals(before.speed, after.speed, 0.0);
+        assertEquals(before.heading, after.heading, 0.0);
+        assertEquals(before.averageSpeed, after.averageSpeed, 0.0);
+    }
+
+    @Test
+    public void testMoveTooSmallToCountKeepsHeading() {
+        testSmallMove(new TrackerStateCache(10, 60_000L));
+        testSmallMove(new OffHeapTrackerTable(10, 10, 60_000L));
+    }
+
+    private void testSmallMove(TrackerStateStore store) {
+        store.record("Tracker1", new Position(45.0, -75.0, 0.0, 0L));
+        store.record("Tracker1", new Position(45.001, -75.0, 0.0, 10_000L)); // north
+        store.record("Tracker1", new Position(45.001, -75.000001, 0.0, 11_000L)); // a few centimeters west
+        assertEquals(0.0, Utils.calculateDistance(new Position(45.001, -75.0, 0.0, 0L), new Position(45.001, -75.000001, 0.0, 0L)), 0.0);
+        assertEquals(0.0, store.motion("Tracker1").heading, 0.01);
+
+        store.record("Tracker1", new Position(45.0, -75.000001, 0.0, 21_000L)); // back south
+        assertEquals(180.0, store.motion("Tracker1").heading, 0.01);
+    }
+
+    @Test
+    public void testFormatTenths() {
+        assertEquals("0.0", Utils.formatTenths(0.0));
+        assertEquals("12.3", Utils.formatTenths(12.34));
+        assertEquals("12.4", Utils.formatTenths(12.36));
+        assertEquals("100.0", Utils.formatTenths(99.96));
+        assertEquals("-1.2", Utils.formatTenths(-1.23));
+        assertEquals("0.0", Utils.formatTenths(-0.01));
+        assertEquals("NaN", Utils.formatTenths(Double.NaN));
+    }
+
+    @Test
+    public void testUnknownTrackerHasNoMotion() {
+        assertEquals(MotionStats.NONE, new TrackerStateCache(10, 60_000L).motion("Unknown"));
+        assertEquals(MotionStats.NONE, new OffHeapTrackerTable(10, 10, 60_000L).motion("Unknown"));
+    }
+
+    private void testMotion(TrackerStateStore store) {
+        Position p1 = new Position(45.0, -75.0, 0.0, 0L);
+        Position p2 = new Position(45.001, -75.0, 0.0, 10_000L); // north, 10 seconds later
+        Position p3 = new Position(45.001, -74.999, 0.0, 15_000L); // east, 5 seconds later
+        double d12 = Utils.calculateDistance(p1, p2);
+        double d23 = Utils.calculateDistance(p2, p3);
+
+        store.record("Tracker1", p1);
+        store.record("Tracker1", p2);
+        MotionStats first = store.motion("Tracker1");
+        assertEquals(d12 / 10.0, first.speed, 0.001);
+        assertEquals(0.0, first.heading, 0.5);
+
+        store.record("Tracker1", p3);
+        MotionStats second = store.motion("Tracker1");
+        assertEquals(d23 / 5.0, second.speed, 0.001);
+        assertEquals(90.0, second.heading, 0.5);
+        assertEquals((d12 + d23) / 15.0, second.averageSpeed, 0.001);
+        assertEquals(Math.max(d12 / 10.0, d23 / 5.0), second.maxSpeed, 0.001);
+    }
+}
@@ -0,0 +1,107 @@
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GpsOffHeapState_Test {
+    @Test
+    public void testSameDistancesAsHeapState() {
+        TrackerStateStore heap = new TrackerStateCache(1000, 60_000L);
+        TrackerStateStore offHeap = new OffHeapTrackerTable(4, 1000, 60_000L); // grows several times
+
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            String id = "Tracker" + random.nextInt(100);
+            Position p = new Position(39.9 + random.nextDouble() * 0.1, 116.3 + random.nextDouble() * 0.1,
+                    random.nextDouble() * 50, (long) i);
+            assertEquals(heap.record(id, p), offHeap.record(id, p), 0.0);
+        }
+
+        assertEquals(heap.size(), offHeap.size());
+        assertEquals(heap.totalDistances(), offHeap.totalDistances());
+        assertEquals(heap.lastPosition("Tracker7"), offHeap.lastPosition("Tracker7"));
+    }
+
+    @Test
+    public void testUnknownTracker() {
+        OffHeapTrackerTable table = new OffHeapTrackerTable(8, 8, 60_000L);
+
+        assertNull(table.totalDistance("Tracker1"));
+        assertNull(table.lastPosition("Tracker1"));
+    }
+
+    @Test
+    public void testIdleSlotsReclaimedWhenFull() {
+        OffHeapTrackerTable table = new OffHeapTrackerTable(2, 2, 5000L);
+        table.record("Tracker1", new Position(8.0, 98.40, 0.0, 1000L));
+        table.record("Tracker2", new Position(8.0, 98.40, 0.0, 7000L));
+        table.record("Tracker3", new Position(8.0, 98.40, 0.0, 8000L)); // Tracker1 idle for 7 seconds
+
+        assertEquals(2, table.size());
+        assertEquals(2, table.capacity());
+        assertNull(table.totalDistance("Tracker1"));
+        assertEquals(0.0, table.totalDistance("Tracker3"), 0.0);
+        assertEquals(1, table.getEvicted());
+    }
+
+    @Test
+    public void testIdleSlotsReclaimedBeforeFull() {
+        OffHeapTrackerTable table = new OffHeapTrackerTable(10, 10, 5000L);
+        table.record("Tracker1", new Position(8.0, 98.40, 0.0, 1000L));
+        table.record("Tracker2", new Position(8.0, 98.40, 0.0, 7000L)); // Tracker1 idle for 6 seconds
+
+        assertEquals(1, table.size());
+        assertNull(table.totalDistance("Tracker1"));
+        assertEquals(1, table.getEvicted());
+    }
+
+    @Test
+    public void testLeastRecentlyUpdatedEvictedWhenFull() {
+        OffHeapTrackerTable table = new OffHeapTrackerTable(2, 2, 60_000L);
+        table.record("Tracker1", new Position(8.0, 98.40, 0.0, 1000L));
+        table.record("Tracker2", new Position(8.0, 98.40, 0.0, 2000L));
+        table.record("Tracker1", new Position(8.0, 98.41, 0.0, 3000L));
+        table.record("Tracker3", new Position(8.0, 98.40, 0.0, 4000L));
+
+        assertNull(table.totalDistance("Tracker2"));
+        assertNotNull(table.totalDistance("Tracker1"));
+        assertNotNull(table.totalDistance("Tracker3"));
+        assertEquals(1, table.getEvicted());
+    }
+
+    @Test
+    public void testEvictsLikeHeapState() {
+        TrackerStateStore heap = new TrackerStateCache(50, 300L);
+        TrackerStateStore offHeap = new OffHeapTrackerTable(4, 50, 300L);
+
+        Random random = new Random(7);
+        long time = 0;
+        for (int i = 0; i < 20_000; i++) {
+            time += i % 1000 < 900 ? 1 : 10; // with slow spells in which trackers go idle
+            String id = "Tracker" + random.nextInt(i % 5000 < 2500 ? 40 : 100); // alternately under and over the limit
+            Position p = new Position(39.9 + random.nextDouble() * 0.1, 116.3 + random.nextDouble() * 0.1,
+                    random.nextDouble() * 50, time);
+            assertEquals(heap.record(id, p), offHeap.record(id, p), 0.0);
+            assertEquals(heap.size(), offHeap.size());
+        }
+        assertEquals(heap.totalDistances(), offHeap.totalDistances());
+    }
+
+    @Test
+    public void testMillionTrackers() {
+        int trackers = 1_000_000;
+        OffHeapTrackerTable table = new OffHeapTrackerTable(1024, trackers, 60_000L);
+        int[] slots = new int[trackers];
+        for (int i = 0; i < trackers; i++) {
+            slots[i] = table.intern("Tracker" + i, 0L);
+            table.record(slots[i], 39.9, 116.3, 0.0, 0L);
+        }
+        for (int i = 0; i < trackers; i++) {
+            table.record(slots[i], 39.9001, 116.3, 0.0, 1000L);
+        }
+
+        assertEquals(trackers, table.size());
+        assertEquals(11.0, table.totalDistance("Tracker123456"), 0.0); // 0.0001 degree of latitude, rounded
+    }
+}
@@ -0,0 +1,130 @@
+import nz.sodium.Cell;
+import nz.sodium.StreamSink;
+import org.junit.Test;
+import swidgets.SButton;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class GpsPipelineHandle_Test {
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCloseReturnsThreadsToBaseline() throws Exception {
+        int baseline = liveThreads();
+
+        StreamSink<GpsEvent>[] sinks = new StreamSink[10];
+        for (int i = 0; i < sinks.length; i++) sinks[i] = new StreamSink<>();
+        List<Cell<Optional<Double>>> rangeVals = Arrays.asList(new Cell<>(Optional.of(90.0)), new Cell<>(Optional.of(-90.0)),
+                new Cell<>(Optional.of(180.0)), new Cell<>(Optional.of(-180.0)));
+
+        SystemClock clock = new SystemClock();
+        PipelineHandle handle = new PipelineHandle();
+        handle.add(clock);
+        Cell<String> current = EventProcessor.currentTracker(sinks, clock, handle);
+        for (StreamSink<GpsEvent> sink : sinks) {
+            EventProcessor.filteredEvents(rangeVals, new SButton("Set"), 1000, sink, clock, null, handle);
+        }
+        TrajectoryStore store = new TrajectoryStore();
+        EventProcessor.recordTrajectories(sinks, store, clock, handle);
+
+        sinks[0].send(new GpsEvent("HandleA", 10.0, 20.0, 0.0));
+        assertTrue(current.sample().contains("HandleA"));
+        assertEquals(1, store.size("HandleA"));
+        assertTrue("ticks should run on a clock thread", liveThreads() > baseline);
+
+        handle.close();
+        assertFalse(handle.isOpen());
+        assertTrue("threads left after close: " + liveThreads() + " > " + baseline, awaitThreads(baseline));
+
+        // Detached: new events reach neither the display nor the store
+        sinks[0].send(new GpsEvent("HandleB", 10.0, 20.0, 0.0));
+        assertTrue(current.sample().contains("HandleA"));
+        assertEquals(0, store.size("HandleB"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLegacyOverloadsShareOneClockThread() {
+        List<Cell<Optional<Double>>> rangeVals = Arrays.asList(new Cell<>(Optional.of(90.0)), new Cell<>(Optional.of(-90.0)),
+                new Cell<>(Optional.of(180.0)), new Cell<>(Optional.of(-180.0)));
+        long before = clockThreads();
+        for (int i = 0; i < 5; i++) {
+            StreamSink<GpsEvent>[] sinks = new StreamSink[]{new StreamSink<>()};
+            EventProcessor.currentTracker(sinks);
+            EventProcessor.filteredEvents(rangeVals, new SButton("Set"), 1000, sinks[0]);
+            EventProcessor.recordTrajectories(sinks, new TrajectoryStore());
+        }
+        assertTrue("clock threads started: " + (clockThreads() - before), clockThreads() - before <= 1);
+    }
+
+    private static long clockThreads() {
+        return Thread.getAllStackTraces().keySet().stream().filter(t -> t.getName().equals("SystemClock")).count();
+    }
+
+    @Test
+    public void testServiceCloseStopsPlayback() throws Exception {
+        int baseline = liveThreads();
+        GpsService service = new GpsService(writeData(3, 20_000).getPath());
+        AtomicInteger received = new AtomicInteger();
+        for (nz.sodium.Stream<GpsEvent> stream : service.getEventStreams()) stream.listen(ev -> received.incrementAndGet());
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (received.get() == 0 && System.currentTimeMillis() < deadline) Thread.sleep(20);
+        assertTrue(received.get() > 0);
+
+        service.close();
+        assertTrue("threads left after close: " + liveThreads() + " > " + baseline, awaitThreads(baseline));
+        int afterClose = received.get();
+        Thread.sleep(500);
+        assertEquals(afterClose, received.get());
+    }
+
+    @Test
+    public void testReleasesInReverseOrderOnce() {
+        List<String> released = new ArrayList<>();
+        PipelineHandle handle = new PipelineHandle();
+        handle.onClose(() -> released.add("first"));
+        handle.onClose(() -> released.add("second"));
+
+        handle.close();
+        handle.close();
+        assertEquals(Arrays.asList("second", "first"), released);
+
+        // Too late to be kept: released straight away
+        handle.onClose(() -> released.add("late"));
+        assertEquals(Arrays.asList("second", "first", "late"), released);
+    }
+
+    private static int liveThreads() {
+        return ManagementFactory.getThreadMXBean().getThreadCount();
+    }
+
+    // Threads end shortly after being told to stop, so poll rather than check once
+    private static boolean awaitThreads(int baseline) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (liveThreads() > baseline) {
+            if (System.currentTimeMillis() > deadline) return false;
+            Thread.sleep(20);
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static File writeData(int trackers, int records) throws IOException {
+        LinkedList<Double[]>[] data = new LinkedList[trackers];
+        for (int i = 0; i < trackers; i++) {
+            data[i] = new LinkedList<>();
+            for (int k = 0; k < records; k++) data[i].add(new Double[]{39.9 + k * 1e-6, 116.3, 100.0, 0.0});
+        }
+        File file = File.createTempFile("gps", ".dat");
+        file.deleteOnExit();
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeObject(data);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,94 @@
+import nz.sodium.Stream;
+import nz.sodium.StreamSink;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class GpsProximity_Test {
+    @Test
+    public void testNearAndApartEmittedOnce() {
+        ProximityEngine engine = new ProximityEngine(100.0);
+
+        assertTrue(engine.update("Tracker1", new Position(39.9, 116.4, 0.0)).isEmpty());
+        assertTrue(engine.update("Tracker2", new Position(39.91, 116.4, 0.0)).isEmpty()); // about 1.1 km away
+
+        List<ProximityEvent> near = engine.update("Tracker2", new Position(39.9005, 116.4, 0.0)); // about 56 m
+        assertEquals(1, near.size());
+        assertEquals(ProximityEvent.Type.NEAR, near.get(0).type);
+        assertEquals("Tracker1", near.get(0).otherTrackerId);
+        assertEquals(Collections.singleton("Tracker2"), engine.nearTo("Tracker1"));
+
+        assertTrue(engine.update("Tracker1", new Position(39.9001, 116.4, 0.0)).isEmpty()); // still near
+
+        List<ProximityEvent> apart = engine.update("Tracker1", new Position(39.89, 116.4, 0.0));
+        assertEquals(1, apart.size());
+        assertEquals(ProximityEvent.Type.APART, apart.get(0).type);
+        assertTrue(engine.nearTo("Tracker2").isEmpty());
+    }
+
+    @Test
+    public void testMatchesAllPairsComparison() {
+        double alert = 200.0;
+        ProximityEngine engine = new ProximityEngine(alert);
+        Random random = new Random(7);
+        Map<String, Position> latest = new HashMap<>();
+
+        for (int i = 0; i < 5000; i++) {
+            String id = "Tracker" + random.nextInt(200);
+            // Dense area at high latitude, where cells are narrow in the east-west direction
+            Position p = new Position(60.0 + random.nextDouble() * 0.02, 10.0 + random.nextDouble() * 0.04, 0.0);
+            engine.update(id, p);
+            latest.put(id, p);
+        }
+
+        for (String id : latest.keySet()) {
+            Set<String> expected = new TreeSet<>();
+            for (String other : latest.keySet()) {
+                if (!other.equals(id) && Utils.calculateDistance(latest.get(id), latest.get(other)) < alert) expected.add(other);
+            }
+            assertEquals(expected, engine.nearTo(id));
+        }
+    }
+
+    @Test
+    public void testIdleAndExcessTrackersForgotten() {
+        ProximityEngine engine = new ProximityEngine(100.0, 3, 5000L);
+        engine.update("Tracker1", new Position(39.9, 116.4, 0.0, 0L));
+        engine.update("Tracker2", new Position(39.9001, 116.4, 0.0, 1000L)); // near Tracker1
+        engine.update("Tracker3", new Position(39.9002, 116.4, 0.0, 2000L));
+        engine.update("Tracker1", new Position(39.9, 116.4, 0.0, 3000L));
+        assertEquals(new TreeSet<>(Arrays.asList("Tracker1", "Tracker3")), engine.nearTo("Tracker2"));
+
+        // Tracker2 was updated least recently, so it makes room for Tracker4 and leaves its pairs
+        engine.update("Tracker4", new Position(45.0, 116.4, 0.0, 4000L));
+        assertEquals(3, engine.size());
+        assertTrue(engine.nearTo("Tracker2").isEmpty());
+        assertEquals(Collections.singleton("Tracker3"), engine.nearTo("Tracker1"));
+
+        // More than 5 seconds after their last update, Tracker3 and Tracker1 are idle
+        engine.update("Tracker4", new Position(45.0, 116.4, 0.0, 8500L));
+        assertEquals(1, engine.size());
+        assertTrue(engine.nearTo("Tracker1").isEmpty());
+        assertEquals(3, engine.getEvicted());
+    }
+
+    @Test
+    public void testProximityStream() {
+        StreamSink<GpsEvent> gpsEvent1 = new StreamSink<>();
+        StreamSink<GpsEvent> gpsEvent2 = new StreamSink<>();
+        @SuppressWarnings("unchecked")
+        Stream<GpsEvent>[] gpsEvents = new Stream[]{gpsEvent1, gpsEvent2};
+
+        List<ProximityEvent> received = new ArrayList<>();
+        EventProcessor.proximityEvents(gpsEvents, new ProximityEngine(100.0)).listen(received::addAll);
+
+        gpsEvent1.send(new GpsEvent("Tracker1", 39.9, 116.4, 0.0));
+        gpsEvent2.send(new GpsEvent("Tracker2", 39.9003, 116.4, 0.0));
+
+        assertEquals(1, received.size());
+        assertEquals("Tracker2", received.get(0).trackerId);
+        assertEquals(ProximityEvent.Type.NEAR, received.get(0).type);
+    }
+}
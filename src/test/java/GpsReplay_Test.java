@@ -0,0 +1,158 @@
+import nz.sodium.Cell;
+import nz.sodium.Stream;
+import nz.sodium.StreamSink;
+import nz.sodium.Unit;
+import org.junit.Test;
+import swidgets.SButton;
+
+import java.lang.reflect.Field;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class GpsReplay_Test {
+    private static final long START = 1_000_000L;
+
+    @Test
+    public void testIndexMergesTrackersInTimeOrder() {
+        List<List<Double[]>> data = Arrays.asList(
+                Arrays.asList(record(10.0, 0), record(10.1, 5), record(10.2, 5)),   // at 0 s, 5 s and 10 s
+                Arrays.asList(record(20.0, 0), record(20.1, 3), record(20.2, 30))); // at 0 s, 3 s and 33 s
+        try (GpsReplay<Replayed> replay = new GpsReplay<>(data, START, Replayed::new)) {
+            assertEquals(6, replay.size());
+            assertEquals(START, replay.getStartMillis());
+            assertEquals(START + 33_000, replay.getEndMillis());
+            assertEquals(2, replay.countUntil(START));
+            assertEquals(3, replay.countUntil(START + 4_999));
+            assertEquals(5, replay.countUntil(START + 10_000));
+            assertEquals(6, replay.countUntil(Long.MAX_VALUE));
+            assertEquals(0, replay.countUntil(START - 1));
+
+            replay.seek(START + 4_000);
+            TrajectoryStore store = replay.getPipeline().hub.getTrajectoryStore();
+            assertEquals(1, store.size("Tracker0"));
+            assertEquals(2, store.size("Tracker1"));
+            assertEquals(START + 3_000, (long) store.positions("Tracker1", START, START + 60_000).get(1).time);
+        }
+    }
+
+    @Test
+    public void testSeekMatchesPlayingThrough() {
+        List<List<Double[]>> data = walk(5, 200, 7);
+        long target;
+        Map<String, Double> played;
+        try (GpsReplay<Replayed> replay = new GpsReplay<>(data, START, Replayed::new)) {
+            target = (replay.getStartMillis() + replay.getEndMillis()) / 2;
+            while (replay.getPosition() < target) replay.scrub(Math.min(1_000, target - replay.getPosition()));
+            played = replay.getPipeline().view.getTrackerStates().totalDistances();
+        }
+
+        try (GpsReplay<Replayed> replay = new GpsReplay<>(data, START, Replayed::new)) {
+            replay.seek(target);
+            assertEquals(0, replay.getRebuildCount());
+            assertDistances(played, replay.getPipeline().view.getTrackerStates().totalDistances());
+            assertEquals(target, replay.getPipeline().ticks.sample().longValue());
+        }
+    }
+
+    @Test
+    public void testBackwardSeekRebuildsState() {
+        List<List<Double[]>> data = walk(5, 200, 7);
+        try (GpsReplay<Replayed> replay = new GpsReplay<>(data, START, Replayed::new)) {
+            long middle = (replay.getStartMillis() + replay.getEndMillis()) / 2;
+            replay.seek(middle);
+            Map<String, Double> atMiddle = replay.getPipeline().view.getTrackerStates().totalDistances();
+            int recorded = replay.getPipeline().hub.getTrajectoryStore().size("Tracker0");
+
+            replay.seek(replay.getEndMillis());
+            Replayed before = replay.getPipeline();
+            replay.scrub(-(replay.getEndMillis() - middle));
+            assertEquals(1, replay.getRebuildCount());
+            assertNotSame(before, replay.getPipeline());
+            assertTrue(before.closed);
+
+            // Nothing recorded past the middle survives, in the view or the hub
+            assertDistances(atMiddle, replay.getPipeline().view.getTrackerStates().totalDistances());
+            assertEquals(recorded, replay.getPipeline().hub.getTrajectoryStore().size("Tracker0"));
+            assertEquals(middle, replay.getPosition());
+        }
+    }
+
+    @Test
+    public void testPlayAndPause() throws Exception {
+        try (GpsReplay<Replayed> replay = new GpsReplay<>(walk(2, 100, 3), START, Replayed::new)) {
+            assertFalse(replay.isPlaying());
+            replay.play(10_000.0);
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (replay.getPosition() == START && System.currentTimeMillis() < deadline) Thread.sleep(10);
+            replay.pause();
+            long paused = replay.getPosition();
+            assertTrue(paused > START);
+            Thread.sleep(3 * GpsReplay.PLAYBACK_PERIOD);
+            assertEquals(paused, replay.getPosition());
+
+            // Playback stops by itself at the end of the recording
+            replay.play(1_000_000.0);
+            while (replay.isPlaying() && System.currentTimeMillis() < deadline) Thread.sleep(10);
+            assertFalse(replay.isPlaying());
+            assertEquals(replay.getEndMillis(), replay.getPosition());
+        }
+    }
+
+    // A hub with one view over the whole world, as a window would show it
+    private static class Replayed implements AutoCloseable {
+        final TrackerHub hub;
+        final TrackerView view;
+        final Cell<Long> ticks;
+        boolean closed = false;
+
+        Replayed(Stream<GpsEvent>[] streams, GpsClock clock) {
+            hub = new TrackerHub(streams, clock);
+            ticks = clock.ticks(EventProcessor.CLOCK_PERIOD, new PipelineHandle());
+            List<Cell<Optional<Double>>> rangeVals = Arrays.asList(new Cell<>(Optional.of(90.0)), new Cell<>(Optional.of(-90.0)),
+                    new Cell<>(Optional.of(180.0)), new Cell<>(Optional.of(-180.0)));
+            SButton setButton = new SButton("Set");
+            view = hub.openView(rangeVals, setButton, 1000 * 60 * 5, null);
+            try {
+                Field sClicked = SButton.class.getDeclaredField("sClicked");
+                sClicked.setAccessible(true);
+                @SuppressWarnings("unchecked")
+                StreamSink<Unit> clicks = (StreamSink<Unit>) sClicked.get(setButton);
+                clicks.send(Unit.UNIT);
+            } catch (ReflectiveOperationException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            hub.close();
+            closed = true;
+        }
+    }
+
+    // Random walks with delays of 1 to maxDelay seconds
+    private static List<List<Double[]>> walk(int trackers, int records, int maxDelay) {
+        Random random = new Random(trackers * 31L + records);
+        List<List<Double[]>> data = new ArrayList<>();
+        for (int t = 0; t < trackers; t++) {
+            List<Double[]> track = new ArrayList<>();
+            double lat = 39.9 + t * 0.01;
+            for (int i = 0; i < records; i++) {
+                lat += random.nextDouble() * 1e-3;
+                track.add(record(lat, i == 0 ? 0 : 1 + random.nextInt(maxDelay)));
+            }
+            data.add(track);
+        }
+        return data;
+    }
+
+    private static Double[] record(double latitude, int delaySeconds) {
+        return new Double[]{latitude, 116.3, 100.0, (double) delaySeconds};
+    }
+
+    private static void assertDistances(Map<String, Double> expected, Map<String, Double> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (String id : expected.keySet()) assertEquals(id, expected.get(id), actual.get(id), 1e-6);
+    }
+}
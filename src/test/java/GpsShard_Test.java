@@ -0,0 +1,102 @@
+import nz.sodium.Stream;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class GpsShard_Test {
+    @Test
+    public void testRingSpreadsTrackersAndMovesFewOnResize() {
+        int trackers = 100_000;
+        ShardRing four = new ShardRing(4);
+        ShardRing five = new ShardRing(5);
+        int[] counts = new int[4];
+        int moved = 0;
+        for (int t = 0; t < trackers; t++) {
+            String id = "Tracker" + t;
+            int before = four.shardOf(id);
+            int after = five.shardOf(id);
+            counts[before]++;
+            if (before != after) {
+                moved++;
+                assertEquals("trackers only move to the new shard", 4, after);
+            }
+        }
+        for (int count : counts) assertEquals(trackers / 4.0, count, trackers * 0.05);
+        assertEquals(trackers / 5.0, moved, trackers * 0.05);
+        assertEquals(four.shardOf("Tracker42"), new ShardRing(4).shardOf("Tracker42"));
+    }
+
+    @Test
+    public void testShardsMergeToTheSameTotalsAsOneWorker() throws Exception {
+        int trackers = 40;
+        Map<String, Double> unsharded = runShards(1, trackers, 30, null);
+        AtomicInteger slotEvents = new AtomicInteger();
+        Map<String, Double> sharded = runShards(3, trackers, 30, slotEvents);
+
+        assertEquals(trackers, sharded.size());
+        for (Map.Entry<String, Double> total : unsharded.entrySet()) {
+            assertTrue(total.getValue() > 0.0);
+            assertEquals(total.getKey(), total.getValue(), sharded.get(total.getKey()), 1e-9);
+        }
+        assertEquals("every event of the two slotted trackers", 2 * 30, slotEvents.get());
+    }
+
+    @Test
+    public void testDisconnectedWorkerIsDropped() throws Exception {
+        try (ShardAggregator aggregator = new ShardAggregator(0, 0)) {
+            ShardRing ring = new ShardRing(2);
+            ShardWorker staying = new ShardWorker(aggregator.getPort(), 0, ring, 20);
+            ShardWorker leaving = new ShardWorker(aggregator.getPort(), 1, ring, 20);
+            staying.run(5, 0);
+            leaving.run(5, 0);
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (aggregator.totalDistances().size() < 20 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+            assertEquals(2, aggregator.getWorkerCount());
+            assertEquals(20, aggregator.totalDistances().size());
+
+            // Once a worker's connection ends, its trackers are no longer reported with their last totals
+            leaving.close();
+            deadline = System.currentTimeMillis() + 10_000;
+            while (aggregator.getWorkerCount() > 1 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+            assertEquals(1, aggregator.getWorkerCount());
+            assertEquals(staying.getTrackerCount(), aggregator.totalDistances().size());
+            staying.close();
+        }
+    }
+
+    // Runs the given number of shards as in-process workers against one aggregator, then returns the merged totals
+    private static Map<String, Double> runShards(int shards, int trackers, int rounds, AtomicInteger slotEvents) throws Exception {
+        try (ShardAggregator aggregator = new ShardAggregator(0, 2)) {
+            if (slotEvents != null) {
+                for (Stream<GpsEvent> stream : aggregator.getEventStreams()) stream.listen(ev -> slotEvents.incrementAndGet());
+            }
+            ShardRing ring = new ShardRing(shards);
+            List<ShardWorker> workers = new ArrayList<>();
+            List<Thread> threads = new ArrayList<>();
+            long expected = 0;
+            for (int shard = 0; shard < shards; shard++) {
+                ShardWorker worker = new ShardWorker(aggregator.getPort(), shard, ring, trackers);
+                expected += (long) worker.getTrackerCount() * rounds;
+                Thread thread = new Thread(() -> worker.run(rounds, 0));
+                thread.start();
+                workers.add(worker);
+                threads.add(thread);
+            }
+            for (Thread thread : threads) thread.join();
+
+            // Workers stay connected until the totals are read, since a worker's totals go with its connection
+            try {
+                long deadline = System.currentTimeMillis() + 10_000;
+                while (aggregator.getEventCount() < expected && System.currentTimeMillis() < deadline) Thread.sleep(10);
+                assertEquals(expected, aggregator.getEventCount());
+                assertEquals(shards, aggregator.getWorkerCount());
+                return aggregator.totalDistances();
+            } finally {
+                for (ShardWorker worker : workers) worker.close();
+            }
+        }
+    }
+}
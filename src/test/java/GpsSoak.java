@@ -0,0 +1,198 @@
+import nz.sodium.Cell;
+import nz.sodium.Stream;
+import nz.sodium.StreamSink;
+import nz.sodium.Unit;
+import swidgets.SButton;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Field;
+import java.util.*;
+
+/**
+ * Soak test of the whole processing pipeline: runs it headless under synthetic load for as long as requested, samples
+ * resource usage and fails if any of it keeps growing. Not a unit test: run it directly, e.g.
+ * <pre>
+ * java -Djava.awt.headless=true -Dsoak.minutes=180 -cp target/classes:target/test-classes GpsSoak
+ * </pre>
+ * Every sample records the heap used right after a full GC, the live thread count and the allocation rate since the
+ * previous sample. Once the warm-up is over, the slope of each series is fitted by least squares and compared with its
+ * limit; the process exits with status 1 if any limit is exceeded.
+ * <p>
+ * Settings, as system properties:
+ * <ul>
+ *     <li><code>soak.minutes</code> (60), <code>soak.warmupMinutes</code> (a third of the run): run length, and the
+ *     part of it excluded from the fit. Churned trackers are only evicted after 30 idle minutes, so state grows until
+ *     then.</li>
+ *     <li><code>soak.trackers</code> (50), <code>soak.rate</code> (5000 events/s), <code>soak.churn</code> (0.01):
+ *     the load, where churn is the share of events reported under a never seen before tracker ID.</li>
+ *     <li><code>soak.rebuildSeconds</code> (0): rebuild the pipeline this often, closing the previous one, to expose
+ *     resources its {@link PipelineHandle} fails to release; 0 builds it once.</li>
+ *     <li><code>soak.sampleSeconds</code> (10): time between samples.</li>
+ *     <li><code>soak.maxHeapSlope</code> (1.0 MB/min), <code>soak.maxThreadSlope</code> (0.1 threads/min),
+ *     <code>soak.maxAllocSlope</code> (1.0 MB/s per min): growth limits.</li>
+ * </ul>
+ * Stores that keep the full history, such as a {@link TrajectoryStore} without retention, grow by design and are not
+ * part of the pipeline soaked here.
+ */
+public class GpsSoak {
+    private static final long WINDOW_SIZE = 1000 * 60 * 5;
+    private static volatile List<Object> pipeline; // keeps the outputs of the current pipeline reachable
+    private static PipelineHandle handle;
+
+    public static void main(String[] args) throws Exception {
+        double minutes = Double.parseDouble(System.getProperty("soak.minutes", "60"));
+        double warmupMinutes = Double.parseDouble(System.getProperty("soak.warmupMinutes", String.valueOf(minutes / 3)));
+        int trackers = Integer.getInteger("soak.trackers", 50);
+        int rate = Integer.getInteger("soak.rate", 5000);
+        double churn = Double.parseDouble(System.getProperty("soak.churn", "0.01"));
+        int rebuildSeconds = Integer.getInteger("soak.rebuildSeconds", 0);
+        int sampleSeconds = Integer.getInteger("soak.sampleSeconds", 10);
+        double maxHeapSlope = Double.parseDouble(System.getProperty("soak.maxHeapSlope", "1.0"));
+        double maxThreadSlope = Double.parseDouble(System.getProperty("soak.maxThreadSlope", "0.1"));
+        double maxAllocSlope = Double.parseDouble(System.getProperty("soak.maxAllocSlope", "1.0"));
+
+        @SuppressWarnings("unchecked")
+        StreamSink<GpsEvent>[] sinks = new StreamSink[trackers];
+        for (int i = 0; i < trackers; i++) sinks[i] = new StreamSink<>();
+        handle = new PipelineHandle();
+        pipeline = build(sinks, handle);
+
+        // Feed random walks from a single thread, in small slices to keep the rate even
+        Thread driver = new Thread(() -> drive(sinks, rate, churn), "GpsSoak driver");
+        driver.setDaemon(true);
+        driver.start();
+
+        List<double[]> samples = new ArrayList<>(); // minute, heap MB, threads, allocation MB/s
+        long start = System.nanoTime();
+        long lastRebuild = start;
+        long lastAllocated = allocatedBytes();
+        long lastSample = start;
+        System.out.println("minute,heapMB,threads,allocMBps");
+        while (true) {
+            Thread.sleep(sampleSeconds * 1000L);
+            long now = System.nanoTime();
+            double minute = (now - start) / 6e10;
+
+            if (rebuildSeconds > 0 && now - lastRebuild >= rebuildSeconds * 1_000_000_000L) {
+                handle.close();
+                handle = new PipelineHandle();
+                pipeline = build(sinks, handle);
+                lastRebuild = now;
+            }
+
+            long allocated = allocatedBytes();
+            double allocRate = (allocated - lastAllocated) / 1e6 / ((now - lastSample) / 1e9);
+            lastAllocated = allocated;
+            lastSample = now;
+
+            System.gc();
+            Runtime runtime = Runtime.getRuntime();
+            double heap = (runtime.totalMemory() - runtime.freeMemory()) / 1e6;
+            int threads = Thread.activeCount();
+            samples.add(new double[]{minute, heap, threads, allocRate});
+            System.out.printf("%.2f,%.1f,%d,%.1f%n", minute, heap, threads, allocRate);
+
+            if (minute >= minutes) break;
+        }
+
+        boolean failed = false;
+        failed |= check("Heap after GC", samples, 1, warmupMinutes, maxHeapSlope, "MB/min");
+        failed |= check("Live threads", samples, 2, warmupMinutes, maxThreadSlope, "threads/min");
+        failed |= check("Allocation rate", samples, 3, warmupMinutes, maxAllocSlope, "MB/s per min");
+        System.out.println(EventProcessor.getTrackerStates().size() + " trackers held in state");
+        System.exit(failed ? 1 : 0);
+    }
+
+    // The pipeline the GUI builds, without Swing rendering; returns the outputs so they stay reachable
+    static List<Object> build(StreamSink<GpsEvent>[] sinks, PipelineHandle handle) throws Exception {
+        @SuppressWarnings("unchecked")
+        Stream<GpsEvent>[] gpsEvents = new Stream[sinks.length];
+        System.arraycopy(sinks, 0, gpsEvents, 0, sinks.length);
+        SystemClock clock = new SystemClock();
+        handle.add(clock);
+
+        List<Object> outputs = new ArrayList<>();
+        outputs.add(EventProcessor.simplifiedTrackers(gpsEvents));
+        outputs.add(EventProcessor.currentTracker(gpsEvents, clock, handle));
+
+        List<Cell<Optional<Double>>> rangeVals = Arrays.asList(new Cell<>(Optional.of(90.0)), new Cell<>(Optional.of(-90.0)),
+                new Cell<>(Optional.of(180.0)), new Cell<>(Optional.of(-180.0)));
+        SButton setButton = new SButton("Set");
+        for (Stream<GpsEvent> gpsEvent : gpsEvents) {
+            outputs.add(EventProcessor.filteredEvents(rangeVals, setButton, WINDOW_SIZE, gpsEvent, clock, null, handle));
+        }
+        click(setButton);
+        return outputs;
+    }
+
+    private static void drive(StreamSink<GpsEvent>[] sinks, int rate, double churn) {
+        Random random = new Random(1);
+        double[] lats = new double[sinks.length];
+        double[] lons = new double[sinks.length];
+        Arrays.fill(lats, 39.9);
+        Arrays.fill(lons, 116.3);
+        long churned = 0;
+        long sent = 0;
+        long start = System.nanoTime();
+        while (true) {
+            int t = (int) (sent % sinks.length);
+            lats[t] += (random.nextDouble() - 0.5) * 1e-4;
+            lons[t] += (random.nextDouble() - 0.5) * 1e-4;
+            String id = random.nextDouble() < churn ? "Churn" + churned++ : "Tracker" + t;
+            sinks[t].send(new GpsEvent(id, lats[t], lons[t], 100.0));
+            sent++;
+
+            // Hold the average rate
+            long due = start + sent * 1_000_000_000L / rate;
+            long wait = due - System.nanoTime();
+            if (wait > 1_000_000) {
+                try {
+                    Thread.sleep(wait / 1_000_000);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static boolean check(String name, List<double[]> samples, int column, double warmupMinutes, double limit, String unit) {
+        double n = 0, sumX = 0, sumY = 0, sumXY = 0, sumXX = 0;
+        for (double[] sample : samples) {
+            if (sample[0] < warmupMinutes) continue;
+            n++;
+            sumX += sample[0];
+            sumY += sample[column];
+            sumXY += sample[0] * sample[column];
+            sumXX += sample[0] * sample[0];
+        }
+        if (n < 3) {
+            System.out.printf("%-16s not enough samples after the warm-up%n", name);
+            return true;
+        }
+        double slope = (n * sumXY - sumX * sumY) / (n * sumXX - sumX * sumX);
+        boolean failed = slope > limit;
+        System.out.printf("%-16s slope %+.3f %s (limit %.3f) %s%n", name, slope, unit, limit, failed ? "FAILED" : "ok");
+        return failed;
+    }
+
+    // Bytes allocated by all live threads, which covers the driver and every timer and scheduler thread
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return 0;
+        long total = 0;
+        for (long bytes : ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) total += bytes;
+        }
+        return total;
+    }
+
+    // SButton has no way to click it without a screen, so send on its stream as the tests do
+    private static void click(SButton button) throws Exception {
+        Field sClicked = SButton.class.getDeclaredField("sClicked");
+        sClicked.setAccessible(true);
+        @SuppressWarnings("unchecked")
+        StreamSink<Unit> clicks = (StreamSink<Unit>) sClicked.get(button);
+        clicks.send(Unit.UNIT);
+    }
+}
@@ -0,0 +1,57 @@
+import org.junit.Test;
+
+import java.io.*;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.*;
+
+public class GpsStreamingStartup_Test {
+    @Test
+    public void testStreamsAvailableBeforeLoadCompletes() throws Exception {
+        int trackers = 4;
+        File file = writeData(trackers, 50_000);
+
+        long start = System.nanoTime();
+        GpsService service = new GpsService(file.getPath());
+        long constructionMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(trackers, service.getEventStreams().length);
+        assertTrue("constructor waited for the whole file: " + constructionMillis + " ms", constructionMillis < 1000);
+
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        for (nz.sodium.Stream<GpsEvent> stream : service.getEventStreams()) stream.listen(ev -> seen.add(ev.name));
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (seen.size() < trackers && System.currentTimeMillis() < deadline) Thread.sleep(50);
+        assertEquals(trackers, seen.size());
+        assertTrue(service.getTimeToFirstEvent() >= 0);
+
+        while (service.getTimeToLoad() < 0 && System.currentTimeMillis() < deadline) Thread.sleep(50);
+        assertTrue(service.getTimeToLoad() >= 0);
+    }
+
+    @Test
+    public void testMissingFileHasNoStreams() {
+        GpsService service = new GpsService("does-not-exist.dat");
+        assertEquals(0, service.getEventStreams().length);
+        assertEquals(-1, service.getTimeToFirstEvent());
+        assertEquals(-1, service.getTimeToLoad());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static File writeData(int trackers, int records) throws IOException {
+        LinkedList<Double[]>[] data = new LinkedList[trackers];
+        for (int i = 0; i < trackers; i++) {
+            data[i] = new LinkedList<>();
+            for (int k = 0; k < records; k++) data[i].add(new Double[]{39.9 + k * 1e-6, 116.3, 100.0, 1.0});
+        }
+        File file = File.createTempFile("gps", ".dat");
+        file.deleteOnExit();
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeObject(data);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,59 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GpsTrackerEviction_Test {
+    @Test
+    public void testDistanceAccumulatedPerTracker() {
+        TrackerStateCache cache = new TrackerStateCache(10, 60_000L);
+        Position p1 = new Position(8.0, 98.40, 100.0, 1000L);
+        Position p2 = new Position(8.1, 98.41, 100.0, 2000L);
+
+        assertEquals(0.0, cache.record("Tracker1", p1), 0.001);
+        assertEquals(Utils.calculateDistance(p1, p2), cache.record("Tracker1", p2), 0.001);
+        assertEquals(p2, cache.lastPosition("Tracker1"));
+        assertNull(cache.totalDistance("Tracker2"));
+    }
+
+    @Test
+    public void testLeastRecentlyUpdatedEvictedWhenFull() {
+        TrackerStateCache cache = new TrackerStateCache(2, 60_000L);
+        cache.record("Tracker1", new Position(8.0, 98.40, 0.0, 1000L));
+        cache.record("Tracker2", new Position(8.0, 98.40, 0.0, 2000L));
+        cache.record("Tracker1", new Position(8.1, 98.40, 0.0, 3000L)); // Tracker1 is now the most recent
+        cache.record("Tracker3", new Position(8.0, 98.40, 0.0, 4000L));
+
+        assertEquals(2, cache.size());
+        assertNull(cache.totalDistance("Tracker2"));
+        assertNotNull(cache.totalDistance("Tracker1"));
+        assertEquals(1, cache.getEvictedBySize());
+    }
+
+    @Test
+    public void testIdleTrackersEvicted() {
+        TrackerStateCache cache = new TrackerStateCache(10, 5000L);
+        cache.record("Tracker1", new Position(8.0, 98.40, 0.0, 1000L));
+        cache.record("Tracker2", new Position(8.0, 98.40, 0.0, 4000L));
+        cache.record("Tracker2", new Position(8.0, 98.40, 0.0, 8000L)); // Tracker1 idle for 7 seconds
+
+        assertNull(cache.totalDistance("Tracker1"));
+        assertNotNull(cache.totalDistance("Tracker2"));
+        assertEquals(1, cache.getEvictedByIdle());
+    }
+
+    @Test
+    public void testMillionsOfDistinctIdsStayBounded() {
+        int maxSize = 1000;
+        int distinctIds = 2_000_000;
+        TrackerStateCache cache = new TrackerStateCache(maxSize, 60_000L);
+
+        for (int i = 0; i < distinctIds; i++) {
+            // One new ID every millisecond: churn is handled by both size and idle eviction
+            cache.record("Churn" + i, new Position(8.0, 98.40, 0.0, (long) i));
+            assertTrue(cache.size() <= maxSize);
+        }
+
+        assertEquals(maxSize, cache.size());
+        assertEquals(distinctIds - maxSize, cache.getEvictedBySize() + cache.getEvictedByIdle());
+    }
+}
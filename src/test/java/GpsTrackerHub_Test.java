@@ -0,0 +1,117 @@
+import nz.sodium.Cell;
+import nz.sodium.Stream;
+import nz.sodium.StreamSink;
+import nz.sodium.Unit;
+import org.junit.Test;
+import swidgets.SButton;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class GpsTrackerHub_Test {
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testViewsKeepSeparateState() throws Exception {
+        StreamSink<GpsEvent> sink = new StreamSink<>();
+        ManualClock clock = new ManualClock(0L);
+        TrackerHub hub = new TrackerHub(new Stream[]{sink}, clock);
+
+        // North view sees both events, south view sees none, everywhere sees both
+        TrackerView north = openView(hub, 50, 0, 180, -180);
+        TrackerView south = openView(hub, 0, -50, 180, -180);
+        TrackerView everywhere = openView(hub, 90, -90, 180, -180);
+        assertEquals(3, hub.getViewCount());
+
+        sink.send(new GpsEvent("HubTracker", 10.0, 20.0, 0.0));
+        clock.advance(1000);
+        sink.send(new GpsEvent("HubTracker", 10.1, 20.0, 0.0));
+
+        double expected = Utils.calculateDistance(10.0, 20.0, 0.0, 10.1, 20.0, 0.0);
+        // Each view records every event once, whatever the others do
+        assertEquals(expected, north.getTrackerStates().totalDistance("HubTracker"), 1e-6);
+        assertEquals(expected, everywhere.getTrackerStates().totalDistance("HubTracker"), 1e-6);
+        assertNull(south.getTrackerStates().totalDistance("HubTracker"));
+        assertEquals("HubTracker", north.getFilteredEvents().get(0).get(0).sample());
+        assertEquals("", south.getFilteredEvents().get(0).get(0).sample());
+
+        // Shared parts are built once, for every view
+        assertEquals("10.1", hub.getSimplifiedTrackers().get(1).get(0).sample());
+        assertEquals(2, hub.getTrajectoryStore().size("HubTracker"));
+        hub.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testClosingViewLeavesOthersRunning() throws Exception {
+        StreamSink<GpsEvent> sink = new StreamSink<>();
+        ManualClock clock = new ManualClock(0L);
+        TrackerHub hub = new TrackerHub(new Stream[]{sink}, clock);
+        TrackerView closed = openView(hub, 90, -90, 180, -180);
+        TrackerView open = openView(hub, 90, -90, 180, -180);
+
+        sink.send(new GpsEvent("ViewTracker", 10.0, 20.0, 0.0));
+        closed.close();
+        assertEquals(1, hub.getViewCount());
+        sink.send(new GpsEvent("ViewTracker", 10.1, 20.0, 0.0));
+
+        assertEquals(0.0, closed.getTrackerStates().totalDistance("ViewTracker"), 0.0);
+        assertTrue(open.getTrackerStates().totalDistance("ViewTracker") > 0.0);
+
+        hub.close();
+        assertEquals(0, hub.getViewCount());
+        sink.send(new GpsEvent("ViewTracker", 10.2, 20.0, 0.0));
+        assertEquals(2, hub.getTrajectoryStore().size("ViewTracker"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTrajectoriesKeptForRetentionOnly() throws Exception {
+        StreamSink<GpsEvent> sink = new StreamSink<>();
+        ManualClock clock = new ManualClock(0L);
+        TrackerHub hub = new TrackerHub(new Stream[]{sink}, clock);
+
+        sink.send(new GpsEvent("OldTracker", 10.0, 20.0, 0.0));
+        sink.send(new GpsEvent("OldTracker", 10.1, 20.0, 0.0));
+        clock.advance(TrackerHub.TRAJECTORY_RETENTION + 1);
+        sink.send(new GpsEvent("NewTracker", 10.0, 20.0, 0.0));
+
+        // A day later the first tracker's history has expired
+        assertEquals(0, hub.getTrajectoryStore().size("OldTracker"));
+        assertEquals(1, hub.getTrajectoryStore().size("NewTracker"));
+        assertEquals(Collections.singleton("NewTracker"), hub.getTrajectoryStore().trackerIds());
+        hub.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testViewsShareTheClockThread() throws Exception {
+        StreamSink<GpsEvent>[] sinks = new StreamSink[10];
+        for (int i = 0; i < sinks.length; i++) sinks[i] = new StreamSink<>();
+        TrackerHub hub = new TrackerHub(sinks);
+        int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+
+        for (int i = 0; i < 5; i++) openView(hub, 90, -90, 180, -180);
+        assertEquals(threads, ManagementFactory.getThreadMXBean().getThreadCount());
+        hub.close();
+    }
+
+    private static TrackerView openView(TrackerHub hub, double latMax, double latMin, double lonMax, double lonMin) throws Exception {
+        List<Cell<Optional<Double>>> rangeVals = Arrays.asList(new Cell<>(Optional.of(latMax)), new Cell<>(Optional.of(latMin)),
+                new Cell<>(Optional.of(lonMax)), new Cell<>(Optional.of(lonMin)));
+        SButton setButton = new SButton("Set");
+        TrackerView view = hub.openView(rangeVals, setButton, 1000 * 60 * 5, null);
+
+        Field sClicked = SButton.class.getDeclaredField("sClicked");
+        sClicked.setAccessible(true);
+        @SuppressWarnings("unchecked")
+        StreamSink<Unit> clicks = (StreamSink<Unit>) sClicked.get(setButton);
+        clicks.send(Unit.UNIT);
+        return view;
+    }
+}
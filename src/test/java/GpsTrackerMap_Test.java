@@ -0,0 +1,188 @@
+import nz.sodium.StreamSink;
+import org.junit.Test;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.*;
+
+public class GpsTrackerMap_Test {
+    private static final int SIZE = 512;
+
+    @Test
+    public void testSegmentsAddedAtOtherZoomShowOnReturn() throws Exception {
+        StreamSink<GpsEvent> events = new StreamSink<>();
+        TrackerMapPanel map = showingMap(events);
+        events.send(new GpsEvent("MapTest", 39.90, 116.30, 0.0));
+        events.send(new GpsEvent("MapTest", 39.91, 116.31, 0.0));
+        int[] before = onEdt(() -> {
+            map.drainPending();
+            return render(map); // builds the tiles at the first zoom level
+        });
+
+        // Zoom out, build those tiles, and move on while they are shown
+        onEdt(() -> {
+            map.zoomTo(11, SIZE / 2, SIZE / 2);
+            return render(map);
+        });
+        events.send(new GpsEvent("MapTest", 39.92, 116.30, 0.0));
+        int[] returned = onEdt(() -> {
+            map.drainPending();
+            map.zoomTo(12, SIZE / 2, SIZE / 2);
+            return render(map);
+        });
+
+        // The cached tiles of the first level must match tiles built from scratch with all three events
+        StreamSink<GpsEvent> fresh = new StreamSink<>();
+        TrackerMapPanel reference = showingMap(fresh);
+        fresh.send(new GpsEvent("MapTest", 39.90, 116.30, 0.0));
+        fresh.send(new GpsEvent("MapTest", 39.91, 116.31, 0.0));
+        fresh.send(new GpsEvent("MapTest", 39.92, 116.30, 0.0));
+        int[] expected = onEdt(() -> {
+            reference.drainPending();
+            return render(reference);
+        });
+
+        assertFalse("the new segment is visible", Arrays.equals(before, expected));
+        assertArrayEquals(expected, returned);
+    }
+
+    @Test
+    public void testCacheBoundedByViewport() throws Exception {
+        StreamSink<GpsEvent> events = new StreamSink<>();
+        TrackerMapPanel map = showingMap(events);
+        events.send(new GpsEvent("MapTest", 39.90, 116.30, 0.0));
+        events.send(new GpsEvent("MapTest", 39.91, 116.31, 0.0));
+        int limit = onEdt(map::maxCachedTiles);
+        assertTrue("a 512-pixel map keeps a few dozen tiles: " + limit, limit <= 50);
+
+        // Pan over many tiles and through every zoom level
+        onEdt(() -> {
+            map.drainPending();
+            for (int level = 2; level <= 20; level++) {
+                map.zoomTo(level, SIZE / 2, SIZE / 2);
+                render(map);
+            }
+            for (int step = 0; step < 40; step++) {
+                map.dispatchEvent(new java.awt.event.MouseEvent(map, java.awt.event.MouseEvent.MOUSE_PRESSED, 0, 0, 0, 0, 1, false));
+                map.dispatchEvent(new java.awt.event.MouseEvent(map, java.awt.event.MouseEvent.MOUSE_DRAGGED, 0, 0, SIZE, 0, 1, false));
+                render(map);
+            }
+            return null;
+        });
+        assertTrue(map.getCachedTileCount() <= limit);
+    }
+
+    @Test
+    public void testIdleAndExcessTrackersDropped() throws Exception {
+        ManualClock clock = new ManualClock(0L);
+        StreamSink<GpsEvent> events = new StreamSink<>();
+        TrackerMapPanel map = showingMap(events, new RenderGate(), clock, 2, 5000L);
+        events.send(new GpsEvent("MapAlpha", 39.90, 116.30, 0.0));
+        events.send(new GpsEvent("MapAlpha", 39.91, 116.31, 0.0));
+        int[] withA = onEdt(() -> {
+            map.drainPending();
+            return render(map);
+        });
+        assertTrue(pixels(withA, "MapAlpha") > 0);
+
+        // B and C arrive later (IDs picked so the three trail colours differ): A was updated least recently and makes room, and its trail leaves the tiles
+        clock.advance(1000);
+        events.send(new GpsEvent("MapCharlie", 39.90, 116.32, 0.0));
+        events.send(new GpsEvent("MapCharlie", 39.91, 116.33, 0.0));
+        events.send(new GpsEvent("MapBravo", 39.92, 116.30, 0.0));
+        int[] withoutA = onEdt(() -> {
+            map.drainPending();
+            return render(map);
+        });
+        assertEquals(2, map.getTrailCount());
+        assertEquals(0, pixels(withoutA, "MapAlpha"));
+        assertTrue(pixels(withoutA, "MapCharlie") > 0);
+
+        // Without any event for longer than the timeout, the others go too
+        clock.advance(6000);
+        int[] empty = onEdt(() -> {
+            map.drainPending();
+            return render(map);
+        });
+        assertEquals(0, map.getTrailCount());
+        assertEquals(0, pixels(empty, "MapCharlie"));
+    }
+
+    // Pixels drawn in a tracker's trail colour
+    private static int pixels(int[] image, String trackerId) {
+        int rgb = Color.getHSBColor((trackerId.hashCode() & 0xFFFF) / (float) 0xFFFF, 0.8f, 0.8f).getRGB();
+        int count = 0;
+        for (int pixel : image) if (pixel == rgb) count++;
+        return count;
+    }
+
+    @Test
+    public void testTimerOnlyRunsWhileDisplayable() throws Exception {
+        TrackerMapPanel map = onEdt(TrackerMapPanel::new);
+        assertFalse(map.isTicking());
+
+        onEdt(() -> {
+            new JPanel().add(map); // a parent that never shows, as on a window that is not visible yet
+            map.addNotify();
+            return null;
+        });
+        assertTrue(map.isTicking());
+
+        // A closed window disposes its components: the timer must not keep the map alive
+        onEdt(() -> {
+            map.removeNotify();
+            return null;
+        });
+        assertFalse(map.isTicking());
+    }
+
+    private static TrackerMapPanel showingMap(StreamSink<GpsEvent> events) throws Exception {
+        return showingMap(events, new RenderGate(), SystemClock.SHARED, 1000, 60_000L);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static TrackerMapPanel showingMap(StreamSink<GpsEvent> events, RenderGate gate, GpsClock clock,
+                                              int maxTrackers, long idleTimeoutMillis) throws Exception {
+        TrackerMapPanel map = onEdt(() -> {
+            TrackerMapPanel panel = new TrackerMapPanel(gate, clock, maxTrackers, idleTimeoutMillis) {
+                @Override
+                public boolean isShowing() {
+                    return true;
+                }
+            };
+            panel.setSize(SIZE, SIZE);
+            return panel;
+        });
+        map.listenTo(new StreamSink[]{events});
+        return map;
+    }
+
+    private static int[] render(TrackerMapPanel map) {
+        BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setClip(0, 0, SIZE, SIZE);
+        map.paintComponent(g);
+        g.dispose();
+        return image.getRGB(0, 0, SIZE, SIZE, null, 0, SIZE);
+    }
+
+    private static <T> T onEdt(Callable<T> task) throws Exception {
+        Object[] result = new Object[1];
+        Exception[] failure = new Exception[1];
+        SwingUtilities.invokeAndWait(() -> {
+            try {
+                result[0] = task.call();
+            } catch (Exception e) {
+                failure[0] = e;
+            }
+        });
+        if (failure[0] != null) throw failure[0];
+        @SuppressWarnings("unchecked")
+        T value = (T) result[0];
+        return value;
+    }
+}
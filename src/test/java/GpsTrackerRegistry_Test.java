@@ -0,0 +1,79 @@
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class GpsTrackerRegistry_Test {
+    @Test
+    public void testInternsDenseIndices() throws Exception {
+        TrackerRegistry registry = new TrackerRegistry();
+        assertEquals(-1, registry.indexOf("A"));
+        assertEquals(0, registry.intern("A"));
+        assertEquals(1, registry.intern("B"));
+        assertEquals(0, registry.intern(new String("A")));
+        assertEquals(1, registry.indexOf("B"));
+        assertEquals("B", registry.idOf(1));
+        assertEquals(2, registry.size());
+
+        // Threads interning the same IDs agree on their indices, and no index is skipped
+        int ids = 1000;
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<int[]>> results = new ArrayList<>();
+        for (int thread = 0; thread < 4; thread++) {
+            results.add(pool.submit(() -> {
+                int[] indices = new int[ids];
+                for (int i = 0; i < ids; i++) indices[i] = registry.intern("Tracker" + i);
+                return indices;
+            }));
+        }
+        int[] first = results.get(0).get();
+        for (Future<int[]> result : results) assertArrayEquals(first, result.get());
+        pool.shutdown();
+        assertEquals(2 + ids, registry.size());
+        for (int i = 0; i < ids; i++) assertEquals("Tracker" + i, registry.idOf(first[i]));
+    }
+
+    @Test
+    public void testEventsCarryTheIndex() {
+        int index = TrackerRegistry.DEFAULT.intern("RegistryTest-Event");
+        GpsEvent byIndex = new GpsEvent(index, 1.0, 2.0, 3.0);
+        assertSame(TrackerRegistry.DEFAULT.idOf(index), byIndex.name);
+        assertEquals(index, byIndex.index);
+        assertEquals(index, new GpsEvent("RegistryTest-Event", 1.0, 2.0, 3.0).index);
+        assertEquals(-1, new GpsEvent("RegistryTest-Unknown", 1.0, 2.0, 3.0).index);
+    }
+
+    @Test
+    public void testStoresMatchByIndexAndById() {
+        checkIndexedStore(new TrackerStateCache(2, 60_000), new TrackerStateCache(2, 60_000), "Heap");
+        checkIndexedStore(new OffHeapTrackerTable(1, 2, 60_000), new OffHeapTrackerTable(1, 2, 60_000), "OffHeap");
+    }
+
+    // Feeds one store by index (with the occasional update by ID) and the other by ID only: both must hold the same state
+    private static void checkIndexedStore(TrackerStateStore indexed, TrackerStateStore byId, String prefix) {
+        String[] ids = new String[3];
+        int[] indices = new int[3];
+        for (int t = 0; t < ids.length; t++) {
+            ids[t] = "RegistryTest-" + prefix + t;
+            indices[t] = TrackerRegistry.DEFAULT.intern(ids[t]);
+        }
+
+        Random random = new Random(3);
+        for (int i = 0; i < 300; i++) {
+            int t = i < 100 ? i % 2 : random.nextInt(3); // with two held, the third tracker keeps evicting one
+            Position position = new Position(39.9 + random.nextDouble() * 0.01, 116.3 + random.nextDouble() * 0.01, 50.0, i * 1000L);
+            double total = i % 7 == 0 ? indexed.record(ids[t], position) : indexed.record(indices[t], position);
+            assertEquals(byId.record(ids[t], position), total, 0.0);
+
+            for (int u = 0; u < ids.length; u++) {
+                assertEquals(byId.totalDistance(ids[u]), indexed.totalDistance(indices[u]));
+                assertEquals(byId.totalDistance(ids[u]), indexed.totalDistance(ids[u]));
+                assertEquals(byId.motion(ids[u]).speed, indexed.motion(indices[u]).speed, 0.0);
+            }
+        }
+        assertEquals(byId.totalDistances(), indexed.totalDistances());
+        assertEquals(2, indexed.size());
+    }
+}
@@ -0,0 +1,137 @@
+import nz.sodium.Cell;
+import nz.sodium.CellSink;
+import nz.sodium.Transaction;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class GpsTrackerServer_Test {
+    private TrackerServer server;
+
+    @After
+    public void tearDown() {
+        if (server != null) server.close();
+    }
+
+    @Test
+    public void testSnapshotAsJson() throws IOException {
+        CellSink<String> id = new CellSink<>("Tracker1");
+        CellSink<String> lat = new CellSink<>("39.9");
+        server = new TrackerServer(0);
+        server.addTable("trackers", new String[]{"id", "latitude"}, Collections.singletonList(Arrays.<Cell<String>>asList(id, lat)));
+        server.publish();
+        server.start();
+
+        assertEquals("{\"trackers\":[{\"id\":\"Tracker1\",\"latitude\":\"39.9\"}]}", get("/snapshot"));
+    }
+
+    @Test
+    public void testRowsAreSampledTogether() throws Exception {
+        CellSink<String> first = new CellSink<>("0");
+        CellSink<String> second = new CellSink<>("0");
+        server = new TrackerServer(0);
+        server.addTable("pair", new String[]{"first", "second"}, Collections.singletonList(Arrays.<Cell<String>>asList(first, second)));
+        server.start();
+
+        // Both cells always change in the same transaction, so no published row may show them apart
+        Thread writer = new Thread(() -> {
+            for (int n = 1; !Thread.currentThread().isInterrupted(); n++) {
+                String value = String.valueOf(n);
+                Transaction.runVoid(() -> {
+                    first.send(value);
+                    second.send(value);
+                });
+            }
+        });
+        writer.start();
+        try {
+            for (int i = 0; i < 200; i++) {
+                server.publish();
+                Matcher row = Pattern.compile("\\{\"first\":\"(\\d+)\",\"second\":\"(\\d+)\"}").matcher(get("/snapshot"));
+                assertTrue(row.find());
+                assertEquals(row.group(1), row.group(2));
+            }
+        } finally {
+            writer.interrupt();
+            writer.join();
+        }
+    }
+
+    @Test
+    public void testDeltasFannedOutToManyClients() throws Exception {
+        int rowCount = 10;
+        List<CellSink<String>> latitudes = new ArrayList<>();
+        List<List<Cell<String>>> rows = new ArrayList<>();
+        for (int i = 0; i < rowCount; i++) {
+            CellSink<String> lat = new CellSink<>("0.0");
+            latitudes.add(lat);
+            rows.add(Arrays.<Cell<String>>asList(new Cell<>("Tracker" + i), lat));
+        }
+        server = new TrackerServer(0);
+        server.addTable("trackers", new String[]{"id", "latitude"}, rows);
+        server.publish();
+        server.start();
+
+        // Local clients each waiting for the delta that moves Tracker3
+        int clientCount = 50;
+        CountDownLatch connected = new CountDownLatch(clientCount);
+        CountDownLatch received = new CountDownLatch(clientCount);
+        List<String> deltas = new CopyOnWriteArrayList<>();
+        for (int c = 0; c < clientCount; c++) {
+            Thread client = new Thread(() -> {
+                try {
+                    HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + "/events").openConnection();
+                    try (BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                        String event = null;
+                        for (String line; (line = in.readLine()) != null; ) {
+                            if (line.startsWith("event: ")) event = line.substring(7);
+                            else if (line.startsWith("data: ") && "snapshot".equals(event)) connected.countDown();
+                            else if (line.startsWith("data: ") && "delta".equals(event)) {
+                                deltas.add(line.substring(6));
+                                received.countDown();
+                                return;
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    // counted as not received
+                }
+            });
+            client.setDaemon(true);
+            client.start();
+        }
+        assertTrue(connected.await(10, TimeUnit.SECONDS));
+
+        long encodedBefore = server.getEncodeCount();
+        latitudes.get(3).send("39.9");
+        assertTrue(received.await(10, TimeUnit.SECONDS));
+
+        // Only the changed row is sent, and it was encoded once for every client
+        for (String delta : deltas) assertEquals("{\"trackers\":{\"3\":{\"id\":\"Tracker3\",\"latitude\":\"39.9\"}}}", delta);
+        assertEquals(1, server.getEncodeCount() - encodedBefore);
+    }
+
+    private String get(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            return in.readLine();
+        }
+    }
+}
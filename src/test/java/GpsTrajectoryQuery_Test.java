@@ -0,0 +1,107 @@
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class GpsTrajectoryQuery_Test {
+    @Test
+    public void testDistanceOverWholeAndPartialInterval() {
+        TrajectoryStore store = new TrajectoryStore();
+        Position p1 = new Position(8.0, 98.40, 100.0, 1000L);
+        Position p2 = new Position(8.1, 98.41, 100.0, 2000L);
+        Position p3 = new Position(8.2, 98.42, 100.0, 3000L);
+        store.append("Tracker1", p1);
+        store.append("Tracker1", p2);
+        store.append("Tracker1", p3);
+
+        double d12 = Utils.calculateDistance(p1, p2);
+        double d23 = Utils.calculateDistance(p2, p3);
+
+        assertEquals(d12 + d23, store.distance("Tracker1", 0L, 5000L), 0.001);
+        assertEquals(d23, store.distance("Tracker1", 1500L, 3000L), 0.001); // only the points inside count
+        assertEquals(0.0, store.distance("Tracker1", 2500L, 2600L), 0.001); // no movement inside the interval
+        assertEquals(0.0, store.distance("Unknown", 0L, 5000L), 0.001);
+    }
+
+    @Test
+    public void testDistanceAcrossManyIndexBlocks() {
+        TrajectoryStore store = new TrajectoryStore();
+        int count = TrajectoryStore.INDEX_STRIDE * 10 + 7;
+        double expected = 0.0;
+        Position last = null;
+        for (int i = 0; i < count; i++) {
+            Position p = new Position(10.0 + i * 0.0001, 100.0, 0.0, i * 1000L);
+            if (i > 100 && i <= 500) expected += Utils.calculateDistance(last, p); // segments inside the interval
+            last = p;
+            store.append("Tracker1", p);
+        }
+
+        assertEquals(count, store.size("Tracker1"));
+        assertEquals(expected, store.distance("Tracker1", 100 * 1000L, 500 * 1000L), 0.001);
+    }
+
+    @Test
+    public void testLatePointIsInsertedInOrder() {
+        TrajectoryStore store = new TrajectoryStore();
+        Position p1 = new Position(8.0, 98.40, 0.0, 1000L);
+        Position p2 = new Position(8.1, 98.41, 0.0, 2000L);
+        Position p3 = new Position(8.2, 98.42, 0.0, 3000L);
+        store.append("Tracker1", p1);
+        store.append("Tracker1", p3);
+        store.append("Tracker1", p2); // arrives late
+
+        List<Position> positions = store.positions("Tracker1", 0L, 5000L);
+        assertEquals(p1, positions.get(0));
+        assertEquals(p2, positions.get(1));
+        assertEquals(p3, positions.get(2));
+        assertEquals(Utils.calculateDistance(p1, p2) + Utils.calculateDistance(p2, p3),
+                store.distance("Tracker1", 0L, 5000L), 0.001);
+    }
+
+    @Test
+    public void testDistanceWithRangeRestriction() {
+        TrajectoryStore store = new TrajectoryStore();
+        Position p1 = new Position(7.8, 98.37, 0.0, 1000L); // lat out of range
+        Position p2 = new Position(8.0, 98.40, 0.0, 2000L);
+        Position p3 = new Position(9.0, 98.50, 0.0, 3000L); // lon out of range
+        Position p4 = new Position(8.2, 98.42, 0.0, 4000L);
+        store.append("Tracker1", p1);
+        store.append("Tracker1", p2);
+        store.append("Tracker1", p3);
+        store.append("Tracker1", p4);
+
+        // Same rule as the filtered display: out-of-range points are skipped
+        double expected = Utils.calculateDistance(p2, p4);
+        assertEquals(expected, store.distance("Tracker1", 0L, 5000L, 8.0, 9.0, 98.30, 98.46), 0.001);
+    }
+
+    @Test
+    public void testRetentionExpiresOldPointsAndIdleTrackers() {
+        TrajectoryStore store = new TrajectoryStore(100 * 1000L);
+        store.append("Idle", new Position(8.0, 98.40, 0.0, 0L));
+        store.append("Idle", new Position(8.1, 98.41, 0.0, 1000L));
+        int count = TrajectoryStore.INDEX_STRIDE * 4;
+        for (int i = 0; i < count; i++) {
+            store.append("Tracker1", new Position(8.0 + i * 0.001, 98.40, 0.0, i * 1000L));
+        }
+
+        // Only the last 100 seconds are answered for, and the tracker silent since then is gone
+        long last = (count - 1) * 1000L;
+        assertEquals(101, store.size("Tracker1"));
+        assertEquals(0, store.size("Idle"));
+        assertEquals(Collections.singleton("Tracker1"), store.trackerIds());
+        List<Position> positions = store.positions("Tracker1", 0L, last);
+        assertEquals(101, positions.size());
+        assertEquals(last - 100 * 1000L, (long) positions.get(0).time);
+
+        // Distances after the expired points were dropped still match the points that remain
+        double expected = 0.0;
+        for (int i = 1; i < positions.size(); i++) {
+            expected += Utils.calculateDistance(positions.get(i - 1), positions.get(i));
+        }
+        assertEquals(expected, store.distance("Tracker1", 0L, last), 0.001);
+        assertEquals(expected, store.distance("Tracker1", 0L, last, -90.0, 90.0, -180.0, 180.0), 0.001);
+    }
+}
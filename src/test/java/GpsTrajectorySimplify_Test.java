@@ -0,0 +1,103 @@
+import nz.sodium.Cell;
+import nz.sodium.Stream;
+import nz.sodium.StreamSink;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GpsTrajectorySimplify_Test {
+    @Test
+    public void testStationaryPointsDiscarded() {
+        TrajectorySimplifier simplifier = new TrajectorySimplifier(10.0);
+
+        assertTrue(simplifier.keep(new GpsEvent("Tracker1", 45.0, -75.0, 100.0)));
+        // Jitter of a few meters around the same spot
+        assertFalse(simplifier.keep(new GpsEvent("Tracker1", 45.00001, -75.0, 100.0)));
+        assertFalse(simplifier.keep(new GpsEvent("Tracker1", 45.0, -75.00002, 101.0)));
+        assertFalse(simplifier.keep(new GpsEvent("Tracker1", 45.00002, -75.00001, 99.0)));
+
+        assertEquals(4, simplifier.getSeenCount());
+        assertEquals(1, simplifier.getKeptCount());
+        assertEquals(4.0, simplifier.getCompressionRatio(), 0.001);
+    }
+
+    @Test
+    public void testMovingTrackerKeepsDistanceWithinTolerance() {
+        double tolerance = 20.0;
+        TrajectorySimplifier simplifier = new TrajectorySimplifier(tolerance);
+
+        Position first = null;
+        Position lastKept = null;
+        Position lastRaw = null;
+        double keptDistance = 0.0;
+        for (int i = 0; i < 100; i++) {
+            GpsEvent ev = new GpsEvent("Tracker1", 45.0 + i * 0.00005, -75.0, 0.0); // about 5.5 m per step
+            Position p = new Position(ev.latitude, ev.longitude, ev.altitude);
+            if (first == null) first = p;
+            lastRaw = p;
+            if (simplifier.keep(ev)) {
+                keptDistance += Utils.calculateDistance(lastKept, p);
+                lastKept = p;
+            } else {
+                // A discarded point is always represented by a kept point within the tolerance
+                assertTrue(Utils.calculateDistance(lastKept, p) < tolerance);
+            }
+        }
+
+        assertTrue(simplifier.getCompressionRatio() > 2.0);
+        // On a straight line the kept points lose nothing but the tail after the final kept point
+        double tail = Utils.calculateDistance(lastKept, lastRaw);
+        assertTrue(tail < tolerance);
+        // Each kept segment is rounded to whole meters by calculateDistance
+        assertEquals(Utils.calculateDistance(first, lastRaw), keptDistance + tail, simplifier.getKeptCount());
+    }
+
+    @Test
+    public void testTrackersSimplifiedIndependently() {
+        TrajectorySimplifier simplifier = new TrajectorySimplifier(10.0);
+
+        assertTrue(simplifier.keep(new GpsEvent("Tracker1", 45.0, -75.0, 100.0)));
+        assertTrue(simplifier.keep(new GpsEvent("Tracker2", 45.0, -75.0, 100.0))); // same spot, other tracker
+    }
+
+    @Test
+    public void testIdleAndExcessTrackersForgotten() {
+        ManualClock clock = new ManualClock(0L);
+        TrajectorySimplifier simplifier = new TrajectorySimplifier(10.0, 2, 5000L, clock);
+        assertTrue(simplifier.keep(new GpsEvent("Tracker1", 45.0, -75.0, 100.0)));
+        clock.advance(1000);
+        assertTrue(simplifier.keep(new GpsEvent("Tracker2", 46.0, -75.0, 100.0)));
+        clock.advance(1000);
+        assertFalse(simplifier.keep(new GpsEvent("Tracker1", 45.0, -75.0, 100.0))); // still remembered
+
+        // Tracker2 reported least recently, so it makes room for Tracker3 and its next point is kept again
+        clock.advance(1000);
+        assertTrue(simplifier.keep(new GpsEvent("Tracker3", 47.0, -75.0, 100.0)));
+        assertEquals(2, simplifier.size());
+        clock.advance(500);
+        assertTrue(simplifier.keep(new GpsEvent("Tracker2", 46.0, -75.0, 100.0)));
+
+        // More than 5 seconds later, Tracker1 and Tracker3 are idle
+        clock.advance(4600);
+        assertTrue(simplifier.keep(new GpsEvent("Tracker1", 45.0, -75.0, 100.0)));
+        assertEquals(2, simplifier.size()); // Tracker2 (3.5 s) and Tracker1
+        assertEquals(3, simplifier.getEvicted());
+    }
+
+    @Test
+    public void testSimplifiedStreamsDropRedundantEvents() {
+        StreamSink<GpsEvent> gpsEvent1 = new StreamSink<>();
+        @SuppressWarnings("unchecked")
+        Stream<GpsEvent>[] gpsEvents = new Stream[]{gpsEvent1};
+
+        Stream<GpsEvent>[] simplified = EventProcessor.simplify(gpsEvents, new TrajectorySimplifier(10.0));
+        List<List<Cell<String>>> frpCells = EventProcessor.simplifiedTrackers(simplified);
+
+        gpsEvent1.send(new GpsEvent("tracker1", 34.05, -118.25, 100));
+        gpsEvent1.send(new GpsEvent("tracker1", 34.05001, -118.25, 100)); // about 1 m away, discarded
+
+        assertEquals("34.05", frpCells.get(1).get(0).sample());
+    }
+}
@@ -0,0 +1,158 @@
+import nz.sodium.Cell;
+import nz.sodium.Stream;
+import nz.sodium.StreamSink;
+import nz.sodium.Unit;
+import org.junit.Test;
+import swidgets.SButton;
+
+import java.lang.reflect.Field;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class GpsWindowedAggregates_Test {
+    private static final long MINUTE = 60_000;
+
+    @Test
+    public void testRollUpMatchesRawPoints() {
+        WindowedAggregates aggregates = new WindowedAggregates(10_000, 60 * MINUTE, 10);
+        List<Position> points = new ArrayList<>();
+        Random random = new Random(3);
+        double lat = 39.9, lon = 116.3;
+        for (long t = 0; t < 90 * MINUTE; t += 1000 + random.nextInt(4000)) {
+            lat += (random.nextDouble() - 0.5) * 1e-3;
+            lon += (random.nextDouble() - 0.5) * 1e-3;
+            Position position = new Position(lat, lon, 50.0, t);
+            points.add(position);
+            aggregates.record("Agg", position);
+        }
+
+        long now = points.get(points.size() - 1).time;
+        for (long window : new long[]{MINUTE, 5 * MINUTE, 60 * MINUTE}) {
+            WindowedAggregates.Aggregate aggregate = aggregates.query("Agg", window, now);
+            assertEquals(rawDistance(points, now, window, aggregate), aggregate.distance, 1e-6);
+        }
+    }
+
+    @Test
+    public void testCountAndBoundingBox() {
+        WindowedAggregates aggregates = new WindowedAggregates(10_000, 10 * MINUTE, 10);
+        aggregates.record("Box", new Position(10.0, 20.0, 0.0, 1_000L));
+        aggregates.record("Box", new Position(10.5, 19.0, 0.0, 15_000L));
+        aggregates.record("Box", new Position(9.5, 21.0, 0.0, 25_000L));
+
+        WindowedAggregates.Aggregate all = aggregates.query("Box", MINUTE, 25_000L);
+        assertEquals(3, all.count);
+        assertEquals(9.5, all.latMin, 0.0);
+        assertEquals(10.5, all.latMax, 0.0);
+        assertEquals(19.0, all.lonMin, 0.0);
+        assertEquals(21.0, all.lonMax, 0.0);
+
+        // Only the bucket holding 25 s
+        WindowedAggregates.Aggregate newest = aggregates.query("Box", 10_000, 25_000L);
+        assertEquals(1, newest.count);
+        assertEquals(Utils.calculateDistance(10.5, 19.0, 0.0, 9.5, 21.0, 0.0), newest.distance, 1e-6);
+    }
+
+    @Test
+    public void testOldBucketsExpire() {
+        WindowedAggregates aggregates = new WindowedAggregates(10_000, 10 * MINUTE, 10);
+        aggregates.record("Old", new Position(10.0, 20.0, 0.0, 0L));
+        aggregates.record("Old", new Position(10.1, 20.0, 0.0, 5_000L));
+        assertEquals(2, aggregates.query("Old", 10 * MINUTE, 5_000L).count);
+
+        // Slots are reused once their bucket leaves the retention
+        aggregates.record("Old", new Position(10.2, 20.0, 0.0, 10 * MINUTE + 1_000L));
+        assertEquals(1, aggregates.query("Old", 10 * MINUTE, 10 * MINUTE + 1_000L).count);
+        assertSame(WindowedAggregates.Aggregate.EMPTY, aggregates.query("Old", MINUTE, 30 * MINUTE));
+
+        // A tracker with nothing left in the retention is evicted by the next update of any tracker
+        aggregates.record("New", new Position(10.0, 20.0, 0.0, 30 * MINUTE));
+        assertEquals(1, aggregates.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWindowMustBeWholeBuckets() {
+        new WindowedAggregates(10_000, 10 * MINUTE, 10).query("Any", 15_000, 0L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testViewShowsSeveralWindows() throws Exception {
+        StreamSink<GpsEvent> sink = new StreamSink<>();
+        ManualClock clock = new ManualClock(0L);
+        TrackerHub hub = new TrackerHub(new Stream[]{sink}, clock);
+        List<Cell<Optional<Double>>> rangeVals = Arrays.asList(new Cell<>(Optional.of(90.0)), new Cell<>(Optional.of(-90.0)),
+                new Cell<>(Optional.of(180.0)), new Cell<>(Optional.of(-180.0)));
+        SButton setButton = new SButton("Set");
+        TrackerView view = hub.openView(rangeVals, setButton, 5 * MINUTE, null);
+        Cell<String> oneMinute = view.windowedDistances(MINUTE).get(0);
+        Cell<String> oneHour = view.windowedDistances(60 * MINUTE).get(0);
+        click(setButton);
+
+        sink.send(new GpsEvent("WinTracker", 10.0, 20.0, 0.0));
+        clock.advance(10 * MINUTE);
+        sink.send(new GpsEvent("WinTracker", 10.01, 20.0, 0.0));
+        clock.advance(10 * MINUTE);
+        sink.send(new GpsEvent("WinTracker", 10.02, 20.0, 0.0));
+
+        double leg = Utils.calculateDistance(10.0, 20.0, 0.0, 10.01, 20.0, 0.0);
+        double lastLeg = Utils.calculateDistance(10.01, 20.0, 0.0, 10.02, 20.0, 0.0);
+        assertEquals(String.valueOf(Math.round(lastLeg)), oneMinute.sample());
+        assertEquals(String.valueOf(Math.round(leg + lastLeg)), oneHour.sample());
+
+        // Time passing moves the windows even without events
+        clock.advance(2 * MINUTE);
+        assertEquals("0", oneMinute.sample());
+        hub.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testClicksDoNotCountEventsAgain() throws Exception {
+        StreamSink<GpsEvent> sink = new StreamSink<>();
+        ManualClock clock = new ManualClock(0L);
+        TrackerHub hub = new TrackerHub(new Stream[]{sink}, clock);
+        List<Cell<Optional<Double>>> rangeVals = Arrays.asList(new Cell<>(Optional.of(90.0)), new Cell<>(Optional.of(-90.0)),
+                new Cell<>(Optional.of(180.0)), new Cell<>(Optional.of(-180.0)));
+        SButton setButton = new SButton("Set");
+        TrackerView view = hub.openView(rangeVals, setButton, 5 * MINUTE, null);
+        click(setButton);
+
+        sink.send(new GpsEvent("ClickTracker", 10.0, 20.0, 0.0));
+        clock.advance(1000);
+        sink.send(new GpsEvent("ClickTracker", 10.01, 20.0, 0.0));
+        WindowedAggregates.Aggregate before = view.getAggregates().query("ClickTracker", MINUTE, clock.time().sample());
+        assertEquals(2, before.count);
+
+        // Re-applying the range re-evaluates the display with the held event, which must not be recorded again
+        click(setButton);
+        click(setButton);
+        WindowedAggregates.Aggregate after = view.getAggregates().query("ClickTracker", MINUTE, clock.time().sample());
+        assertEquals(2, after.count);
+        assertEquals(before.distance, after.distance, 0.0);
+        hub.close();
+    }
+
+    // Distance into the points inside the buckets the aggregate covers, by scanning every point
+    private static double rawDistance(List<Position> points, long now, long window, WindowedAggregates.Aggregate aggregate) {
+        long firstBucket = Math.floorDiv(now, 10_000L) - window / 10_000 + 1;
+        double total = 0.0;
+        int count = 0;
+        for (int i = 0; i < points.size(); i++) {
+            if (Math.floorDiv(points.get(i).time, 10_000L) < firstBucket) continue;
+            count++;
+            if (i > 0) total += Utils.calculateDistance(points.get(i - 1), points.get(i));
+        }
+        assertEquals(count, aggregate.count);
+        return total;
+    }
+
+    private static void click(SButton button) throws Exception {
+        Field sClicked = SButton.class.getDeclaredField("sClicked");
+        sClicked.setAccessible(true);
+        @SuppressWarnings("unchecked")
+        StreamSink<Unit> clicks = (StreamSink<Unit>) sClicked.get(button);
+        clicks.send(Unit.UNIT);
+    }
+}